@@ -68,6 +68,7 @@ dependencies {
         apiv("org.eclipse.jetty:jetty-security", "jetty")
         apiv("org.eclipse.jetty:jetty-server", "jetty")
         apiv("org.eclipse.jetty:jetty-util", "jetty")
+        apiv("org.eclipse.jetty.http2:http2-server", "jetty")
         apiv("org.hamcrest:hamcrest-core", "hamcrest")
         apiv("org.hsqldb:hsqldb")
         apiv("org.mockito:mockito-core", "mockito")
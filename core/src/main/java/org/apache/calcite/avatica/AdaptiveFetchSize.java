@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Number of rows to fetch per call, adapted after each fetch to the size of
+ * the rows received and the time the fetch took.
+ *
+ * <p>The row count shrinks at once when a frame is larger than the target
+ * size or a fetch slower than the latency budget, and grows at most twofold
+ * per fetch, and only after a full frame.
+ *
+ * @see BuiltInConnectionProperty#FETCH_SIZE_ADAPTIVE
+ */
+final class AdaptiveFetchSize {
+  /** Number of rows of a frame whose size is estimated. */
+  private static final int SAMPLE_ROWS = 32;
+
+  /** Estimated size of an object header, or of an object holding a single
+   * primitive value. */
+  private static final int OBJECT_BYTES = 16;
+  /** Estimated size of a reference. */
+  private static final int REFERENCE_BYTES = 8;
+
+  private final long targetBytes;
+  private final long maxLatencyNanos;
+  private int rowCount;
+
+  /**
+   * Creates an AdaptiveFetchSize.
+   *
+   * @param rowCount Number of rows to fetch first
+   * @param targetBytes Estimated size in bytes of the rows of a frame to aim for
+   * @param maxLatencyMillis Time in milliseconds a fetch may take, or 0 for no limit
+   */
+  AdaptiveFetchSize(int rowCount, long targetBytes, long maxLatencyMillis) {
+    this.rowCount = Math.max(1, rowCount);
+    this.targetBytes = Math.max(1, targetBytes);
+    this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxLatencyMillis));
+  }
+
+  /** Returns the number of rows to request in the next fetch. */
+  synchronized int rowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Records a fetch, and adapts the number of rows to request next.
+   *
+   * @param requestedRowCount Number of rows that the fetch requested
+   * @param frame Frame that the fetch returned
+   * @param elapsedNanos Time that the fetch took
+   */
+  synchronized void fetched(int requestedRowCount, Meta.Frame frame, long elapsedNanos) {
+    if (null == frame || null == frame.rows) {
+      // The result set had no more rows
+      return;
+    }
+    long rows = 0;
+    long sampleBytes = 0;
+    if (frame.rows instanceof Collection) {
+      rows = ((Collection<?>) frame.rows).size();
+    }
+    final Iterator<Object> iterator = frame.rows.iterator();
+    int sampled = 0;
+    for (; sampled < SAMPLE_ROWS && iterator.hasNext(); sampled++) {
+      sampleBytes += estimateBytes(iterator.next());
+    }
+    if (!(frame.rows instanceof Collection)) {
+      rows = sampled;
+      for (; iterator.hasNext(); iterator.next()) {
+        rows++;
+      }
+    }
+    if (rows == 0) {
+      return;
+    }
+    final long bytesPerRow = Math.max(1, sampleBytes / sampled);
+    long next = targetBytes / bytesPerRow;
+    if (maxLatencyNanos > 0 && elapsedNanos > 0) {
+      // Assumes that the time of a fetch is proportional to its rows, which
+      // overestimates the cost of a row by the cost of the round trip
+      next = Math.min(next, rows * maxLatencyNanos / elapsedNanos);
+    }
+    if (rows < requestedRowCount) {
+      // The result set ran out of rows, so its size says nothing of how many
+      // more would fit
+      next = Math.min(next, rowCount);
+    }
+    next = Math.min(next, 2L * rowCount);
+    rowCount = (int) Math.max(1, Math.min(Integer.MAX_VALUE, next));
+  }
+
+  /** Estimates the number of bytes that a value of a row takes in memory.
+   * Rows that are decoded only when read are estimated by their serialized
+   * form, which is what they hold until then, so that sampling them does not
+   * decode them. */
+  static long estimateBytes(Object o) {
+    if (o == null) {
+      return REFERENCE_BYTES;
+    }
+    if (o instanceof SerializedRow) {
+      return OBJECT_BYTES + ((SerializedRow) o).serializedBytes();
+    }
+    if (o instanceof String) {
+      return OBJECT_BYTES * 2 + 2L * ((String) o).length();
+    }
+    if (o instanceof byte[]) {
+      return OBJECT_BYTES + ((byte[]) o).length;
+    }
+    if (o instanceof Object[]) {
+      long bytes = OBJECT_BYTES;
+      for (Object element : (Object[]) o) {
+        bytes += REFERENCE_BYTES + estimateBytes(element);
+      }
+      return bytes;
+    }
+    if (o instanceof List) {
+      long bytes = OBJECT_BYTES * 2;
+      for (Object element : (List<?>) o) {
+        bytes += REFERENCE_BYTES + estimateBytes(element);
+      }
+      return bytes;
+    }
+    if (o instanceof Map) {
+      long bytes = OBJECT_BYTES * 2;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) o).entrySet()) {
+        bytes += OBJECT_BYTES * 2
+            + estimateBytes(entry.getKey()) + estimateBytes(entry.getValue());
+      }
+      return bytes;
+    }
+    // Numbers, booleans, dates and other values of a single field or two
+    return OBJECT_BYTES * 2;
+  }
+}
+
+// End AdaptiveFetchSize.java
@@ -98,6 +98,10 @@ public abstract class AvaticaConnection implements Connection {
   final Map<Integer, AtomicBoolean> flagMap = new ConcurrentHashMap<>();
   protected final long maxRetriesPerExecute;
   protected final boolean transparentReconnectEnabled;
+  /** Handles of closed prepared statements that are kept open on the server;
+   * null if {@link BuiltInConnectionProperty#PREPARED_STATEMENT_CACHE_SIZE}
+   * is 0. */
+  final PreparedStatementCache preparedStatementCache;
 
   /**
    * Creates an AvaticaConnection.
@@ -130,6 +134,10 @@ protected AvaticaConnection(UnregisteredDriver driver,
     }
     this.maxRetriesPerExecute = getNumStatementRetries(info);
     this.transparentReconnectEnabled = config().transparentReconnectionEnabled();
+    final int preparedStatementCacheSize = config().preparedStatementCacheSize();
+    this.preparedStatementCache = preparedStatementCacheSize > 0
+        ? new PreparedStatementCache(preparedStatementCacheSize)
+        : null;
   }
 
   /** Computes the number of retries
@@ -153,6 +161,10 @@ public ConnectionConfig config() {
    * Opens the connection on the server.
    */
   public void openConnection() {
+    if (null != preparedStatementCache) {
+      // Statements of a previous connection on the server are gone with it
+      preparedStatementCache.clear();
+    }
     // Open the connection on the server
     this.meta.openConnection(handle, OpenConnectionRequest.serializeProperties(info));
   }
@@ -211,6 +223,10 @@ public void rollback() throws SQLException {
   public void close() throws SQLException {
     if (!closed) {
       closed = true;
+      if (null != preparedStatementCache) {
+        // Closing the connection on the server closes its statements
+        preparedStatementCache.clear();
+      }
 
       // Per specification, if onConnectionClose throws, this method will throw
       // a SQLException, but statement will still be closed.
@@ -230,6 +246,28 @@ public boolean isClosed() throws SQLException {
     return closed;
   }
 
+  /** Keeps the handle of a prepared statement that is being closed open on
+   * the server, to reuse when the same SQL is prepared again, and closes on
+   * the server the handles that the cache no longer keeps.
+   *
+   * @return Whether the handle was kept; if not, the caller closes it
+   */
+  boolean returnToCache(AvaticaStatement statement) {
+    if (null == preparedStatementCache || closed
+        || !(statement instanceof AvaticaPreparedStatement)) {
+      return false;
+    }
+    final PreparedStatementCache.Key key =
+        ((AvaticaPreparedStatement) statement).cacheKey;
+    if (null == key) {
+      return false;
+    }
+    for (Meta.StatementHandle h : preparedStatementCache.put(key, statement.handle)) {
+      meta.closeStatement(h);
+    }
+    return true;
+  }
+
   public DatabaseMetaData getMetaData() throws SQLException {
     checkOpen();
     return metaData;
@@ -354,6 +392,21 @@ public PreparedStatement prepareStatement(
       int resultSetHoldability) throws SQLException {
     checkOpen();
     try {
+      if (null != preparedStatementCache) {
+        final PreparedStatementCache.Key key = new PreparedStatementCache.Key(sql,
+            resultSetType, resultSetConcurrency, resultSetHoldability);
+        Meta.StatementHandle h = preparedStatementCache.take(key);
+        final boolean cachedHandle = null != h;
+        if (!cachedHandle) {
+          h = meta.prepare(handle, sql, -1);
+        }
+        final AvaticaPreparedStatement statement =
+            factory.newPreparedStatement(this, h, h.signature, resultSetType,
+                resultSetConcurrency, resultSetHoldability);
+        statement.cacheKey = key;
+        statement.cachedHandle = cachedHandle;
+        return statement;
+      }
       final Meta.StatementHandle h = meta.prepare(handle, sql, -1);
       return factory.newPreparedStatement(this, h, h.signature, resultSetType,
           resultSetConcurrency, resultSetHoldability);
@@ -540,16 +593,7 @@ protected ResultSet executeQueryInternal(AvaticaStatement statement,
       try {
         if (statement.isWrapperFor(AvaticaPreparedStatement.class)) {
           final AvaticaPreparedStatement pstmt = (AvaticaPreparedStatement) statement;
-          Meta.StatementHandle handle = pstmt.handle;
-          if (isUpdate) {
-            // Make a copy of the StatementHandle, nulling out the Signature.
-            // CALCITE-1086 we don't need to send the Signature to the server
-            // when we're only performing an update. Saves on serialization.
-            handle = new Meta.StatementHandle(handle.connectionId, handle.id, null);
-          }
-          final Meta.ExecuteResult executeResult =
-              meta.execute(handle, pstmt.getParameterValues(),
-                  statement.getFetchSize());
+          final Meta.ExecuteResult executeResult = executePrepared(pstmt, isUpdate);
           final MetaResultSet metaResultSet = executeResult.resultSets.get(0);
           frame = metaResultSet.firstFrame;
           statement.updateCount = metaResultSet.updateCount;
@@ -582,6 +626,50 @@ protected ResultSet executeQueryInternal(AvaticaStatement statement,
     return statement.openResultSet;
   }
 
+  /** Executes a prepared statement; if its handle came from the prepared
+   * statement cache and the server no longer has the statement, prepares it
+   * again and executes it once more. */
+  private Meta.ExecuteResult executePrepared(AvaticaPreparedStatement pstmt,
+      boolean isUpdate) throws NoSuchStatementException {
+    for (;;) {
+      Meta.StatementHandle handle = pstmt.handle;
+      if (isUpdate) {
+        // Make a copy of the StatementHandle, nulling out the Signature.
+        // CALCITE-1086 we don't need to send the Signature to the server
+        // when we're only performing an update. Saves on serialization.
+        handle = new Meta.StatementHandle(handle.connectionId, handle.id, null);
+      }
+      try {
+        return meta.execute(handle, pstmt.getParameterValues(),
+            pstmt.getFetchSize());
+      } catch (NoSuchStatementException e) {
+        if (!prepareAgain(pstmt)) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  /** Prepares again a statement whose handle came from the prepared statement
+   * cache, after the server has dropped the statement while the handle was
+   * kept; for example, because it expired from the server's statement cache.
+   *
+   * @return Whether the statement was prepared again; false if its handle did
+   * not come from the cache, or if it has already been prepared again
+   */
+  private boolean prepareAgain(AvaticaPreparedStatement pstmt) {
+    if (!pstmt.cachedHandle) {
+      return false;
+    }
+    pstmt.cachedHandle = false;
+    final Meta.StatementHandle h = meta.prepare(handle, pstmt.cacheKey.sql, -1);
+    statementMap.remove(pstmt.handle.id);
+    flagMap.remove(pstmt.handle.id);
+    statementMap.put(h.id, pstmt);
+    pstmt.handle = h;
+    return true;
+  }
+
   /** Executes a batch update using an {@link AvaticaPreparedStatement}.
    *
    * @param pstmt The prepared statement.
@@ -589,10 +677,17 @@ protected ResultSet executeQueryInternal(AvaticaStatement statement,
    */
   protected long[] executeBatchUpdateInternal(AvaticaPreparedStatement pstmt) throws SQLException {
     try {
-      // Get the handle from the statement
-      Meta.StatementHandle handle = pstmt.handle;
-      // Execute it against meta
-      return meta.executeBatch(handle, pstmt.getParameterValueBatch()).updateCounts;
+      for (;;) {
+        try {
+          // Execute the statement's handle against meta
+          return meta.executeBatch(pstmt.handle, pstmt.getParameterValueBatch())
+              .updateCounts;
+        } catch (NoSuchStatementException e) {
+          if (!prepareAgain(pstmt)) {
+            throw e;
+          }
+        }
+      }
     } catch (Exception e) {
       throw HELPER.createException(e.getMessage(), e);
     }
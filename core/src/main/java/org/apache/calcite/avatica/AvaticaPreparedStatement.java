@@ -58,6 +58,12 @@
   private Calendar calendar;
   protected final TypedValue[] slots;
   protected final List<List<TypedValue>> parameterValueBatch;
+  /** Key under which the connection keeps the handle of this statement when
+   * it is closed; null if the connection does not keep it. */
+  PreparedStatementCache.Key cacheKey;
+  /** Whether the handle of this statement came from the connection's cache,
+   * and so the server may have dropped the statement while it was kept. */
+  boolean cachedHandle;
 
   /**
    * Creates an AvaticaPreparedStatement.
@@ -265,8 +265,11 @@ protected void close_() {
         c.close();
       }
       try {
-        // inform the server to close the resource
-        connection.meta.closeStatement(handle);
+        // inform the server to close the resource, unless the connection
+        // keeps it to prepare the same SQL again
+        if (!connection.returnToCache(this)) {
+          connection.meta.closeStatement(handle);
+        }
       } finally {
         // make sure we don't leak on our side
         connection.statementMap.remove(handle.id);
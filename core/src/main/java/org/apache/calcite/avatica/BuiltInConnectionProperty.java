@@ -18,6 +18,8 @@
 
 import org.apache.calcite.avatica.ha.ShuffledRoundRobinLBStrategy;
 import org.apache.calcite.avatica.remote.AvaticaHttpClientFactoryImpl;
+import org.apache.calcite.avatica.remote.ExponentialBackoffRetryPolicy;
+import org.apache.calcite.avatica.remote.HttpCompression;
 
 import org.apache.hc.core5.util.Timeout;
 
@@ -148,7 +150,91 @@ public enum BuiltInConnectionProperty implements ConnectionProperty {
   TOKEN_FILE("token_file", Type.STRING, "", false),
 
   /** Classname of the BearerTokenProvider. */
-  TOKEN_PROVIDER_CLASS("bearer_token_provider_class", Type.STRING, null, false);
+  TOKEN_PROVIDER_CLASS("bearer_token_provider_class", Type.STRING, null, false),
+
+  /** Layout of result frames requested from the server; only honored by the
+   * protobuf serialization. */
+  FRAME_ENCODING("frame_encoding", Type.ENUM, Meta.FrameEncoding.ROW,
+      Meta.FrameEncoding.class, false),
+
+  /** Compression of HTTP bodies, used when the server supports it. */
+  HTTP_COMPRESSION("http_compression", Type.ENUM, HttpCompression.NONE,
+      HttpCompression.class, false),
+
+  /** Size in bytes under which HTTP requests are sent uncompressed. */
+  HTTP_COMPRESSION_MINIMUM_SIZE("http_compression_minimum_size", Type.NUMBER,
+      HttpCompression.DEFAULT_MINIMUM_SIZE, false),
+
+  /** Number of frames of a result set fetched in the background ahead of the
+   * rows being read; 0 fetches each frame when the previous one is read. */
+  FETCH_PREFETCH_DEPTH("fetch_prefetch_depth", Type.NUMBER, 0, false),
+
+  /** Whether the number of rows fetched per call adapts to the size of the
+   * rows and the time that fetching them takes, starting from the fetch size. */
+  FETCH_SIZE_ADAPTIVE("fetch_size_adaptive", Type.BOOLEAN, Boolean.FALSE, false),
+
+  /** Size in bytes of the rows of a frame that adaptive fetch sizing aims
+   * for. */
+  FETCH_SIZE_TARGET_BYTES("fetch_size_target_bytes", Type.NUMBER, 1L << 20, false),
+
+  /** Time in milliseconds that a fetch may take before adaptive fetch sizing
+   * fetches fewer rows; 0 for no limit. */
+  FETCH_SIZE_MAX_LATENCY("fetch_size_max_latency", Type.NUMBER, 1000, false),
+
+  /** Policy deciding whether, and when, HTTP requests that the server failed
+   * to answer are sent again. */
+  HTTP_RETRY_POLICY("http_retry_policy", Type.PLUGIN,
+      ExponentialBackoffRetryPolicy.class.getName(), false),
+
+  /** Time in milliseconds up to which a request is delayed before it is
+   * first sent again. */
+  HTTP_RETRY_INITIAL_BACKOFF("http_retry_initial_backoff", Type.NUMBER, 100, false),
+
+  /** Time in milliseconds up to which a request is delayed before it is sent
+   * again, however many times it has been sent. */
+  HTTP_RETRY_MAX_BACKOFF("http_retry_max_backoff", Type.NUMBER, 10_000, false),
+
+  /** Number of times a request is sent before it fails; 0 for no limit. */
+  HTTP_RETRY_MAX_ATTEMPTS("http_retry_max_attempts", Type.NUMBER, 0, false),
+
+  /** Time in milliseconds after which a request is not sent again; 0 for no
+   * limit. */
+  HTTP_RETRY_DEADLINE("http_retry_deadline", Type.NUMBER, 0, false),
+
+  /** Number of consecutive failed requests after which requests to a server
+   * fail without being sent; 0 never to stop sending them. */
+  HTTP_CIRCUIT_BREAKER_THRESHOLD("http_circuit_breaker_threshold", Type.NUMBER, 0, false),
+
+  /** Time in milliseconds during which requests to a server fail without
+   * being sent, once the circuit breaker has opened. */
+  HTTP_CIRCUIT_BREAKER_OPEN_TIME("http_circuit_breaker_open_time", Type.NUMBER, 30_000,
+      false),
+
+  /** Maximum number of pooled HTTP connections. If not set, the
+   * {@code avatica.pooled.connections.max} system property, or 100. */
+  HTTP_POOL_MAX_TOTAL("http_pool_max_total", Type.NUMBER, 100, false),
+
+  /** Maximum number of pooled HTTP connections to a server. If not set, the
+   * {@code avatica.pooled.connections.per.route} system property, or 25. */
+  HTTP_POOL_MAX_PER_ROUTE("http_pool_max_per_route", Type.NUMBER, 25, false),
+
+  /** Time in milliseconds after which idle pooled HTTP connections are closed
+   * in the background, and not kept alive for longer; 0 to keep them. */
+  HTTP_POOL_IDLE_TIMEOUT("http_pool_idle_timeout", Type.NUMBER, 30_000, false),
+
+  /** Time in milliseconds after which pooled HTTP connections are closed,
+   * however busy; 0 for no limit. */
+  HTTP_POOL_TIME_TO_LIVE("http_pool_time_to_live", Type.NUMBER, 0, false),
+
+  /** Time in milliseconds of inactivity after which a pooled HTTP connection
+   * is checked before it is reused; negative not to check. */
+  HTTP_POOL_VALIDATE_AFTER_INACTIVITY("http_pool_validate_after_inactivity",
+      Type.NUMBER, 2_000, false),
+
+  /** Number of closed prepared statements whose handles a connection keeps
+   * open on the server, to reuse when the same SQL is prepared again; 0 to
+   * close them at once. */
+  PREPARED_STATEMENT_CACHE_SIZE("prepared_statement_cache_size", Type.NUMBER, 0, false);
 
   private final String camelName;
   private final Type type;
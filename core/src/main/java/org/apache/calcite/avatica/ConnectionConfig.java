@@ -18,6 +18,8 @@
 
 import org.apache.calcite.avatica.ha.LBStrategy;
 import org.apache.calcite.avatica.remote.AvaticaHttpClientFactory;
+import org.apache.calcite.avatica.remote.HttpCompression;
+import org.apache.calcite.avatica.remote.RetryPolicy;
 import org.apache.calcite.avatica.remote.Service;
 
 import java.io.File;
@@ -90,6 +92,46 @@ public interface ConnectionConfig {
   String getBearerToken();
   /** @see BuiltInConnectionProperty#TOKEN_PROVIDER_CLASS */
   String getBearerTokenProviderClass();
+  /** @see BuiltInConnectionProperty#FRAME_ENCODING */
+  Meta.FrameEncoding frameEncoding();
+  /** @see BuiltInConnectionProperty#HTTP_COMPRESSION */
+  HttpCompression httpCompression();
+  /** @see BuiltInConnectionProperty#HTTP_COMPRESSION_MINIMUM_SIZE */
+  int httpCompressionMinimumSize();
+  /** @see BuiltInConnectionProperty#FETCH_PREFETCH_DEPTH */
+  int fetchPrefetchDepth();
+  /** @see BuiltInConnectionProperty#FETCH_SIZE_ADAPTIVE */
+  boolean fetchSizeAdaptive();
+  /** @see BuiltInConnectionProperty#FETCH_SIZE_TARGET_BYTES */
+  long fetchSizeTargetBytes();
+  /** @see BuiltInConnectionProperty#FETCH_SIZE_MAX_LATENCY */
+  long fetchSizeMaxLatency();
+  /** @see BuiltInConnectionProperty#HTTP_RETRY_POLICY */
+  RetryPolicy httpRetryPolicy();
+  /** @see BuiltInConnectionProperty#HTTP_RETRY_INITIAL_BACKOFF */
+  long httpRetryInitialBackoff();
+  /** @see BuiltInConnectionProperty#HTTP_RETRY_MAX_BACKOFF */
+  long httpRetryMaxBackoff();
+  /** @see BuiltInConnectionProperty#HTTP_RETRY_MAX_ATTEMPTS */
+  int httpRetryMaxAttempts();
+  /** @see BuiltInConnectionProperty#HTTP_RETRY_DEADLINE */
+  long httpRetryDeadline();
+  /** @see BuiltInConnectionProperty#HTTP_CIRCUIT_BREAKER_THRESHOLD */
+  int httpCircuitBreakerThreshold();
+  /** @see BuiltInConnectionProperty#HTTP_CIRCUIT_BREAKER_OPEN_TIME */
+  long httpCircuitBreakerOpenTime();
+  /** @see BuiltInConnectionProperty#HTTP_POOL_MAX_TOTAL */
+  int httpPoolMaxTotal();
+  /** @see BuiltInConnectionProperty#HTTP_POOL_MAX_PER_ROUTE */
+  int httpPoolMaxPerRoute();
+  /** @see BuiltInConnectionProperty#HTTP_POOL_IDLE_TIMEOUT */
+  long httpPoolIdleTimeout();
+  /** @see BuiltInConnectionProperty#HTTP_POOL_TIME_TO_LIVE */
+  long httpPoolTimeToLive();
+  /** @see BuiltInConnectionProperty#HTTP_POOL_VALIDATE_AFTER_INACTIVITY */
+  long httpPoolValidateAfterInactivity();
+  /** @see BuiltInConnectionProperty#PREPARED_STATEMENT_CACHE_SIZE */
+  int preparedStatementCacheSize();
 
   ConnectionPropertyValue customPropertyValue(ConnectionProperty property);
 }
@@ -18,6 +18,8 @@
 
 import org.apache.calcite.avatica.ha.LBStrategy;
 import org.apache.calcite.avatica.remote.AvaticaHttpClientFactory;
+import org.apache.calcite.avatica.remote.HttpCompression;
+import org.apache.calcite.avatica.remote.RetryPolicy;
 import org.apache.calcite.avatica.remote.Service;
 
 import java.io.File;
@@ -187,6 +189,100 @@ public String getBearerTokenProviderClass() {
     return BuiltInConnectionProperty.TOKEN_PROVIDER_CLASS.wrap(properties).getString();
   }
 
+  public Meta.FrameEncoding frameEncoding() {
+    return BuiltInConnectionProperty.FRAME_ENCODING.wrap(properties)
+        .getEnum(Meta.FrameEncoding.class);
+  }
+
+  public HttpCompression httpCompression() {
+    return BuiltInConnectionProperty.HTTP_COMPRESSION.wrap(properties)
+        .getEnum(HttpCompression.class);
+  }
+
+  public int httpCompressionMinimumSize() {
+    return BuiltInConnectionProperty.HTTP_COMPRESSION_MINIMUM_SIZE.wrap(properties).getInt();
+  }
+
+  public int fetchPrefetchDepth() {
+    return BuiltInConnectionProperty.FETCH_PREFETCH_DEPTH.wrap(properties).getInt();
+  }
+
+  public boolean fetchSizeAdaptive() {
+    return BuiltInConnectionProperty.FETCH_SIZE_ADAPTIVE.wrap(properties).getBoolean();
+  }
+
+  public long fetchSizeTargetBytes() {
+    return BuiltInConnectionProperty.FETCH_SIZE_TARGET_BYTES.wrap(properties).getLong();
+  }
+
+  public long fetchSizeMaxLatency() {
+    return BuiltInConnectionProperty.FETCH_SIZE_MAX_LATENCY.wrap(properties).getLong();
+  }
+
+  public RetryPolicy httpRetryPolicy() {
+    return BuiltInConnectionProperty.HTTP_RETRY_POLICY.wrap(properties)
+        .getPlugin(RetryPolicy.class, null);
+  }
+
+  public long httpRetryInitialBackoff() {
+    return BuiltInConnectionProperty.HTTP_RETRY_INITIAL_BACKOFF.wrap(properties).getLong();
+  }
+
+  public long httpRetryMaxBackoff() {
+    return BuiltInConnectionProperty.HTTP_RETRY_MAX_BACKOFF.wrap(properties).getLong();
+  }
+
+  public int httpRetryMaxAttempts() {
+    return BuiltInConnectionProperty.HTTP_RETRY_MAX_ATTEMPTS.wrap(properties).getInt();
+  }
+
+  public long httpRetryDeadline() {
+    return BuiltInConnectionProperty.HTTP_RETRY_DEADLINE.wrap(properties).getLong();
+  }
+
+  public int httpCircuitBreakerThreshold() {
+    return BuiltInConnectionProperty.HTTP_CIRCUIT_BREAKER_THRESHOLD.wrap(properties).getInt();
+  }
+
+  public long httpCircuitBreakerOpenTime() {
+    return BuiltInConnectionProperty.HTTP_CIRCUIT_BREAKER_OPEN_TIME.wrap(properties).getLong();
+  }
+
+  public int httpPoolMaxTotal() {
+    // The system property that sized the pools before the connection property
+    // existed is its default
+    final BuiltInConnectionProperty property = BuiltInConnectionProperty.HTTP_POOL_MAX_TOTAL;
+    return property.wrap(properties)
+        .getInt(
+            Integer.getInteger("avatica.pooled.connections.max",
+                (Integer) property.defaultValue()));
+  }
+
+  public int httpPoolMaxPerRoute() {
+    final BuiltInConnectionProperty property = BuiltInConnectionProperty.HTTP_POOL_MAX_PER_ROUTE;
+    return property.wrap(properties)
+        .getInt(
+            Integer.getInteger("avatica.pooled.connections.per.route",
+                (Integer) property.defaultValue()));
+  }
+
+  public long httpPoolIdleTimeout() {
+    return BuiltInConnectionProperty.HTTP_POOL_IDLE_TIMEOUT.wrap(properties).getLong();
+  }
+
+  public long httpPoolTimeToLive() {
+    return BuiltInConnectionProperty.HTTP_POOL_TIME_TO_LIVE.wrap(properties).getLong();
+  }
+
+  public long httpPoolValidateAfterInactivity() {
+    return BuiltInConnectionProperty.HTTP_POOL_VALIDATE_AFTER_INACTIVITY.wrap(properties)
+        .getLong();
+  }
+
+  public int preparedStatementCacheSize() {
+    return BuiltInConnectionProperty.PREPARED_STATEMENT_CACHE_SIZE.wrap(properties).getInt();
+  }
+
   public ConnectionPropertyValue customPropertyValue(ConnectionProperty property) {
     return property.wrap(properties);
   }
@@ -17,32 +17,45 @@
 package org.apache.calcite.avatica;
 
 import org.apache.calcite.avatica.proto.Common;
+import org.apache.calcite.avatica.remote.Service;
 import org.apache.calcite.avatica.remote.TypedValue;
 import org.apache.calcite.avatica.util.FilteredConstants;
+import org.apache.calcite.avatica.util.PrimitiveRow;
+import org.apache.calcite.avatica.util.UnsynchronizedBuffer;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.UnsafeByteOperations;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.RandomAccess;
 import java.util.stream.Collectors;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /**
  * Command handler for getting various metadata. Should be implemented by each
  * driver.
@@ -904,6 +917,8 @@ class Frame {
         .getDescriptor().findFieldByNumber(Common.ColumnValue.HAS_ARRAY_VALUE_FIELD_NUMBER);
     private static final FieldDescriptor SCALAR_VALUE_DESCRIPTOR = Common.ColumnValue
         .getDescriptor().findFieldByNumber(Common.ColumnValue.SCALAR_VALUE_FIELD_NUMBER);
+    private static final FieldDescriptor COLUMNAR_ROWS_DESCRIPTOR = Common.Frame
+        .getDescriptor().findFieldByNumber(Common.Frame.COLUMNAR_ROWS_FIELD_NUMBER);
     /** Frame that has zero rows and is the last frame. */
     public static final Frame EMPTY =
         new Frame(0, true, Collections.emptyList());
@@ -920,11 +935,40 @@ class Frame {
     public final boolean done;
     /** The rows. */
     public final Iterable<Object> rows;
+    /** How the rows are laid out when this frame is serialized as protobuf.
+     * Does not take part in equality. */
+    @JsonIgnore public final FrameEncoding encoding;
+    /** Wire protocol version of the client this frame is serialized for; the
+     * copies of values read by older clients are omitted from version
+     * {@link Service#COMPACT_VALUES_PROTOCOL_VERSION} on. Does not take part
+     * in equality. */
+    @JsonIgnore public final int protocolVersion;
 
     public Frame(long offset, boolean done, Iterable<Object> rows) {
+      this(offset, done, rows, FrameEncoding.ROW);
+    }
+
+    public Frame(long offset, boolean done, Iterable<Object> rows,
+        FrameEncoding encoding) {
+      this(offset, done, rows, encoding, Service.LEGACY_PROTOCOL_VERSION);
+    }
+
+    public Frame(long offset, boolean done, Iterable<Object> rows,
+        FrameEncoding encoding, int protocolVersion) {
       this.offset = offset;
       this.done = done;
       this.rows = rows;
+      this.encoding = Objects.requireNonNull(encoding);
+      this.protocolVersion = protocolVersion;
+    }
+
+    /** Returns a frame with the same rows that is serialized using the given
+     * encoding, for a client speaking the given protocol version. */
+    public Frame withEncoding(FrameEncoding encoding, int protocolVersion) {
+      if (encoding == this.encoding && protocolVersion == this.protocolVersion) {
+        return this;
+      }
+      return new Frame(offset, done, rows, encoding, protocolVersion);
     }
 
     @JsonCreator
@@ -941,6 +985,16 @@ public Common.Frame toProto() {
       Common.Frame.Builder builder = Common.Frame.newBuilder();
 
       builder.setDone(done).setOffset(offset);
+      final boolean legacyValues =
+          protocolVersion < Service.COMPACT_VALUES_PROTOCOL_VERSION;
+
+      if (FrameEncoding.COLUMNAR == encoding) {
+        final Common.ColumnarFrame columnarRows = toColumnarProto(rows, legacyValues);
+        if (null != columnarRows) {
+          return builder.setColumnarRows(columnarRows).build();
+        }
+        // Rows that cannot be laid out as columns use the row encoding
+      }
 
       for (Object row : this.rows) {
         if (null == row) {
@@ -952,11 +1006,11 @@ public Common.Frame toProto() {
         if (row instanceof Object[]) {
           // If only Object[] was also Iterable.
           for (Object element : (Object[]) row) {
-            parseColumn(rowBuilder, element);
+            parseColumn(rowBuilder, element, legacyValues);
           }
         } else if (row instanceof Iterable) {
           for (Object element : (Iterable<?>) row) {
-            parseColumn(rowBuilder, element);
+            parseColumn(rowBuilder, element, legacyValues);
           }
         } else {
           // Can a "row" be a primitive? A struct? Only an Array?
@@ -971,6 +1025,16 @@ public Common.Frame toProto() {
     }
 
     static void parseColumn(Common.Row.Builder rowBuilder, Object column) {
+      parseColumn(rowBuilder, column, true);
+    }
+
+    static void parseColumn(Common.Row.Builder rowBuilder, Object column,
+        boolean legacyValues) {
+      // Add value to row
+      rowBuilder.addValue(toColumnValue(column, legacyValues));
+    }
+
+    static Common.ColumnValue toColumnValue(Object column, boolean legacyValues) {
       final Common.ColumnValue.Builder columnBuilder = Common.ColumnValue.newBuilder();
 
       if (column instanceof List) {
@@ -978,55 +1042,469 @@ static void parseColumn(Common.Row.Builder rowBuilder, Object column) {
         List<?> list = (List<?>) column;
         // Add each element in the list/array to the column's value
         for (Object listItem : list) {
-          final Common.TypedValue scalarListItem = serializeScalar(listItem);
+          final Common.TypedValue scalarListItem = serializeScalar(listItem, legacyValues);
           columnBuilder.addArrayValue(scalarListItem);
-          // Add the deprecated 'value' repeated attribute for backwards compat
-          columnBuilder.addValue(scalarListItem);
+          if (legacyValues) {
+            // Add the deprecated 'value' repeated attribute for backwards compat
+            columnBuilder.addValue(scalarListItem);
+          }
         }
       } else {
         // The default value, but still explicit.
         columnBuilder.setHasArrayValue(false);
         // Only one value for this column, a scalar.
-        final Common.TypedValue scalarVal = serializeScalar(column);
+        final Common.TypedValue scalarVal = serializeScalar(column, legacyValues);
         columnBuilder.setScalarValue(scalarVal);
-        // Add the deprecated 'value' repeated attribute for backwards compat
-        columnBuilder.addValue(scalarVal);
+        if (legacyValues) {
+          // Add the deprecated 'value' repeated attribute for backwards compat
+          columnBuilder.addValue(scalarVal);
+        }
       }
 
-      // Add value to row
-      rowBuilder.addValue(columnBuilder.build());
+      return columnBuilder.build();
     }
 
     static Common.TypedValue serializeScalar(Object element) {
+      return serializeScalar(element, true);
+    }
+
+    static Common.TypedValue serializeScalar(Object element, boolean legacyValues) {
       final Common.TypedValue.Builder valueBuilder = Common.TypedValue.newBuilder();
 
       // Let TypedValue handle the serialization for us.
-      TypedValue.toProto(valueBuilder, element);
+      TypedValue.toProto(valueBuilder, element, legacyValues);
 
       return valueBuilder.build();
     }
 
+    /**
+     * Lays out rows column by column. Each column whose non-null values share
+     * a single scalar type is packed into one vector; other columns keep one
+     * {@link Common.ColumnValue} per row.
+     *
+     * @param rows The rows of a frame
+     * @param legacyValues Whether columns that cannot be packed also carry
+     *     the copies of values read by older clients
+     * @return The columnar representation, or null if the rows are not all
+     *     lists or arrays of the same width
+     */
+    static Common.ColumnarFrame toColumnarProto(Iterable<Object> rows,
+        boolean legacyValues) {
+      final List<List<?>> rowList = new ArrayList<>();
+      int columnCount = -1;
+      for (Object row : rows) {
+        if (null == row) {
+          // The row encoding skips null rows too
+          continue;
+        }
+        final List<?> columns;
+        if (row instanceof Object[]) {
+          columns = Arrays.asList((Object[]) row);
+        } else if (row instanceof List) {
+          columns = (List<?>) row;
+        } else {
+          return null;
+        }
+        if (columnCount < 0) {
+          columnCount = columns.size();
+        } else if (columnCount != columns.size()) {
+          return null;
+        }
+        rowList.add(columns);
+      }
+      if (rowList.isEmpty()) {
+        return null;
+      }
+
+      final Common.ColumnarFrame.Builder builder = Common.ColumnarFrame.newBuilder()
+          .setRowCount(rowList.size());
+      for (int column = 0; column < columnCount; column++) {
+        builder.addColumns(toColumnVector(rowList, column, legacyValues));
+      }
+      return builder.build();
+    }
+
+    private static Common.ColumnVector toColumnVector(List<List<?>> rows, int column,
+        boolean legacyValues) {
+      final Common.ColumnVector.Builder builder = Common.ColumnVector.newBuilder();
+      final Common.Rep rep = packedRep(rows, column);
+      if (null == rep) {
+        // Arrays or values of differing types, fall back to a value per row
+        builder.setType(Common.Rep.OBJECT);
+        for (List<?> row : rows) {
+          builder.addValues(toColumnValue(row.get(column), legacyValues));
+        }
+        return builder.build();
+      }
+
+      builder.setType(rep);
+      final byte[] nulls = new byte[(rows.size() + 7) / 8];
+      boolean hasNulls = false;
+      final UnsynchronizedBuffer stringData =
+          isStringPacked(rep) ? new UnsynchronizedBuffer() : null;
+      final Map<String, Integer> dictionary =
+          Common.Rep.STRING == rep ? stringDictionary(rows, column) : null;
+      final long[] numbers =
+          null == stringData && Common.Rep.DOUBLE != rep && Common.Rep.NULL != rep
+              ? new long[rows.size()] : null;
+      int numberCount = 0;
+      if (null != dictionary) {
+        // Indices are assigned in the order of the entries
+        for (String value : dictionary.keySet()) {
+          final byte[] bytes = value.getBytes(UTF_8);
+          stringData.write(bytes, 0, bytes.length);
+          builder.addStringOffsets(stringData.getOffset());
+        }
+      }
+      for (int i = 0; i < rows.size(); i++) {
+        final Object value = rows.get(i).get(column);
+        if (null == value) {
+          nulls[i >>> 3] |= 1 << (i & 7);
+          hasNulls = true;
+          continue;
+        }
+        switch (rep) {
+        case DOUBLE:
+          builder.addDoubleValues((Double) value);
+          break;
+        case STRING:
+          if (null != dictionary) {
+            builder.addDictionaryIndices(dictionary.get(value));
+            break;
+          }
+          // fall through
+        case BIG_DECIMAL:
+        case BYTE_STRING:
+          final byte[] bytes = Common.Rep.BYTE_STRING == rep
+              ? (byte[]) value : value.toString().getBytes(UTF_8);
+          stringData.write(bytes, 0, bytes.length);
+          builder.addStringOffsets(stringData.getOffset());
+          break;
+        default:
+          numbers[numberCount++] = toPackedNumber(rep, value);
+        }
+      }
+      if (null != numbers) {
+        addNumberValues(builder, rep, numbers, numberCount);
+      }
+      if (hasNulls) {
+        builder.setNullBitmap(UnsafeByteOperations.unsafeWrap(nulls));
+      }
+      if (null != stringData) {
+        builder.setStringData(UnsafeByteOperations.unsafeWrap(stringData.toArray()));
+      }
+      return builder.build();
+    }
+
+    /** Adds the values of an integral or date/time column, as differences from
+     * the previous value if that is smaller, as it is for sorted or closely
+     * spaced values. */
+    private static void addNumberValues(Common.ColumnVector.Builder builder,
+        Common.Rep rep, long[] numbers, int count) {
+      if (count > 1 && isDeltaEncodable(rep)) {
+        int size = CodedOutputStream.computeSInt64SizeNoTag(numbers[0]);
+        int deltaSize = size;
+        for (int i = 1; i < count; i++) {
+          size += CodedOutputStream.computeSInt64SizeNoTag(numbers[i]);
+          deltaSize += CodedOutputStream.computeSInt64SizeNoTag(numbers[i] - numbers[i - 1]);
+        }
+        if (deltaSize < size) {
+          builder.setDeltaEncoded(true);
+          builder.addNumberValues(numbers[0]);
+          for (int i = 1; i < count; i++) {
+            builder.addNumberValues(numbers[i] - numbers[i - 1]);
+          }
+          return;
+        }
+      }
+      for (int i = 0; i < count; i++) {
+        builder.addNumberValues(numbers[i]);
+      }
+    }
+
+    private static boolean isDeltaEncodable(Common.Rep rep) {
+      switch (rep) {
+      case BYTE:
+      case SHORT:
+      case INTEGER:
+      case LONG:
+      case JAVA_SQL_DATE:
+      case JAVA_SQL_TIME:
+      case JAVA_SQL_TIMESTAMP:
+        return true;
+      default:
+        return false;
+      }
+    }
+
+    /** Returns the distinct values of a string column, each mapped to its index
+     * in the order they first appear, if the column has few enough of them for
+     * a dictionary to pay off; otherwise null. */
+    private static Map<String, Integer> stringDictionary(List<List<?>> rows, int column) {
+      final Map<String, Integer> dictionary = new LinkedHashMap<>();
+      int count = 0;
+      for (List<?> row : rows) {
+        final Object value = row.get(column);
+        if (null == value) {
+          continue;
+        }
+        count++;
+        dictionary.putIfAbsent((String) value, dictionary.size());
+        if (dictionary.size() > rows.size() / 2) {
+          return null;
+        }
+      }
+      // Each distinct value must appear at least twice on average
+      return count > 0 && dictionary.size() * 2 <= count ? dictionary : null;
+    }
+
+    private static boolean isStringPacked(Common.Rep rep) {
+      switch (rep) {
+      case STRING:
+      case BIG_DECIMAL:
+      case BYTE_STRING:
+        return true;
+      default:
+        return false;
+      }
+    }
+
+    /** Returns the type shared by every non-null value in a column, NULL if
+     * every value is null, or null if the column cannot be packed. */
+    private static Common.Rep packedRep(List<List<?>> rows, int column) {
+      Common.Rep rep = Common.Rep.NULL;
+      for (List<?> row : rows) {
+        final Object value = row.get(column);
+        if (null == value) {
+          continue;
+        }
+        final Common.Rep valueRep = packedRep(value);
+        if (null == valueRep
+            || Common.Rep.NULL != rep && valueRep != rep) {
+          return null;
+        }
+        rep = valueRep;
+      }
+      return rep;
+    }
+
+    /** Maps a value to its type the same way {@link TypedValue#toProto} does,
+     * for the types that can be packed. */
+    private static Common.Rep packedRep(Object value) {
+      if (value instanceof Byte) {
+        return Common.Rep.BYTE;
+      } else if (value instanceof Short) {
+        return Common.Rep.SHORT;
+      } else if (value instanceof Integer) {
+        return Common.Rep.INTEGER;
+      } else if (value instanceof Long) {
+        return Common.Rep.LONG;
+      } else if (value instanceof Double) {
+        return Common.Rep.DOUBLE;
+      } else if (value instanceof Float) {
+        return Common.Rep.FLOAT;
+      } else if (value instanceof BigDecimal) {
+        return Common.Rep.BIG_DECIMAL;
+      } else if (value instanceof String) {
+        return Common.Rep.STRING;
+      } else if (value instanceof Character) {
+        return Common.Rep.CHARACTER;
+      } else if (value instanceof byte[]) {
+        return Common.Rep.BYTE_STRING;
+      } else if (value instanceof Boolean) {
+        return Common.Rep.BOOLEAN;
+      } else if (value instanceof Timestamp) {
+        return Common.Rep.JAVA_SQL_TIMESTAMP;
+      } else if (value instanceof java.sql.Date) {
+        return Common.Rep.JAVA_SQL_DATE;
+      } else if (value instanceof Time) {
+        return Common.Rep.JAVA_SQL_TIME;
+      }
+      return null;
+    }
+
+    private static long toPackedNumber(Common.Rep rep, Object value) {
+      switch (rep) {
+      case BOOLEAN:
+        return (Boolean) value ? 1L : 0L;
+      case CHARACTER:
+        return (Character) value;
+      case FLOAT:
+        return Float.floatToIntBits((Float) value);
+      case JAVA_SQL_TIMESTAMP:
+      case JAVA_SQL_DATE:
+      case JAVA_SQL_TIME:
+        return ((java.util.Date) value).getTime();
+      default:
+        return ((Number) value).longValue();
+      }
+    }
+
     public static Frame fromProto(Common.Frame proto) {
+      if (proto.hasField(COLUMNAR_ROWS_DESCRIPTOR)) {
+        return new Frame(proto.getOffset(), proto.getDone(),
+            parseColumnarRows(proto.getColumnarRows()));
+      }
+
+      // Values are only decoded when they are read, many columns never are
       List<Object> parsedRows = new ArrayList<>(proto.getRowsCount());
       for (Common.Row protoRow : proto.getRowsList()) {
-        ArrayList<Object> row = new ArrayList<>(protoRow.getValueCount());
-        for (Common.ColumnValue protoColumn : protoRow.getValueList()) {
-          final Object value;
-          if (!isNewStyleColumn(protoColumn)) {
-            // Backward compatibility
-            value = parseOldStyleColumn(protoColumn);
+        parsedRows.add(new ProtoRow(protoRow));
+      }
+
+      return new Frame(proto.getOffset(), proto.getDone(), parsedRows);
+    }
+
+    /**
+     * Parses the value of a ColumnValue in either the old or the current style.
+     *
+     * @param protoColumn The protobuf ColumnValue object
+     * @return The parsed value for this column
+     */
+    static Object parseColumnValue(Common.ColumnValue protoColumn) {
+      if (!isNewStyleColumn(protoColumn)) {
+        // Backward compatibility
+        return parseOldStyleColumn(protoColumn);
+      }
+      // Current style parsing (separate scalar and array values)
+      return parseColumn(protoColumn);
+    }
+
+    /**
+     * Rebuilds the rows of a frame that was laid out column by column. The
+     * values are the same as those produced by parsing the row encoding; each
+     * column is decoded the first time one of its values is read.
+     *
+     * @param proto The protobuf ColumnarFrame object
+     * @return The rows, each a List of column values
+     */
+    static List<Object> parseColumnarRows(Common.ColumnarFrame proto) {
+      final ColumnarRows columns = new ColumnarRows(proto);
+      final List<Object> rows = new ArrayList<>(proto.getRowCount());
+      for (int i = 0; i < proto.getRowCount(); i++) {
+        rows.add(new ColumnarRow(columns, i));
+      }
+      return rows;
+    }
+
+    /** Decodes every value of a column of a columnar frame. Numeric columns
+     * are kept unboxed until a value is read as an object. */
+    static DecodedColumn parseColumnVector(Common.ColumnVector vector, int rowCount) {
+      final Common.Rep rep = vector.getType();
+      if (Common.Rep.OBJECT == rep) {
+        final Object[] values = new Object[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+          values[i] = parseColumnValue(vector.getValues(i));
+        }
+        return new ObjectColumn(values);
+      }
+
+      final byte[] nulls = vector.getNullBitmap().toByteArray();
+      // Null values take no space in the vectors
+      int valueIndex = 0;
+      switch (rep) {
+      case NULL:
+        return new ObjectColumn(new Object[rowCount]);
+      case DOUBLE:
+        final double[] doubles = new double[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+          if (!isNull(nulls, i)) {
+            doubles[i] = vector.getDoubleValues(valueIndex++);
+          }
+        }
+        return new DoubleColumn(doubles, nulls);
+      case STRING:
+        if (vector.getDictionaryIndicesCount() > 0) {
+          return parseDictionaryColumn(vector, rowCount, nulls);
+        }
+        // fall through
+      case BIG_DECIMAL:
+      case BYTE_STRING:
+        final Object[] values = new Object[rowCount];
+        final byte[] stringData = vector.getStringData().toByteArray();
+        int stringStart = 0;
+        for (int i = 0; i < rowCount; i++) {
+          if (isNull(nulls, i)) {
+            continue;
+          }
+          final int stringEnd = vector.getStringOffsets(valueIndex++);
+          if (Common.Rep.BYTE_STRING == rep) {
+            values[i] = Arrays.copyOfRange(stringData, stringStart, stringEnd);
           } else {
-            // Current style parsing (separate scalar and array values)
-            value = parseColumn(protoColumn);
+            final String str = new String(stringData, stringStart, stringEnd - stringStart, UTF_8);
+            values[i] = Common.Rep.STRING == rep ? str : new BigDecimal(str);
           }
-
-          row.add(value);
+          stringStart = stringEnd;
         }
+        return new ObjectColumn(values);
+      default:
+        final long[] longs = new long[rowCount];
+        final boolean deltaEncoded = vector.getDeltaEncoded();
+        long previous = 0L;
+        for (int i = 0; i < rowCount; i++) {
+          if (!isNull(nulls, i)) {
+            long number = vector.getNumberValues(valueIndex++);
+            if (deltaEncoded) {
+              number += previous;
+              previous = number;
+            }
+            longs[i] = number;
+          }
+        }
+        return new LongColumn(rep, longs, nulls);
+      }
+    }
 
-        parsedRows.add(row);
+    /** Decodes a dictionary-encoded string column. Rows with the same value
+     * share one String instance. */
+    private static DecodedColumn parseDictionaryColumn(Common.ColumnVector vector,
+        int rowCount, byte[] nulls) {
+      final byte[] stringData = vector.getStringData().toByteArray();
+      final String[] dictionary = new String[vector.getStringOffsetsCount()];
+      int stringStart = 0;
+      for (int i = 0; i < dictionary.length; i++) {
+        final int stringEnd = vector.getStringOffsets(i);
+        dictionary[i] = new String(stringData, stringStart, stringEnd - stringStart, UTF_8);
+        stringStart = stringEnd;
       }
+      final Object[] values = new Object[rowCount];
+      int valueIndex = 0;
+      for (int i = 0; i < rowCount; i++) {
+        if (!isNull(nulls, i)) {
+          values[i] = dictionary[vector.getDictionaryIndices(valueIndex++)];
+        }
+      }
+      return new ObjectColumn(values);
+    }
 
-      return new Frame(proto.getOffset(), proto.getDone(), parsedRows);
+    private static boolean isNull(byte[] nulls, int i) {
+      return (i >>> 3) < nulls.length && (nulls[i >>> 3] & (1 << (i & 7))) != 0;
+    }
+
+    /** Inverse of {@link #toPackedNumber}; produces the same objects as
+     * {@link TypedValue#getSerialFromProto}. */
+    private static Object parsePackedNumber(Common.Rep rep, long number) {
+      switch (rep) {
+      case BOOLEAN:
+        return number != 0;
+      case BYTE:
+        return (byte) number;
+      case SHORT:
+        return (short) number;
+      case INTEGER:
+      case JAVA_SQL_DATE:
+      case JAVA_SQL_TIME:
+        return (int) number;
+      case FLOAT:
+        return Float.intBitsToFloat((int) number);
+      case CHARACTER:
+        return (char) number;
+      case LONG:
+      case JAVA_SQL_TIMESTAMP:
+        return number;
+      default:
+        throw new IllegalArgumentException("Unexpected type for a packed column: " + rep);
+      }
     }
 
     /**
@@ -1206,6 +1684,274 @@ private static boolean equalRows(Iterable<Object> rows, Iterable<Object> otherRo
 
       return true;
     }
+
+    /** Row of a frame received in the row encoding. Each value is decoded
+     * the first time it is read; numeric scalars can also be read straight
+     * from the message, without boxing them. */
+    private static class ProtoRow extends AbstractList<Object>
+        implements RandomAccess, PrimitiveRow, SerializedRow {
+      private static final Object UNDECODED = new Object();
+
+      private final Common.Row row;
+      private Object[] values;
+
+      ProtoRow(Common.Row row) {
+        this.row = row;
+      }
+
+      @Override public Object get(int index) {
+        if (null == values) {
+          values = new Object[row.getValueCount()];
+          Arrays.fill(values, UNDECODED);
+        }
+        Object value = values[index];
+        if (UNDECODED == value) {
+          value = parseColumnValue(row.getValue(index));
+          values[index] = value;
+        }
+        return value;
+      }
+
+      @Override public int size() {
+        return row.getValueCount();
+      }
+
+      @Override public long serializedBytes() {
+        return row.getSerializedSize();
+      }
+
+      /** Returns the scalar of a column that has not been decoded yet, or
+       * null if the value has to be read through {@link #get}. */
+      private Common.TypedValue undecodedScalar(int index) {
+        if (null != values && UNDECODED != values[index]) {
+          return null;
+        }
+        final Common.ColumnValue column = row.getValue(index);
+        if (column.getHasArrayValue() || !column.hasField(SCALAR_VALUE_DESCRIPTOR)) {
+          return null;
+        }
+        return column.getScalarValue();
+      }
+
+      @Override public boolean isNull(int index) {
+        final Common.TypedValue scalar = undecodedScalar(index);
+        if (null != scalar) {
+          return Common.Rep.NULL == scalar.getType();
+        }
+        return null == get(index);
+      }
+
+      @Override public long getLong(int index) {
+        final Common.TypedValue scalar = undecodedScalar(index);
+        if (null != scalar) {
+          switch (scalar.getType()) {
+          case NULL:
+            return 0L;
+          case BYTE:
+          case PRIMITIVE_BYTE:
+          case SHORT:
+          case PRIMITIVE_SHORT:
+          case INTEGER:
+          case PRIMITIVE_INT:
+          case LONG:
+          case PRIMITIVE_LONG:
+          case NUMBER:
+            return scalar.getNumberValue();
+          case DOUBLE:
+          case PRIMITIVE_DOUBLE:
+            return (long) scalar.getDoubleValue();
+          default:
+            break;
+          }
+        }
+        final Object o = get(index);
+        return null == o ? 0L : ((Number) o).longValue();
+      }
+
+      @Override public double getDouble(int index) {
+        final Common.TypedValue scalar = undecodedScalar(index);
+        if (null != scalar) {
+          switch (scalar.getType()) {
+          case NULL:
+            return 0d;
+          case DOUBLE:
+          case PRIMITIVE_DOUBLE:
+            return scalar.getDoubleValue();
+          case FLOAT:
+          case PRIMITIVE_FLOAT:
+            return Float.intBitsToFloat((int) scalar.getNumberValue());
+          case BYTE:
+          case PRIMITIVE_BYTE:
+          case SHORT:
+          case PRIMITIVE_SHORT:
+          case INTEGER:
+          case PRIMITIVE_INT:
+          case LONG:
+          case PRIMITIVE_LONG:
+          case NUMBER:
+            return scalar.getNumberValue();
+          default:
+            break;
+          }
+        }
+        final Object o = get(index);
+        return null == o ? 0d : ((Number) o).doubleValue();
+      }
+    }
+
+    /** Values of a frame received in the columnar encoding, decoded a column
+     * at a time the first time one of its values is read. */
+    private static class ColumnarRows {
+      private final Common.ColumnarFrame proto;
+      private final DecodedColumn[] columns;
+
+      ColumnarRows(Common.ColumnarFrame proto) {
+        this.proto = proto;
+        this.columns = new DecodedColumn[proto.getColumnsCount()];
+      }
+
+      DecodedColumn column(int column) {
+        DecodedColumn values = columns[column];
+        if (null == values) {
+          values = parseColumnVector(proto.getColumns(column), proto.getRowCount());
+          columns[column] = values;
+        }
+        return values;
+      }
+    }
+
+    /** Row of a frame received in the columnar encoding. */
+    private static class ColumnarRow extends AbstractList<Object>
+        implements RandomAccess, PrimitiveRow, SerializedRow {
+      private final ColumnarRows columns;
+      private final int row;
+
+      ColumnarRow(ColumnarRows columns, int row) {
+        this.columns = columns;
+        this.row = row;
+      }
+
+      @Override public Object get(int index) {
+        return columns.column(index).get(row);
+      }
+
+      @Override public int size() {
+        return columns.columns.length;
+      }
+
+      @Override public long serializedBytes() {
+        // The rows of a frame share its columns, so each gets an equal part
+        return columns.proto.getSerializedSize() / Math.max(1, columns.proto.getRowCount());
+      }
+
+      @Override public boolean isNull(int index) {
+        return columns.column(index).isNull(row);
+      }
+
+      @Override public long getLong(int index) {
+        return columns.column(index).getLong(row);
+      }
+
+      @Override public double getDouble(int index) {
+        return columns.column(index).getDouble(row);
+      }
+    }
+
+    /** Decoded values of one column of a columnar frame. */
+    abstract static class DecodedColumn {
+      abstract Object get(int row);
+
+      boolean isNull(int row) {
+        return null == get(row);
+      }
+
+      long getLong(int row) {
+        final Object o = get(row);
+        return null == o ? 0L : ((Number) o).longValue();
+      }
+
+      double getDouble(int row) {
+        final Object o = get(row);
+        return null == o ? 0d : ((Number) o).doubleValue();
+      }
+    }
+
+    /** Column whose values are held as objects. */
+    private static class ObjectColumn extends DecodedColumn {
+      private final Object[] values;
+
+      ObjectColumn(Object[] values) {
+        this.values = values;
+      }
+
+      @Override Object get(int row) {
+        return values[row];
+      }
+    }
+
+    /** Column of values packed into longs; they are boxed only when read
+     * as objects. Null values are stored as 0. */
+    private static class LongColumn extends DecodedColumn {
+      private final Common.Rep rep;
+      private final long[] values;
+      private final byte[] nulls;
+
+      LongColumn(Common.Rep rep, long[] values, byte[] nulls) {
+        this.rep = rep;
+        this.values = values;
+        this.nulls = nulls;
+      }
+
+      @Override Object get(int row) {
+        return isNull(row) ? null : parsePackedNumber(rep, values[row]);
+      }
+
+      @Override boolean isNull(int row) {
+        return Frame.isNull(nulls, row);
+      }
+
+      @Override long getLong(int row) {
+        if (Common.Rep.FLOAT == rep) {
+          return (long) Float.intBitsToFloat((int) values[row]);
+        }
+        return values[row];
+      }
+
+      @Override double getDouble(int row) {
+        if (Common.Rep.FLOAT == rep) {
+          return Float.intBitsToFloat((int) values[row]);
+        }
+        return values[row];
+      }
+    }
+
+    /** Column of doubles; they are boxed only when read as objects. Null
+     * values are stored as 0. */
+    private static class DoubleColumn extends DecodedColumn {
+      private final double[] values;
+      private final byte[] nulls;
+
+      DoubleColumn(double[] values, byte[] nulls) {
+        this.values = values;
+        this.nulls = nulls;
+      }
+
+      @Override Object get(int row) {
+        return isNull(row) ? null : values[row];
+      }
+
+      @Override boolean isNull(int row) {
+        return Frame.isNull(nulls, row);
+      }
+
+      @Override long getLong(int row) {
+        return (long) values[row];
+      }
+
+      @Override double getDouble(int row) {
+        return values[row];
+      }
+    }
   }
 
   /** Connection handle. */
@@ -1360,6 +2106,23 @@ void assign(Signature signature, Frame firstFrame, long updateCount)
     void execute() throws SQLException;
   }
 
+  /** How the rows of a {@link Frame} are laid out when serialized as protobuf.
+   * Has to be consistent with {@code Common.FrameEncoding}. */
+  enum FrameEncoding {
+    /** One message per row, each holding a typed message per value. */
+    ROW,
+    /** One packed vector per column. Only sent to clients that accept it. */
+    COLUMNAR;
+
+    public Common.FrameEncoding toProto() {
+      return Common.FrameEncoding.valueOf(name());
+    }
+
+    public static FrameEncoding fromProto(Common.FrameEncoding proto) {
+      return FrameEncoding.valueOf(proto.name());
+    }
+  }
+
   /** Type of statement. */
   enum StatementType {
     SELECT, INSERT, UPDATE, DELETE, UPSERT, MERGE, OTHER_DML, IS_DML,
@@ -38,15 +38,26 @@
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * Basic implementation of {@link Meta}.
@@ -59,6 +70,19 @@
  * default metadata methods return empty collections.
  */
 public abstract class MetaImpl implements Meta {
+  /** Runs the fetches of the result sets that prefetch frames. */
+  private static final ExecutorService PREFETCH_EXECUTOR =
+      Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override public Thread newThread(Runnable runnable) {
+          final Thread thread =
+              new Thread(runnable, "avatica-prefetch-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
   /** The {@link AvaticaConnection} backing {@code this}. */
   protected final AvaticaConnection connection;
   /** Represents the various states specific to {@link #connection}.
@@ -1592,14 +1616,27 @@ public Iterator<Object> iterator() {
     }
   }
 
-  /** Iterator over rows coming from a sequence of {@link Meta.Frame}s. */
-  private class FetchIterator implements Iterator<Object> {
+  /** Iterator over rows coming from a sequence of {@link Meta.Frame}s.
+   *
+   * <p>If the {@link BuiltInConnectionProperty#FETCH_PREFETCH_DEPTH} of the
+   * connection is positive, frames are fetched on a background thread, each
+   * once the previous one has arrived, up to that many frames ahead of the
+   * frame being read. */
+  private class FetchIterator implements Iterator<Object>, AutoCloseable {
     private final AvaticaStatement stmt;
     private final QueryState state;
     private final int fetchSize;
+    private final int prefetchDepth;
+    /** Adapts the number of rows per fetch; null if it is the fetch size. */
+    private final AdaptiveFetchSize adaptiveFetchSize;
     private Frame frame;
     private Iterator<Object> rows;
     private long currentOffset = 0;
+    /** Frames being fetched in the background, in the order of their rows. */
+    private final Deque<CompletableFuture<Prefetch>> prefetches = new ArrayDeque<>();
+    /** The frame fetched last, or being fetched; null until prefetching starts. */
+    private CompletableFuture<Prefetch> lastPrefetch;
+    private volatile boolean closed;
 
     private FetchIterator(AvaticaStatement stmt, QueryState state, Frame firstFrame) {
       this.stmt = stmt;
@@ -1611,12 +1648,20 @@ private FetchIterator(AvaticaStatement stmt, QueryState state, Frame firstFrame)
         fetchRowCount = AvaticaStatement.DEFAULT_FETCH_SIZE;
       }
       this.fetchSize = fetchRowCount;
+      this.prefetchDepth = prefetchDepth();
+      this.adaptiveFetchSize = adaptiveFetchSize(fetchRowCount);
       if (firstFrame == null) {
         frame = Frame.MORE;
         rows = EmptyIterator.INSTANCE;
       } else {
         frame = firstFrame;
         rows = firstFrame.rows.iterator();
+        currentOffset = firstFrame.offset;
+        if (prefetchDepth > 0 && !firstFrame.done) {
+          lastPrefetch =
+              CompletableFuture.completedFuture(new Prefetch(firstFrame, firstFrame.offset));
+          prefetch();
+        }
       }
       moveNext();
     }
@@ -1639,6 +1684,15 @@ public Object next() {
       return o;
     }
 
+    @Override public void close() {
+      closed = true;
+      // Frames not being fetched yet never will be
+      for (CompletableFuture<Prefetch> prefetch : prefetches) {
+        prefetch.completeExceptionally(new CancellationException("Result set was closed"));
+      }
+      prefetches.clear();
+    }
+
     private void moveNext() {
       for (;;) {
         if (rows.hasNext()) {
@@ -1648,31 +1702,8 @@ private void moveNext() {
           rows = null;
           break;
         }
-        try {
-          // currentOffset updated after element is read from `rows` iterator
-          frame = fetch(stmt.handle, currentOffset, fetchSize);
-        } catch (NoSuchStatementException e) {
-          resetStatement();
-          // re-fetch the batch where we left off
-          continue;
-        } catch (MissingResultsException e) {
-          try {
-            // We saw the statement, but it didnt' have a resultset initialized. So, reset it.
-            if (!stmt.syncResults(state, currentOffset)) {
-              // This returned false, so there aren't actually any more results to iterate over
-              frame = null;
-              rows = null;
-              break;
-            }
-            // syncResults returning true means we need to fetch those results
-          } catch (NoSuchStatementException e1) {
-            // Tried to reset the result set, but lost the statement, save a loop before retrying.
-            resetStatement();
-            // Will just loop back around to a MissingResultsException, but w/e recursion
-          }
-          // Kick back to the top to try to fetch again (in both branches)
-          continue;
-        }
+        // currentOffset updated after element is read from `rows` iterator
+        frame = prefetchDepth > 0 ? nextPrefetched() : fetchFrom(currentOffset);
         if (frame == null) {
           rows = null;
           break;
@@ -1683,12 +1714,196 @@ private void moveNext() {
       }
     }
 
+    /** Fetches the frame starting at the given offset, recovering from a
+     * statement or result set lost by the server. Returns null if there are
+     * no more results. */
+    private Frame fetchFrom(long offset) {
+      for (;;) {
+        try {
+          return fetchRows(stmt.handle, offset);
+        } catch (NoSuchStatementException | MissingResultsException e) {
+          if (!recover(e, offset)) {
+            return null;
+          }
+          // Kick back to the top to try to fetch again
+        }
+      }
+    }
+
+    /** Recovers from a statement or result set lost by the server, so that
+     * the frame starting at the given offset can be fetched again. Returns
+     * false if there are no more results.
+     *
+     * <p>Recovering changes the state of the statement, so only the thread
+     * that reads the rows recovers, never a thread that prefetches them. */
+    private boolean recover(Exception lost, long offset) {
+      if (closed) {
+        return false;
+      }
+      if (lost instanceof NoSuchStatementException) {
+        resetStatement();
+        return true;
+      }
+      try {
+        // We saw the statement, but it didnt' have a resultset initialized. So, reset it.
+        // If this returns false, there aren't actually any more results to iterate over;
+        // if true, we need to fetch those results
+        return stmt.syncResults(state, offset);
+      } catch (NoSuchStatementException e1) {
+        // Tried to reset the result set, but lost the statement, save a loop before retrying.
+        resetStatement();
+        // Will just loop back around to a MissingResultsException, but w/e recursion
+        return true;
+      }
+    }
+
+    /** Fetches the frame starting at the given offset, of as many rows as
+     * the fetch size, or as adaptive fetch sizing decides. */
+    private Frame fetchRows(StatementHandle handle, long offset)
+        throws NoSuchStatementException, MissingResultsException {
+      if (adaptiveFetchSize == null) {
+        return fetch(handle, offset, fetchSize);
+      }
+      final int rowCount = adaptiveFetchSize.rowCount();
+      final long start = System.nanoTime();
+      final Frame fetched = fetch(handle, offset, rowCount);
+      adaptiveFetchSize.fetched(rowCount, fetched, System.nanoTime() - start);
+      return fetched;
+    }
+
+    /** Returns the next frame fetched in the background, waiting for it if
+     * needed, and starts fetching another. If the server lost the statement
+     * or result set, recovers, and starts prefetching again from the frame
+     * that was lost. Returns null if there are no more results. */
+    private Frame nextPrefetched() {
+      if (lastPrefetch == null) {
+        // Prefetching starts from the rows read so far
+        restartPrefetch(currentOffset);
+      }
+      for (;;) {
+        final CompletableFuture<Prefetch> next = prefetches.poll();
+        prefetch();
+        final Prefetch prefetched;
+        try {
+          prefetched = next.join();
+        } catch (CompletionException e) {
+          if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+          } else if (e.getCause() instanceof Error) {
+            throw (Error) e.getCause();
+          }
+          throw e;
+        }
+        if (null == prefetched.lost) {
+          return prefetched.frame;
+        }
+        // The frames after the lost one were not fetched
+        prefetches.clear();
+        if (!recover(prefetched.lost, prefetched.end)) {
+          return null;
+        }
+        restartPrefetch(prefetched.end);
+      }
+    }
+
+    /** Starts prefetching the frames that start at the given offset. */
+    private void restartPrefetch(long offset) {
+      lastPrefetch = CompletableFuture.completedFuture(new Prefetch(Frame.MORE, offset));
+      prefetch();
+    }
+
+    /** Fetches frames in the background until there are as many being
+     * fetched, or fetched and not read yet, as the prefetch depth. Each frame
+     * is only requested once the previous one has arrived, since the server
+     * reads the rows of a result set in order.
+     *
+     * <p>The handle of the statement is read here, on the thread that reads
+     * the rows, since that thread replaces it when it recovers a lost
+     * statement. The fetches do not recover, but hand the loss over. */
+    private void prefetch() {
+      final StatementHandle handle = stmt.handle;
+      while (prefetches.size() < prefetchDepth) {
+        lastPrefetch = lastPrefetch.thenApplyAsync(
+            new Function<Prefetch, Prefetch>() {
+              @Override public Prefetch apply(Prefetch previous) {
+                if (previous.isLast() || closed) {
+                  return previous;
+                }
+                try {
+                  return new Prefetch(fetchRows(handle, previous.end), previous.end);
+                } catch (NoSuchStatementException | MissingResultsException e) {
+                  return new Prefetch(e, previous.end);
+                }
+              }
+            }, PREFETCH_EXECUTOR);
+        prefetches.add(lastPrefetch);
+      }
+    }
+
     private void resetStatement() {
       // Defer to the statement to reset itself
       stmt.resetStatement();
     }
   }
 
+  /** A frame fetched in the background, with the offset of the row that
+   * follows it; or the loss of the statement or result set that prevented
+   * fetching it. */
+  private static class Prefetch {
+    final Frame frame;
+    final long end;
+    /** The exception of a statement or result set that the server lost, or
+     * null if the frame was fetched. */
+    final Exception lost;
+
+    Prefetch(Frame frame, long start) {
+      this.frame = frame;
+      this.end = null == frame ? start : start + count(frame.rows);
+      this.lost = null;
+    }
+
+    Prefetch(Exception lost, long start) {
+      this.frame = null;
+      this.end = start;
+      this.lost = lost;
+    }
+
+    /** Whether no frame follows this one, or none can be fetched until the
+     * thread reading the rows recovers. */
+    boolean isLast() {
+      return null == frame || frame.done;
+    }
+
+    private static long count(Iterable<Object> rows) {
+      if (rows instanceof Collection) {
+        return ((Collection<?>) rows).size();
+      }
+      long count = 0;
+      for (Iterator<Object> iterator = rows.iterator(); iterator.hasNext(); iterator.next()) {
+        count++;
+      }
+      return count;
+    }
+  }
+
+  /** Returns the adaptive fetch sizing of a result set, starting from a given
+   * number of rows, or null if the connection does not use it. */
+  private AdaptiveFetchSize adaptiveFetchSize(int fetchSize) {
+    final ConnectionConfig config = null == connection ? null : connection.config();
+    if (null == config || !config.fetchSizeAdaptive()) {
+      return null;
+    }
+    return new AdaptiveFetchSize(fetchSize, config.fetchSizeTargetBytes(),
+        config.fetchSizeMaxLatency());
+  }
+
+  /** Returns the number of frames that result sets fetch ahead of the rows
+   * being read. */
+  private int prefetchDepth() {
+    final ConnectionConfig config = null == connection ? null : connection.config();
+    return null == config ? 0 : Math.max(0, config.fetchPrefetchDepth());
+  }
+
   /** Returns whether a list of parameter values has any null elements. */
   public static boolean checkParameterValueHasNull(List<TypedValue> parameterValues) {
     for (TypedValue x : parameterValues) {
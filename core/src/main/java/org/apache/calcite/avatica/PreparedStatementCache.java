@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Handles of closed prepared statements that a connection keeps open on the
+ * server, to reuse when the same SQL is prepared again.
+ *
+ * <p>Holds at most one handle per key, and at most a given number of handles
+ * in all; the handle used least recently makes way for a new one. Handles
+ * that make way are returned to the caller, which closes them on the server.
+ *
+ * @see BuiltInConnectionProperty#PREPARED_STATEMENT_CACHE_SIZE
+ */
+final class PreparedStatementCache {
+  private final int capacity;
+  private final LinkedHashMap<Key, Meta.StatementHandle> handles =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Creates a PreparedStatementCache.
+   *
+   * @param capacity Maximum number of handles to keep
+   */
+  PreparedStatementCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+  }
+
+  /** Removes and returns the handle kept for a key, or returns null if there
+   * is none. */
+  synchronized Meta.StatementHandle take(Key key) {
+    return handles.remove(key);
+  }
+
+  /**
+   * Keeps the handle of a closed statement.
+   *
+   * @param key Key under which the statement was prepared
+   * @param handle Handle of the statement
+   * @return Handles that are no longer kept, and that the caller must close
+   */
+  synchronized List<Meta.StatementHandle> put(Key key, Meta.StatementHandle handle) {
+    if (handles.containsKey(key)) {
+      // The handle already kept is as good as this one; keep the one used
+      // most recently
+      return Collections.singletonList(handles.put(key, handle));
+    }
+    handles.put(key, handle);
+    final List<Meta.StatementHandle> evicted = new ArrayList<>();
+    final Iterator<Meta.StatementHandle> iterator = handles.values().iterator();
+    while (handles.size() > capacity) {
+      evicted.add(iterator.next());
+      iterator.remove();
+    }
+    return evicted;
+  }
+
+  /** Removes and returns all kept handles. */
+  synchronized List<Meta.StatementHandle> clear() {
+    final List<Meta.StatementHandle> all = new ArrayList<>(handles.values());
+    handles.clear();
+    return all;
+  }
+
+  /** Returns the number of kept handles. */
+  synchronized int size() {
+    return handles.size();
+  }
+
+  /** The SQL and result set options with which a statement was prepared. A
+   * handle is reused only for a statement prepared with the same key. */
+  static final class Key {
+    final String sql;
+    final int resultSetType;
+    final int resultSetConcurrency;
+    final int resultSetHoldability;
+
+    Key(String sql, int resultSetType, int resultSetConcurrency,
+        int resultSetHoldability) {
+      this.sql = Objects.requireNonNull(sql);
+      this.resultSetType = resultSetType;
+      this.resultSetConcurrency = resultSetConcurrency;
+      this.resultSetHoldability = resultSetHoldability;
+    }
+
+    @Override public int hashCode() {
+      return Objects.hash(sql, resultSetType, resultSetConcurrency,
+          resultSetHoldability);
+    }
+
+    @Override public boolean equals(Object o) {
+      return o == this
+          || o instanceof Key
+          && sql.equals(((Key) o).sql)
+          && resultSetType == ((Key) o).resultSetType
+          && resultSetConcurrency == ((Key) o).resultSetConcurrency
+          && resultSetHoldability == ((Key) o).resultSetHoldability;
+    }
+  }
+}
+
+// End PreparedStatementCache.java
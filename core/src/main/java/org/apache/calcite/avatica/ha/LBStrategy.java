@@ -24,4 +24,18 @@ public interface LBStrategy {
    * Get load balanced URL given the connection configuration.
    */
   String getLbURL(ConnectionConfig config);
+
+  /**
+   * Returns the number of URLs among which {@link #getLbURL} chooses.
+   */
+  default int getLbURLCount(ConnectionConfig config) {
+    return lbURLs(config).length;
+  }
+
+  /**
+   * Splits the {@code lb_urls} connection property into the URLs it lists.
+   */
+  static String[] lbURLs(ConnectionConfig config) {
+    return config.getLbURLs().split(",");
+  }
 }
@@ -32,7 +32,7 @@ public class RandomSelectLBStrategy implements LBStrategy {
   private final Random random = new Random();
   @Override
   public String getLbURL(ConnectionConfig config) {
-    String[] urls = config.getLbURLs().split(URL_SEPERATOR_CHAR);
+    String[] urls = LBStrategy.lbURLs(config);
     String url = urls[random.nextInt(urls.length)];
     LOG.info("Selected URL:{}", url);
     return url;
@@ -44,7 +44,7 @@ public synchronized String getLbURL(ConnectionConfig config) {
     String key = getKey(config);
     if (!configToIndexServedMap.containsKey(key)) {
       configToIndexServedMap.put(key, 0);
-      configToUrlListMap.put(key, config.getLbURLs().split(URL_SEPERATOR_CHAR));
+      configToUrlListMap.put(key, LBStrategy.lbURLs(config));
     }
     String[] urls = configToUrlListMap.get(key);
     int urlIndex = configToIndexServedMap.get(key);
@@ -46,10 +46,9 @@ private ShuffledRoundRobinLBStrategy() { }
   @Override
   public synchronized String getLbURL(ConnectionConfig config) {
     String key = getKey(config);
-    String lbURLs = config.getLbURLs();
     if (!configToIndexServedMap.containsKey(key)) {
       configToIndexServedMap.put(key, 0);
-      initialiseUrlList(key, lbURLs);
+      initialiseUrlList(key, config);
     }
     String[] urls = configToUrlListMap.get(key);
     int urlIndex = configToIndexServedMap.get(key);
@@ -61,8 +60,8 @@ public synchronized String getLbURL(ConnectionConfig config) {
     return url;
   }
 
-  private void initialiseUrlList(String key, String lbURLs) {
-    String[] urls = lbURLs.split(URL_SEPERATOR_CHAR);
+  private void initialiseUrlList(String key, ConnectionConfig config) {
+    String[] urls = LBStrategy.lbURLs(config);
     List<String> list = Arrays.asList(urls);
     Collections.shuffle(list);
     urls = list.toArray(urls);
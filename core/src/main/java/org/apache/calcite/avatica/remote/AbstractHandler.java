@@ -19,11 +19,15 @@
 import org.apache.calcite.avatica.AvaticaSeverity;
 import org.apache.calcite.avatica.NoSuchConnectionException;
 import org.apache.calcite.avatica.remote.Service.ErrorResponse;
+import org.apache.calcite.avatica.remote.Service.MultiRequest;
+import org.apache.calcite.avatica.remote.Service.MultiResponse;
 import org.apache.calcite.avatica.remote.Service.Request;
 import org.apache.calcite.avatica.remote.Service.Response;
 import org.apache.calcite.avatica.remote.Service.RpcMetadataResponse;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Abstract base class for {@link Handler}s to extend to inherit functionality common across
@@ -57,6 +61,17 @@ public AbstractHandler(Service service) {
    * @return An {@link ErrorResponse}.
    */
   ErrorResponse unwrapException(Exception e) {
+    return toErrorResponse(e, metadata);
+  }
+
+  /**
+   * Converts an exception thrown while executing a request to an {@link ErrorResponse}.
+   *
+   * @param e A caught exception throw by Avatica implementation.
+   * @param metadata Server metadata to attach, or null
+   * @return An {@link ErrorResponse}.
+   */
+  static ErrorResponse toErrorResponse(Exception e, RpcMetadataResponse metadata) {
     // By default, we know nothing extra.
     int errorCode = ErrorResponse.UNKNOWN_ERROR_CODE;
     String sqlState = ErrorResponse.UNKNOWN_SQL_STATE;
@@ -91,13 +106,77 @@ ErrorResponse unwrapException(Exception e) {
   public HandlerResponse<T> apply(T serializedRequest) {
     try {
       final Service.Request request = decode(serializedRequest);
-      final Service.Response response = request.accept(service);
+      final Service.Response response = execute(request);
       return new HandlerResponse<>(encode(response), HTTP_OK);
     } catch (Exception e) {
       return convertToErrorResponse(e);
     }
   }
 
+  /**
+   * Computes a response for the given request, handling errors generated by that computation,
+   * but leaves serializing the response to the caller.
+   *
+   * @param serializedRequest The caller's request.
+   * @return The {@link Response}, not yet serialized, with additional context.
+   */
+  public HandlerResponse<Response> applyUnencoded(T serializedRequest) {
+    try {
+      final Service.Request request = decode(serializedRequest);
+      return new HandlerResponse<>(execute(request), HTTP_OK);
+    } catch (Exception e) {
+      return unencodedErrorResponse(e, HTTP_INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Converts an Exception to an ErrorResponse with the given HTTP status code, leaving
+   * serializing it to the caller.
+   */
+  public HandlerResponse<Response> unencodedErrorResponse(Exception e, int statusCode) {
+    return new HandlerResponse<>(unwrapException(e), statusCode);
+  }
+
+  /**
+   * Executes a request on the service. A {@link MultiRequest} is executed as
+   * {@link #executeInOrder} describes.
+   *
+   * @param request The caller's request
+   * @return The response to the request
+   */
+  Service.Response execute(Service.Request request) {
+    if (!(request instanceof MultiRequest)) {
+      return request.accept(service);
+    }
+    return executeInOrder(service, (MultiRequest) request, metadata);
+  }
+
+  /**
+   * Executes the requests of a {@link MultiRequest} one after another, until one fails; its
+   * error becomes the last of the responses, so that the client still receives the responses to
+   * the requests executed before it. Handlers and {@link LocalService} both execute a
+   * {@link MultiRequest} this way.
+   *
+   * @param service The service to execute the requests on
+   * @param request The requests to execute
+   * @param metadata Server metadata to attach to the responses, or null
+   * @return The responses to the requests that were executed
+   */
+  static MultiResponse executeInOrder(Service service, MultiRequest request,
+      RpcMetadataResponse metadata) {
+    final List<Request> requests = request.requests;
+    final List<Service.Response> responses = new ArrayList<>(requests.size());
+    for (Request nested : requests) {
+      try {
+        responses.add(nested.accept(service));
+      } catch (Exception e) {
+        responses.add(toErrorResponse(e, metadata));
+        break;
+      }
+    }
+    return new MultiResponse(responses, metadata);
+  }
+
   /**
    * Attempts to convert an Exception to an ErrorResponse. If there is an issue in serialization,
    * a RuntimeException is thrown instead (wrapping the original exception if necessary).
@@ -152,7 +231,7 @@ private HandlerResponse<T> createErrorResponse(Exception e, int statusCode) {
    * @param e The Exception to summarize.
    * @return A summary message for the Exception.
    */
-  private String getCausalChain(Exception e) {
+  private static String getCausalChain(Exception e) {
     StringBuilder sb = new StringBuilder(16);
     Throwable curr = e;
     // Could use Guava, but that would increase dependency set unnecessarily.
@@ -31,6 +31,10 @@ public abstract class AbstractService implements Service {
 
   private RpcMetadataResponse rpcMetadata = null;
 
+  /** Wire protocol version of the server, as it reported when a connection
+   * was last opened. */
+  private volatile int serverProtocolVersion = LEGACY_PROTOCOL_VERSION;
+
   /**
    * Represents the serialization of the data over a transport.
    */
@@ -129,7 +133,8 @@ ResultSetResponse finagle(ResultSetResponse r) {
       return r;
     }
     return new ResultSetResponse(r.connectionId, r.statementId, r.ownStatement,
-        signature, r.firstFrame, r.updateCount, rpcMetadata);
+        signature, r.firstFrame, r.updateCount, rpcMetadata, r.signatureFingerprint,
+        r.signatureCached);
   }
 
   ExecuteResponse finagle(ExecuteResponse r) {
@@ -151,6 +156,74 @@ ExecuteResponse finagle(ExecuteResponse r) {
     return new ExecuteResponse(results, r.missingStatement, rpcMetadata);
   }
 
+  ExecuteDirectResponse finagle(ExecuteDirectResponse r) {
+    if (r.results == null) {
+      return r;
+    }
+    final List<ResultSetResponse> results = new ArrayList<>();
+    int changeCount = 0;
+    for (ResultSetResponse result : r.results) {
+      ResultSetResponse result2 = finagle(result);
+      if (result2 != result) {
+        ++changeCount;
+      }
+      results.add(result2);
+    }
+    if (changeCount == 0) {
+      return r;
+    }
+    return new ExecuteDirectResponse(r.statementId, results, r.statementClosed, rpcMetadata);
+  }
+
+  /** Records the protocol version that the server reported when opening a
+   * connection. A server which reports none, such as every server over JSON,
+   * counts as a legacy server. */
+  OpenConnectionResponse finagle(OpenConnectionResponse r) {
+    if (null != r) {
+      serverProtocolVersion = null == r.rpcMetadata
+          ? LEGACY_PROTOCOL_VERSION : r.rpcMetadata.protocolVersion;
+    }
+    return r;
+  }
+
+  /** Returns the wire protocol version of the server, or
+   * {@link #LEGACY_PROTOCOL_VERSION} until a connection has been opened. */
+  int getServerProtocolVersion() {
+    return serverProtocolVersion;
+  }
+
+  /** Applies the modification matching its type to each response of a
+   * {@link MultiResponse}. */
+  MultiResponse finagle(MultiResponse r) {
+    if (null == r.responses) {
+      return r;
+    }
+    final List<Response> responses = new ArrayList<>(r.responses.size());
+    for (Response response : r.responses) {
+      responses.add(finagleResponse(response));
+    }
+    return new MultiResponse(responses, r.rpcMetadata);
+  }
+
+  /** Applies the modification matching the type of a response, for callers
+   * that only know it as a {@link Response}. */
+  Response finagleResponse(Response response) {
+    if (response instanceof ResultSetResponse) {
+      return finagle((ResultSetResponse) response);
+    } else if (response instanceof ExecuteResponse) {
+      return finagle((ExecuteResponse) response);
+    } else if (response instanceof PrepareResponse) {
+      return finagle((PrepareResponse) response);
+    } else if (response instanceof ExecuteDirectResponse) {
+      return finagle((ExecuteDirectResponse) response);
+    } else if (response instanceof OpenConnectionResponse) {
+      return finagle((OpenConnectionResponse) response);
+    } else if (response instanceof MultiResponse) {
+      return finagle((MultiResponse) response);
+    }
+    return response;
+  }
+
   @Override public void setRpcMetadata(RpcMetadataResponse metadata) {
     // OK if this is null
     this.rpcMetadata = metadata;
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.ConnectionConfig;
+
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+
+/**
+ * Allows a shared asynchronous HTTP client to be provided to an
+ * {@link AvaticaHttpClient}, which uses it for
+ * {@link AvaticaHttpClient#sendAsync(byte[], java.util.concurrent.Executor)}.
+ * On clients with this interface setHttpAsyncClient() MUST be called before using them.
+ */
+public interface AsyncHttpClientConfigurable {
+  /**
+   * Sets the started asynchronous HTTP client, whose connection pool holds the SSL/TLS
+   * configuration to use for HTTPS calls.
+   *
+   * @param client The asynchronous client
+   * @param config The connection config
+   */
+  void setHttpAsyncClient(CloseableHttpAsyncClient client, ConnectionConfig config);
+}
+
+// End AsyncHttpClientConfigurable.java
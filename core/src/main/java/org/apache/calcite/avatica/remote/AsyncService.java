@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link Service} that can also send a request without blocking the calling
+ * thread until its response arrives.
+ *
+ * <p>With an {@link AvaticaHttpClient} that overrides
+ * {@link AvaticaHttpClient#sendAsync(byte[], Executor)}, such as
+ * {@link AvaticaCommonsHttpAsyncClientImpl}, the requests of many connections
+ * share a few I/O threads. Other clients block a thread of the executor that the
+ * caller provides for each request.
+ */
+public interface AsyncService extends Service {
+  /**
+   * Sends a request to the server.
+   *
+   * @param request The request
+   * @param responseType Class of the response to the request
+   * @param executor Runs the blocking calls of clients that cannot send the request without
+   *     blocking
+   * @return A future of the response, modified as the blocking {@code apply} methods modify it.
+   *     It completes exceptionally with an
+   *     {@link org.apache.calcite.avatica.AvaticaClientRuntimeException} if the server returns
+   *     an {@link ErrorResponse}.
+   */
+  <T extends Response> CompletableFuture<T> applyAsync(Request request, Class<T> responseType,
+      Executor executor);
+}
+
+// End AsyncService.java
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.ConnectionConfig;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.NoHttpResponseException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link AvaticaHttpClient} which, in addition to the blocking
+ * {@link #send(byte[])} of {@link AvaticaCommonsHttpClientImpl}, sends requests
+ * with {@link #sendAsync(byte[], Executor)} through the asynchronous client of Apache
+ * HttpClient 5, without a thread waiting for each response. Over TLS, HTTP/2 is
+ * used if the server supports it.
+ *
+ * <p>Chosen with the {@code httpclient_impl} connection property.
+ */
+public class AvaticaCommonsHttpAsyncClientImpl extends AvaticaCommonsHttpClientImpl
+    implements AsyncHttpClientConfigurable {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(AvaticaCommonsHttpAsyncClientImpl.class);
+
+  private static final byte[] EMPTY = new byte[0];
+
+  /** Sends the requests that wait to be retried, so that no thread blocks
+   * while they wait. */
+  private static final ScheduledExecutorService RETRY_SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override public Thread newThread(Runnable runnable) {
+          final Thread thread = new Thread(runnable, "avatica-http-retry");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  protected CloseableHttpAsyncClient asyncClient;
+
+  @Deprecated
+  public AvaticaCommonsHttpAsyncClientImpl(URL url) {
+    super(url);
+  }
+
+  public AvaticaCommonsHttpAsyncClientImpl(URI uri) {
+    super(uri);
+  }
+
+  @Override public void setHttpAsyncClient(CloseableHttpAsyncClient client,
+      ConnectionConfig config) {
+    this.asyncClient = client;
+  }
+
+  @Override public CompletableFuture<byte[]> sendAsync(byte[] request, Executor executor) {
+    final CompletableFuture<byte[]> future = new CompletableFuture<>();
+    final HttpCompression requestCompression =
+        serverAcceptsCompression && request.length >= compressionMinimumSize
+            ? compression : HttpCompression.NONE;
+    final byte[] body;
+    try {
+      body = requestCompression.compress(request);
+    } catch (IOException e) {
+      future.completeExceptionally(new RuntimeException("Failed to compress the request", e));
+      return future;
+    }
+    execute(body, requestCompression, future, 1, System.nanoTime());
+    return future;
+  }
+
+  /** Sends a request, and sends it again while the server is unavailable and
+   * the retry policy allows. */
+  private void execute(final byte[] body, final HttpCompression requestCompression,
+      final CompletableFuture<byte[]> future, final int attempts, final long start) {
+    try {
+      checkCircuit();
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+      return;
+    }
+    final SimpleRequestBuilder builder = SimpleRequestBuilder.post(uri)
+        .setBody(body, ContentType.APPLICATION_OCTET_STREAM);
+    if (HttpCompression.NONE != requestCompression) {
+      builder.setHeader(HttpCompression.CONTENT_ENCODING, requestCompression.encoding);
+    }
+    if (HttpCompression.NONE != compression) {
+      builder.setHeader(HttpCompression.ACCEPT_ENCODING, compression.encoding);
+    }
+    final HttpClientContext requestContext = createRequestContext();
+    execute(builder.build(), requestContext, new FutureCallback<SimpleHttpResponse>() {
+      @Override public void completed(SimpleHttpResponse response) {
+        final int statusCode = response.getCode();
+        if (HttpURLConnection.HTTP_OK == statusCode
+            || HttpURLConnection.HTTP_INTERNAL_ERROR == statusCode) {
+          circuitBreaker.succeeded();
+          userToken = requestContext.getUserToken();
+          try {
+            future.complete(readResponse(response));
+          } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+          }
+        } else if (HttpURLConnection.HTTP_UNAVAILABLE == statusCode) {
+          circuitBreaker.failed(circuitBreakerThreshold);
+          final long retryDelay = retryDelay(attempts, start, retryAfterMillis(response));
+          if (retryDelay < 0) {
+            future.completeExceptionally(
+                new RuntimeException("Failed to execute HTTP Request, got HTTP/503 after "
+                    + attempts + " attempts"));
+            return;
+          }
+          LOG.debug("Failed to connect to server (HTTP/503), retrying in {} ms", retryDelay);
+          retry(retryDelay, body, requestCompression, future, attempts, start);
+        } else {
+          future.completeExceptionally(
+              new RuntimeException("Failed to execute HTTP Request, got HTTP/" + statusCode));
+        }
+      }
+
+      @Override public void failed(Exception e) {
+        if (e instanceof IOException) {
+          circuitBreaker.failed(circuitBreakerThreshold);
+        }
+        if (e instanceof NoHttpResponseException) {
+          // This can happen when sitting behind a load balancer and a backend server dies
+          final long retryDelay = retryDelay(attempts, start, -1);
+          if (retryDelay >= 0) {
+            LOG.debug("The server failed to issue an HTTP response, retrying in {} ms",
+                retryDelay);
+            retry(retryDelay, body, requestCompression, future, attempts, start);
+            return;
+          }
+        }
+        LOG.debug("Failed to execute HTTP request", e);
+        future.completeExceptionally(
+            e instanceof RuntimeException ? e : new RuntimeException(e));
+      }
+
+      @Override public void cancelled() {
+        future.completeExceptionally(new CancellationException("HTTP request was cancelled"));
+      }
+    });
+  }
+
+  /** Sends a request again after a delay, unless it has been cancelled. */
+  private void retry(long delay, final byte[] body, final HttpCompression requestCompression,
+      final CompletableFuture<byte[]> future, final int attempts, final long start) {
+    if (future.isDone()) {
+      return;
+    }
+    if (delay <= 0) {
+      execute(body, requestCompression, future, attempts + 1, start);
+      return;
+    }
+    RETRY_SCHEDULER.schedule(new Runnable() {
+      @Override public void run() {
+        if (!future.isDone()) {
+          execute(body, requestCompression, future, attempts + 1, start);
+        }
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  // Visible for testing
+  void execute(SimpleHttpRequest request, HttpClientContext context,
+      FutureCallback<SimpleHttpResponse> callback) {
+    if (null == asyncClient) {
+      callback.failed(new IllegalStateException("No asynchronous HTTP client was set"));
+      return;
+    }
+    asyncClient.execute(request, context, callback);
+  }
+
+  /** Creates the context of a request. Concurrent requests do not share the
+   * context, which holds the state of their authentication exchanges. */
+  HttpClientContext createRequestContext() {
+    final HttpClientContext requestContext = HttpClientContext.create();
+    requestContext.setRequestConfig(createRequestConfig());
+    if (null != credentialsProvider) {
+      requestContext.setCredentialsProvider(credentialsProvider);
+      requestContext.setAuthSchemeRegistry(authRegistry);
+      requestContext.setAuthCache(authCache);
+    }
+    if (null != userToken) {
+      requestContext.setUserToken(userToken);
+    }
+    return requestContext;
+  }
+
+  /** Reads the body of a response, decompressing it if needed. */
+  private byte[] readResponse(SimpleHttpResponse response) throws IOException {
+    final byte[] body = response.getBodyBytes();
+    if (null == body) {
+      return EMPTY;
+    }
+    if (HttpCompression.NONE == compression) {
+      return body;
+    }
+    final Header acceptEncoding = response.getFirstHeader(HttpCompression.ACCEPT_ENCODING);
+    if (null != acceptEncoding
+        && HttpCompression.accepts(acceptEncoding.getValue(), compression)) {
+      serverAcceptsCompression = true;
+    }
+    final Header contentEncoding = response.getFirstHeader(HttpCompression.CONTENT_ENCODING);
+    final HttpCompression responseCompression =
+        HttpCompression.forEncoding(null == contentEncoding ? null : contentEncoding.getValue());
+    if (null == responseCompression) {
+      throw new RuntimeException("Unsupported Content-Encoding in the response: "
+          + contentEncoding.getValue());
+    }
+    return responseCompression.decompress(body);
+  }
+}
+
+// End AvaticaCommonsHttpAsyncClientImpl.java
@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.avatica.remote;
 
+import org.apache.calcite.avatica.AvaticaUtils;
 import org.apache.calcite.avatica.ConnectionConfig;
 
 import org.apache.hc.client5.http.ClientProtocolException;
@@ -40,26 +41,33 @@
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.routing.RoutingSupport;
+import org.apache.hc.client5.http.utils.DateUtils;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpResponse;
 import org.apache.hc.core5.http.NoHttpResponseException;
 import org.apache.hc.core5.http.config.Lookup;
 import org.apache.hc.core5.http.config.RegistryBuilder;
 import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
-import org.apache.hc.core5.http.io.entity.EntityUtils;
 
 import org.ietf.jgss.GSSCredential;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.security.Principal;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -85,6 +93,12 @@ public class AvaticaCommonsHttpClientImpl implements AvaticaHttpClient, HttpClie
           .build();
   private static AuthScope anyAuthScope = new AuthScope(null, -1);
 
+  private static final ResponseReader<byte[]> READ_FULLY = new ResponseReader<byte[]>() {
+    @Override public byte[] read(InputStream response) throws IOException {
+      return AvaticaUtils.readFullyToBytes(response);
+    }
+  };
+
   protected final URI uri;
   protected HttpHost httpHost;
   protected BasicAuthCache authCache;
@@ -98,14 +112,24 @@ public class AvaticaCommonsHttpClientImpl implements AvaticaHttpClient, HttpClie
   protected HttpClientContext context;
   protected long connectTimeout;
   protected long responseTimeout;
+  protected HttpCompression compression = HttpCompression.NONE;
+  protected int compressionMinimumSize;
+  // Set once the server has listed the compression in its Accept-Encoding header
+  protected volatile boolean serverAcceptsCompression;
+  protected ConnectionConfig config;
+  protected RetryPolicy retryPolicy = ExponentialBackoffRetryPolicy.INSTANCE;
+  protected int circuitBreakerThreshold;
+  protected long circuitBreakerOpenTime;
+  final CircuitBreaker circuitBreaker;
 
   @Deprecated
   public AvaticaCommonsHttpClientImpl(URL url) {
-    this.uri = toURI(Objects.requireNonNull(url));
+    this(toURI(Objects.requireNonNull(url)));
   }
 
   public AvaticaCommonsHttpClientImpl(URI uri) {
     this.uri = uri;
+    this.circuitBreaker = CircuitBreaker.of(uri.toString());
   }
 
   protected void initializeClient(PoolingHttpClientConnectionManager pool,
@@ -113,11 +137,23 @@ protected void initializeClient(PoolingHttpClientConnectionManager pool,
     this.authCache = new BasicAuthCache();
     this.connectTimeout = config.getHttpConnectionTimeout();
     this.responseTimeout = config.getHttpResponseTimeout();
+    this.compression = config.httpCompression();
+    this.compressionMinimumSize = config.httpCompressionMinimumSize();
+    this.config = config;
+    final RetryPolicy configuredRetryPolicy = config.httpRetryPolicy();
+    if (null != configuredRetryPolicy) {
+      this.retryPolicy = configuredRetryPolicy;
+    }
+    this.circuitBreakerThreshold = config.httpCircuitBreakerThreshold();
+    this.circuitBreakerOpenTime = config.httpCircuitBreakerOpenTime();
     // A single thread-safe HttpClient, pooling connections via the
     // ConnectionManager
     RequestConfig requestConfig = createRequestConfig();
     HttpClientBuilder httpClientBuilder = HttpClients.custom().setConnectionManager(pool)
-        .setDefaultRequestConfig(requestConfig);
+        .setDefaultRequestConfig(requestConfig)
+        .setKeepAliveStrategy(CommonsHttpClientPoolCache.keepAliveStrategy(config));
+    // Content codings are negotiated and decoded in send(), if at all
+    httpClientBuilder.disableContentCompression();
     this.client = httpClientBuilder.build();
 
     this.context = HttpClientContext.create();
@@ -135,7 +171,7 @@ protected void initializeClient(PoolingHttpClientConnectionManager pool,
 
   // This is needed because we initialize the client object too early.
   @SuppressWarnings("deprecation")
-  private RequestConfig createRequestConfig() {
+  RequestConfig createRequestConfig() {
     RequestConfig.Builder requestConfigBuilder = RequestConfig.custom();
     requestConfigBuilder
         // We cannot avoid this. If the timeout were defined on the pool, then
@@ -164,10 +200,29 @@ private RequestConfig createRequestConfig() {
   }
 
   @Override public byte[] send(byte[] request) {
-    while (true) {
-      ByteArrayEntity entity = new ByteArrayEntity(request, ContentType.APPLICATION_OCTET_STREAM);
+    return send(request, READ_FULLY);
+  }
+
+  @Override public <T> T send(byte[] request, ResponseReader<T> reader) {
+    final HttpCompression requestCompression =
+        serverAcceptsCompression && request.length >= compressionMinimumSize
+            ? compression : HttpCompression.NONE;
+    final byte[] body;
+    try {
+      body = requestCompression.compress(request);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to compress the request", e);
+    }
+    final long start = System.nanoTime();
+    for (int attempts = 1;; attempts++) {
+      checkCircuit();
+      ByteArrayEntity entity = new ByteArrayEntity(body, ContentType.APPLICATION_OCTET_STREAM,
+          HttpCompression.NONE == requestCompression ? null : requestCompression.encoding);
       HttpPost post = new HttpPost(uri);
       post.setEntity(entity);
+      if (HttpCompression.NONE != compression) {
+        post.setHeader(HttpCompression.ACCEPT_ENCODING, compression.encoding);
+      }
 
       if (httpHost == null) {
         try {
@@ -178,30 +233,132 @@ private RequestConfig createRequestConfig() {
         }
       }
 
+      long retryDelay;
       try (ClassicHttpResponse response = executeOpen(httpHost, post, context)) {
         final int statusCode = response.getCode();
         if (HttpURLConnection.HTTP_OK == statusCode
             || HttpURLConnection.HTTP_INTERNAL_ERROR == statusCode) {
+          circuitBreaker.succeeded();
           userToken = context.getUserToken();
-          return EntityUtils.toByteArray(response.getEntity());
+          // The response is read as it arrives, before the connection is released
+          try (InputStream in = openResponse(response)) {
+            return reader.read(in);
+          }
         } else if (HttpURLConnection.HTTP_UNAVAILABLE == statusCode) {
-          LOG.debug("Failed to connect to server (HTTP/503), retrying");
-          continue;
+          circuitBreaker.failed(circuitBreakerThreshold);
+          retryDelay = retryDelay(attempts, start, retryAfterMillis(response));
+          if (retryDelay < 0) {
+            throw new RuntimeException("Failed to execute HTTP Request, got HTTP/503 after "
+                + attempts + " attempts");
+          }
+          LOG.debug("Failed to connect to server (HTTP/503), retrying in {} ms", retryDelay);
+        } else {
+          throw new RuntimeException(
+              "Failed to execute HTTP Request, got HTTP/" + statusCode);
         }
-
-        throw new RuntimeException(
-            "Failed to execute HTTP Request, got HTTP/" + statusCode);
       } catch (NoHttpResponseException e) {
         // This can happen when sitting behind a load balancer and a backend server dies
-        LOG.debug("The server failed to issue an HTTP response, retrying");
-        continue;
+        circuitBreaker.failed(circuitBreakerThreshold);
+        retryDelay = retryDelay(attempts, start, -1);
+        if (retryDelay < 0) {
+          throw new RuntimeException(e);
+        }
+        LOG.debug("The server failed to issue an HTTP response, retrying in {} ms", retryDelay);
       } catch (RuntimeException e) {
         throw e;
       } catch (Exception e) {
+        if (e instanceof IOException) {
+          circuitBreaker.failed(circuitBreakerThreshold);
+        }
         LOG.debug("Failed to execute HTTP request", e);
         throw new RuntimeException(e);
       }
+      sleep(retryDelay);
+    }
+  }
+
+  /** Fails if the circuit breaker of the server is open. */
+  void checkCircuit() {
+    if (!circuitBreaker.allowsRequest(circuitBreakerThreshold, circuitBreakerOpenTime)) {
+      throw new RuntimeException("Not sending the HTTP request, the server at " + uri
+          + " failed too many times in a row");
+    }
+  }
+
+  /** Returns how long to wait before sending a request again, or a negative
+   * value to fail it. */
+  long retryDelay(int attempts, long startNanos, long retryAfterMillis) {
+    return retryPolicy.retryDelay(config, attempts,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), retryAfterMillis);
+  }
+
+  /** Returns the milliseconds that a response asks the client to wait with a
+   * {@code Retry-After} header, in seconds or as a date, or -1. */
+  static long retryAfterMillis(HttpResponse response) {
+    final Header retryAfter = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+    return retryAfterMillis(null == retryAfter ? null : retryAfter.getValue());
+  }
+
+  /** Returns the milliseconds that the value of a {@code Retry-After} header
+   * asks the client to wait, or -1 if it is null or not valid. */
+  static long retryAfterMillis(String headerValue) {
+    if (null == headerValue) {
+      return -1;
+    }
+    final String value = headerValue.trim();
+    try {
+      return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value)));
+    } catch (NumberFormatException e) {
+      final Instant date = DateUtils.parseStandardDate(value);
+      return null == date ? -1 : Math.max(0, date.toEpochMilli() - System.currentTimeMillis());
+    }
+  }
+
+  static void sleep(long millis) {
+    if (millis <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting to retry the HTTP request", e);
+    }
+  }
+
+  /** Opens the body of a response, decompressing it if needed. */
+  private InputStream openResponse(ClassicHttpResponse response) throws IOException {
+    final HttpEntity entity = response.getEntity();
+    if (null == entity) {
+      return new ByteArrayInputStream(new byte[0]);
+    }
+    return openResponse(response, entity.getContent(), entity.getContentEncoding());
+  }
+
+  /**
+   * Decompresses the body of a response if needed, and notes whether the
+   * server accepts compressed requests.
+   *
+   * @param response Response
+   * @param body Body of the response, as received
+   * @param contentEncoding Content coding of the body, or null
+   */
+  InputStream openResponse(HttpResponse response, InputStream body, String contentEncoding)
+      throws IOException {
+    if (HttpCompression.NONE == compression) {
+      return body;
+    }
+    final Header acceptEncoding = response.getFirstHeader(HttpCompression.ACCEPT_ENCODING);
+    if (null != acceptEncoding
+        && HttpCompression.accepts(acceptEncoding.getValue(), compression)) {
+      serverAcceptsCompression = true;
+    }
+    final HttpCompression responseCompression = HttpCompression.forEncoding(contentEncoding);
+    if (null == responseCompression) {
+      throw new RuntimeException("Unsupported Content-Encoding in the response: "
+          + contentEncoding);
     }
+    return responseCompression.decompress(body);
   }
 
   // Visible for testing
@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.NoHttpResponseException;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.support.classic.ContentInputStream;
+import org.apache.hc.core5.http.nio.support.classic.SharedInputBuffer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * An {@link AvaticaHttpClient} that sends all its requests, blocking or not,
+ * over HTTP/2, through the asynchronous client of Apache HttpClient 5.
+ *
+ * <p>The requests of all the Avatica connections of the JVM are multiplexed
+ * over the pooled connections of a shared client, which the {@code http_pool_*}
+ * connection properties configure. Over plain HTTP, HTTP/2 is spoken from the
+ * start ("h2c" with prior knowledge), which {@code HttpServer} accepts once
+ * built with {@code withHttp2Cleartext()}. Over TLS, HTTP/2 is negotiated with
+ * ALPN, and servers without it are spoken to in HTTP/1.1.
+ *
+ * <p>The blocking {@link #send(byte[], ResponseReader)} reads the body of a
+ * response as it arrives, rather than once it is complete.
+ *
+ * <p>Chosen with the {@code httpclient_impl} connection property. TLS and
+ * authentication are configured as for {@link AvaticaCommonsHttpClientImpl}.
+ */
+public class AvaticaHttp2ClientImpl extends AvaticaCommonsHttpAsyncClientImpl {
+  private static final Logger LOG = LoggerFactory.getLogger(AvaticaHttp2ClientImpl.class);
+
+  /** Number of bytes of a response that are received ahead of the reader. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  @Deprecated
+  public AvaticaHttp2ClientImpl(URL url) {
+    super(url);
+  }
+
+  public AvaticaHttp2ClientImpl(URI uri) {
+    super(uri);
+  }
+
+  @Override public <T> T send(byte[] request, ResponseReader<T> reader) {
+    final HttpCompression requestCompression =
+        serverAcceptsCompression && request.length >= compressionMinimumSize
+            ? compression : HttpCompression.NONE;
+    final byte[] body;
+    try {
+      body = requestCompression.compress(request);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to compress the request", e);
+    }
+    final long start = System.nanoTime();
+    for (int attempts = 1;; attempts++) {
+      checkCircuit();
+      final SimpleRequestBuilder builder = SimpleRequestBuilder.post(uri)
+          .setBody(body, ContentType.APPLICATION_OCTET_STREAM);
+      if (HttpCompression.NONE != requestCompression) {
+        builder.setHeader(HttpCompression.CONTENT_ENCODING, requestCompression.encoding);
+      }
+      if (HttpCompression.NONE != compression) {
+        builder.setHeader(HttpCompression.ACCEPT_ENCODING, compression.encoding);
+      }
+      final HttpClientContext requestContext = createRequestContext();
+      final StreamingResponseConsumer consumer = new StreamingResponseConsumer();
+      execute(builder.build(), consumer, requestContext, new FutureCallback<Void>() {
+        @Override public void completed(Void result) {
+        }
+
+        @Override public void failed(Exception e) {
+          consumer.failed(e);
+        }
+
+        @Override public void cancelled() {
+          consumer.failed(new IOException("HTTP request was cancelled"));
+        }
+      });
+
+      final long retryDelay;
+      try {
+        final HttpResponse response = consumer.awaitResponse();
+        final int statusCode = response.getCode();
+        if (HttpURLConnection.HTTP_OK == statusCode
+            || HttpURLConnection.HTTP_INTERNAL_ERROR == statusCode) {
+          circuitBreaker.succeeded();
+          userToken = requestContext.getUserToken();
+          try (InputStream in =
+                   openResponse(response, consumer.body(), consumer.contentEncoding())) {
+            return reader.read(in);
+          }
+        }
+        consumer.discard();
+        if (HttpURLConnection.HTTP_UNAVAILABLE == statusCode) {
+          circuitBreaker.failed(circuitBreakerThreshold);
+          retryDelay = retryDelay(attempts, start, retryAfterMillis(response));
+          if (retryDelay < 0) {
+            throw new RuntimeException("Failed to execute HTTP Request, got HTTP/503 after "
+                + attempts + " attempts");
+          }
+          LOG.debug("Failed to connect to server (HTTP/503), retrying in {} ms", retryDelay);
+        } else {
+          throw new RuntimeException(
+              "Failed to execute HTTP Request, got HTTP/" + statusCode);
+        }
+      } catch (NoHttpResponseException e) {
+        // This can happen when sitting behind a load balancer and a backend server dies
+        circuitBreaker.failed(circuitBreakerThreshold);
+        retryDelay = retryDelay(attempts, start, -1);
+        if (retryDelay < 0) {
+          throw new RuntimeException(e);
+        }
+        LOG.debug("The server failed to issue an HTTP response, retrying in {} ms", retryDelay);
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        if (e instanceof IOException) {
+          circuitBreaker.failed(circuitBreakerThreshold);
+        }
+        LOG.debug("Failed to execute HTTP request", e);
+        throw new RuntimeException(e);
+      }
+      sleep(retryDelay);
+    }
+  }
+
+  // Visible for testing
+  void execute(SimpleHttpRequest request, AsyncResponseConsumer<Void> consumer,
+      HttpClientContext context, FutureCallback<Void> callback) {
+    if (null == asyncClient) {
+      callback.failed(new IllegalStateException("No asynchronous HTTP client was set"));
+      return;
+    }
+    asyncClient.execute(SimpleRequestProducer.create(request), consumer, context, callback);
+  }
+
+  /** Receives a response on the I/O threads of the client, and hands its body
+   * to the thread that sent the request, which reads it as it arrives. The
+   * client receives no more of the body than the buffer holds. */
+  static class StreamingResponseConsumer implements AsyncResponseConsumer<Void> {
+    private final CompletableFuture<HttpResponse> response = new CompletableFuture<>();
+    private final SharedInputBuffer buffer = new SharedInputBuffer(BUFFER_SIZE);
+    private volatile String contentEncoding;
+    private volatile Exception failure;
+    private volatile FutureCallback<Void> resultCallback;
+
+    @Override public void consumeResponse(HttpResponse response, EntityDetails entityDetails,
+        HttpContext context, FutureCallback<Void> resultCallback) {
+      this.resultCallback = resultCallback;
+      if (null == entityDetails) {
+        buffer.markEndStream();
+        resultCallback.completed(null);
+      } else {
+        contentEncoding = entityDetails.getContentEncoding();
+      }
+      this.response.complete(response);
+    }
+
+    @Override public void informationResponse(HttpResponse response, HttpContext context) {
+    }
+
+    @Override public void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+      buffer.updateCapacity(capacityChannel);
+    }
+
+    @Override public void consume(ByteBuffer src) {
+      buffer.fill(src);
+    }
+
+    @Override public void streamEnd(List<? extends Header> trailers) {
+      buffer.markEndStream();
+      final FutureCallback<Void> callback = resultCallback;
+      if (null != callback) {
+        callback.completed(null);
+      }
+    }
+
+    @Override public void failed(Exception cause) {
+      if (null == failure) {
+        failure = cause;
+      }
+      response.completeExceptionally(cause);
+      buffer.abort();
+    }
+
+    @Override public void releaseResources() {
+    }
+
+    /** Waits for the head of the response. */
+    HttpResponse awaitResponse() throws Exception {
+      try {
+        return response.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof Exception) {
+          throw (Exception) e.getCause();
+        }
+        throw e;
+      }
+    }
+
+    String contentEncoding() {
+      return contentEncoding;
+    }
+
+    /** Returns the body of the response, which fails rather than ends if
+     * the exchange fails before the body is complete. */
+    InputStream body() {
+      return new FilterInputStream(new ContentInputStream(buffer)) {
+        @Override public int read() throws IOException {
+          return checked(super.read());
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+          return checked(super.read(b, off, len));
+        }
+
+        private int checked(int n) throws IOException {
+          if (n < 0 && null != failure) {
+            throw new IOException("Failed to receive the HTTP response", failure);
+          }
+          return n;
+        }
+      };
+    }
+
+    /** Stops receiving a response whose body is not read. */
+    void discard() {
+      buffer.abort();
+    }
+  }
+}
+
+// End AvaticaHttp2ClientImpl.java
@@ -16,6 +16,13 @@
  */
 package org.apache.calcite.avatica.remote;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
 /**
  * An interface which defines how requests are sent to the Avatica server.
  */
@@ -29,6 +36,50 @@ public interface AvaticaHttpClient {
    */
   byte[] send(byte[] request);
 
+  /**
+   * Sends a serialized request to the Avatica server, handing the serialized response to the
+   * given reader as a stream. Implementations that can read the response as it arrives override
+   * this method to avoid first copying the whole response into an array.
+   *
+   * @param request The serialized request.
+   * @param reader Reads the serialized response. The stream is closed once it returns.
+   * @return The value returned by the reader.
+   */
+  default <T> T send(byte[] request, ResponseReader<T> reader) {
+    try {
+      return reader.read(new ByteArrayInputStream(send(request)));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Sends a serialized request to the Avatica server without waiting for the response.
+   *
+   * <p>The default implementation calls {@link #send(byte[])} on the given executor, one of
+   * whose threads waits for the response. Implementations built on a non-blocking client
+   * override it so that no thread waits for the response, and do not use the executor.
+   *
+   * @param request The serialized request.
+   * @param executor Runs the blocking {@link #send(byte[])}, if the implementation needs to.
+   * @return A future of the serialized response, completed exceptionally if the request fails.
+   */
+  default CompletableFuture<byte[]> sendAsync(final byte[] request, Executor executor) {
+    return CompletableFuture.supplyAsync(new Supplier<byte[]>() {
+      @Override public byte[] get() {
+        return send(request);
+      }
+    }, executor);
+  }
+
+  /**
+   * Reads a serialized response from the Avatica server.
+   *
+   * @param <T> Type of the value read from the response
+   */
+  interface ResponseReader<T> {
+    T read(InputStream response) throws IOException;
+  }
 }
 
 // End AvaticaHttpClient.java
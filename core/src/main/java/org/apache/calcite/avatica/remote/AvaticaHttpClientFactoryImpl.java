@@ -63,6 +63,18 @@ public static AvaticaHttpClientFactoryImpl getInstance() {
 
     AvaticaHttpClient client = instantiateClient(className, url);
 
+    if (client instanceof RetryConfigurable) {
+      ((RetryConfigurable) client).setRetryConfig(config);
+    }
+
+    if (client instanceof AsyncHttpClientConfigurable) {
+      ((AsyncHttpClientConfigurable) client).setHttpAsyncClient(
+          client instanceof AvaticaHttp2ClientImpl
+              ? CommonsHttpClientPoolCache.getHttp2AsyncClient(config)
+              : CommonsHttpClientPoolCache.getAsyncClient(config),
+          config);
+    }
+
     if (client instanceof HttpClientPoolConfigurable) {
       PoolingHttpClientConnectionManager pool = CommonsHttpClientPoolCache.getPool(config);
       ((HttpClientPoolConfigurable) client).setHttpClientPool(pool, config);
@@ -17,27 +17,65 @@
 package org.apache.calcite.avatica.remote;
 
 import org.apache.calcite.avatica.AvaticaUtils;
+import org.apache.calcite.avatica.ConnectionConfig;
+import org.apache.calcite.avatica.ConnectionConfigImpl;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A common class to invoke HTTP requests against the Avatica server agnostic of the data being
  * sent and received across the wire.
+ *
+ * <p>While the server answers HTTP/503, requests are sent again as the retry policy of the
+ * connection allows, and the circuit breaker of the server is kept up to date, as
+ * {@link AvaticaCommonsHttpClientImpl} does.
  */
-public class AvaticaHttpClientImpl implements AvaticaHttpClient {
+public class AvaticaHttpClientImpl implements AvaticaHttpClient, RetryConfigurable {
+  private static final ResponseReader<byte[]> READ_FULLY = new ResponseReader<byte[]>() {
+    @Override public byte[] read(InputStream response) throws IOException {
+      return AvaticaUtils.readFullyToBytes(response);
+    }
+  };
+
   protected final URL url;
+  // The defaults of the connection properties, until the config is set
+  protected ConnectionConfig config = new ConnectionConfigImpl(new Properties());
+  protected RetryPolicy retryPolicy = ExponentialBackoffRetryPolicy.INSTANCE;
+  final CircuitBreaker circuitBreaker;
 
   public AvaticaHttpClientImpl(URL url) {
     this.url = url;
+    this.circuitBreaker = CircuitBreaker.of(url.toString());
+  }
+
+  @Override public void setRetryConfig(ConnectionConfig config) {
+    this.config = Objects.requireNonNull(config);
+    final RetryPolicy configuredRetryPolicy = config.httpRetryPolicy();
+    if (null != configuredRetryPolicy) {
+      this.retryPolicy = configuredRetryPolicy;
+    }
   }
 
   public byte[] send(byte[] request) {
-    // TODO back-off policy?
-    while (true) {
+    return send(request, READ_FULLY);
+  }
+
+  @Override public <T> T send(byte[] request, ResponseReader<T> reader) {
+    final long start = System.nanoTime();
+    for (int attempts = 1;; attempts++) {
+      if (!circuitBreaker.allowsRequest(config.httpCircuitBreakerThreshold(),
+          config.httpCircuitBreakerOpenTime())) {
+        throw new RuntimeException("Not sending the HTTP request, the server at " + url
+            + " failed too many times in a row");
+      }
+      final long retryDelay;
       try {
         final HttpURLConnection connection = openConnection();
         connection.setRequestMethod("POST");
@@ -52,20 +90,41 @@ public byte[] send(byte[] request) {
         final InputStream inputStream;
         if (responseCode == HttpURLConnection.HTTP_UNAVAILABLE) {
           // Could be sitting behind a load-balancer, try again.
-          continue;
-        } else if (responseCode != HttpURLConnection.HTTP_OK) {
-          inputStream = connection.getErrorStream();
-          if (inputStream == null) {
-            // HTTP Transport exception that resulted in no content coming back
-            throw new RuntimeException("Failed to read data from the server: HTTP/" + responseCode);
+          circuitBreaker.failed(config.httpCircuitBreakerThreshold());
+          retryDelay = retryPolicy.retryDelay(config, attempts,
+              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+              AvaticaCommonsHttpClientImpl.retryAfterMillis(
+                  connection.getHeaderField("Retry-After")));
+          if (retryDelay < 0) {
+            throw new RuntimeException("Failed to execute HTTP Request, got HTTP/503 after "
+                + attempts + " attempts");
+          }
+          // Discard the body, so that the connection can be reused
+          final InputStream errorStream = connection.getErrorStream();
+          if (errorStream != null) {
+            errorStream.close();
           }
         } else {
-          inputStream = connection.getInputStream();
+          circuitBreaker.succeeded();
+          if (responseCode != HttpURLConnection.HTTP_OK) {
+            inputStream = connection.getErrorStream();
+            if (inputStream == null) {
+              // HTTP Transport exception that resulted in no content coming back
+              throw new RuntimeException(
+                  "Failed to read data from the server: HTTP/" + responseCode);
+            }
+          } else {
+            inputStream = connection.getInputStream();
+          }
+          try (InputStream in = inputStream) {
+            return reader.read(in);
+          }
         }
-        return AvaticaUtils.readFullyToBytes(inputStream);
       } catch (IOException e) {
+        circuitBreaker.failed(config.httpCircuitBreakerThreshold());
         throw new RuntimeException(e);
       }
+      AvaticaCommonsHttpClientImpl.sleep(retryDelay);
     }
   }
 
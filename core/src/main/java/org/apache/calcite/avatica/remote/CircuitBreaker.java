@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks whether the server at a URL is healthy, shared by all the clients of
+ * the URL in the JVM.
+ *
+ * <p>After a number of consecutive failures the circuit opens, and requests
+ * to the server fail at once, without being sent. Once the circuit has been
+ * open for some time, it is half-open: a single request is let through, as a
+ * probe, while the others keep failing. If the probe succeeds, the circuit
+ * closes; if it fails, the circuit opens again. A probe that has not been
+ * answered after the same time is given up on, and another is let through.
+ *
+ * <p>The number of failures and the time are set by the
+ * {@code http_circuit_breaker_threshold} and
+ * {@code http_circuit_breaker_open_time} connection properties of each
+ * client. A client whose threshold is not positive ignores the circuit: its
+ * requests are always sent, and their failures are neither counted nor taken
+ * as the outcome of a probe.
+ */
+class CircuitBreaker {
+  private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+  private static final ConcurrentHashMap<String, CircuitBreaker> BREAKERS =
+      new ConcurrentHashMap<>();
+
+  /** State of a circuit. */
+  private enum State {
+    /** Requests are sent. */
+    CLOSED,
+    /** Requests fail without being sent. */
+    OPEN,
+    /** A probe has been sent; other requests fail without being sent. */
+    HALF_OPEN
+  }
+
+  private final String url;
+  private int failures;
+  private State state = State.CLOSED;
+  /** When the circuit last opened, or when the last probe was let through. */
+  private long sinceNanos;
+
+  private CircuitBreaker(String url) {
+    this.url = url;
+  }
+
+  /** Returns the circuit breaker of a URL. */
+  static CircuitBreaker of(String url) {
+    return BREAKERS.computeIfAbsent(url, CircuitBreaker::new);
+  }
+
+  /** Forgets the circuit breakers of all URLs, so that the clients created
+   * afterwards start with closed circuits. For tests. */
+  static void reset() {
+    BREAKERS.clear();
+  }
+
+  /** Returns whether a request may be sent: if the caller's threshold is not
+   * positive, if the circuit is closed, or if the request is to be the probe
+   * of a circuit that has been open, or has waited for its previous probe,
+   * for at least the given time. The caller must record the outcome of the
+   * request with {@link #succeeded()} or {@link #failed(int)}. */
+  synchronized boolean allowsRequest(int threshold, long openMillis) {
+    if (threshold <= 0) {
+      return true;
+    }
+    if (!waitedFor(openMillis)) {
+      return false;
+    }
+    if (State.CLOSED != state) {
+      LOG.info("Sending a probe to {}, whose circuit is open", url);
+      state = State.HALF_OPEN;
+      sinceNanos = System.nanoTime();
+    }
+    return true;
+  }
+
+  /** Returns whether the requests of a caller with the given threshold would
+   * fail without being sent, without letting a probe through. */
+  synchronized boolean isOpen(int threshold, long openMillis) {
+    return threshold > 0 && !waitedFor(openMillis);
+  }
+
+  private boolean waitedFor(long openMillis) {
+    return State.CLOSED == state
+        || System.nanoTime() - sinceNanos >= TimeUnit.MILLISECONDS.toNanos(openMillis);
+  }
+
+  /** Records that the server answered a request. */
+  synchronized void succeeded() {
+    if (State.CLOSED != state) {
+      LOG.info("Closing the circuit of {}", url);
+    }
+    failures = 0;
+    state = State.CLOSED;
+  }
+
+  /** Records that the server failed to answer a request, opening the circuit
+   * if it has failed as many times in a row as the threshold, or if the
+   * request was a probe. Ignored if the threshold is not positive. */
+  synchronized void failed(int threshold) {
+    if (threshold <= 0) {
+      return;
+    }
+    failures++;
+    if (State.HALF_OPEN == state
+        || State.CLOSED == state && failures >= threshold) {
+      if (State.CLOSED == state) {
+        LOG.warn("Opening the circuit of {} after {} consecutive failures", url, failures);
+      }
+      state = State.OPEN;
+      sinceNanos = System.nanoTime();
+    }
+  }
+}
+
+// End CircuitBreaker.java
@@ -17,41 +17,61 @@
 package org.apache.calcite.avatica.remote;
 
 import org.apache.calcite.avatica.ConnectionConfig;
+import org.apache.calcite.avatica.metrics.Gauge;
+import org.apache.calcite.avatica.metrics.MetricsSystem;
+import org.apache.calcite.avatica.metrics.noop.NoopMetricsSystem;
 
+import org.apache.hc.client5.http.ConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.IdleConnectionEvictor;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
 import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
 import org.apache.hc.client5.http.ssl.HttpsSupport;
 import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
-import org.apache.hc.client5.http.ssl.TlsSocketStrategy;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.pool.ConnPoolControl;
 import org.apache.hc.core5.ssl.SSLContextBuilder;
 import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 
 /**
  * Creates and returns a PoolingHttpClientConnectionManager object.
  * If a pool exists for a given set of keystore, trustore, and hostanmeVerification
- * parameters, then the existing pool is returned.
+ * parameters, and pool settings, then the existing pool is returned.
  *
+ * <p>The pools are sized by the {@code http_pool_*} properties of
+ * {@link org.apache.calcite.avatica.BuiltInConnectionProperty}. A background thread per pool
+ * closes the connections that have been idle for too long or have expired,
+ * and a connection that has been inactive is validated before it is reused.
+ * The numbers of leased, available and pending connections of each pool are
+ * registered as gauges with the {@link MetricsSystem} set with
+ * {@link #setMetricsSystem(MetricsSystem)}.
  */
 public class CommonsHttpClientPoolCache {
 
-  // Some basic exposed configurations
-  private static final String MAX_POOLED_CONNECTION_PER_ROUTE_KEY =
-      "avatica.pooled.connections.per.route";
-  private static final String MAX_POOLED_CONNECTION_PER_ROUTE_DEFAULT = "25";
-  private static final String MAX_POOLED_CONNECTIONS_KEY = "avatica.pooled.connections.max";
-  private static final String MAX_POOLED_CONNECTIONS_DEFAULT = "100";
-
   private static final Logger LOG = LoggerFactory.getLogger(CommonsHttpClientPoolCache.class);
 
   private CommonsHttpClientPoolCache() {
@@ -61,26 +81,201 @@ private CommonsHttpClientPoolCache() {
   private static final ConcurrentHashMap<String, PoolingHttpClientConnectionManager> CACHED_POOLS =
       new ConcurrentHashMap<>();
 
+  private static final ConcurrentHashMap<String, CloseableHttpAsyncClient> CACHED_ASYNC_CLIENTS =
+      new ConcurrentHashMap<>();
+
+  private static final ConcurrentHashMap<String, CloseableHttpAsyncClient> CACHED_HTTP2_CLIENTS =
+      new ConcurrentHashMap<>();
+
+  /** Pools by the name their gauges are registered under. */
+  private static final ConcurrentHashMap<String, ConnPoolControl<?>> NAMED_POOLS =
+      new ConcurrentHashMap<>();
+
+  private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+  private static MetricsSystem metrics = NoopMetricsSystem.getInstance();
+
   public static PoolingHttpClientConnectionManager getPool(ConnectionConfig config) {
     String sslDisc = extractSSLParameters(config);
 
     return CACHED_POOLS.computeIfAbsent(sslDisc, k -> setupPool(config));
   }
 
+  /**
+   * Returns a started asynchronous client that speaks HTTP/2, and multiplexes
+   * the requests of all the Avatica clients with the same SSL/TLS parameters
+   * and pool settings over its pooled connections. Plain connections speak
+   * HTTP/2 from the start (h2c with prior knowledge); over TLS, HTTP/2 is
+   * negotiated with ALPN, falling back to HTTP/1.1.
+   */
+  public static CloseableHttpAsyncClient getHttp2AsyncClient(ConnectionConfig config) {
+    String sslDisc = extractSSLParameters(config);
+
+    return CACHED_HTTP2_CLIENTS.computeIfAbsent(sslDisc, k -> setupHttp2AsyncClient(config));
+  }
+
+  /**
+   * Sets the metrics system that the statistics of the pools are registered
+   * with, registering those of the pools created so far.
+   *
+   * @param metrics The metrics system
+   */
+  public static synchronized void setMetricsSystem(MetricsSystem metrics) {
+    CommonsHttpClientPoolCache.metrics = Objects.requireNonNull(metrics);
+    for (Map.Entry<String, ConnPoolControl<?>> entry : NAMED_POOLS.entrySet()) {
+      registerGauges(metrics, entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Returns the strategy that decides how long a connection is kept alive
+   * after a response: as long as the server allows, but no longer than the
+   * idle timeout, after which connections are likely to have been dropped by
+   * load balancers and firewalls.
+   */
+  static ConnectionKeepAliveStrategy keepAliveStrategy(ConnectionConfig config) {
+    final long idleTimeout = config.httpPoolIdleTimeout();
+    if (idleTimeout <= 0) {
+      return DefaultConnectionKeepAliveStrategy.INSTANCE;
+    }
+    return (response, context) -> {
+      final TimeValue keepAlive =
+          DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+      return TimeValue.isPositive(keepAlive) && keepAlive.toMilliseconds() < idleTimeout
+          ? keepAlive : TimeValue.ofMilliseconds(idleTimeout);
+    };
+  }
+
+  /**
+   * Returns a started asynchronous client, pooling its connections. Unlike the blocking pool,
+   * the client itself is shared, since its I/O threads are what the connections of all the
+   * Avatica clients with the same SSL/TLS parameters are multiplexed over.
+   */
+  public static CloseableHttpAsyncClient getAsyncClient(ConnectionConfig config) {
+    String sslDisc = extractSSLParameters(config);
+
+    return CACHED_ASYNC_CLIENTS.computeIfAbsent(sslDisc, k -> setupAsyncClient(config));
+  }
+
   private static PoolingHttpClientConnectionManager setupPool(ConnectionConfig config) {
-    final String maxCnxns = System.getProperty(MAX_POOLED_CONNECTIONS_KEY,
-        MAX_POOLED_CONNECTIONS_DEFAULT);
-    final String maxCnxnsPerRoute = System.getProperty(MAX_POOLED_CONNECTION_PER_ROUTE_KEY,
-        MAX_POOLED_CONNECTION_PER_ROUTE_DEFAULT);
+    final PoolSettings settings = new PoolSettings(config);
     PoolingHttpClientConnectionManager pool = PoolingHttpClientConnectionManagerBuilder.create()
         .setTlsSocketStrategy(createTlsSocketStrategy(config))
-        .setMaxConnTotal(Integer.parseInt(maxCnxns))
-        .setMaxConnPerRoute(Integer.parseInt(maxCnxnsPerRoute)).build();
-    LOG.debug("Created new pool {}", pool);
+        .setDefaultConnectionConfig(settings.connectionConfig())
+        .setMaxConnTotal(settings.maxTotal)
+        .setMaxConnPerRoute(settings.maxPerRoute).build();
+    settings.startEvictor(pool);
+    register("Pool", pool);
+    LOG.debug("Created new pool {} with {}", pool, settings);
     return pool;
   }
 
-  private static TlsSocketStrategy createTlsSocketStrategy(ConnectionConfig config) {
+  private static CloseableHttpAsyncClient setupAsyncClient(ConnectionConfig config) {
+    final PoolSettings settings = new PoolSettings(config);
+    // HTTP/2 is negotiated with ALPN over TLS, plain connections use HTTP/1.1
+    PoolingAsyncClientConnectionManager pool = PoolingAsyncClientConnectionManagerBuilder.create()
+        .setTlsStrategy(createTlsSocketStrategy(config))
+        .setDefaultTlsConfig(
+            TlsConfig.custom().setVersionPolicy(HttpVersionPolicy.NEGOTIATE).build())
+        .setDefaultConnectionConfig(settings.connectionConfig())
+        .setMaxConnTotal(settings.maxTotal)
+        .setMaxConnPerRoute(settings.maxPerRoute).build();
+    CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+        .setConnectionManager(pool)
+        .setKeepAliveStrategy(keepAliveStrategy(config)).build();
+    client.start();
+    settings.startEvictor(pool);
+    register("AsyncPool", pool);
+    LOG.debug("Created new async client {} with pool {} and {}", client, pool, settings);
+    return client;
+  }
+
+  private static CloseableHttpAsyncClient setupHttp2AsyncClient(ConnectionConfig config) {
+    final PoolSettings settings = new PoolSettings(config);
+    PoolingAsyncClientConnectionManager pool = PoolingAsyncClientConnectionManagerBuilder.create()
+        .setTlsStrategy(createTlsSocketStrategy(config))
+        .setTlsConfigResolver(host ->
+            TlsConfig.custom().setVersionPolicy(
+                URIScheme.HTTPS.same(host.getSchemeName())
+                    ? HttpVersionPolicy.NEGOTIATE : HttpVersionPolicy.FORCE_HTTP_2).build())
+        .setMessageMultiplexing(true)
+        .setDefaultConnectionConfig(settings.connectionConfig())
+        .setMaxConnTotal(settings.maxTotal)
+        .setMaxConnPerRoute(settings.maxPerRoute).build();
+    CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+        .setConnectionManager(pool)
+        .setKeepAliveStrategy(keepAliveStrategy(config)).build();
+    client.start();
+    settings.startEvictor(pool);
+    register("Http2Pool", pool);
+    LOG.debug("Created new HTTP/2 client {} with pool {} and {}", client, pool, settings);
+    return client;
+  }
+
+  /** Registers the gauges of a new pool. */
+  private static synchronized void register(String kind, ConnPoolControl<?> pool) {
+    final String name = kind + POOL_COUNT.incrementAndGet();
+    NAMED_POOLS.put(name, pool);
+    registerGauges(metrics, name, pool);
+  }
+
+  private static void registerGauges(MetricsSystem metrics, String name,
+      ConnPoolControl<?> pool) {
+    metrics.register(MetricsHelper.concat(CommonsHttpClientPoolCache.class,
+        name + "LeasedConnections"), (Gauge<Integer>) () -> pool.getTotalStats().getLeased());
+    metrics.register(MetricsHelper.concat(CommonsHttpClientPoolCache.class,
+        name + "AvailableConnections"),
+        (Gauge<Integer>) () -> pool.getTotalStats().getAvailable());
+    metrics.register(MetricsHelper.concat(CommonsHttpClientPoolCache.class,
+        name + "PendingConnections"), (Gauge<Integer>) () -> pool.getTotalStats().getPending());
+    metrics.register(MetricsHelper.concat(CommonsHttpClientPoolCache.class,
+        name + "MaxConnections"), (Gauge<Integer>) () -> pool.getTotalStats().getMax());
+  }
+
+  /** Settings of a pool, read from the properties of a connection. */
+  private static class PoolSettings {
+    final int maxTotal;
+    final int maxPerRoute;
+    final long idleTimeout;
+    final long timeToLive;
+    final long validateAfterInactivity;
+
+    PoolSettings(ConnectionConfig config) {
+      this.maxTotal = config.httpPoolMaxTotal();
+      this.maxPerRoute = config.httpPoolMaxPerRoute();
+      this.idleTimeout = config.httpPoolIdleTimeout();
+      this.timeToLive = config.httpPoolTimeToLive();
+      this.validateAfterInactivity = config.httpPoolValidateAfterInactivity();
+    }
+
+    org.apache.hc.client5.http.config.ConnectionConfig connectionConfig() {
+      final org.apache.hc.client5.http.config.ConnectionConfig.Builder builder =
+          org.apache.hc.client5.http.config.ConnectionConfig.custom()
+              .setValidateAfterInactivity(TimeValue.ofMilliseconds(validateAfterInactivity));
+      if (timeToLive > 0) {
+        builder.setTimeToLive(TimeValue.ofMilliseconds(timeToLive));
+      }
+      return builder.build();
+    }
+
+    /** Starts closing the idle and expired connections of a pool in the
+     * background, if there are any to close. */
+    void startEvictor(ConnPoolControl<?> pool) {
+      if (idleTimeout <= 0 && timeToLive <= 0) {
+        return;
+      }
+      final long period = idleTimeout > 0 ? idleTimeout : timeToLive;
+      new IdleConnectionEvictor(pool, TimeValue.ofMilliseconds(Math.max(1000, period / 2)),
+          idleTimeout > 0 ? TimeValue.ofMilliseconds(idleTimeout) : null).start();
+    }
+
+    @Override public String toString() {
+      return maxTotal + ":" + maxPerRoute + ":" + idleTimeout + ":" + timeToLive + ":"
+          + validateAfterInactivity;
+    }
+  }
+
+  private static DefaultClientTlsStrategy createTlsSocketStrategy(ConnectionConfig config) {
     try {
       return new DefaultClientTlsStrategy(getSSLContext(config),
           getHostnameVerifier(config.hostnameVerification()));
@@ -176,8 +371,26 @@ private static String extractSSLParameters(ConnectionConfig config) {
     .append(config.keystorePassword()).append(":")
     .append(config.keyPassword()).append(":")
     .append(keyMtime).append(":")
-    .append(trustMtime);
-    return sb.toString();
+    .append(trustMtime).append(":")
+    .append(new PoolSettings(config));
+    // Keep the passwords out of the keys
+    return digest(sb.toString());
+  }
+
+  private static String digest(String key) {
+    try {
+      final byte[] hash = MessageDigest.getInstance("SHA-256")
+          .digest(key.getBytes(StandardCharsets.UTF_8));
+      final StringBuilder sb = new StringBuilder(hash.length * 2);
+      for (byte b : hash) {
+        sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+            .append(Character.forDigit(b & 0xF, 16));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform supports SHA-256
+      throw new IllegalStateException(e);
+    }
   }
 }
 
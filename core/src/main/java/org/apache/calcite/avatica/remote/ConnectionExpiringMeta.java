@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.Meta;
+
+/**
+ * An extension of {@link Meta} whose connections may go away without the
+ * client closing them, for instance because they expire or are evicted from a
+ * cache. It tells listeners about every connection it removes, so that they
+ * can forget what they keep for it.
+ */
+public interface ConnectionExpiringMeta extends Meta {
+
+  /**
+   * Registers a listener to call whenever a connection is removed, whether
+   * closed by its client, expired or evicted.
+   *
+   * @param listener Listener
+   */
+  void addConnectionRemovalListener(ConnectionRemovalListener listener);
+
+  /** Called when a {@link ConnectionExpiringMeta} removes a connection. */
+  interface ConnectionRemovalListener {
+    /** Called once the connection with the given id is removed. */
+    void onConnectionRemoved(String connectionId);
+  }
+}
+
+// End ConnectionExpiringMeta.java
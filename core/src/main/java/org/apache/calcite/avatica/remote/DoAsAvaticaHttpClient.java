@@ -42,6 +42,14 @@ public byte[] send(final byte[] request) {
       }
     });
   }
+
+  @Override public <T> T send(final byte[] request, final ResponseReader<T> reader) {
+    return SecurityUtils.callAs(kerberosUtil.getSubject(), new Callable<T>() {
+      @Override public T call() {
+        return wrapped.send(request, reader);
+      }
+    });
+  }
 }
 
 // End DoAsAvaticaHttpClient.java
@@ -23,6 +23,7 @@
 import org.apache.calcite.avatica.DriverVersion;
 import org.apache.calcite.avatica.Meta;
 import org.apache.calcite.avatica.UnregisteredDriver;
+import org.apache.calcite.avatica.ha.LBStrategy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -153,7 +154,7 @@ AvaticaHttpClient getHttpClient(AvaticaConnection connection, ConnectionConfig c
     URL url;
     String urlStr;
     if (config.useClientSideLb()) {
-      urlStr = config.getLBStrategy().getLbURL(config);
+      urlStr = healthyLbURL(config);
     } else {
       urlStr = config.url();
     }
@@ -167,6 +168,27 @@ AvaticaHttpClient getHttpClient(AvaticaConnection connection, ConnectionConfig c
 
     return httpClientFactory.getClient(url, config, connection.getKerberosConnection());
   }
+
+  /** Returns the next of the load balanced URLs, skipping those whose
+   * circuit breaker is open, unless all of them are. */
+  private static String healthyLbURL(ConnectionConfig config) {
+    final LBStrategy strategy = config.getLBStrategy();
+    final int threshold = config.httpCircuitBreakerThreshold();
+    final long openTime = config.httpCircuitBreakerOpenTime();
+    final int urlCount = strategy.getLbURLCount(config);
+    final String first = strategy.getLbURL(config);
+    String urlStr = first;
+    for (int i = 1; CircuitBreaker.of(urlStr).isOpen(threshold, openTime); i++) {
+      if (i >= urlCount) {
+        // None is healthy, so fail on the first
+        return first;
+      }
+      LOG.info("Skipping {}, which failed too many times in a row", urlStr);
+      urlStr = strategy.getLbURL(config);
+    }
+    return urlStr;
+  }
+
   @Override public Connection connect(String url, Properties info)
       throws SQLException {
     int retries = 0;
@@ -193,7 +215,8 @@ AvaticaHttpClient getHttpClient(AvaticaConnection connection, ConnectionConfig c
       try {
         service.apply(
             new Service.OpenConnectionRequest(conn.id,
-                Service.OpenConnectionRequest.serializeProperties(info)));
+                Service.OpenConnectionRequest.serializeProperties(info),
+                config.frameEncoding()));
         return conn;
       } catch (Exception e) {
         long endTime = System.currentTimeMillis();
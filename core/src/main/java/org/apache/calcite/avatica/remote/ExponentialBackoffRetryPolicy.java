@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.ConnectionConfig;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A {@link RetryPolicy} that waits a random time, up to a limit that doubles
+ * with each attempt, before sending a request again, so that the clients of
+ * a server that is overloaded do not all retry at once.
+ *
+ * <p>The limit starts at {@code http_retry_initial_backoff} and grows up to
+ * {@code http_retry_max_backoff}. A delay asked for by the server with a
+ * {@code Retry-After} header is honored. The request fails once it has been
+ * sent {@code http_retry_max_attempts} times, or when waiting would take it
+ * past {@code http_retry_deadline}.
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+  public static final ExponentialBackoffRetryPolicy INSTANCE =
+      new ExponentialBackoffRetryPolicy();
+
+  // Public for Type.PLUGIN
+  public ExponentialBackoffRetryPolicy() {}
+
+  @Override public long retryDelay(ConnectionConfig config, int attempts, long elapsedMillis,
+      long retryAfterMillis) {
+    final int maxAttempts = config.httpRetryMaxAttempts();
+    if (maxAttempts > 0 && attempts >= maxAttempts) {
+      return -1;
+    }
+    long delay = jitter(maxBackoff(config.httpRetryInitialBackoff(),
+        config.httpRetryMaxBackoff(), attempts));
+    if (retryAfterMillis > delay) {
+      delay = retryAfterMillis;
+    }
+    final long deadline = config.httpRetryDeadline();
+    if (deadline > 0 && elapsedMillis + delay > deadline) {
+      return -1;
+    }
+    return delay;
+  }
+
+  /** Returns the longest time to wait after the given number of attempts:
+   * the initial backoff, doubled for each attempt after the first, up to the
+   * maximum backoff. */
+  static long maxBackoff(long initialBackoff, long maxBackoff, int attempts) {
+    if (initialBackoff <= 0) {
+      return 0;
+    }
+    final long max = Math.max(initialBackoff, maxBackoff);
+    final int doublings = Math.min(attempts - 1, 62);
+    if (doublings <= 0) {
+      return Math.min(initialBackoff, max);
+    }
+    if (initialBackoff > max >> doublings) {
+      return max;
+    }
+    return initialBackoff << doublings;
+  }
+
+  /** Returns a random time between 0 and the given time. */
+  private static long jitter(long backoff) {
+    return backoff <= 0 ? 0 : ThreadLocalRandom.current().nextLong(backoff + 1);
+  }
+}
+
+// End ExponentialBackoffRetryPolicy.java
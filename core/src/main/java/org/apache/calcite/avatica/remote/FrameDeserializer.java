@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.avatica.util.PrimitiveRow;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Deserializes a {@link Meta.Frame} from JSON.
+ *
+ * <p>When the signature of the statement is known, from the
+ * {@link #SIGNATURE_ATTRIBUTE} attribute of the context, numeric values are
+ * parsed straight into the type of their column and held without boxing them.
+ * Otherwise, and for other values, rows are parsed as untyped JSON, floating
+ * point numbers becoming {@link java.math.BigDecimal}s.
+ */
+class FrameDeserializer extends StdDeserializer<Meta.Frame> {
+  /** Attribute of the {@link DeserializationContext} holding the
+   * {@link Meta.Signature} of the statement whose rows are read. It is set
+   * whenever a signature is read, so that the frame which follows it in the
+   * same response uses it. */
+  static final String SIGNATURE_ATTRIBUTE = "avatica.signature";
+
+  // How the values of a column are parsed
+  private static final byte OTHER = 0;
+  private static final byte INT = 1;
+  private static final byte LONG = 2;
+  private static final byte FLOAT = 3;
+  private static final byte DOUBLE = 4;
+
+  /** Marks a value that is held in the numbers of its row. */
+  private static final Object NUMERIC = new Object();
+
+  FrameDeserializer() {
+    super(Meta.Frame.class);
+  }
+
+  /** Returns a module that reads frames with this deserializer. */
+  static Module module() {
+    final SimpleModule module = new SimpleModule("AvaticaFrame");
+    module.addDeserializer(Meta.Frame.class, new FrameDeserializer());
+    module.setDeserializerModifier(new BeanDeserializerModifier() {
+      @Override public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config,
+          BeanDescription beanDesc, JsonDeserializer<?> deserializer) {
+        if (Meta.Signature.class == beanDesc.getBeanClass()) {
+          return new SignatureDeserializer(deserializer);
+        }
+        return deserializer;
+      }
+    });
+    return module;
+  }
+
+  @Override public Meta.Frame deserialize(JsonParser p, DeserializationContext ctxt)
+      throws IOException {
+    if (!p.isExpectedStartObjectToken()) {
+      return (Meta.Frame) ctxt.handleUnexpectedToken(Meta.Frame.class, p);
+    }
+    long offset = 0;
+    boolean done = false;
+    List<Object> rows = Collections.emptyList();
+    for (String name = p.nextFieldName(); null != name; name = p.nextFieldName()) {
+      p.nextToken();
+      switch (name) {
+      case "offset":
+        offset = p.getValueAsLong();
+        break;
+      case "done":
+        done = p.getValueAsBoolean();
+        break;
+      case "rows":
+        rows = readRows(p, ctxt);
+        break;
+      default:
+        ctxt.handleUnknownProperty(p, this, Meta.Frame.class, name);
+      }
+    }
+    return Meta.Frame.create(offset, done, rows);
+  }
+
+  private List<Object> readRows(JsonParser p, DeserializationContext ctxt) throws IOException {
+    if (JsonToken.VALUE_NULL == p.currentToken()) {
+      return Collections.emptyList();
+    }
+    if (!p.isExpectedStartArrayToken()) {
+      ctxt.handleUnexpectedToken(List.class, p);
+    }
+    final JsonDeserializer<Object> untyped =
+        ctxt.findRootValueDeserializer(ctxt.constructType(Object.class));
+    final byte[] kinds =
+        columnKinds((Meta.Signature) ctxt.getAttribute(SIGNATURE_ATTRIBUTE));
+    final List<Object> rows = new ArrayList<>();
+    for (JsonToken token = p.nextToken(); JsonToken.END_ARRAY != token; token = p.nextToken()) {
+      if (JsonToken.VALUE_NULL == token) {
+        rows.add(null);
+      } else if (null != kinds && JsonToken.START_ARRAY == token) {
+        rows.add(readRow(p, ctxt, kinds, untyped));
+      } else {
+        rows.add(untyped.deserialize(p, ctxt));
+      }
+    }
+    return rows;
+  }
+
+  /** Reads a row, whose start token is current, using the kinds of its
+   * columns. */
+  private static List<Object> readRow(JsonParser p, DeserializationContext ctxt, byte[] kinds,
+      JsonDeserializer<Object> untyped) throws IOException {
+    final Object[] values = new Object[kinds.length];
+    final long[] numbers = new long[kinds.length];
+    int i = 0;
+    for (JsonToken token = p.nextToken(); JsonToken.END_ARRAY != token; token = p.nextToken()) {
+      if (i == kinds.length) {
+        // More values than columns; the signature does not describe this row
+        final TypedRow head = new TypedRow(kinds, values, numbers, i);
+        final List<Object> row = new ArrayList<>(head);
+        for (; JsonToken.END_ARRAY != token; token = p.nextToken()) {
+          row.add(JsonToken.VALUE_NULL == token ? null : untyped.deserialize(p, ctxt));
+        }
+        return row;
+      }
+      switch (kinds[i]) {
+      case INT:
+      case LONG:
+        if (JsonToken.VALUE_NUMBER_INT == token
+            && JsonParser.NumberType.BIG_INTEGER != p.getNumberType()) {
+          numbers[i] = p.getLongValue();
+          values[i++] = NUMERIC;
+          continue;
+        }
+        break;
+      case FLOAT:
+      case DOUBLE:
+        if (JsonToken.VALUE_NUMBER_FLOAT == token || JsonToken.VALUE_NUMBER_INT == token) {
+          numbers[i] = Double.doubleToRawLongBits(p.getDoubleValue());
+          values[i++] = NUMERIC;
+          continue;
+        }
+        break;
+      default:
+        break;
+      }
+      values[i++] = JsonToken.VALUE_NULL == token ? null : untyped.deserialize(p, ctxt);
+    }
+    return new TypedRow(kinds, values, numbers, i);
+  }
+
+  /** Returns how the values of each column are parsed, or null if no column
+   * is numeric. */
+  private static byte[] columnKinds(Meta.Signature signature) {
+    if (null == signature || null == signature.columns) {
+      return null;
+    }
+    final byte[] kinds = new byte[signature.columns.size()];
+    boolean numeric = false;
+    for (int i = 0; i < kinds.length; i++) {
+      kinds[i] = kind(signature.columns.get(i).type.rep);
+      numeric |= OTHER != kinds[i];
+    }
+    return numeric ? kinds : null;
+  }
+
+  private static byte kind(ColumnMetaData.Rep rep) {
+    if (null == rep) {
+      return OTHER;
+    }
+    switch (rep) {
+    case PRIMITIVE_BYTE:
+    case BYTE:
+    case PRIMITIVE_SHORT:
+    case SHORT:
+    case PRIMITIVE_INT:
+    case INTEGER:
+      return INT;
+    case PRIMITIVE_LONG:
+    case LONG:
+      return LONG;
+    case PRIMITIVE_FLOAT:
+    case FLOAT:
+      return FLOAT;
+    case PRIMITIVE_DOUBLE:
+    case DOUBLE:
+      return DOUBLE;
+    default:
+      return OTHER;
+    }
+  }
+
+  /** Row whose numeric values are held unboxed; they are boxed only when
+   * read as objects. */
+  private static class TypedRow extends AbstractList<Object>
+      implements RandomAccess, PrimitiveRow {
+    private final byte[] kinds;
+    private final Object[] values;
+    private final long[] numbers;
+    private final int size;
+
+    TypedRow(byte[] kinds, Object[] values, long[] numbers, int size) {
+      this.kinds = kinds;
+      this.values = values;
+      this.numbers = numbers;
+      this.size = size;
+    }
+
+    @Override public Object get(int index) {
+      if (index >= size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+      final Object value = values[index];
+      if (NUMERIC != value) {
+        return value;
+      }
+      final long number = numbers[index];
+      switch (kinds[index]) {
+      case INT:
+        // Same as untyped JSON, which yields an Integer whenever it fits
+        return (int) number == number ? Integer.valueOf((int) number) : Long.valueOf(number);
+      case LONG:
+        return number;
+      case FLOAT:
+        return (float) Double.longBitsToDouble(number);
+      default:
+        return Double.longBitsToDouble(number);
+      }
+    }
+
+    @Override public int size() {
+      return size;
+    }
+
+    @Override public boolean isNull(int index) {
+      if (index >= size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+      return null == values[index];
+    }
+
+    @Override public long getLong(int index) {
+      final Object value = values[index];
+      if (NUMERIC == value) {
+        return kinds[index] >= FLOAT
+            ? (long) Double.longBitsToDouble(numbers[index]) : numbers[index];
+      }
+      return null == value ? 0L : ((Number) value).longValue();
+    }
+
+    @Override public double getDouble(int index) {
+      final Object value = values[index];
+      if (NUMERIC == value) {
+        return kinds[index] >= FLOAT
+            ? Double.longBitsToDouble(numbers[index]) : numbers[index];
+      }
+      return null == value ? 0d : ((Number) value).doubleValue();
+    }
+  }
+
+  /** Deserializer of {@link Meta.Signature} which remembers, in the context,
+   * the signature it has just read. */
+  private static class SignatureDeserializer extends DelegatingDeserializer {
+    SignatureDeserializer(JsonDeserializer<?> delegatee) {
+      super(delegatee);
+    }
+
+    @Override protected JsonDeserializer<?> newDelegatingInstance(
+        JsonDeserializer<?> newDelegatee) {
+      return new SignatureDeserializer(newDelegatee);
+    }
+
+    @Override public Object deserialize(JsonParser p, DeserializationContext ctxt)
+        throws IOException {
+      final Object signature = super.deserialize(p, ctxt);
+      ctxt.setAttribute(SIGNATURE_ATTRIBUTE, signature);
+      return signature;
+    }
+
+    @Override public Object getNullValue(DeserializationContext ctxt) {
+      // A missing signature must not leave that of a previous result in place
+      ctxt.setAttribute(SIGNATURE_ATTRIBUTE, null);
+      return null;
+    }
+  }
+}
+
+// End FrameDeserializer.java
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.AvaticaUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content codings which the Avatica client and server can use to compress the
+ * bodies of HTTP requests and responses.
+ *
+ * <p>The coding of a response is negotiated through the {@code Accept-Encoding}
+ * header of the request. A server that accepts compressed requests lists the
+ * codings it can decode in the {@code Accept-Encoding} header of its responses,
+ * and a client only compresses requests once the server has done so.
+ */
+public enum HttpCompression {
+  /** Bodies are not compressed. */
+  NONE("identity") {
+    @Override public OutputStream compress(OutputStream out) {
+      return out;
+    }
+
+    @Override public InputStream decompress(InputStream in) {
+      return in;
+    }
+  },
+
+  /** Gzip; compresses well at a moderate CPU cost. */
+  GZIP("gzip") {
+    @Override public OutputStream compress(OutputStream out) throws IOException {
+      return new GZIPOutputStream(out, BUFFER_SIZE);
+    }
+
+    @Override public InputStream decompress(InputStream in) throws IOException {
+      return new GZIPInputStream(in, BUFFER_SIZE);
+    }
+  },
+
+  /** Zlib deflate at its fastest level; gives up some of the ratio of
+   * {@link #GZIP} for much less CPU. */
+  DEFLATE("deflate") {
+    @Override public OutputStream compress(OutputStream out) {
+      return new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED), BUFFER_SIZE) {
+        @Override public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            // Not done by the stream when the Deflater is not its own
+            def.end();
+          }
+        }
+      };
+    }
+
+    @Override public InputStream decompress(InputStream in) {
+      return new InflaterInputStream(in);
+    }
+  };
+
+  public static final String ACCEPT_ENCODING = "Accept-Encoding";
+  public static final String CONTENT_ENCODING = "Content-Encoding";
+
+  /** Default size, in bytes, under which bodies are sent uncompressed. */
+  public static final int DEFAULT_MINIMUM_SIZE = 1024;
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /** Name of the coding in the HTTP headers. */
+  public final String encoding;
+
+  HttpCompression(String encoding) {
+    this.encoding = encoding;
+  }
+
+  /**
+   * Wraps a stream so that what is written to it is compressed. Closing the
+   * returned stream closes {@code out}.
+   *
+   * @param out Stream receiving the compressed bytes
+   * @return A stream accepting the uncompressed bytes
+   */
+  public abstract OutputStream compress(OutputStream out) throws IOException;
+
+  /**
+   * Wraps a stream of compressed bytes so that they are read uncompressed.
+   *
+   * @param in Stream of compressed bytes
+   * @return A stream of the uncompressed bytes
+   */
+  public abstract InputStream decompress(InputStream in) throws IOException;
+
+  public byte[] compress(byte[] bytes) throws IOException {
+    if (NONE == this) {
+      return bytes;
+    }
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+    try (OutputStream compressed = compress(out)) {
+      compressed.write(bytes);
+    }
+    return out.toByteArray();
+  }
+
+  public byte[] decompress(byte[] bytes) throws IOException {
+    if (NONE == this) {
+      return bytes;
+    }
+    try (InputStream in = decompress(new ByteArrayInputStream(bytes))) {
+      return AvaticaUtils.readFullyToBytes(in);
+    }
+  }
+
+  /**
+   * Returns the compression for the value of a {@code Content-Encoding} header.
+   *
+   * @param contentEncoding Value of the header, or null if it is absent
+   * @return The compression, or null if the coding is not supported
+   */
+  public static HttpCompression forEncoding(String contentEncoding) {
+    if (null == contentEncoding) {
+      return NONE;
+    }
+    switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+    case "":
+    case "identity":
+      return NONE;
+    case "gzip":
+    case "x-gzip":
+      return GZIP;
+    case "deflate":
+      return DEFLATE;
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether a coding is listed, and not refused with {@code q=0}, in the
+   * value of an {@code Accept-Encoding} header.
+   */
+  public static boolean accepts(String acceptEncoding, HttpCompression compression) {
+    if (null == acceptEncoding) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      final String[] parts = coding.split(";");
+      if (compression != forEncoding(parts[0])) {
+        continue;
+      }
+      boolean refused = false;
+      for (int i = 1; i < parts.length; i++) {
+        final String parameter = parts[i].trim();
+        if (parameter.startsWith("q=")) {
+          try {
+            refused = Double.parseDouble(parameter.substring(2)) <= 0d;
+          } catch (NumberFormatException e) {
+            refused = true;
+          }
+        }
+      }
+      if (!refused) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Chooses the compression of a response.
+   *
+   * @param acceptEncoding Value of the {@code Accept-Encoding} header of the request
+   * @param preferred Compression to use if the client accepts it
+   * @return {@code preferred} if the client accepts it, otherwise another
+   *     compression that the client accepts, or {@link #NONE}
+   */
+  public static HttpCompression negotiate(String acceptEncoding, HttpCompression preferred) {
+    if (NONE == preferred || accepts(acceptEncoding, preferred)) {
+      return preferred;
+    }
+    for (HttpCompression compression : values()) {
+      if (NONE != compression && accepts(acceptEncoding, compression)) {
+        return compression;
+      }
+    }
+    return NONE;
+  }
+
+  /** Returns the value of an {@code Accept-Encoding} header listing every
+   * supported coding. */
+  public static String acceptedEncodings() {
+    final StringBuilder sb = new StringBuilder();
+    for (HttpCompression compression : values()) {
+      if (NONE != compression) {
+        if (sb.length() > 0) {
+          sb.append(", ");
+        }
+        sb.append(compression.encoding);
+      }
+    }
+    return sb.toString();
+  }
+}
+
+// End HttpCompression.java
@@ -22,10 +22,15 @@
 import org.apache.calcite.avatica.remote.Service.Request;
 import org.apache.calcite.avatica.remote.Service.Response;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Implementation of {@link org.apache.calcite.avatica.remote.Handler}
@@ -54,7 +59,36 @@ public HandlerResponse<String> apply(String jsonRequest) {
 
   @Override Request decode(String request) throws IOException {
     try (Context ctx = serializationTimer.start()) {
-      return MAPPER.readValue(request, Service.Request.class);
+      return JsonService.REQUEST_READER.readValue(request);
+    }
+  }
+
+  /**
+   * Computes a response for the request read from the given stream, handling errors generated
+   * by that computation, but leaves serializing the response to the caller. The request is
+   * parsed as it is read, rather than first read into a String.
+   *
+   * @param requestStream Stream of the caller's request
+   * @param encoding Character encoding of the request, or null for UTF-8
+   * @return The {@link Response}, not yet serialized, with additional context.
+   */
+  public HandlerResponse<Response> applyUnencoded(InputStream requestStream, String encoding) {
+    try {
+      final Service.Request request = decode(requestStream, encoding);
+      return new HandlerResponse<>(execute(request), HTTP_OK);
+    } catch (Exception e) {
+      return unencodedErrorResponse(e, HTTP_INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  Request decode(InputStream requestStream, String encoding) throws IOException {
+    try (Context ctx = serializationTimer.start()) {
+      if (null == encoding || StandardCharsets.UTF_8.name().equalsIgnoreCase(encoding)) {
+        // Jackson decodes UTF-8 bytes itself, faster than through a Reader
+        return JsonService.REQUEST_READER.readValue(requestStream);
+      }
+      return JsonService.REQUEST_READER.readValue(
+          new InputStreamReader(requestStream, encoding));
     }
   }
 
@@ -66,9 +100,24 @@ public HandlerResponse<String> apply(String jsonRequest) {
    */
   @Override String encode(Response response) throws IOException {
     try (Context ctx = serializationTimer.start()) {
-      final StringWriter w = new StringWriter();
-      MAPPER.writeValue(w, response);
-      return w.toString();
+      return JsonService.writer(response).writeValueAsString(response);
+    }
+  }
+
+  /**
+   * Serializes the provided response as JSON, in UTF-8 and followed by a newline, straight to
+   * the given stream, without building the JSON as a String first. The stream is not closed.
+   *
+   * @param response The object to serialize.
+   * @param out The stream to write the JSON to.
+   * @throws IOException If the response cannot be serialized or written
+   */
+  public void encode(Response response, OutputStream out) throws IOException {
+    try (Context ctx = serializationTimer.start();
+         JsonGenerator generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      JsonService.writer(response).writeValue(generator, response);
+      generator.writeRaw('\n');
     }
   }
 }
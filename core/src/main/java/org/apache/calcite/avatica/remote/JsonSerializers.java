@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.calcite.avatica.Meta;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Hand-written JSON serializers of the values that make up most of the
+ * messages: the rows of a {@link Meta.Frame} and {@link TypedValue}
+ * parameters.
+ *
+ * <p>They write the same JSON as the serializers that Jackson derives from
+ * the classes, but write the common scalar values straight to the generator
+ * instead of looking up a serializer for each of them.
+ */
+class JsonSerializers {
+  private JsonSerializers() {
+  }
+
+  /** Returns a module that writes frames and typed values with these
+   * serializers. */
+  static Module module() {
+    final SimpleModule module = new SimpleModule("AvaticaSerializers");
+    module.addSerializer(Meta.Frame.class, new FrameSerializer());
+    module.addSerializer(TypedValue.class, new TypedValueSerializer());
+    return module;
+  }
+
+  /** Writes a value, using Jackson's serializer only if it is not one of the
+   * common scalars. */
+  static void writeValue(Object value, JsonGenerator g, SerializerProvider provider)
+      throws IOException {
+    if (null == value) {
+      g.writeNull();
+    } else if (value instanceof String) {
+      g.writeString((String) value);
+    } else if (value instanceof Integer) {
+      g.writeNumber((Integer) value);
+    } else if (value instanceof Long) {
+      g.writeNumber((Long) value);
+    } else if (value instanceof Double) {
+      g.writeNumber((Double) value);
+    } else if (value instanceof Boolean) {
+      g.writeBoolean((Boolean) value);
+    } else {
+      provider.defaultSerializeValue(value, g);
+    }
+  }
+
+  private static void writeRep(ColumnMetaData.Rep rep, JsonGenerator g) throws IOException {
+    if (null == rep) {
+      g.writeNull();
+    } else {
+      g.writeString(rep.name());
+    }
+  }
+
+  /** Serializer of {@link Meta.Frame}. */
+  static class FrameSerializer extends StdSerializer<Meta.Frame> {
+    FrameSerializer() {
+      super(Meta.Frame.class);
+    }
+
+    @Override public void serialize(Meta.Frame frame, JsonGenerator g,
+        SerializerProvider provider) throws IOException {
+      g.writeStartObject();
+      g.writeNumberField("offset", frame.offset);
+      g.writeBooleanField("done", frame.done);
+      g.writeFieldName("rows");
+      if (null == frame.rows) {
+        g.writeNull();
+      } else {
+        g.writeStartArray();
+        for (Object row : frame.rows) {
+          writeRow(row, g, provider);
+        }
+        g.writeEndArray();
+      }
+      g.writeEndObject();
+    }
+
+    private static void writeRow(Object row, JsonGenerator g, SerializerProvider provider)
+        throws IOException {
+      if (row instanceof List && row instanceof RandomAccess) {
+        final List<?> values = (List<?>) row;
+        final int size = values.size();
+        g.writeStartArray();
+        for (int i = 0; i < size; i++) {
+          writeValue(values.get(i), g, provider);
+        }
+        g.writeEndArray();
+      } else if (row instanceof Object[]) {
+        final Object[] values = (Object[]) row;
+        g.writeStartArray();
+        for (Object value : values) {
+          writeValue(value, g, provider);
+        }
+        g.writeEndArray();
+      } else {
+        // Other lists, records and structs are left to Jackson
+        writeValue(row, g, provider);
+      }
+    }
+  }
+
+  /** Serializer of {@link TypedValue}. */
+  static class TypedValueSerializer extends StdSerializer<TypedValue> {
+    TypedValueSerializer() {
+      super(TypedValue.class);
+    }
+
+    @Override public void serialize(TypedValue value, JsonGenerator g,
+        SerializerProvider provider) throws IOException {
+      g.writeStartObject();
+      g.writeFieldName("type");
+      writeRep(value.type, g);
+      g.writeFieldName("value");
+      writeValue(value.value, g, provider);
+      g.writeFieldName("componentType");
+      writeRep(value.componentType, g);
+      g.writeEndObject();
+    }
+  }
+}
+
+// End JsonSerializers.java
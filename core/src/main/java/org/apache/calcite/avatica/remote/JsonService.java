@@ -16,12 +16,19 @@
  */
 package org.apache.calcite.avatica.remote;
 
+import org.apache.calcite.avatica.Meta;
+
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Implementation of {@link org.apache.calcite.avatica.remote.Service}
@@ -34,8 +41,39 @@ public abstract class JsonService extends AbstractService {
     MAPPER.configure(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES, true);
     MAPPER.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
     MAPPER.configure(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS, true);
+    MAPPER.registerModule(FrameDeserializer.module());
+    MAPPER.registerModule(JsonSerializers.module());
   }
 
+  // Readers and writers are created once, rather than by MAPPER on each call,
+  // and resolve the deserializers of their type only once.
+  static final ObjectReader REQUEST_READER = MAPPER.readerFor(Request.class);
+  static final ObjectReader RESPONSE_READER = MAPPER.readerFor(Response.class);
+
+  /** Writers by the class of the message they write. */
+  private static final ClassValue<ObjectWriter> WRITERS = new ClassValue<ObjectWriter>() {
+    @Override protected ObjectWriter computeValue(Class<?> type) {
+      return MAPPER.writerFor(type);
+    }
+  };
+
+  /** Number of signatures after which the one used least recently is
+   * forgotten, so that statements that are never closed, for instance because
+   * the server expired them, do not leak. */
+  private static final int MAX_SIGNATURES = 1000;
+
+  /** Signatures of the statements that have more rows to fetch, by connection
+   * and statement id, so that the rows of the frames fetched later are parsed
+   * by the types of their columns. */
+  private final Map<String, Meta.Signature> signatures =
+      Collections.synchronizedMap(
+          new LinkedHashMap<String, Meta.Signature>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(
+                Map.Entry<String, Meta.Signature> eldest) {
+              return size() > MAX_SIGNATURES;
+            }
+          });
+
   public JsonService() {
   }
 
@@ -47,10 +85,116 @@ public JsonService() {
     return SerializationType.JSON;
   }
 
+  /**
+   * Sends a request to the peer service and returns its response.
+   *
+   * <p>The default implementation transports the request and response as JSON Strings through
+   * {@link #apply(String)}. Derived classes that can transport bytes override it to let Jackson
+   * write and read bytes directly, without the String copies.
+   *
+   * @param request The request
+   * @param expectedType Class of the response
+   * @return The response
+   * @throws IOException If the request or response cannot be serialized
+   */
+  protected <T> T call(Request request, Class<T> expectedType) throws IOException {
+    final Response response = responseReader(request).readValue(apply(encode(request)));
+    received(request, response);
+    return checkResponse(response, expectedType);
+  }
+
+  /**
+   * Returns the reader of the response to the given request. If the request fetches rows of a
+   * statement whose signature is known, the reader parses them by the types of their columns.
+   */
+  protected ObjectReader responseReader(Request request) {
+    if (request instanceof FetchRequest) {
+      final FetchRequest fetch = (FetchRequest) request;
+      final Meta.Signature signature =
+          signatures.get(statementKey(fetch.connectionId, fetch.statementId));
+      if (null != signature) {
+        return RESPONSE_READER.withAttribute(FrameDeserializer.SIGNATURE_ATTRIBUTE, signature);
+      }
+    }
+    return RESPONSE_READER;
+  }
+
+  /**
+   * Remembers the signatures of the statements in a response that have more rows to fetch, and
+   * forgets those of the statements that the request closed or fetched the last rows of.
+   */
+  protected void received(Request request, Response response) {
+    if (request instanceof MultiRequest && response instanceof MultiResponse) {
+      final List<Request> requests = ((MultiRequest) request).requests;
+      final List<Response> responses = ((MultiResponse) response).responses;
+      for (int i = 0; i < requests.size() && i < responses.size(); i++) {
+        received(requests.get(i), responses.get(i));
+      }
+    } else if (request instanceof FetchRequest) {
+      final FetchRequest fetch = (FetchRequest) request;
+      if (!(response instanceof FetchResponse)
+          || null == ((FetchResponse) response).frame
+          || ((FetchResponse) response).frame.done) {
+        signatures.remove(statementKey(fetch.connectionId, fetch.statementId));
+      }
+    } else if (request instanceof CloseStatementRequest) {
+      final CloseStatementRequest close = (CloseStatementRequest) request;
+      signatures.remove(statementKey(close.connectionId, close.statementId));
+    } else if (request instanceof CloseConnectionRequest) {
+      final String prefix =
+          statementKey(((CloseConnectionRequest) request).connectionId, "");
+      synchronized (signatures) {
+        signatures.keySet().removeIf(key -> key.startsWith(prefix));
+      }
+    } else if (response instanceof ResultSetResponse) {
+      remember((ResultSetResponse) response);
+    } else if (response instanceof ExecuteResponse
+        && null != ((ExecuteResponse) response).results) {
+      for (ResultSetResponse result : ((ExecuteResponse) response).results) {
+        remember(result);
+      }
+    } else if (response instanceof ExecuteDirectResponse
+        && null != ((ExecuteDirectResponse) response).results
+        && !((ExecuteDirectResponse) response).statementClosed) {
+      for (ResultSetResponse result : ((ExecuteDirectResponse) response).results) {
+        remember(result);
+      }
+    }
+  }
+
+  private void remember(ResultSetResponse result) {
+    if (null == result.connectionId) {
+      return;
+    }
+    final String key = statementKey(result.connectionId, result.statementId);
+    if (null == result.signature
+        || null != result.firstFrame && result.firstFrame.done) {
+      // No more rows are fetched, or not by a known signature
+      signatures.remove(key);
+    } else {
+      signatures.put(key, result.signature);
+    }
+  }
+
+  private static String statementKey(String connectionId, Object statementId) {
+    return connectionId + "/" + statementId;
+  }
+
+  /** Returns the writer of a message, whose serializer is resolved when the
+   * first message of its class is written. */
+  static ObjectWriter writer(Object message) {
+    return WRITERS.get(message.getClass());
+  }
+
   //@VisibleForTesting
   protected static <T> T decode(String response, Class<T> expectedType)
       throws IOException {
-    Response resp = MAPPER.readValue(response, Response.class);
+    return checkResponse(RESPONSE_READER.<Response>readValue(response), expectedType);
+  }
+
+  /** Throws the exception of an {@link ErrorResponse}, and otherwise checks that the response
+   * is of the expected type. */
+  protected static <T> T checkResponse(Response resp, Class<T> expectedType) {
     if (resp instanceof ErrorResponse) {
       throw ((ErrorResponse) resp).toException();
     } else if (!expectedType.isAssignableFrom(resp.getClass())) {
@@ -62,9 +206,7 @@ protected static <T> T decode(String response, Class<T> expectedType)
 
   //@VisibleForTesting
   protected static <T> String encode(T request) throws IOException {
-    final StringWriter w = new StringWriter();
-    MAPPER.writeValue(w, request);
-    return w.toString();
+    return writer(request).writeValueAsString(request);
   }
 
   protected RuntimeException handle(IOException e) {
@@ -73,7 +215,7 @@ protected RuntimeException handle(IOException e) {
 
   public ResultSetResponse apply(CatalogsRequest request) {
     try {
-      return finagle(decode(apply(encode(request)), ResultSetResponse.class));
+      return finagle(call(request, ResultSetResponse.class));
     } catch (IOException e) {
       throw handle(e);
     }
@@ -81,7 +223,7 @@ public ResultSetResponse apply(CatalogsRequest request) {
 
   public ResultSetResponse apply(SchemasRequest request) {
     try {
-      return finagle(decode(apply(encode(request)), ResultSetResponse.class));
+      return finagle(call(request, ResultSetResponse.class));
     } catch (IOException e) {
       throw handle(e);
     }
@@ -89,7 +231,7 @@ public ResultSetResponse apply(SchemasRequest request) {
 
   public ResultSetResponse apply(TablesRequest request) {
     try {
-      return finagle(decode(apply(encode(request)), ResultSetResponse.class));
+      return finagle(call(request, ResultSetResponse.class));
     } catch (IOException e) {
       throw handle(e);
     }
@@ -97,7 +239,7 @@ public ResultSetResponse apply(TablesRequest request) {
 
   public ResultSetResponse apply(TableTypesRequest request) {
     try {
-      return finagle(decode(apply(encode(request)), ResultSetResponse.class));
+      return finagle(call(request, ResultSetResponse.class));
     } catch (IOException e) {
       throw handle(e);
     }
@@ -105,7 +247,7 @@ public ResultSetResponse apply(TableTypesRequest request) {
 
   public ResultSetResponse apply(TypeInfoRequest request) {
     try {
-      return finagle(decode(apply(encode(request)), ResultSetResponse.class));
+      return finagle(call(request, ResultSetResponse.class));
     } catch (IOException e) {
       throw handle(e);
     }
@@ -113,7 +255,7 @@ public ResultSetResponse apply(TypeInfoRequest request) {
 
   public ResultSetResponse apply(ColumnsRequest request) {
     try {
-      return finagle(decode(apply(encode(request)), ResultSetResponse.class));
+      return finagle(call(request, ResultSetResponse.class));
     } catch (IOException e) {
       throw handle(e);
     }
@@ -121,7 +263,7 @@ public ResultSetResponse apply(ColumnsRequest request) {
 
   public PrepareResponse apply(PrepareRequest request) {
     try {
-      return finagle(decode(apply(encode(request)), PrepareResponse.class));
+      return finagle(call(request, PrepareResponse.class));
     } catch (IOException e) {
       throw handle(e);
     }
@@ -129,7 +271,7 @@ public PrepareResponse apply(PrepareRequest request) {
 
   public ExecuteResponse apply(PrepareAndExecuteRequest request) {
     try {
-      return finagle(decode(apply(encode(request)), ExecuteResponse.class));
+      return finagle(call(request, ExecuteResponse.class));
     } catch (IOException e) {
       throw handle(e);
     }
@@ -137,7 +279,7 @@ public ExecuteResponse apply(PrepareAndExecuteRequest request) {
 
   public FetchResponse apply(FetchRequest request) {
     try {
-      return decode(apply(encode(request)), FetchResponse.class);
+      return call(request, FetchResponse.class);
     } catch (IOException e) {
       throw handle(e);
     }
@@ -145,7 +287,7 @@ public FetchResponse apply(FetchRequest request) {
 
   public ExecuteResponse apply(ExecuteRequest request) {
     try {
-      return finagle(decode(apply(encode(request)), ExecuteResponse.class));
+      return finagle(call(request, ExecuteResponse.class));
     } catch (IOException e) {
       throw handle(e);
     }
@@ -153,7 +295,7 @@ public ExecuteResponse apply(ExecuteRequest request) {
 
   public CreateStatementResponse apply(CreateStatementRequest request) {
     try {
-      return decode(apply(encode(request)), CreateStatementResponse.class);
+      return call(request, CreateStatementResponse.class);
     } catch (IOException e) {
       throw handle(e);
     }
@@ -161,7 +303,7 @@ public CreateStatementResponse apply(CreateStatementRequest request) {
 
   public CloseStatementResponse apply(CloseStatementRequest request) {
     try {
-      return decode(apply(encode(request)), CloseStatementResponse.class);
+      return call(request, CloseStatementResponse.class);
     } catch (IOException e) {
       throw handle(e);
     }
@@ -169,7 +311,7 @@ public CloseStatementResponse apply(CloseStatementRequest request) {
 
   public OpenConnectionResponse apply(OpenConnectionRequest request) {
     try {
-      return decode(apply(encode(request)), OpenConnectionResponse.class);
+      return finagle(call(request, OpenConnectionResponse.class));
     } catch (IOException e) {
       throw handle(e);
     }
@@ -177,7 +319,7 @@ public OpenConnectionResponse apply(OpenConnectionRequest request) {
 
   public CloseConnectionResponse apply(CloseConnectionRequest request) {
     try {
-      return decode(apply(encode(request)), CloseConnectionResponse.class);
+      return call(request, CloseConnectionResponse.class);
     } catch (IOException e) {
       throw handle(e);
     }
@@ -185,7 +327,7 @@ public CloseConnectionResponse apply(CloseConnectionRequest request) {
 
   public ConnectionSyncResponse apply(ConnectionSyncRequest request) {
     try {
-      return decode(apply(encode(request)), ConnectionSyncResponse.class);
+      return call(request, ConnectionSyncResponse.class);
     } catch (IOException e) {
       throw handle(e);
     }
@@ -193,7 +335,7 @@ public ConnectionSyncResponse apply(ConnectionSyncRequest request) {
 
   public DatabasePropertyResponse apply(DatabasePropertyRequest request) {
     try {
-      return decode(apply(encode(request)), DatabasePropertyResponse.class);
+      return call(request, DatabasePropertyResponse.class);
     } catch (IOException e) {
       throw handle(e);
     }
@@ -201,7 +343,7 @@ public DatabasePropertyResponse apply(DatabasePropertyRequest request) {
 
   public SyncResultsResponse apply(SyncResultsRequest request) {
     try {
-      return decode(apply(encode(request)), SyncResultsResponse.class);
+      return call(request, SyncResultsResponse.class);
     } catch (IOException e) {
       throw handle(e);
     }
@@ -209,7 +351,7 @@ public SyncResultsResponse apply(SyncResultsRequest request) {
 
   public CommitResponse apply(CommitRequest request) {
     try {
-      return decode(apply(encode(request)), CommitResponse.class);
+      return call(request, CommitResponse.class);
     } catch (IOException e) {
       throw handle(e);
     }
@@ -217,7 +359,7 @@ public CommitResponse apply(CommitRequest request) {
 
   public RollbackResponse apply(RollbackRequest request) {
     try {
-      return decode(apply(encode(request)), RollbackResponse.class);
+      return call(request, RollbackResponse.class);
     } catch (IOException e) {
       throw handle(e);
     }
@@ -225,7 +367,7 @@ public RollbackResponse apply(RollbackRequest request) {
 
   public ExecuteBatchResponse apply(PrepareAndExecuteBatchRequest request) {
     try {
-      return decode(apply(encode(request)), ExecuteBatchResponse.class);
+      return call(request, ExecuteBatchResponse.class);
     } catch (IOException e) {
       throw handle(e);
     }
@@ -233,7 +375,23 @@ public ExecuteBatchResponse apply(PrepareAndExecuteBatchRequest request) {
 
   public ExecuteBatchResponse apply(ExecuteBatchRequest request) {
     try {
-      return decode(apply(encode(request)), ExecuteBatchResponse.class);
+      return call(request, ExecuteBatchResponse.class);
+    } catch (IOException e) {
+      throw handle(e);
+    }
+  }
+
+  public ExecuteDirectResponse apply(ExecuteDirectRequest request) {
+    try {
+      return finagle(call(request, ExecuteDirectResponse.class));
+    } catch (IOException e) {
+      throw handle(e);
+    }
+  }
+
+  public MultiResponse apply(MultiRequest request) {
+    try {
+      return finagle(call(request, MultiResponse.class));
     } catch (IOException e) {
       throw handle(e);
     }
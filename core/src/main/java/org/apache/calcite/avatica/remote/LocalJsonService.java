@@ -17,7 +17,6 @@
 package org.apache.calcite.avatica.remote;
 
 import java.io.IOException;
-import java.io.StringWriter;
 
 /**
  * Implementation of {@link org.apache.calcite.avatica.remote.Service}
@@ -32,11 +31,9 @@ public LocalJsonService(Service service) {
 
   @Override public String apply(String request) {
     try {
-      Request request2 = MAPPER.readValue(request, Request.class);
+      Request request2 = REQUEST_READER.readValue(request);
       Response response2 = request2.accept(service);
-      final StringWriter w = new StringWriter();
-      MAPPER.writeValue(w, response2);
-      return w.toString();
+      return writer(response2).writeValueAsString(response2);
     } catch (IOException e) {
       throw handle(e);
     }
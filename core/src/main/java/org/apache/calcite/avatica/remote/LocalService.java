@@ -28,7 +28,9 @@
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.apache.calcite.avatica.remote.MetricsHelper.concat;
 
@@ -44,9 +46,17 @@ public class LocalService implements Service {
   private final Timer prepareTimer;
   private final Timer prepareAndExecuteTimer;
   private final Timer connectionSyncTimer;
+  private final Timer executeDirectTimer;
 
   private RpcMetadataResponse serverLevelRpcMetadata;
 
+  /** Frame encoding and protocol version of the clients of open connections,
+   * keyed by connection id. Connections of legacy clients which only accept
+   * {@link Meta.FrameEncoding#ROW} have no entry. Entries are removed when the
+   * client closes the connection, or, if the Meta is a
+   * {@link ConnectionExpiringMeta}, when the Meta removes it. */
+  private final Map<String, ClientProtocol> clientProtocols = new ConcurrentHashMap<>();
+
   public LocalService(Meta meta) {
     this(meta, NoopMetricsSystem.getInstance());
   }
@@ -60,6 +70,16 @@ public LocalService(Meta meta, MetricsSystem metrics) {
     this.prepareTimer = this.metrics.getTimer(name("Prepare"));
     this.prepareAndExecuteTimer = this.metrics.getTimer(name("PrepareAndExecute"));
     this.connectionSyncTimer = this.metrics.getTimer(name("ConnectionSync"));
+    this.executeDirectTimer = this.metrics.getTimer(name("ExecuteDirect"));
+
+    if (meta instanceof ConnectionExpiringMeta) {
+      ((ConnectionExpiringMeta) meta).addConnectionRemovalListener(
+          new ConnectionExpiringMeta.ConnectionRemovalListener() {
+            @Override public void onConnectionRemoved(String connectionId) {
+              clientProtocols.remove(connectionId);
+            }
+          });
+    }
   }
 
   private static String name(String timer) {
@@ -70,6 +90,16 @@ private static String name(String timer) {
     this.serverLevelRpcMetadata = Objects.requireNonNull(serverLevelRpcMetadata);
   }
 
+  /** Returns the frame to send to the given connection, serialized the way
+   * its client asked for. */
+  private Meta.Frame forClient(String connectionId, Meta.Frame frame) {
+    if (null == connectionId || null == frame) {
+      return frame;
+    }
+    final ClientProtocol protocol = clientProtocols.get(connectionId);
+    return null == protocol ? frame : protocol.apply(frame);
+  }
+
   private static <E> List<E> list(Iterable<E> iterable) {
     if (iterable instanceof List) {
       return (List<E>) iterable;
@@ -119,7 +149,7 @@ public ResultSetResponse toResponse(Meta.MetaResultSet resultSet) {
       }
       final boolean done = resultSet.firstFrame.done;
 
-      frame = new Meta.Frame(0, done, list);
+      frame = forClient(resultSet.connectionId, new Meta.Frame(0, done, list));
       updateCount = -1;
 
       if (signature.statementType != null) {
@@ -140,6 +170,30 @@ public ResultSetResponse toResponse(Meta.MetaResultSet resultSet) {
         resultSet.ownStatement, signature, frame, updateCount, serverLevelRpcMetadata);
   }
 
+  /** Converts the result set of an execution into a response, which carries
+   * the fingerprint of its signature for a client which caches signatures.
+   * The signature is left out if the client said it has the signature with
+   * that fingerprint.
+   *
+   * @param resultSet Result set
+   * @param cachedSignatureFingerprint Fingerprint of the signature the client
+   *     has, or 0
+   */
+  ResultSetResponse toResponse(Meta.MetaResultSet resultSet, long cachedSignatureFingerprint) {
+    final ResultSetResponse response = toResponse(resultSet);
+    if (null == response.signature || null == response.connectionId) {
+      return response;
+    }
+    final ClientProtocol protocol = clientProtocols.get(response.connectionId);
+    if (null == protocol
+        || protocol.protocolVersion < Service.SIGNATURE_FINGERPRINT_PROTOCOL_VERSION) {
+      return response;
+    }
+    final long fingerprint = SignatureFingerprint.of(response.signature);
+    return response.withSignatureFingerprint(fingerprint,
+        fingerprint == cachedSignatureFingerprint);
+  }
+
   public ResultSetResponse apply(CatalogsRequest request) {
     final Meta.ConnectionHandle ch =
         new Meta.ConnectionHandle(request.connectionId);
@@ -197,6 +251,7 @@ public PrepareResponse apply(PrepareRequest request) {
     try (Context ignore = prepareTimer.start()) {
       final Meta.ConnectionHandle ch =
           new Meta.ConnectionHandle(request.connectionId);
+      syncConnection(ch, request.connProps);
       final Meta.StatementHandle h =
           meta.prepare(ch, request.sql, request.maxRowCount);
       return new PrepareResponse(h, serverLevelRpcMetadata);
@@ -207,28 +262,11 @@ public ExecuteResponse apply(PrepareAndExecuteRequest request) {
     try (Context ignore = prepareAndExecuteTimer.start()) {
       final Meta.StatementHandle sh =
           new Meta.StatementHandle(request.connectionId, request.statementId, null);
+      syncConnection(new Meta.ConnectionHandle(request.connectionId), request.connProps);
       try {
-        final Meta.ExecuteResult executeResult =
-            meta.prepareAndExecute(sh, request.sql, request.maxRowCount,
-                request.maxRowsInFirstFrame, new Meta.PrepareCallback() {
-                  @Override public Object getMonitor() {
-                    return LocalService.class;
-                  }
-
-                  @Override public void clear() {
-                  }
-
-                  @Override public void assign(Meta.Signature signature,
-                      Meta.Frame firstFrame, long updateCount) {
-                  }
-
-                  @Override public void execute() {
-                  }
-                });
-        final List<ResultSetResponse> results = new ArrayList<>();
-        for (Meta.MetaResultSet metaResultSet : executeResult.resultSets) {
-          results.add(toResponse(metaResultSet));
-        }
+        final List<ResultSetResponse> results =
+            prepareAndExecute(sh, request.sql, request.maxRowCount, request.maxRowsInFirstFrame,
+                request.cachedSignatureFingerprint);
         return new ExecuteResponse(results, false, serverLevelRpcMetadata);
       } catch (NoSuchStatementException e) {
         // The Statement doesn't exist anymore, bubble up this information
@@ -237,6 +275,76 @@ public ExecuteResponse apply(PrepareAndExecuteRequest request) {
     }
   }
 
+  public ExecuteDirectResponse apply(ExecuteDirectRequest request) {
+    try (Context ignore = executeDirectTimer.start()) {
+      final Meta.ConnectionHandle ch = new Meta.ConnectionHandle(request.connectionId);
+      syncConnection(ch, request.connProps);
+      final Meta.StatementHandle sh = meta.createStatement(ch);
+      final List<ResultSetResponse> results;
+      try {
+        results = prepareAndExecute(sh, request.sql, request.maxRowCount,
+            request.maxRowsInFirstFrame, request.cachedSignatureFingerprint);
+      } catch (NoSuchStatementException e) {
+        // The statement was created just above, so it cannot be missing
+        throw new RuntimeException(e);
+      } catch (RuntimeException e) {
+        // The client does not know the statement, so it cannot close it
+        try {
+          meta.closeStatement(sh);
+        } catch (RuntimeException closeFailure) {
+          e.addSuppressed(closeFailure);
+        }
+        throw e;
+      }
+      final boolean close = request.closeWhenDone && allSent(results);
+      if (close) {
+        meta.closeStatement(sh);
+      }
+      return new ExecuteDirectResponse(sh.id, results, close, serverLevelRpcMetadata);
+    }
+  }
+
+  /** Prepares and executes a query in a statement, and converts its results
+   * into responses. */
+  private List<ResultSetResponse> prepareAndExecute(Meta.StatementHandle sh, String sql,
+      long maxRowCount, int maxRowsInFirstFrame, long cachedSignatureFingerprint)
+      throws NoSuchStatementException {
+    final Meta.ExecuteResult executeResult =
+        meta.prepareAndExecute(sh, sql, maxRowCount, maxRowsInFirstFrame,
+            new Meta.PrepareCallback() {
+              @Override public Object getMonitor() {
+                return LocalService.class;
+              }
+
+              @Override public void clear() {
+              }
+
+              @Override public void assign(Meta.Signature signature,
+                  Meta.Frame firstFrame, long updateCount) {
+              }
+
+              @Override public void execute() {
+              }
+            });
+    final List<ResultSetResponse> results = new ArrayList<>();
+    for (Meta.MetaResultSet metaResultSet : executeResult.resultSets) {
+      results.add(toResponse(metaResultSet, cachedSignatureFingerprint));
+    }
+    return results;
+  }
+
+  /** Returns whether responses hold all the results of their statement, so
+   * that the client has no rows left to fetch. */
+  private static boolean allSent(List<ResultSetResponse> results) {
+    for (ResultSetResponse result : results) {
+      if (result.updateCount == -1
+          && (null == result.firstFrame || !result.firstFrame.done)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public FetchResponse apply(FetchRequest request) {
     final Meta.StatementHandle h = new Meta.StatementHandle(
         request.connectionId, request.statementId, null);
@@ -245,7 +353,8 @@ public FetchResponse apply(FetchRequest request) {
           meta.fetch(h,
               request.offset,
               request.fetchMaxRowCount);
-      return new FetchResponse(frame, false, false, serverLevelRpcMetadata);
+      return new FetchResponse(forClient(request.connectionId, frame), false, false,
+          serverLevelRpcMetadata);
     } catch (NullPointerException | NoSuchStatementException e) {
       // The Statement doesn't exist anymore, bubble up this information
       return new FetchResponse(null, true, true, serverLevelRpcMetadata);
@@ -262,7 +371,7 @@ public ExecuteResponse apply(ExecuteRequest request) {
 
         final List<ResultSetResponse> results = new ArrayList<>(executeResult.resultSets.size());
         for (Meta.MetaResultSet metaResultSet : executeResult.resultSets) {
-          results.add(toResponse(metaResultSet));
+          results.add(toResponse(metaResultSet, request.cachedSignatureFingerprint));
         }
         return new ExecuteResponse(results, false, serverLevelRpcMetadata);
       } catch (NoSuchStatementException e) {
@@ -274,6 +383,7 @@ public ExecuteResponse apply(ExecuteRequest request) {
   public CreateStatementResponse apply(CreateStatementRequest request) {
     final Meta.ConnectionHandle ch =
         new Meta.ConnectionHandle(request.connectionId);
+    syncConnection(ch, request.connProps);
     final Meta.StatementHandle h = meta.createStatement(ch);
     return new CreateStatementResponse(h.connectionId, h.id, serverLevelRpcMetadata);
   }
@@ -289,6 +399,12 @@ public OpenConnectionResponse apply(OpenConnectionRequest request) {
     final Meta.ConnectionHandle ch =
         new Meta.ConnectionHandle(request.connectionId);
     meta.openConnection(ch, request.info);
+    if (null != request.connectionId
+        && (Meta.FrameEncoding.ROW != request.frameEncoding
+            || Service.LEGACY_PROTOCOL_VERSION != request.protocolVersion)) {
+      clientProtocols.put(request.connectionId,
+          new ClientProtocol(request.frameEncoding, request.protocolVersion));
+    }
     return new OpenConnectionResponse(serverLevelRpcMetadata);
   }
 
@@ -296,6 +412,9 @@ public CloseConnectionResponse apply(CloseConnectionRequest request) {
     final Meta.ConnectionHandle ch =
         new Meta.ConnectionHandle(request.connectionId);
     meta.closeConnection(ch);
+    if (null != request.connectionId) {
+      clientProtocols.remove(request.connectionId);
+    }
     return new CloseConnectionResponse(serverLevelRpcMetadata);
   }
 
@@ -309,6 +428,16 @@ public ConnectionSyncResponse apply(ConnectionSyncRequest request) {
     }
   }
 
+  /** Applies the properties of a connection that a client sent along with
+   * another request, if it sent any. */
+  private void syncConnection(Meta.ConnectionHandle ch, Meta.ConnectionProperties connProps) {
+    if (null != connProps) {
+      try (Context ignore = connectionSyncTimer.start()) {
+        meta.connectionSync(ch, connProps);
+      }
+    }
+  }
+
   public DatabasePropertyResponse apply(DatabasePropertyRequest request) {
     final Meta.ConnectionHandle ch =
         new Meta.ConnectionHandle(request.connectionId);
@@ -377,6 +506,25 @@ public ExecuteBatchResponse apply(ExecuteBatchRequest request) {
           serverLevelRpcMetadata);
     }
   }
+
+  public MultiResponse apply(MultiRequest request) {
+    return AbstractHandler.executeInOrder(this, request, serverLevelRpcMetadata);
+  }
+
+  /** What the client of a connection advertised when it opened it. */
+  private static class ClientProtocol {
+    final Meta.FrameEncoding frameEncoding;
+    final int protocolVersion;
+
+    ClientProtocol(Meta.FrameEncoding frameEncoding, int protocolVersion) {
+      this.frameEncoding = frameEncoding;
+      this.protocolVersion = protocolVersion;
+    }
+
+    Meta.Frame apply(Meta.Frame frame) {
+      return frame.withEncoding(frameEncoding, protocolVersion);
+    }
+  }
 }
 
 // End LocalService.java
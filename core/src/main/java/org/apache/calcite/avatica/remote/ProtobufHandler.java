@@ -22,6 +22,7 @@
 import org.apache.calcite.avatica.remote.Service.Response;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Dispatches serialized protocol buffer messages to the provided {@link Service}
@@ -57,6 +58,42 @@ public ProtobufHandler(Service service, ProtobufTranslation translation, Metrics
       return translation.serializeResponse(response);
     }
   }
+
+  /**
+   * Serializes the given response straight to the given stream, avoiding the copies made when
+   * serializing it to a byte array first.
+   *
+   * @param response The response to serialize
+   * @param out The stream to write the serialized response to
+   * @throws IOException If the response cannot be serialized or written
+   */
+  public void encode(Response response, OutputStream out) throws IOException {
+    encode(response, out, false);
+  }
+
+  /**
+   * Serializes the given response straight to the given stream.
+   *
+   * @param response The response to serialize
+   * @param out The stream to write the serialized response to
+   * @param typeIdOnly Whether to identify the response by its type id alone, see
+   *     {@link #usesTypeIds(byte[])}
+   * @throws IOException If the response cannot be serialized or written
+   */
+  public void encode(Response response, OutputStream out, boolean typeIdOnly)
+      throws IOException {
+    try (Context ctx = serializationTimer.start()) {
+      translation.serializeResponse(response, out, typeIdOnly);
+    }
+  }
+
+  /**
+   * Returns whether the given serialized request identifies its message by type id, in which
+   * case its response can leave out the class name.
+   */
+  public boolean usesTypeIds(byte[] serializedRequest) {
+    return translation.usesTypeIds(serializedRequest);
+  }
 }
 
 // End ProtobufHandler.java
@@ -78,7 +78,7 @@ public abstract class ProtobufService extends AbstractService {
   }
 
   @Override public OpenConnectionResponse apply(OpenConnectionRequest request) {
-    return (OpenConnectionResponse) _apply(request);
+    return finagle((OpenConnectionResponse) _apply(request));
   }
 
   @Override public CloseConnectionResponse apply(CloseConnectionRequest request) {
@@ -117,6 +117,14 @@ public abstract class ProtobufService extends AbstractService {
     return (ExecuteBatchResponse) _apply(request);
   }
 
+  @Override public ExecuteDirectResponse apply(ExecuteDirectRequest request) {
+    return finagle((ExecuteDirectResponse) _apply(request));
+  }
+
+  @Override public MultiResponse apply(MultiRequest request) {
+    return finagle((MultiResponse) _apply(request));
+  }
+
   /**
    * Checks if the provided {@link Message} is an instance of the Class given by
    * <code>expectedType</code>. Throws an IllegalArgumentException if the message is not of the
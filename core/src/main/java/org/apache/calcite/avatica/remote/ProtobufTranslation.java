@@ -20,6 +20,7 @@
 import org.apache.calcite.avatica.remote.Service.Response;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Generic interface to support parsing of serialized protocol buffers between client and server.
@@ -34,6 +35,33 @@ public interface ProtobufTranslation {
    */
   byte[] serializeResponse(Response response) throws IOException;
 
+  /**
+   * Serializes a {@link Response} as a protocol buffer, writing it to the given stream. Nothing
+   * is written if the response cannot be converted to a protocol buffer.
+   *
+   * @param response The response to serialize
+   * @param out The stream to write the serialized response to
+   * @throws IOException If there are errors during serialization
+   */
+  default void serializeResponse(Response response, OutputStream out) throws IOException {
+    out.write(serializeResponse(response));
+  }
+
+  /**
+   * Serializes a {@link Response} as a protocol buffer, writing it to the given stream.
+   *
+   * @param response The response to serialize
+   * @param out The stream to write the serialized response to
+   * @param typeIdOnly Whether the response may be identified by its type id alone, leaving out
+   *     its class name; only allowed if the client sent a request with a type id
+   * @throws IOException If there are errors during serialization
+   * @see #usesTypeIds(byte[])
+   */
+  default void serializeResponse(Response response, OutputStream out, boolean typeIdOnly)
+      throws IOException {
+    serializeResponse(response, out);
+  }
+
   /**
    * Serializes a {@link Request} as a protocol buffer.
    *
@@ -42,6 +70,19 @@ public interface ProtobufTranslation {
    */
   byte[] serializeRequest(Request request) throws IOException;
 
+  /**
+   * Serializes a {@link Request} as a protocol buffer.
+   *
+   * @param request The request to serialize
+   * @param typeIdOnly Whether the request may be identified by its type id alone, leaving out
+   *     its class name; only allowed if the server of the connection is known to parse it
+   * @throws IOException If there are errors during serialization
+   * @see Service#TYPE_ID_PROTOCOL_VERSION
+   */
+  default byte[] serializeRequest(Request request, boolean typeIdOnly) throws IOException {
+    return serializeRequest(request);
+  }
+
   /**
    * Parses a serialized protocol buffer request into a {@link Request}.
    *
@@ -51,6 +92,17 @@ public interface ProtobufTranslation {
    */
   Request parseRequest(byte[] bytes) throws IOException;
 
+  /**
+   * Returns whether a serialized protocol buffer request identifies its message by type id, and
+   * so whether the client that sent it can parse a response without a class name.
+   *
+   * @param bytes Serialized protocol buffer request from client
+   * @return True if the request carries a type id
+   */
+  default boolean usesTypeIds(byte[] bytes) {
+    return false;
+  }
+
   /**
    * Parses a serialized protocol buffer response into a {@link Response}.
    *
@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.avatica.remote;
 
+import org.apache.calcite.avatica.proto.Common.MessageType;
 import org.apache.calcite.avatica.proto.Common.WireMessage;
 import org.apache.calcite.avatica.proto.Requests.CatalogsRequest;
 import org.apache.calcite.avatica.proto.Requests.CloseConnectionRequest;
@@ -26,8 +27,10 @@
 import org.apache.calcite.avatica.proto.Requests.CreateStatementRequest;
 import org.apache.calcite.avatica.proto.Requests.DatabasePropertyRequest;
 import org.apache.calcite.avatica.proto.Requests.ExecuteBatchRequest;
+import org.apache.calcite.avatica.proto.Requests.ExecuteDirectRequest;
 import org.apache.calcite.avatica.proto.Requests.ExecuteRequest;
 import org.apache.calcite.avatica.proto.Requests.FetchRequest;
+import org.apache.calcite.avatica.proto.Requests.MultiRequest;
 import org.apache.calcite.avatica.proto.Requests.OpenConnectionRequest;
 import org.apache.calcite.avatica.proto.Requests.PrepareAndExecuteBatchRequest;
 import org.apache.calcite.avatica.proto.Requests.PrepareAndExecuteRequest;
@@ -46,8 +49,10 @@
 import org.apache.calcite.avatica.proto.Responses.DatabasePropertyResponse;
 import org.apache.calcite.avatica.proto.Responses.ErrorResponse;
 import org.apache.calcite.avatica.proto.Responses.ExecuteBatchResponse;
+import org.apache.calcite.avatica.proto.Responses.ExecuteDirectResponse;
 import org.apache.calcite.avatica.proto.Responses.ExecuteResponse;
 import org.apache.calcite.avatica.proto.Responses.FetchResponse;
+import org.apache.calcite.avatica.proto.Responses.MultiResponse;
 import org.apache.calcite.avatica.proto.Responses.OpenConnectionResponse;
 import org.apache.calcite.avatica.proto.Responses.PrepareResponse;
 import org.apache.calcite.avatica.proto.Responses.ResultSetResponse;
@@ -57,24 +62,24 @@
 import org.apache.calcite.avatica.remote.Service.Request;
 import org.apache.calcite.avatica.remote.Service.Response;
 import org.apache.calcite.avatica.remote.Service.RpcMetadataResponse;
-import org.apache.calcite.avatica.util.UnsynchronizedBuffer;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import com.google.protobuf.Parser;
 import com.google.protobuf.TextFormat;
 import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -87,6 +92,9 @@
 public class ProtobufTranslationImpl implements ProtobufTranslation {
   private static final Logger LOG = LoggerFactory.getLogger(ProtobufTranslationImpl.class);
 
+  /** Largest buffer used when writing a message to a stream. */
+  private static final int STREAM_BUFFER_SIZE = 8192;
+
   /**
    * Encapsulate the logic of transforming a protobuf Request message into the Avatica POJO request.
    */
@@ -147,6 +155,10 @@ public Service.Response transform(ByteString serializedMessage) throws
   private static final Map<String, RequestTranslator> REQUEST_PARSERS;
   private static final Map<String, ResponseTranslator> RESPONSE_PARSERS;
   private static final Map<Class<?>, ByteString> MESSAGE_CLASSES;
+  private static final Map<Class<?>, MessageType> MESSAGE_TYPES;
+  // The same translators, indexed by the number of their MessageType
+  private static final RequestTranslator[] REQUEST_TRANSLATORS;
+  private static final ResponseTranslator[] RESPONSE_TRANSLATORS;
 
   static {
     Map<String, RequestTranslator> reqParsers = new ConcurrentHashMap<>();
@@ -198,6 +210,10 @@ public Service.Response transform(ByteString serializedMessage) throws
     reqParsers.put(ExecuteBatchRequest.class.getName(),
         new RequestTranslator(ExecuteBatchRequest.parser(),
             new Service.ExecuteBatchRequest()));
+    reqParsers.put(ExecuteDirectRequest.class.getName(),
+        new RequestTranslator(ExecuteDirectRequest.parser(), new Service.ExecuteDirectRequest()));
+    reqParsers.put(MultiRequest.class.getName(),
+        new RequestTranslator(MultiRequest.parser(), new Service.MultiRequest()));
 
     REQUEST_PARSERS = Collections.unmodifiableMap(reqParsers);
 
@@ -240,71 +256,87 @@ public Service.Response transform(ByteString serializedMessage) throws
         new ResponseTranslator(RollbackResponse.parser(), new Service.RollbackResponse()));
     respParsers.put(ExecuteBatchResponse.class.getName(),
         new ResponseTranslator(ExecuteBatchResponse.parser(), new Service.ExecuteBatchResponse()));
+    respParsers.put(ExecuteDirectResponse.class.getName(),
+        new ResponseTranslator(ExecuteDirectResponse.parser(),
+            new Service.ExecuteDirectResponse()));
+    respParsers.put(MultiResponse.class.getName(),
+        new ResponseTranslator(MultiResponse.parser(), new Service.MultiResponse()));
 
     RESPONSE_PARSERS = Collections.unmodifiableMap(respParsers);
 
+    final Map<Class<?>, MessageType> messageTypes = getAllMessageTypes();
     Map<Class<?>, ByteString> messageClassNames = new ConcurrentHashMap<>();
-    for (Class<?> msgClz : getAllMessageClasses()) {
-      messageClassNames.put(msgClz, wrapClassName(msgClz));
+    int maxTypeId = 0;
+    for (Map.Entry<Class<?>, MessageType> entry : messageTypes.entrySet()) {
+      messageClassNames.put(entry.getKey(), wrapClassName(entry.getKey()));
+      maxTypeId = Math.max(maxTypeId, entry.getValue().getNumber());
     }
     MESSAGE_CLASSES = Collections.unmodifiableMap(messageClassNames);
+    MESSAGE_TYPES = Collections.unmodifiableMap(new ConcurrentHashMap<>(messageTypes));
+
+    REQUEST_TRANSLATORS = new RequestTranslator[maxTypeId + 1];
+    RESPONSE_TRANSLATORS = new ResponseTranslator[maxTypeId + 1];
+    for (Map.Entry<Class<?>, MessageType> entry : messageTypes.entrySet()) {
+      final String className = entry.getKey().getName();
+      final int typeId = entry.getValue().getNumber();
+      REQUEST_TRANSLATORS[typeId] = REQUEST_PARSERS.get(className);
+      RESPONSE_TRANSLATORS[typeId] = RESPONSE_PARSERS.get(className);
+    }
   }
 
-  private static List<Class<?>> getAllMessageClasses() {
-    List<Class<?>> messageClasses = new ArrayList<>();
-    messageClasses.add(CatalogsRequest.class);
-    messageClasses.add(CloseConnectionRequest.class);
-    messageClasses.add(CloseStatementRequest.class);
-    messageClasses.add(ColumnsRequest.class);
-    messageClasses.add(CommitRequest.class);
-    messageClasses.add(ConnectionSyncRequest.class);
-    messageClasses.add(CreateStatementRequest.class);
-    messageClasses.add(DatabasePropertyRequest.class);
-    messageClasses.add(ExecuteRequest.class);
-    messageClasses.add(FetchRequest.class);
-    messageClasses.add(OpenConnectionRequest.class);
-    messageClasses.add(PrepareAndExecuteRequest.class);
-    messageClasses.add(PrepareRequest.class);
-    messageClasses.add(RollbackRequest.class);
-    messageClasses.add(SchemasRequest.class);
-    messageClasses.add(SyncResultsRequest.class);
-    messageClasses.add(TableTypesRequest.class);
-    messageClasses.add(TablesRequest.class);
-    messageClasses.add(TypeInfoRequest.class);
-    messageClasses.add(PrepareAndExecuteBatchRequest.class);
-    messageClasses.add(ExecuteBatchRequest.class);
-
-    messageClasses.add(CloseConnectionResponse.class);
-    messageClasses.add(CloseStatementResponse.class);
-    messageClasses.add(CommitResponse.class);
-    messageClasses.add(ConnectionSyncResponse.class);
-    messageClasses.add(CreateStatementResponse.class);
-    messageClasses.add(DatabasePropertyResponse.class);
-    messageClasses.add(ErrorResponse.class);
-    messageClasses.add(ExecuteResponse.class);
-    messageClasses.add(FetchResponse.class);
-    messageClasses.add(OpenConnectionResponse.class);
-    messageClasses.add(PrepareResponse.class);
-    messageClasses.add(ResultSetResponse.class);
-    messageClasses.add(RollbackResponse.class);
-    messageClasses.add(RpcMetadata.class);
-    messageClasses.add(SyncResultsResponse.class);
-    messageClasses.add(ExecuteBatchResponse.class);
-
-    return messageClasses;
+  private static Map<Class<?>, MessageType> getAllMessageTypes() {
+    Map<Class<?>, MessageType> messageTypes = new LinkedHashMap<>();
+    messageTypes.put(CatalogsRequest.class, MessageType.CATALOGS_REQUEST);
+    messageTypes.put(CloseConnectionRequest.class, MessageType.CLOSE_CONNECTION_REQUEST);
+    messageTypes.put(CloseStatementRequest.class, MessageType.CLOSE_STATEMENT_REQUEST);
+    messageTypes.put(ColumnsRequest.class, MessageType.COLUMNS_REQUEST);
+    messageTypes.put(CommitRequest.class, MessageType.COMMIT_REQUEST);
+    messageTypes.put(ConnectionSyncRequest.class, MessageType.CONNECTION_SYNC_REQUEST);
+    messageTypes.put(CreateStatementRequest.class, MessageType.CREATE_STATEMENT_REQUEST);
+    messageTypes.put(DatabasePropertyRequest.class, MessageType.DATABASE_PROPERTY_REQUEST);
+    messageTypes.put(ExecuteRequest.class, MessageType.EXECUTE_REQUEST);
+    messageTypes.put(FetchRequest.class, MessageType.FETCH_REQUEST);
+    messageTypes.put(OpenConnectionRequest.class, MessageType.OPEN_CONNECTION_REQUEST);
+    messageTypes.put(PrepareAndExecuteRequest.class, MessageType.PREPARE_AND_EXECUTE_REQUEST);
+    messageTypes.put(PrepareRequest.class, MessageType.PREPARE_REQUEST);
+    messageTypes.put(RollbackRequest.class, MessageType.ROLLBACK_REQUEST);
+    messageTypes.put(SchemasRequest.class, MessageType.SCHEMAS_REQUEST);
+    messageTypes.put(SyncResultsRequest.class, MessageType.SYNC_RESULTS_REQUEST);
+    messageTypes.put(TableTypesRequest.class, MessageType.TABLE_TYPES_REQUEST);
+    messageTypes.put(TablesRequest.class, MessageType.TABLES_REQUEST);
+    messageTypes.put(TypeInfoRequest.class, MessageType.TYPE_INFO_REQUEST);
+    messageTypes.put(PrepareAndExecuteBatchRequest.class,
+        MessageType.PREPARE_AND_EXECUTE_BATCH_REQUEST);
+    messageTypes.put(ExecuteBatchRequest.class, MessageType.EXECUTE_BATCH_REQUEST);
+    messageTypes.put(ExecuteDirectRequest.class, MessageType.EXECUTE_DIRECT_REQUEST);
+    messageTypes.put(MultiRequest.class, MessageType.MULTI_REQUEST);
+
+    messageTypes.put(CloseConnectionResponse.class, MessageType.CLOSE_CONNECTION_RESPONSE);
+    messageTypes.put(CloseStatementResponse.class, MessageType.CLOSE_STATEMENT_RESPONSE);
+    messageTypes.put(CommitResponse.class, MessageType.COMMIT_RESPONSE);
+    messageTypes.put(ConnectionSyncResponse.class, MessageType.CONNECTION_SYNC_RESPONSE);
+    messageTypes.put(CreateStatementResponse.class, MessageType.CREATE_STATEMENT_RESPONSE);
+    messageTypes.put(DatabasePropertyResponse.class, MessageType.DATABASE_PROPERTY_RESPONSE);
+    messageTypes.put(ErrorResponse.class, MessageType.ERROR_RESPONSE);
+    messageTypes.put(ExecuteResponse.class, MessageType.EXECUTE_RESPONSE);
+    messageTypes.put(FetchResponse.class, MessageType.FETCH_RESPONSE);
+    messageTypes.put(OpenConnectionResponse.class, MessageType.OPEN_CONNECTION_RESPONSE);
+    messageTypes.put(PrepareResponse.class, MessageType.PREPARE_RESPONSE);
+    messageTypes.put(ResultSetResponse.class, MessageType.RESULT_SET_RESPONSE);
+    messageTypes.put(RollbackResponse.class, MessageType.ROLLBACK_RESPONSE);
+    messageTypes.put(RpcMetadata.class, MessageType.RPC_METADATA);
+    messageTypes.put(SyncResultsResponse.class, MessageType.SYNC_RESULTS_RESPONSE);
+    messageTypes.put(ExecuteBatchResponse.class, MessageType.EXECUTE_BATCH_RESPONSE);
+    messageTypes.put(ExecuteDirectResponse.class, MessageType.EXECUTE_DIRECT_RESPONSE);
+    messageTypes.put(MultiResponse.class, MessageType.MULTI_RESPONSE);
+
+    return messageTypes;
   }
 
   private static ByteString wrapClassName(Class<?> clz) {
     return UnsafeByteOperations.unsafeWrap(clz.getName().getBytes(UTF_8));
   }
 
-  private final ThreadLocal<UnsynchronizedBuffer> threadLocalBuffer =
-      new ThreadLocal<UnsynchronizedBuffer>() {
-        @Override protected UnsynchronizedBuffer initialValue() {
-          return new UnsynchronizedBuffer();
-        }
-      };
-
   /**
    * Fetches the concrete message's Parser implementation.
    *
@@ -349,64 +381,197 @@ public static ResponseTranslator getParserForResponse(String className) {
     return translator;
   }
 
-  @Override public byte[] serializeResponse(Response response) throws IOException {
-    // Avoid BAOS for its synchronized write methods, we don't need that concurrency control
-    UnsynchronizedBuffer out = threadLocalBuffer.get();
+  /**
+   * Fetches the translator for the message wrapped by the given {@link WireMessage}, using its
+   * type id if it has one this class knows, and its class name otherwise.
+   *
+   * @param wireMsg The message wrapping the request
+   * @return The translator for the wrapped request
+   * @throws IllegalArgumentException If no translator is found for the wrapped request
+   */
+  static RequestTranslator getParserForRequest(WireMessage wireMsg) {
+    final int typeId = wireMsg.getTypeIdValue();
+    if (typeId > 0 && typeId < REQUEST_TRANSLATORS.length
+        && null != REQUEST_TRANSLATORS[typeId]) {
+      return REQUEST_TRANSLATORS[typeId];
+    }
+    if (0 != typeId && wireMsg.getName().isEmpty()) {
+      throw new IllegalArgumentException("Cannot find request parser for type id " + typeId);
+    }
+    return getParserForRequest(wireMsg.getName());
+  }
+
+  /**
+   * Fetches the translator for the message wrapped by the given {@link WireMessage}, using its
+   * type id if it has one this class knows, and its class name otherwise.
+   *
+   * @param wireMsg The message wrapping the response
+   * @return The translator for the wrapped response
+   * @throws IllegalArgumentException If no translator is found for the wrapped response
+   */
+  static ResponseTranslator getParserForResponse(WireMessage wireMsg) {
+    final int typeId = wireMsg.getTypeIdValue();
+    if (typeId > 0 && typeId < RESPONSE_TRANSLATORS.length
+        && null != RESPONSE_TRANSLATORS[typeId]) {
+      return RESPONSE_TRANSLATORS[typeId];
+    }
+    if (0 != typeId && wireMsg.getName().isEmpty()) {
+      throw new IllegalArgumentException("Cannot find response parser for type id " + typeId);
+    }
+    return getParserForResponse(wireMsg.getName());
+  }
+
+  /**
+   * Wraps a message nested in another, such as a request of a
+   * {@link Service.MultiRequest}, in a {@link WireMessage} carrying its class name and type id.
+   *
+   * @param msg The message to wrap
+   * @return The wrapping message
+   */
+  static WireMessage wrapMessage(Message msg) {
+    final MessageType messageType = MESSAGE_TYPES.get(msg.getClass());
+    if (null == messageType) {
+      throw new IllegalArgumentException("Missing MessageType for " + msg.getClass().getName());
+    }
+    return WireMessage.newBuilder()
+        .setNameBytes(MESSAGE_CLASSES.get(msg.getClass()))
+        .setWrappedMessage(msg.toByteString())
+        .setTypeId(messageType)
+        .build();
+  }
+
+  /** Converts a request nested in another message, wrapped by {@link #wrapMessage(Message)},
+   * into the Avatica POJO request. */
+  static Request unwrapRequest(WireMessage wireMsg) {
     try {
-      Message responseMsg = response.serialize();
-      // Serialization of the response may be large
-      if (LOG.isTraceEnabled()) {
-        LOG.trace(
-            "Serializing {} '{}'",
-            responseMsg.getClass().getSimpleName(),
-            TextFormat.shortDebugString(responseMsg)
-        );
-      }
-      serializeMessage(out, responseMsg);
-      return out.toArray();
-    } finally {
-      out.reset();
+      return getParserForRequest(wireMsg).transform(wireMsg.getWrappedMessage());
+    } catch (InvalidProtocolBufferException e) {
+      throw new IllegalArgumentException("Failed to parse nested request", e);
+    }
+  }
+
+  /** Converts a response nested in another message, wrapped by {@link #wrapMessage(Message)},
+   * into the Avatica POJO response. */
+  static Response unwrapResponse(WireMessage wireMsg) {
+    try {
+      return getParserForResponse(wireMsg).transform(wireMsg.getWrappedMessage());
+    } catch (InvalidProtocolBufferException e) {
+      throw new IllegalArgumentException("Failed to parse nested response", e);
     }
   }
 
+  @Override public byte[] serializeResponse(Response response) throws IOException {
+    return serializeMessage(traceSerialization(response.serialize()));
+  }
+
+  @Override public void serializeResponse(Response response, OutputStream out)
+      throws IOException {
+    serializeResponse(response, out, false);
+  }
+
+  @Override public void serializeResponse(Response response, OutputStream out,
+      boolean typeIdOnly) throws IOException {
+    serializeMessage(out, traceSerialization(response.serialize()), typeIdOnly);
+  }
+
   @Override public byte[] serializeRequest(Request request) throws IOException {
-    // Avoid BAOS for its synchronized write methods, we don't need that concurrency control
-    UnsynchronizedBuffer out = threadLocalBuffer.get();
+    return serializeRequest(request, false);
+  }
+
+  @Override public byte[] serializeRequest(Request request, boolean typeIdOnly)
+      throws IOException {
+    return serializeMessage(traceSerialization(request.serialize()), typeIdOnly);
+  }
+
+  @Override public boolean usesTypeIds(byte[] request) {
+    // Only the fields of the WireMessage are read, the wrapped message is skipped
+    final CodedInputStream input = CodedInputStream.newInstance(request);
     try {
-      Message requestMsg = request.serialize();
-      // Serialization of the request may be large
-      if (LOG.isTraceEnabled()) {
-        LOG.trace(
-            "Serializing {} '{}'",
-            requestMsg.getClass().getSimpleName(),
-            TextFormat.shortDebugString(requestMsg)
-        );
+      for (int tag = input.readTag(); 0 != tag; tag = input.readTag()) {
+        if (WireMessage.TYPE_ID_FIELD_NUMBER == WireFormat.getTagFieldNumber(tag)) {
+          return 0 != input.readEnum();
+        }
+        if (!input.skipField(tag)) {
+          return false;
+        }
       }
-      serializeMessage(out, requestMsg);
-      return out.toArray();
-    } finally {
-      out.reset();
+    } catch (IOException e) {
+      // Fails again, with a meaningful error, once the request is parsed
     }
+    return false;
   }
 
-  void serializeMessage(OutputStream out, Message msg) throws IOException {
-    // Serialize the protobuf message
-    UnsynchronizedBuffer buffer = threadLocalBuffer.get();
-    ByteString serializedMsg;
-    try {
-      msg.writeTo(buffer);
-      // Make a bytestring from it
-      serializedMsg = UnsafeByteOperations.unsafeWrap(buffer.toArray());
-    } finally {
-      buffer.reset();
+  private static Message traceSerialization(Message msg) {
+    // Serialization of the message may be large
+    if (LOG.isTraceEnabled()) {
+      LOG.trace(
+          "Serializing {} '{}'",
+          msg.getClass().getSimpleName(),
+          TextFormat.shortDebugString(msg)
+      );
     }
+    return msg;
+  }
+
+  /**
+   * Serializes the given message, wrapped in a {@link WireMessage} carrying both its class name
+   * and its type id, into an array of exactly the serialized size.
+   */
+  byte[] serializeMessage(Message msg) throws IOException {
+    return serializeMessage(msg, false);
+  }
 
-    // Wrap the serialized message in a WireMessage
-    WireMessage wireMsg = WireMessage.newBuilder().setNameBytes(getClassNameBytes(msg.getClass()))
-        .setWrappedMessage(serializedMsg).build();
+  /**
+   * Serializes the given message, wrapped in a {@link WireMessage}, into an array of exactly the
+   * serialized size.
+   *
+   * @param msg The message to wrap
+   * @param typeIdOnly Whether to leave out the class name, which only peers that do not know
+   *     type ids need
+   */
+  byte[] serializeMessage(Message msg, boolean typeIdOnly) throws IOException {
+    final ByteString name = typeIdOnly ? ByteString.EMPTY : getClassNameBytes(msg.getClass());
+    final int typeId = getMessageTypeId(msg.getClass());
+    final byte[] bytes = new byte[getWireMessageSize(name, typeId, msg)];
+    final CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+    writeWireMessage(output, name, typeId, msg);
+    output.checkNoSpaceLeft();
+    return bytes;
+  }
+
+  /**
+   * Writes the given message, wrapped in a {@link WireMessage}, to the provided stream.
+   */
+  void serializeMessage(OutputStream out, Message msg, boolean typeIdOnly) throws IOException {
+    final ByteString name = typeIdOnly ? ByteString.EMPTY : getClassNameBytes(msg.getClass());
+    final int typeId = getMessageTypeId(msg.getClass());
+    final CodedOutputStream output = CodedOutputStream.newInstance(out,
+        Math.min(STREAM_BUFFER_SIZE, getWireMessageSize(name, typeId, msg)));
+    writeWireMessage(output, name, typeId, msg);
+    output.flush();
+  }
+
+  private static int getWireMessageSize(ByteString name, int typeId, Message msg) {
+    int size = CodedOutputStream.computeMessageSize(WireMessage.WRAPPED_MESSAGE_FIELD_NUMBER, msg)
+        + CodedOutputStream.computeEnumSize(WireMessage.TYPE_ID_FIELD_NUMBER, typeId);
+    if (!name.isEmpty()) {
+      size += CodedOutputStream.computeBytesSize(WireMessage.NAME_FIELD_NUMBER, name);
+    }
+    return size;
+  }
 
-    // Write the WireMessage to the provided OutputStream
-    wireMsg.writeTo(out);
+  /**
+   * Writes the fields of a {@link WireMessage} wrapping the given message. Produces the same
+   * bytes as building the WireMessage, but without first serializing the wrapped message on its
+   * own and copying it.
+   */
+  private static void writeWireMessage(CodedOutputStream output, ByteString name, int typeId,
+      Message msg) throws IOException {
+    if (!name.isEmpty()) {
+      output.writeBytes(WireMessage.NAME_FIELD_NUMBER, name);
+    }
+    output.writeMessage(WireMessage.WRAPPED_MESSAGE_FIELD_NUMBER, msg);
+    output.writeEnum(WireMessage.TYPE_ID_FIELD_NUMBER, typeId);
   }
 
   ByteString getClassNameBytes(Class<?> clz) {
@@ -417,6 +582,14 @@ ByteString getClassNameBytes(Class<?> clz) {
     return byteString;
   }
 
+  int getMessageTypeId(Class<?> clz) {
+    MessageType messageType = MESSAGE_TYPES.get(clz);
+    if (null == messageType) {
+      throw new IllegalArgumentException("Missing MessageType for " + clz.getName());
+    }
+    return messageType.getNumber();
+  }
+
   @Override public Request parseRequest(byte[] bytes) throws IOException {
     ByteString byteString = UnsafeByteOperations.unsafeWrap(bytes);
     CodedInputStream inputStream = byteString.newCodedInput();
@@ -425,10 +598,8 @@ ByteString getClassNameBytes(Class<?> clz) {
     inputStream.enableAliasing(true);
     WireMessage wireMsg = WireMessage.parseFrom(inputStream);
 
-    String serializedMessageClassName = wireMsg.getName();
-
     try {
-      RequestTranslator translator = getParserForRequest(serializedMessageClassName);
+      RequestTranslator translator = getParserForRequest(wireMsg);
 
       // The ByteString should be logical offsets into the original byte array
       return translator.transform(wireMsg.getWrappedMessage());
@@ -448,9 +619,8 @@ ByteString getClassNameBytes(Class<?> clz) {
     inputStream.enableAliasing(true);
     WireMessage wireMsg = WireMessage.parseFrom(inputStream);
 
-    String serializedMessageClassName = wireMsg.getName();
     try {
-      ResponseTranslator translator = getParserForResponse(serializedMessageClassName);
+      ResponseTranslator translator = getParserForResponse(wireMsg);
 
       return translator.transform(wireMsg.getWrappedMessage());
     } catch (RuntimeException e) {
@@ -30,10 +30,16 @@
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * Implementation of {@link org.apache.calcite.avatica.Meta} for the remote
@@ -42,7 +48,37 @@
 class RemoteMeta extends MetaImpl {
   final Service service;
   final Map<String, ConnectionPropertiesImpl> propsMap = new HashMap<>();
+  /** Ids of the connections whose properties were last sent along with
+   * another request, so the server's values of the properties that the
+   * client did not set have not been read back. */
+  private final Set<String> propsNotReadBack = ConcurrentHashMap.newKeySet();
   private Map<DatabaseProperty, Object> databaseProperties;
+  /** Number of signatures after which the one used least recently is no
+   * longer cached. */
+  private static final int MAX_CACHED_SIGNATURES = 100;
+  /** Signatures of the result sets of queries executed on this connection,
+   * keyed by SQL. The client names the signature it has for a query when it
+   * executes the query again, and the server leaves the signature out of the
+   * response if it has not changed. */
+  private final Map<String, CachedSignature> signatures =
+      Collections.synchronizedMap(
+          new LinkedHashMap<String, CachedSignature>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(
+                Map.Entry<String, CachedSignature> eldest) {
+              return size() > MAX_CACHED_SIGNATURES;
+            }
+          });
+
+  /** Source of the ids of deferred statements, which {@link #createStatement}
+   * hands out without a round trip if the server executes
+   * {@link Service.ExecuteDirectRequest}. They are negative, so that they
+   * never clash with the ids of server statements. */
+  private final AtomicInteger deferredStatementIds = new AtomicInteger();
+  /** Ids of the server statements of deferred statements, keyed by the ids of
+   * the deferred statements. A deferred statement gets a server statement when
+   * it first executes SQL, or first needs one otherwise, and loses it when the
+   * server closes it. */
+  private final Map<Integer, Integer> serverStatementIds = new ConcurrentHashMap<>();
 
   RemoteMeta(AvaticaConnection connection, Service service) {
     super(connection);
@@ -51,11 +87,16 @@ class RemoteMeta extends MetaImpl {
 
   private MetaResultSet toResultSet(Class clazz,
       Service.ResultSetResponse response) {
+    return toResultSet(clazz, response, response.signature);
+  }
+
+  private MetaResultSet toResultSet(Class clazz,
+      Service.ResultSetResponse response, Signature signature) {
     if (response.updateCount != -1) {
       return MetaResultSet.count(response.connectionId, response.statementId,
           response.updateCount);
     }
-    Signature signature0 = response.signature;
+    Signature signature0 = signature;
     if (signature0 == null) {
       final List<ColumnMetaData> columns =
           clazz == null
@@ -69,6 +110,41 @@ private MetaResultSet toResultSet(Class clazz,
         response.ownStatement, signature0, response.firstFrame);
   }
 
+  /** Returns the signature cached for the result set of a query, or null. */
+  private CachedSignature cachedSignature(String sql) {
+    return null == sql ? null : signatures.get(sql);
+  }
+
+  /** Returns the fingerprint of a cached signature, or 0 if there is none. */
+  private static long fingerprint(CachedSignature cached) {
+    return null == cached ? 0L : cached.fingerprint;
+  }
+
+  /**
+   * Returns the signature of a result set of a query, which the server left
+   * out if it is the one the client named, and caches it.
+   *
+   * @param response Response holding the result set
+   * @param sql SQL of the query, or null
+   * @param cached Signature that the client named in the request, or null
+   */
+  private Signature signature(Service.ResultSetResponse response, String sql,
+      CachedSignature cached) {
+    if (response.signatureCached) {
+      if (null == cached || cached.fingerprint != response.signatureFingerprint) {
+        throw new IllegalStateException("Server left out signature "
+            + response.signatureFingerprint + " on connection " + response.connectionId
+            + ", which the client did not name");
+      }
+      return cached.signature;
+    }
+    if (0L != response.signatureFingerprint && null != sql) {
+      signatures.put(sql,
+          new CachedSignature(response.signatureFingerprint, response.signature));
+    }
+    return response.signature;
+  }
+
   @Override public Map<DatabaseProperty, Object> getDatabaseProperties(ConnectionHandle ch) {
     synchronized (this) {
       // Compute map on first use, and cache
@@ -80,26 +156,139 @@ private MetaResultSet toResultSet(Class clazz,
     }
   }
 
+  /** Returns the properties of a connection as known locally, which are
+   * dirty until they have been synced with the server. */
+  private ConnectionPropertiesImpl localProperties(ConnectionHandle ch) {
+    ConnectionPropertiesImpl localProps = propsMap.get(ch.id);
+    if (localProps == null) {
+      localProps = new ConnectionPropertiesImpl();
+      localProps.setDirty(true);
+      propsMap.put(ch.id, localProps);
+    }
+    return localProps;
+  }
+
+  /** Returns the wire protocol version of the server, as it reported when the
+   * connection was opened. Over JSON, which carries neither the version nor
+   * the fields added since, every server counts as a legacy server. */
+  private int serverProtocolVersion() {
+    if (!(service instanceof AbstractService)) {
+      return Service.LEGACY_PROTOCOL_VERSION;
+    }
+    final AbstractService abstractService = (AbstractService) service;
+    return AbstractService.SerializationType.PROTOBUF == abstractService.getSerializationType()
+        ? abstractService.getServerProtocolVersion()
+        : Service.LEGACY_PROTOCOL_VERSION;
+  }
+
+  /**
+   * Sends a request, and the properties of the connection if they have
+   * changed. Servers of
+   * {@link Service#CONNECTION_PROPERTIES_PROTOCOL_VERSION} receive the
+   * properties inside the request, and servers that execute a
+   * {@link Service.MultiRequest} receive them in the same round trip; older
+   * servers receive them in a {@link Service.ConnectionSyncRequest} first.
+   *
+   * @param ch Connection the request is sent on
+   * @param requestFactory Creates the request, given the properties to send
+   *                       with it, or null
+   * @param expectedType Class of the response
+   * @return The response to the request
+   */
+  private <T extends Service.Response> T applyAfterSync(ConnectionHandle ch,
+      Function<ConnectionProperties, Service.Request> requestFactory, Class<T> expectedType) {
+    final ConnectionPropertiesImpl localProps = localProperties(ch);
+    if (!localProps.isDirty()) {
+      return expectedType.cast(requestFactory.apply(null).accept(service));
+    }
+    final int serverProtocolVersion = serverProtocolVersion();
+    if (serverProtocolVersion >= Service.CONNECTION_PROPERTIES_PROTOCOL_VERSION) {
+      final T response = expectedType.cast(requestFactory.apply(localProps).accept(service));
+      // The server applied the properties, but did not send back its values
+      // of those the client did not set; connectionSync fetches them if asked
+      localProps.setDirty(false);
+      propsNotReadBack.add(ch.id);
+      return response;
+    }
+    if (serverProtocolVersion < Service.MULTI_REQUEST_PROTOCOL_VERSION) {
+      connectionSync(ch, new ConnectionPropertiesImpl());
+      return expectedType.cast(requestFactory.apply(null).accept(service));
+    }
+    final Service.MultiResponse response =
+        service.apply(
+            new Service.MultiRequest(
+                Arrays.asList(new Service.ConnectionSyncRequest(ch.id, localProps),
+                    requestFactory.apply(null))));
+    final Service.ConnectionSyncResponse syncResponse =
+        response.get(0, Service.ConnectionSyncResponse.class);
+    propsMap.put(ch.id, (ConnectionPropertiesImpl) syncResponse.connProps);
+    propsNotReadBack.remove(ch.id);
+    return response.get(1, expectedType);
+  }
+
   @Override public StatementHandle createStatement(final ConnectionHandle ch) {
+    if (serverProtocolVersion() >= Service.EXECUTE_DIRECT_PROTOCOL_VERSION) {
+      // The server statement is created by the ExecuteDirectRequest that
+      // executes the first query, if any
+      return new StatementHandle(ch.id, deferredStatementIds.decrementAndGet(), null);
+    }
     return connection.invokeWithRetries(
         new CallableWithoutException<StatementHandle>() {
           public StatementHandle call() {
-            // sync connection state if necessary
-            connectionSync(ch, new ConnectionPropertiesImpl());
-            final Service.CreateStatementResponse response =
-                service.apply(new Service.CreateStatementRequest(ch.id));
-            return new StatementHandle(response.connectionId, response.statementId, null);
+            return createServerStatement(ch);
           }
         });
   }
 
+  private StatementHandle createServerStatement(final ConnectionHandle ch) {
+    final Service.CreateStatementResponse response =
+        applyAfterSync(ch,
+            connProps -> new Service.CreateStatementRequest(ch.id, connProps),
+            Service.CreateStatementResponse.class);
+    return new StatementHandle(response.connectionId, response.statementId, null);
+  }
+
+  /** Returns whether a statement is deferred and has no server statement. */
+  private boolean hasNoServerStatement(StatementHandle h) {
+    return h.id < 0 && !serverStatementIds.containsKey(h.id);
+  }
+
+  /** Returns the handle of the server statement of a statement; creates the
+   * server statement of a deferred statement that has none. */
+  private StatementHandle serverHandle(StatementHandle h) {
+    if (h.id >= 0) {
+      return h;
+    }
+    Integer id = serverStatementIds.get(h.id);
+    if (null == id) {
+      id = createServerStatement(new ConnectionHandle(h.connectionId)).id;
+      serverStatementIds.put(h.id, id);
+    }
+    return new StatementHandle(h.connectionId, id, h.signature);
+  }
+
+  /** Returns the exception for a statement that the server does not know,
+   * after forgetting its server statement if it is deferred. */
+  private RuntimeException missingStatement(StatementHandle h) {
+    if (h.id < 0) {
+      serverStatementIds.remove(h.id);
+    }
+    return new RuntimeException(new NoSuchStatementException(h));
+  }
+
   @Override public void closeStatement(final StatementHandle h) {
+    final Integer id = h.id < 0 ? serverStatementIds.remove(h.id) : Integer.valueOf(h.id);
+    if (null == id) {
+      // A deferred statement that never got a server statement, or whose
+      // server statement the server closed once it sent all the results
+      return;
+    }
     connection.invokeWithRetries(
         new CallableWithoutException<Void>() {
           public Void call() {
             final Service.CloseStatementResponse response =
                 service.apply(
-                    new Service.CloseStatementRequest(h.connectionId, h.id));
+                    new Service.CloseStatementRequest(h.connectionId, id));
             return null;
           }
         });
@@ -109,9 +298,11 @@ public Void call() {
     connection.invokeWithRetries(
         new CallableWithoutException<Void>() {
           public Void call() {
-            propsMap.get(ch.id).setDirty(true);
+            localProperties(ch).setDirty(true);
             final Service.OpenConnectionResponse response =
-                service.apply(new Service.OpenConnectionRequest(ch.id, info));
+                service.apply(
+                    new Service.OpenConnectionRequest(ch.id, info,
+                        connection.config().frameEncoding()));
             return null;
           }
         });
@@ -124,6 +315,8 @@ public Void call() {
             final Service.CloseConnectionResponse response =
                 service.apply(new Service.CloseConnectionRequest(ch.id));
             propsMap.remove(ch.id);
+            propsNotReadBack.remove(ch.id);
+            serverStatementIds.clear();
             return null;
           }
         });
@@ -134,21 +327,20 @@ public Void call() {
     return connection.invokeWithRetries(
         new CallableWithoutException<ConnectionProperties>() {
           public ConnectionProperties call() {
-            ConnectionPropertiesImpl localProps = propsMap.get(ch.id);
-            if (localProps == null) {
-              localProps = new ConnectionPropertiesImpl();
-              localProps.setDirty(true);
-              propsMap.put(ch.id, localProps);
-            }
+            final ConnectionPropertiesImpl localProps = localProperties(ch);
 
             // Only make an RPC if necessary. RPC is necessary when we have local changes that need
             // flushed to the server (be sure to introduce any new changes from connProps before
             // checking AND when connProps.isEmpty() (meaning, this was a request for a value, not
             // overriding a value). Otherwise, accumulate the change locally and return immediately.
-            if (localProps.merge(connProps).isDirty() && connProps.isEmpty()) {
+            // Properties sent along with another request are read back on the first request for
+            // a value.
+            if ((localProps.merge(connProps).isDirty() || propsNotReadBack.contains(ch.id))
+                && connProps.isEmpty()) {
               final Service.ConnectionSyncResponse response = service.apply(
                   new Service.ConnectionSyncRequest(ch.id, localProps));
               propsMap.put(ch.id, (ConnectionPropertiesImpl) response.connProps);
+              propsNotReadBack.remove(ch.id);
               return response.connProps;
             } else {
               return localProps;
@@ -236,10 +428,10 @@ public MetaResultSet call() {
     return connection.invokeWithRetries(
         new CallableWithoutException<StatementHandle>() {
           public StatementHandle call() {
-            connectionSync(ch,
-                new ConnectionPropertiesImpl()); // sync connection state if necessary
-            final Service.PrepareResponse response = service.apply(
-                new Service.PrepareRequest(ch.id, sql, maxRowCount));
+            final Service.PrepareResponse response =
+                applyAfterSync(ch,
+                    connProps -> new Service.PrepareRequest(ch.id, sql, maxRowCount, connProps),
+                    Service.PrepareResponse.class);
             return response.statement;
           }
         });
@@ -262,28 +454,25 @@ public StatementHandle call() {
       return connection.invokeWithRetries(
           new CallableWithoutException<ExecuteResult>() {
             public ExecuteResult call() {
-              // sync connection state if necessary
-              connectionSync(new ConnectionHandle(h.connectionId), new ConnectionPropertiesImpl());
-              final Service.ExecuteResponse response;
+              final List<Service.ResultSetResponse> results;
               try {
+                final CachedSignature cached = cachedSignature(sql);
                 synchronized (callback.getMonitor()) {
                   callback.clear();
-                  response = service.apply(
-                      new Service.PrepareAndExecuteRequest(h.connectionId,
-                          h.id, sql, maxRowCount));
-                  if (response.missingStatement) {
-                    throw new RuntimeException(new NoSuchStatementException(h));
-                  }
-                  if (response.results.size() > 0) {
-                    final Service.ResultSetResponse result = response.results.get(0);
-                    callback.assign(result.signature, result.firstFrame,
+                  results = hasNoServerStatement(h)
+                      ? executeDirect(h, sql, maxRowCount, cached)
+                      : prepareAndExecuteInServerStatement(h, sql, maxRowCount, cached);
+                  if (results.size() > 0) {
+                    final Service.ResultSetResponse result = results.get(0);
+                    callback.assign(signature(result, sql, cached), result.firstFrame,
                         result.updateCount);
                   }
                 }
                 callback.execute();
                 List<MetaResultSet> metaResultSets = new ArrayList<>();
-                for (Service.ResultSetResponse result : response.results) {
-                  metaResultSets.add(toResultSet(null, result));
+                for (Service.ResultSetResponse result : results) {
+                  metaResultSets.add(
+                      toResultSet(null, result, signature(result, sql, cached)));
                 }
                 return new ExecuteResult(metaResultSets);
               } catch (SQLException e) {
@@ -300,17 +489,50 @@ public ExecuteResult call() {
     }
   }
 
+  /** Prepares and executes a query in the server statement of a statement. */
+  private List<Service.ResultSetResponse> prepareAndExecuteInServerStatement(StatementHandle h,
+      String sql, long maxRowCount, CachedSignature cached) {
+    final StatementHandle sh = serverHandle(h);
+    final Service.ExecuteResponse response =
+        applyAfterSync(new ConnectionHandle(sh.connectionId),
+            connProps -> new Service.PrepareAndExecuteRequest(sh.connectionId, sh.id, sql,
+                maxRowCount, AvaticaUtils.toSaturatedInt(maxRowCount), connProps,
+                fingerprint(cached)),
+            Service.ExecuteResponse.class);
+    if (response.missingStatement) {
+      throw missingStatement(h);
+    }
+    return response.results;
+  }
+
+  /** Creates a server statement for a deferred statement, and prepares and
+   * executes a query in it, in one round trip. The server closes the
+   * statement if the response holds all the results. */
+  private List<Service.ResultSetResponse> executeDirect(StatementHandle h, String sql,
+      long maxRowCount, CachedSignature cached) {
+    final Service.ExecuteDirectResponse response =
+        applyAfterSync(new ConnectionHandle(h.connectionId),
+            connProps -> new Service.ExecuteDirectRequest(h.connectionId, sql, maxRowCount,
+                AvaticaUtils.toSaturatedInt(maxRowCount), true, connProps, fingerprint(cached)),
+            Service.ExecuteDirectResponse.class);
+    if (!response.statementClosed) {
+      serverStatementIds.put(h.id, response.statementId);
+    }
+    return response.results;
+  }
+
   @Override public Frame fetch(final StatementHandle h, final long offset,
       final int fetchMaxRowCount) throws NoSuchStatementException, MissingResultsException {
     try {
       return connection.invokeWithRetries(
           new CallableWithoutException<Frame>() {
             public Frame call() {
+              final StatementHandle sh = serverHandle(h);
               final Service.FetchResponse response =
                   service.apply(
-                      new Service.FetchRequest(h.connectionId, h.id, offset, fetchMaxRowCount));
+                      new Service.FetchRequest(sh.connectionId, sh.id, offset, fetchMaxRowCount));
               if (response.missingStatement) {
-                throw new RuntimeException(new NoSuchStatementException(h));
+                throw missingStatement(h);
               }
               if (response.missingResults) {
                 throw new RuntimeException(new MissingResultsException(h));
@@ -342,8 +564,11 @@ public Frame call() {
       return connection.invokeWithRetries(
           new CallableWithoutException<ExecuteResult>() {
             public ExecuteResult call() {
+              final String sql = null == h.signature ? null : h.signature.sql;
+              final CachedSignature cached = cachedSignature(sql);
               final Service.ExecuteResponse response = service.apply(
-                  new Service.ExecuteRequest(h, parameterValues, maxRowsInFirstFrame));
+                  new Service.ExecuteRequest(h, parameterValues, maxRowsInFirstFrame,
+                      fingerprint(cached)));
 
               if (response.missingStatement) {
                 throw new RuntimeException(new NoSuchStatementException(h));
@@ -351,7 +576,8 @@ public ExecuteResult call() {
 
               List<MetaResultSet> metaResultSets = new ArrayList<>();
               for (Service.ResultSetResponse result : response.results) {
-                metaResultSets.add(toResultSet(null, result));
+                metaResultSets.add(
+                    toResultSet(null, result, signature(result, sql, cached)));
               }
 
               return new ExecuteResult(metaResultSets);
@@ -372,11 +598,12 @@ public ExecuteResult call() {
       return connection.invokeWithRetries(
           new CallableWithoutException<Boolean>() {
             public Boolean call() {
+              final StatementHandle sh = serverHandle(h);
               final Service.SyncResultsResponse response =
                   service.apply(
-                      new Service.SyncResultsRequest(h.connectionId, h.id, state, offset));
+                      new Service.SyncResultsRequest(sh.connectionId, sh.id, state, offset));
               if (response.missingStatement) {
-                throw new RuntimeException(new NoSuchStatementException(h));
+                throw missingStatement(h);
               }
               return response.moreResults;
             }
@@ -414,9 +641,10 @@ public Void call() {
       final List<String> sqlCommands) throws NoSuchStatementException {
     return connection.invokeWithRetries(new CallableWithoutException<ExecuteBatchResult>() {
       @Override public ExecuteBatchResult call() {
+        final StatementHandle sh = serverHandle(h);
         Service.ExecuteBatchResponse response =
             service.apply(
-                new Service.PrepareAndExecuteBatchRequest(h.connectionId, h.id, sqlCommands));
+                new Service.PrepareAndExecuteBatchRequest(sh.connectionId, sh.id, sqlCommands));
         return new ExecuteBatchResult(response.updateCounts);
       }
     });
@@ -432,6 +660,17 @@ public Void call() {
       }
     });
   }
+
+  /** Signature of a result set, and the fingerprint the server assigned it. */
+  private static class CachedSignature {
+    final long fingerprint;
+    final Signature signature;
+
+    CachedSignature(long fingerprint, Signature signature) {
+      this.fingerprint = fingerprint;
+      this.signature = signature;
+    }
+  }
 }
 
 // End RemoteMeta.java
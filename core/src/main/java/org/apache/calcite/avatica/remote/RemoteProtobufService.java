@@ -22,12 +22,15 @@
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 /**
  * ProtobufService implementation that queries against a remote implementation, using
  * protocol buffers as the serialized form.
  */
-public class RemoteProtobufService extends ProtobufService {
+public class RemoteProtobufService extends ProtobufService implements AsyncService {
   private static final Logger LOG = LoggerFactory.getLogger(RemoteProtobufService.class);
 
   private final AvaticaHttpClient client;
@@ -38,11 +41,18 @@ public RemoteProtobufService(AvaticaHttpClient client, ProtobufTranslation trans
     this.translation = translation;
   }
 
+  /** Returns whether requests may leave out their class name, because the
+   * server reported, when the connection was opened, a protocol version whose
+   * servers all identify messages by type id. */
+  private boolean typeIdOnly() {
+    return getServerProtocolVersion() >= TYPE_ID_PROTOCOL_VERSION;
+  }
+
   @Override public Response _apply(Request request) {
     final Response resp;
     byte[] response = null;
     try {
-      response = client.send(translation.serializeRequest(request));
+      response = client.send(translation.serializeRequest(request, typeIdOnly()));
     } catch (IOException e) {
       LOG.debug("Failed to execute remote request: {}", request);
       // Failed to get a response from the server for the request.
@@ -65,6 +75,35 @@ public RemoteProtobufService(AvaticaHttpClient client, ProtobufTranslation trans
 
     return resp;
   }
+
+  @Override public <T extends Response> CompletableFuture<T> applyAsync(final Request request,
+      final Class<T> responseType, Executor executor) {
+    final byte[] serialized;
+    try {
+      serialized = translation.serializeRequest(request, typeIdOnly());
+    } catch (IOException e) {
+      LOG.debug("Failed to serialize request: {}", request);
+      final CompletableFuture<T> failed = new CompletableFuture<>();
+      failed.completeExceptionally(new RuntimeException(e));
+      return failed;
+    }
+    return client.sendAsync(serialized, executor).thenApply(new Function<byte[], T>() {
+      @Override public T apply(byte[] response) {
+        final Response resp;
+        try {
+          resp = translation.parseResponse(response);
+        } catch (IOException e) {
+          LOG.debug("Failed to deserialize reponse to {}. '{}'", request,
+              AvaticaUtils.newStringUtf8(response));
+          throw new RuntimeException(e);
+        }
+        if (resp instanceof ErrorResponse) {
+          throw ((ErrorResponse) resp).toException();
+        }
+        return responseType.cast(finagleResponse(resp));
+      }
+    });
+  }
 }
 
 // End RemoteProtobufService.java
@@ -18,14 +18,21 @@
 
 import org.apache.calcite.avatica.AvaticaUtils;
 
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 /**
  * Implementation of {@link org.apache.calcite.avatica.remote.Service}
  * that translates requests into JSON and sends them to a remote server,
  * usually an HTTP server.
  */
-public class RemoteService extends JsonService {
+public class RemoteService extends JsonService implements AsyncService {
   private final AvaticaHttpClient client;
 
   public RemoteService(AvaticaHttpClient client) {
@@ -36,6 +43,43 @@ public RemoteService(AvaticaHttpClient client) {
     byte[] response = client.send(request.getBytes(StandardCharsets.UTF_8));
     return AvaticaUtils.newStringUtf8(response);
   }
+
+  @Override protected <T> T call(Request request, Class<T> expectedType) throws IOException {
+    // Jackson writes UTF-8 bytes, and reads the response straight from the client's stream
+    final ObjectReader reader = responseReader(request);
+    final Response response = client.send(writer(request).writeValueAsBytes(request),
+        new AvaticaHttpClient.ResponseReader<Response>() {
+          @Override public Response read(InputStream in) throws IOException {
+            return reader.readValue(in);
+          }
+        });
+    received(request, response);
+    return checkResponse(response, expectedType);
+  }
+
+  @Override public <T extends Response> CompletableFuture<T> applyAsync(final Request request,
+      final Class<T> responseType, Executor executor) {
+    final ObjectReader reader = responseReader(request);
+    final byte[] bytes;
+    try {
+      bytes = writer(request).writeValueAsBytes(request);
+    } catch (IOException e) {
+      final CompletableFuture<T> failed = new CompletableFuture<>();
+      failed.completeExceptionally(handle(e));
+      return failed;
+    }
+    return client.sendAsync(bytes, executor).thenApply(new Function<byte[], T>() {
+      @Override public T apply(byte[] json) {
+        try {
+          final Response response = reader.readValue(json);
+          received(request, response);
+          return responseType.cast(finagleResponse(checkResponse(response, responseType)));
+        } catch (IOException e) {
+          throw handle(e);
+        }
+      }
+    });
+  }
 }
 
 // End RemoteService.java
@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.ConnectionConfig;
+
+/**
+ * Allows an HTTP client that is not given a pool to be given the connection
+ * config, from which it reads how to retry requests to a server that is
+ * unavailable, and when to stop sending them.
+ */
+public interface RetryConfigurable {
+  /**
+   * Sets the config of the connection, whose {@code http_retry_*} and
+   * {@code http_circuit_breaker_*} properties the client applies.
+   *
+   * @param config The connection config
+   */
+  void setRetryConfig(ConnectionConfig config);
+}
+
+// End RetryConfigurable.java
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.ConnectionConfig;
+
+/**
+ * Decides whether, and after how long, an HTTP client sends a request again
+ * when the server is unavailable: when it answers HTTP/503, or closes the
+ * connection without a response.
+ *
+ * <p>Chosen with the {@code http_retry_policy} connection property. The
+ * default is {@link ExponentialBackoffRetryPolicy}.
+ */
+public interface RetryPolicy {
+  /**
+   * Returns how long to wait before sending a request again.
+   *
+   * @param config The configuration of the connection
+   * @param attempts The number of times the request has been sent, at least 1
+   * @param elapsedMillis Milliseconds since the request was first sent
+   * @param retryAfterMillis Milliseconds that the server asked the client to
+   *     wait with a {@code Retry-After} header, or -1
+   * @return Milliseconds to wait before sending the request again, or a
+   *     negative value to fail the request
+   */
+  long retryDelay(ConnectionConfig config, int attempts, long elapsedMillis,
+      long retryAfterMillis);
+}
+
+// End RetryPolicy.java
@@ -57,6 +57,39 @@
  * API for request-response calls to an Avatica server.
  */
 public interface Service {
+  /** Wire protocol version of clients and servers which predate the version handshake. */
+  int LEGACY_PROTOCOL_VERSION = 0;
+
+  /** First wire protocol version whose peers read neither the deprecated
+   * {@code ColumnValue.value} copy of each column nor the Base64 {@code string_value} copy of
+   * each byte string, so those are omitted once the client has advertised it. */
+  int COMPACT_VALUES_PROTOCOL_VERSION = 1;
+
+  /** First wire protocol version whose clients cache the signatures of result sets by the
+   * fingerprint the server sends with them, and name the signature they have when they execute
+   * a query again, so that the server only sends the fingerprint if it is unchanged. */
+  int SIGNATURE_FINGERPRINT_PROTOCOL_VERSION = 2;
+
+  /** First wire protocol version whose servers execute a {@link MultiRequest}, so that clients
+   * may send several requests in one round trip. */
+  int MULTI_REQUEST_PROTOCOL_VERSION = 3;
+
+  /** First wire protocol version whose servers all parse a {@code WireMessage} identified by
+   * its type id alone, so that clients may leave out the class name in the requests of the
+   * connections whose server reported it. */
+  int TYPE_ID_PROTOCOL_VERSION = 3;
+
+  /** First wire protocol version whose servers apply the connection properties carried by a
+   * {@link CreateStatementRequest}, {@link PrepareRequest} or {@link PrepareAndExecuteRequest},
+   * so that clients need not send a {@link ConnectionSyncRequest} before them. */
+  int CONNECTION_PROPERTIES_PROTOCOL_VERSION = 4;
+
+  /** First wire protocol version whose servers execute an {@link ExecuteDirectRequest}. */
+  int EXECUTE_DIRECT_PROTOCOL_VERSION = 5;
+
+  /** Wire protocol version spoken by this code. */
+  int PROTOCOL_VERSION = 5;
+
   ResultSetResponse apply(CatalogsRequest request);
   ResultSetResponse apply(SchemasRequest request);
   ResultSetResponse apply(TablesRequest request);
@@ -78,6 +111,8 @@ public interface Service {
   RollbackResponse apply(RollbackRequest request);
   ExecuteBatchResponse apply(PrepareAndExecuteBatchRequest request);
   ExecuteBatchResponse apply(ExecuteBatchRequest request);
+  ExecuteDirectResponse apply(ExecuteDirectRequest request);
+  MultiResponse apply(MultiRequest request);
 
   /**
    * Sets server-level metadata for RPCs. This includes information that is static across all RPCs.
@@ -144,7 +179,9 @@ protected static int p(int result, long v) {
       @JsonSubTypes.Type(value = RollbackRequest.class, name = "rollback"),
       @JsonSubTypes.Type(value = PrepareAndExecuteBatchRequest.class,
           name = "prepareAndExecuteBatch"),
-      @JsonSubTypes.Type(value = ExecuteBatchRequest.class, name = "executeBatch") })
+      @JsonSubTypes.Type(value = ExecuteBatchRequest.class, name = "executeBatch"),
+      @JsonSubTypes.Type(value = ExecuteDirectRequest.class, name = "executeDirect"),
+      @JsonSubTypes.Type(value = MultiRequest.class, name = "multi") })
   abstract class Request extends Base {
     abstract Response accept(Service service);
     abstract Request deserialize(Message genericMsg);
@@ -174,7 +211,9 @@ abstract class Request extends Base {
       @JsonSubTypes.Type(value = RpcMetadataResponse.class, name = "rpcMetadata"),
       @JsonSubTypes.Type(value = CommitResponse.class, name = "commit"),
       @JsonSubTypes.Type(value = RollbackResponse.class, name = "rollback"),
-      @JsonSubTypes.Type(value = ExecuteBatchResponse.class, name = "executeBatch") })
+      @JsonSubTypes.Type(value = ExecuteBatchResponse.class, name = "executeBatch"),
+      @JsonSubTypes.Type(value = ExecuteDirectResponse.class, name = "executeDirect"),
+      @JsonSubTypes.Type(value = MultiResponse.class, name = "multi") })
   abstract class Response extends Base {
     abstract Response deserialize(Message genericMsg);
     abstract Message serialize();
@@ -788,6 +827,13 @@ class ResultSetResponse extends Response {
     public final Meta.Frame firstFrame;
     public final long updateCount;
     public final RpcMetadataResponse rpcMetadata;
+    /** Fingerprint of the signature, or 0. Only sent in protobuf, to clients which cache
+     * signatures by fingerprint. */
+    @JsonIgnore public final long signatureFingerprint;
+    /** Whether the client already has the signature, which is then left out of the protobuf
+     * message; after deserialization {@link #signature} is null and must be looked up by
+     * {@link #signatureFingerprint}. */
+    @JsonIgnore public final boolean signatureCached;
 
     ResultSetResponse() {
       connectionId = null;
@@ -797,6 +843,8 @@ class ResultSetResponse extends Response {
       firstFrame = null;
       updateCount = 0;
       rpcMetadata = null;
+      signatureFingerprint = 0L;
+      signatureCached = false;
     }
 
     @JsonCreator
@@ -808,6 +856,13 @@ public ResultSetResponse(
         @JsonProperty("firstFrame") Meta.Frame firstFrame,
         @JsonProperty("updateCount") long updateCount,
         @JsonProperty("rpcMetadata") RpcMetadataResponse rpcMetadata) {
+      this(connectionId, statementId, ownStatement, signature, firstFrame, updateCount,
+          rpcMetadata, 0L, false);
+    }
+
+    public ResultSetResponse(String connectionId, int statementId, boolean ownStatement,
+        Meta.Signature signature, Meta.Frame firstFrame, long updateCount,
+        RpcMetadataResponse rpcMetadata, long signatureFingerprint, boolean signatureCached) {
       this.connectionId = connectionId;
       this.statementId = statementId;
       this.ownStatement = ownStatement;
@@ -815,6 +870,18 @@ public ResultSetResponse(
       this.firstFrame = firstFrame;
       this.updateCount = updateCount;
       this.rpcMetadata = rpcMetadata;
+      this.signatureFingerprint = signatureFingerprint;
+      this.signatureCached = signatureCached;
+    }
+
+    /** Returns a copy of this response carrying the fingerprint of its signature.
+     *
+     * @param fingerprint Fingerprint of the signature
+     * @param cached Whether the client already has the signature
+     */
+    public ResultSetResponse withSignatureFingerprint(long fingerprint, boolean cached) {
+      return new ResultSetResponse(connectionId, statementId, ownStatement, signature,
+          firstFrame, updateCount, rpcMetadata, fingerprint, cached);
     }
 
     @Override ResultSetResponse deserialize(Message genericMsg) {
@@ -845,8 +912,10 @@ static ResultSetResponse fromProto(Responses.ResultSetResponse msg) {
         metadata = RpcMetadataResponse.fromProto(msg.getMetadata());
       }
 
+      final long fingerprint = msg.getSignatureFingerprint();
       return new ResultSetResponse(connectionId, msg.getStatementId(), msg.getOwnStatement(),
-          signature, frame, msg.getUpdateCount(), metadata);
+          signature, frame, msg.getUpdateCount(), metadata, fingerprint,
+          null == signature && 0L != fingerprint);
     }
 
     @Override Responses.ResultSetResponse serialize() {
@@ -858,10 +927,14 @@ static ResultSetResponse fromProto(Responses.ResultSetResponse msg) {
         builder.setConnectionId(connectionId);
       }
 
-      if (null != signature) {
+      if (null != signature && !signatureCached) {
         builder.setSignature(signature.toProto());
       }
 
+      if (0L != signatureFingerprint) {
+        builder.setSignatureFingerprint(signatureFingerprint);
+      }
+
       if (null != firstFrame) {
         builder.setFirstFrame(firstFrame.toProto());
       }
@@ -882,6 +955,8 @@ static ResultSetResponse fromProto(Responses.ResultSetResponse msg) {
       result = p(result, statementId);
       result = p(result, updateCount);
       result = p(result, rpcMetadata);
+      result = p(result, signatureFingerprint);
+      result = p(result, signatureCached);
       return result;
     }
 
@@ -891,6 +966,8 @@ static ResultSetResponse fromProto(Responses.ResultSetResponse msg) {
           && statementId == ((ResultSetResponse) o).statementId
           && ownStatement == ((ResultSetResponse) o).ownStatement
           && updateCount == ((ResultSetResponse) o).updateCount
+          && signatureFingerprint == ((ResultSetResponse) o).signatureFingerprint
+          && signatureCached == ((ResultSetResponse) o).signatureCached
           && Objects.equals(connectionId, ((ResultSetResponse) o).connectionId)
           && Objects.equals(firstFrame, ((ResultSetResponse) o).firstFrame)
           && Objects.equals(signature, ((ResultSetResponse) o).signature)
@@ -914,12 +991,21 @@ class PrepareAndExecuteRequest extends Request {
     private static final FieldDescriptor FIRST_FRAME_MAX_SIZE_DESCRIPTOR = Requests.
         PrepareAndExecuteRequest.getDescriptor().findFieldByNumber(
             Requests.PrepareAndExecuteRequest.FIRST_FRAME_MAX_SIZE_FIELD_NUMBER);
+    private static final FieldDescriptor CONN_PROPS_DESCRIPTOR = Requests.
+        PrepareAndExecuteRequest.getDescriptor().findFieldByNumber(
+            Requests.PrepareAndExecuteRequest.CONN_PROPS_FIELD_NUMBER);
 
     public final String connectionId;
     public final String sql;
     public final long maxRowCount;
     public final int maxRowsInFirstFrame;
     public final int statementId;
+    /** Properties of the connection to apply before the request, or null if they have not
+     * changed. Only applies to protobuf. */
+    @JsonIgnore public final Meta.ConnectionProperties connProps;
+    /** Fingerprint of a signature that the client has, and that the server leaves out of the
+     * response, or 0. Only applies to protobuf. */
+    @JsonIgnore public final long cachedSignatureFingerprint;
 
     PrepareAndExecuteRequest() {
       connectionId = null;
@@ -927,6 +1013,8 @@ class PrepareAndExecuteRequest extends Request {
       maxRowCount = 0;
       maxRowsInFirstFrame = 0;
       statementId = 0;
+      connProps = null;
+      cachedSignatureFingerprint = 0L;
     }
 
     public PrepareAndExecuteRequest(String connectionId, int statementId, String sql,
@@ -941,11 +1029,24 @@ public PrepareAndExecuteRequest(
         @JsonProperty("sql") String sql,
         @JsonProperty("maxRowsTotal") long maxRowCount,
         @JsonProperty("maxRowsInFirstFrame") int maxRowsInFirstFrame) {
+      this(connectionId, statementId, sql, maxRowCount, maxRowsInFirstFrame, null);
+    }
+
+    public PrepareAndExecuteRequest(String connectionId, int statementId, String sql,
+        long maxRowCount, int maxRowsInFirstFrame, Meta.ConnectionProperties connProps) {
+      this(connectionId, statementId, sql, maxRowCount, maxRowsInFirstFrame, connProps, 0L);
+    }
+
+    public PrepareAndExecuteRequest(String connectionId, int statementId, String sql,
+        long maxRowCount, int maxRowsInFirstFrame, Meta.ConnectionProperties connProps,
+        long cachedSignatureFingerprint) {
       this.connectionId = connectionId;
       this.statementId = statementId;
       this.sql = sql;
       this.maxRowCount = maxRowCount;
       this.maxRowsInFirstFrame = maxRowsInFirstFrame;
+      this.connProps = connProps;
+      this.cachedSignatureFingerprint = cachedSignatureFingerprint;
     }
 
     @Override ExecuteResponse accept(Service service) {
@@ -978,8 +1079,13 @@ public PrepareAndExecuteRequest(
         maxRowsInFirstFrame = msg.getFirstFrameMaxSize();
       }
 
+      Meta.ConnectionProperties connProps = null;
+      if (msg.hasField(CONN_PROPS_DESCRIPTOR)) {
+        connProps = ConnectionPropertiesImpl.fromProto(msg.getConnProps());
+      }
+
       return new PrepareAndExecuteRequest(connectionId, msg.getStatementId(), sql,
-          maxRowsTotal, maxRowsInFirstFrame);
+          maxRowsTotal, maxRowsInFirstFrame, connProps, msg.getCachedSignatureFingerprint());
     }
 
     @Override Requests.PrepareAndExecuteRequest serialize() {
@@ -996,13 +1102,21 @@ public PrepareAndExecuteRequest(
       // Set both attributes for backwards compat
       builder.setMaxRowCount(maxRowCount).setMaxRowsTotal(maxRowCount);
       builder.setFirstFrameMaxSize(maxRowsInFirstFrame);
+      if (null != connProps) {
+        builder.setConnProps(connProps.toProto());
+      }
+      if (0L != cachedSignatureFingerprint) {
+        builder.setCachedSignatureFingerprint(cachedSignatureFingerprint);
+      }
 
       return builder.build();
     }
 
     @Override public int hashCode() {
       int result = 1;
+      result = p(result, cachedSignatureFingerprint);
       result = p(result, connectionId);
+      result = p(result, connProps);
       result = p(result, maxRowCount);
       result = p(result, maxRowsInFirstFrame);
       result = p(result, sql);
@@ -1016,8 +1130,11 @@ public PrepareAndExecuteRequest(
           && statementId == ((PrepareAndExecuteRequest) o).statementId
           && maxRowCount == ((PrepareAndExecuteRequest) o).maxRowCount
           && maxRowsInFirstFrame == ((PrepareAndExecuteRequest) o).maxRowsInFirstFrame
+          && cachedSignatureFingerprint
+              == ((PrepareAndExecuteRequest) o).cachedSignatureFingerprint
           && Objects.equals(connectionId, ((PrepareAndExecuteRequest) o).connectionId)
-          && Objects.equals(sql, ((PrepareAndExecuteRequest) o).sql);
+          && Objects.equals(sql, ((PrepareAndExecuteRequest) o).sql)
+          && Objects.equals(connProps, ((PrepareAndExecuteRequest) o).connProps);
     }
   }
 
@@ -1035,11 +1152,15 @@ class ExecuteRequest extends Request {
     public final Meta.StatementHandle statementHandle;
     public final List<TypedValue> parameterValues;
     public final int maxRowCount;
+    /** Fingerprint of a signature that the client has, and that the server leaves out of the
+     * response, or 0. Only applies to protobuf. */
+    @JsonIgnore public final long cachedSignatureFingerprint;
 
     ExecuteRequest() {
       statementHandle = null;
       parameterValues = null;
       maxRowCount = 0;
+      cachedSignatureFingerprint = 0L;
     }
 
     @JsonCreator
@@ -1047,9 +1168,15 @@ public ExecuteRequest(
         @JsonProperty("statementHandle") Meta.StatementHandle statementHandle,
         @JsonProperty("parameterValues") List<TypedValue> parameterValues,
         @JsonProperty("maxRowCount") int maxRowCount) {
+      this(statementHandle, parameterValues, maxRowCount, 0L);
+    }
+
+    public ExecuteRequest(Meta.StatementHandle statementHandle,
+        List<TypedValue> parameterValues, int maxRowCount, long cachedSignatureFingerprint) {
       this.statementHandle = statementHandle;
       this.parameterValues = parameterValues;
       this.maxRowCount = maxRowCount;
+      this.cachedSignatureFingerprint = cachedSignatureFingerprint;
     }
 
     @Override ExecuteResponse accept(Service service) {
@@ -1086,7 +1213,8 @@ public ExecuteRequest(
         maxFrameSize = (int) msg.getDeprecatedFirstFrameMaxSize();
       }
 
-      return new ExecuteRequest(statementHandle, values, maxFrameSize);
+      return new ExecuteRequest(statementHandle, values, maxFrameSize,
+          msg.getCachedSignatureFingerprint());
     }
 
     @Override Requests.ExecuteRequest serialize() {
@@ -1113,6 +1241,10 @@ public ExecuteRequest(
       builder.setDeprecatedFirstFrameMaxSize(maxRowCount);
       builder.setFirstFrameMaxSize(maxRowCount);
 
+      if (0L != cachedSignatureFingerprint) {
+        builder.setCachedSignatureFingerprint(cachedSignatureFingerprint);
+      }
+
       return builder.build();
     }
 
@@ -1121,6 +1253,7 @@ public ExecuteRequest(
       result = p(result, statementHandle);
       result = p(result, parameterValues);
       result = p(result, maxRowCount);
+      result = p(result, cachedSignatureFingerprint);
       return result;
     }
 
@@ -1128,6 +1261,7 @@ public ExecuteRequest(
       return o == this
           || o instanceof ExecuteRequest
           && maxRowCount == ((ExecuteRequest) o).maxRowCount
+          && cachedSignatureFingerprint == ((ExecuteRequest) o).cachedSignatureFingerprint
           && Objects.equals(statementHandle, ((ExecuteRequest) o).statementHandle)
           && Objects.equals(parameterValues, ((ExecuteRequest) o).parameterValues);
     }
@@ -1215,15 +1349,21 @@ class PrepareRequest extends Request {
         getDescriptor().findFieldByNumber(Requests.PrepareRequest.SQL_FIELD_NUMBER);
     private static final FieldDescriptor MAX_ROWS_TOTAL_DESCRIPTOR = Requests.PrepareRequest.
         getDescriptor().findFieldByNumber(Requests.PrepareRequest.MAX_ROWS_TOTAL_FIELD_NUMBER);
+    private static final FieldDescriptor CONN_PROPS_DESCRIPTOR = Requests.PrepareRequest.
+        getDescriptor().findFieldByNumber(Requests.PrepareRequest.CONN_PROPS_FIELD_NUMBER);
 
     public final String connectionId;
     public final String sql;
     public final long maxRowCount;
+    /** Properties of the connection to apply before the request, or null if they have not
+     * changed. Only applies to protobuf. */
+    @JsonIgnore public final Meta.ConnectionProperties connProps;
 
     PrepareRequest() {
       connectionId = null;
       sql = null;
       maxRowCount = 0;
+      connProps = null;
     }
 
     @JsonCreator
@@ -1231,9 +1371,15 @@ public PrepareRequest(
         @JsonProperty("connectionId") String connectionId,
         @JsonProperty("sql") String sql,
         @JsonProperty("maxRowCount") long maxRowCount) {
+      this(connectionId, sql, maxRowCount, null);
+    }
+
+    public PrepareRequest(String connectionId, String sql, long maxRowCount,
+        Meta.ConnectionProperties connProps) {
       this.connectionId = connectionId;
       this.sql = sql;
       this.maxRowCount = maxRowCount;
+      this.connProps = connProps;
     }
 
     @Override PrepareResponse accept(Service service) {
@@ -1260,7 +1406,12 @@ public PrepareRequest(
         totalRowsForStatement = msg.getMaxRowsTotal();
       }
 
-      return new PrepareRequest(connectionId, sql, totalRowsForStatement);
+      Meta.ConnectionProperties connProps = null;
+      if (msg.hasField(CONN_PROPS_DESCRIPTOR)) {
+        connProps = ConnectionPropertiesImpl.fromProto(msg.getConnProps());
+      }
+
+      return new PrepareRequest(connectionId, sql, totalRowsForStatement, connProps);
     }
 
     @Override Requests.PrepareRequest serialize() {
@@ -1274,6 +1425,10 @@ public PrepareRequest(
         builder.setSql(sql);
       }
 
+      if (null != connProps) {
+        builder.setConnProps(connProps.toProto());
+      }
+
       // Set both field for backwards compatibility
       return builder.setMaxRowCount(maxRowCount).setMaxRowsTotal(maxRowCount).build();
     }
@@ -1281,6 +1436,7 @@ public PrepareRequest(
     @Override public int hashCode() {
       int result = 1;
       result = p(result, connectionId);
+      result = p(result, connProps);
       result = p(result, maxRowCount);
       result = p(result, sql);
       return result;
@@ -1291,7 +1447,8 @@ public PrepareRequest(
           || o instanceof PrepareRequest
           && maxRowCount == ((PrepareRequest) o).maxRowCount
           && Objects.equals(connectionId, ((PrepareRequest) o).connectionId)
-          && Objects.equals(sql, ((PrepareRequest) o).sql);
+          && Objects.equals(sql, ((PrepareRequest) o).sql)
+          && Objects.equals(connProps, ((PrepareRequest) o).connProps);
     }
   }
 
@@ -1523,16 +1680,27 @@ class CreateStatementRequest extends Request {
     private static final FieldDescriptor CONNECTION_ID_DESCRIPTOR = Requests.CreateStatementRequest.
         getDescriptor().findFieldByNumber(
             Requests.CreateStatementRequest.CONNECTION_ID_FIELD_NUMBER);
+    private static final FieldDescriptor CONN_PROPS_DESCRIPTOR = Requests.CreateStatementRequest.
+        getDescriptor().findFieldByNumber(Requests.CreateStatementRequest.CONN_PROPS_FIELD_NUMBER);
     public final String connectionId;
+    /** Properties of the connection to apply before the request, or null if they have not
+     * changed. Only applies to protobuf. */
+    @JsonIgnore public final Meta.ConnectionProperties connProps;
 
     CreateStatementRequest() {
       connectionId = null;
+      connProps = null;
     }
 
     @JsonCreator
     public CreateStatementRequest(
         @JsonProperty("signature") String connectionId) {
+      this(connectionId, null);
+    }
+
+    public CreateStatementRequest(String connectionId, Meta.ConnectionProperties connProps) {
       this.connectionId = connectionId;
+      this.connProps = connProps;
     }
 
     @Override CreateStatementResponse accept(Service service) {
@@ -1548,7 +1716,12 @@ public CreateStatementRequest(
         connectionId = msg.getConnectionId();
       }
 
-      return new CreateStatementRequest(connectionId);
+      Meta.ConnectionProperties connProps = null;
+      if (msg.hasField(CONN_PROPS_DESCRIPTOR)) {
+        connProps = ConnectionPropertiesImpl.fromProto(msg.getConnProps());
+      }
+
+      return new CreateStatementRequest(connectionId, connProps);
     }
 
     @Override Requests.CreateStatementRequest serialize() {
@@ -1559,19 +1732,25 @@ public CreateStatementRequest(
         builder.setConnectionId(connectionId);
       }
 
+      if (null != connProps) {
+        builder.setConnProps(connProps.toProto());
+      }
+
       return builder.build();
     }
 
     @Override public int hashCode() {
       int result = 1;
       result = p(result, connectionId);
+      result = p(result, connProps);
       return result;
     }
 
     @Override public boolean equals(Object o) {
       return o == this
           || o instanceof CreateStatementRequest
-          && Objects.equals(connectionId, ((CreateStatementRequest) o).connectionId);
+          && Objects.equals(connectionId, ((CreateStatementRequest) o).connectionId)
+          && Objects.equals(connProps, ((CreateStatementRequest) o).connProps);
     }
   }
 
@@ -1778,17 +1957,43 @@ class OpenConnectionRequest extends Request {
             Requests.OpenConnectionRequest.CONNECTION_ID_FIELD_NUMBER);
     public final String connectionId;
     public final Map<String, String> info;
+    /** Frame layout the client accepts in responses. Only applies to protobuf, so it is not
+     * part of the JSON message. */
+    @JsonIgnore public final Meta.FrameEncoding frameEncoding;
+    /** Wire protocol version of the client. Only applies to protobuf; JSON messages do not
+     * carry it, so a request read from JSON reports {@link #LEGACY_PROTOCOL_VERSION}. */
+    @JsonIgnore public final int protocolVersion;
 
     public OpenConnectionRequest() {
       connectionId = null;
       info = null;
+      frameEncoding = Meta.FrameEncoding.ROW;
+      protocolVersion = PROTOCOL_VERSION;
     }
 
+    public OpenConnectionRequest(String connectionId, Map<String, String> info) {
+      this(connectionId, info, Meta.FrameEncoding.ROW);
+    }
+
+    /** Creates a request read from JSON, which clients of every version send alike. */
     @JsonCreator
-    public OpenConnectionRequest(@JsonProperty("connectionId") String connectionId,
+    static OpenConnectionRequest fromJson(@JsonProperty("connectionId") String connectionId,
         @JsonProperty("info") Map<String, String> info) {
+      return new OpenConnectionRequest(connectionId, info, Meta.FrameEncoding.ROW,
+          LEGACY_PROTOCOL_VERSION);
+    }
+
+    public OpenConnectionRequest(String connectionId, Map<String, String> info,
+        Meta.FrameEncoding frameEncoding) {
+      this(connectionId, info, frameEncoding, PROTOCOL_VERSION);
+    }
+
+    public OpenConnectionRequest(String connectionId, Map<String, String> info,
+        Meta.FrameEncoding frameEncoding, int protocolVersion) {
       this.connectionId = connectionId;
       this.info = info;
+      this.frameEncoding = Objects.requireNonNull(frameEncoding);
+      this.protocolVersion = protocolVersion;
     }
 
     @Override OpenConnectionResponse accept(Service service) {
@@ -1826,7 +2031,15 @@ public static Map<String, String> serializeProperties(Properties props) {
         info = null;
       }
 
-      return new OpenConnectionRequest(connectionId, info);
+      // Encodings added by newer clients are unknown to us, stick to rows
+      Meta.FrameEncoding frameEncoding = Meta.FrameEncoding.ROW;
+      if (Common.FrameEncoding.UNRECOGNIZED != msg.getFrameEncoding()) {
+        frameEncoding = Meta.FrameEncoding.fromProto(msg.getFrameEncoding());
+      }
+
+      // Absent for clients which predate the handshake, which reads as the legacy version
+      return new OpenConnectionRequest(connectionId, info, frameEncoding,
+          msg.getProtocolVersion());
     }
 
     @Override Message serialize() {
@@ -1837,6 +2050,8 @@ public static Map<String, String> serializeProperties(Properties props) {
       if (null != info) {
         builder.putAllInfo(info);
       }
+      builder.setFrameEncoding(frameEncoding.toProto());
+      builder.setProtocolVersion(protocolVersion);
 
       return builder.build();
     }
@@ -1845,6 +2060,8 @@ public static Map<String, String> serializeProperties(Properties props) {
       int result = 1;
       result = p(result, connectionId);
       result = p(result, info);
+      result = p(result, frameEncoding);
+      result = p(result, protocolVersion);
       return result;
     }
 
@@ -1852,7 +2069,9 @@ public static Map<String, String> serializeProperties(Properties props) {
       return o == this
           || o instanceof OpenConnectionRequest
           && Objects.equals(connectionId, ((OpenConnectionRequest) o).connectionId)
-          && Objects.equals(info, ((OpenConnectionRequest) o).info);
+          && Objects.equals(info, ((OpenConnectionRequest) o).info)
+          && frameEncoding == ((OpenConnectionRequest) o).frameEncoding
+          && protocolVersion == ((OpenConnectionRequest) o).protocolVersion;
     }
   }
 
@@ -2676,15 +2895,31 @@ class RpcMetadataResponse extends Response {
         .getDescriptor().findFieldByNumber(Responses.RpcMetadata.SERVER_ADDRESS_FIELD_NUMBER);
     public final String serverAddress;
     private final ByteString serverAddressAsBytes;
+    /** Wire protocol version of the server. Only applies to protobuf; JSON messages do not
+     * carry it, so a response read from JSON reports {@link #LEGACY_PROTOCOL_VERSION}. */
+    @JsonIgnore public final int protocolVersion;
 
     public RpcMetadataResponse() {
       this.serverAddress = null;
       this.serverAddressAsBytes = null;
+      this.protocolVersion = PROTOCOL_VERSION;
+    }
+
+    public RpcMetadataResponse(String serverAddress) {
+      this(serverAddress, PROTOCOL_VERSION);
     }
 
-    public RpcMetadataResponse(@JsonProperty("serverAddress") String serverAddress) {
+    public RpcMetadataResponse(String serverAddress, int protocolVersion) {
       this.serverAddress = serverAddress;
-      this.serverAddressAsBytes = UnsafeByteOperations.unsafeWrap(serverAddress.getBytes(UTF_8));
+      this.serverAddressAsBytes = null == serverAddress
+          ? null : UnsafeByteOperations.unsafeWrap(serverAddress.getBytes(UTF_8));
+      this.protocolVersion = protocolVersion;
+    }
+
+    /** Creates a response read from JSON, which servers of every version send alike. */
+    @JsonCreator
+    static RpcMetadataResponse fromJson(@JsonProperty("serverAddress") String serverAddress) {
+      return new RpcMetadataResponse(serverAddress, LEGACY_PROTOCOL_VERSION);
     }
 
     @Override RpcMetadataResponse deserialize(Message genericMsg) {
@@ -2695,7 +2930,11 @@ public RpcMetadataResponse(@JsonProperty("serverAddress") String serverAddress)
     }
 
     @Override Responses.RpcMetadata serialize() {
-      return Responses.RpcMetadata.newBuilder().setServerAddressBytes(serverAddressAsBytes).build();
+      Responses.RpcMetadata.Builder builder = Responses.RpcMetadata.newBuilder();
+      if (null != serverAddressAsBytes) {
+        builder.setServerAddressBytes(serverAddressAsBytes);
+      }
+      return builder.setProtocolVersion(protocolVersion).build();
     }
 
     static RpcMetadataResponse fromProto(Responses.RpcMetadata msg) {
@@ -2704,19 +2943,21 @@ static RpcMetadataResponse fromProto(Responses.RpcMetadata msg) {
         serverAddress = msg.getServerAddress();
       }
 
-      return new RpcMetadataResponse(serverAddress);
+      return new RpcMetadataResponse(serverAddress, msg.getProtocolVersion());
     }
 
     @Override public int hashCode() {
       int result = 1;
       result = p(result, serverAddress);
+      result = p(result, protocolVersion);
       return result;
     }
 
     @Override public boolean equals(Object o) {
       return this == o
           || o instanceof RpcMetadataResponse
-          && Objects.equals(serverAddress, ((RpcMetadataResponse) o).serverAddress);
+          && Objects.equals(serverAddress, ((RpcMetadataResponse) o).serverAddress)
+          && protocolVersion == ((RpcMetadataResponse) o).protocolVersion;
     }
   }
 
@@ -3154,6 +3395,389 @@ public ExecuteBatchResponse(@JsonProperty("connectionId") String connectionId,
       return builder.setConnectionId(connectionId).setStatementId(statementId).build();
     }
   }
+
+  /**
+   * Request to create a statement, and to prepare and execute a query in it, in a single round
+   * trip. It saves the {@link CreateStatementRequest} that a {@link PrepareAndExecuteRequest}
+   * needs, and, if {@link #closeWhenDone}, the {@link CloseStatementRequest} of a query whose
+   * results fit in its first frames.
+   *
+   * <p>Only servers of {@link #EXECUTE_DIRECT_PROTOCOL_VERSION} or later understand it.
+   */
+  class ExecuteDirectRequest extends Request {
+    private static final FieldDescriptor CONNECTION_ID_DESCRIPTOR = Requests.ExecuteDirectRequest
+        .getDescriptor().findFieldByNumber(
+            Requests.ExecuteDirectRequest.CONNECTION_ID_FIELD_NUMBER);
+    private static final FieldDescriptor SQL_DESCRIPTOR = Requests.ExecuteDirectRequest
+        .getDescriptor().findFieldByNumber(Requests.ExecuteDirectRequest.SQL_FIELD_NUMBER);
+    private static final FieldDescriptor CONN_PROPS_DESCRIPTOR = Requests.ExecuteDirectRequest
+        .getDescriptor().findFieldByNumber(
+            Requests.ExecuteDirectRequest.CONN_PROPS_FIELD_NUMBER);
+
+    public final String connectionId;
+    public final String sql;
+    public final long maxRowCount;
+    public final int maxRowsInFirstFrame;
+    /** Whether the server closes the statement if the first frames hold all of its results. */
+    public final boolean closeWhenDone;
+    /** Properties of the connection to apply before the request, or null if they have not
+     * changed. */
+    public final Meta.ConnectionProperties connProps;
+    /** Fingerprint of a signature that the client has, and that the server leaves out of the
+     * response, or 0. Only applies to protobuf. */
+    @JsonIgnore public final long cachedSignatureFingerprint;
+
+    ExecuteDirectRequest() {
+      connectionId = null;
+      sql = null;
+      maxRowCount = 0;
+      maxRowsInFirstFrame = 0;
+      closeWhenDone = false;
+      connProps = null;
+      cachedSignatureFingerprint = 0L;
+    }
+
+    @JsonCreator
+    public ExecuteDirectRequest(
+        @JsonProperty("connectionId") String connectionId,
+        @JsonProperty("sql") String sql,
+        @JsonProperty("maxRowsTotal") long maxRowCount,
+        @JsonProperty("maxRowsInFirstFrame") int maxRowsInFirstFrame,
+        @JsonProperty("closeWhenDone") boolean closeWhenDone,
+        @JsonProperty("connProps") Meta.ConnectionProperties connProps) {
+      this(connectionId, sql, maxRowCount, maxRowsInFirstFrame, closeWhenDone, connProps, 0L);
+    }
+
+    public ExecuteDirectRequest(String connectionId, String sql, long maxRowCount,
+        int maxRowsInFirstFrame, boolean closeWhenDone, Meta.ConnectionProperties connProps,
+        long cachedSignatureFingerprint) {
+      this.connectionId = connectionId;
+      this.sql = sql;
+      this.maxRowCount = maxRowCount;
+      this.maxRowsInFirstFrame = maxRowsInFirstFrame;
+      this.closeWhenDone = closeWhenDone;
+      this.connProps = connProps;
+      this.cachedSignatureFingerprint = cachedSignatureFingerprint;
+    }
+
+    @Override ExecuteDirectResponse accept(Service service) {
+      return service.apply(this);
+    }
+
+    @Override ExecuteDirectRequest deserialize(Message genericMsg) {
+      final Requests.ExecuteDirectRequest msg = ProtobufService.castProtobufMessage(genericMsg,
+          Requests.ExecuteDirectRequest.class);
+
+      String connectionId = null;
+      if (msg.hasField(CONNECTION_ID_DESCRIPTOR)) {
+        connectionId = msg.getConnectionId();
+      }
+
+      String sql = null;
+      if (msg.hasField(SQL_DESCRIPTOR)) {
+        sql = msg.getSql();
+      }
+
+      Meta.ConnectionProperties connProps = null;
+      if (msg.hasField(CONN_PROPS_DESCRIPTOR)) {
+        connProps = ConnectionPropertiesImpl.fromProto(msg.getConnProps());
+      }
+
+      return new ExecuteDirectRequest(connectionId, sql, msg.getMaxRowsTotal(),
+          msg.getFirstFrameMaxSize(), msg.getCloseWhenDone(), connProps,
+          msg.getCachedSignatureFingerprint());
+    }
+
+    @Override Requests.ExecuteDirectRequest serialize() {
+      Requests.ExecuteDirectRequest.Builder builder = Requests.ExecuteDirectRequest.newBuilder();
+
+      if (null != connectionId) {
+        builder.setConnectionId(connectionId);
+      }
+      if (null != sql) {
+        builder.setSql(sql);
+      }
+      if (null != connProps) {
+        builder.setConnProps(connProps.toProto());
+      }
+      if (0L != cachedSignatureFingerprint) {
+        builder.setCachedSignatureFingerprint(cachedSignatureFingerprint);
+      }
+
+      return builder.setMaxRowsTotal(maxRowCount)
+          .setFirstFrameMaxSize(maxRowsInFirstFrame)
+          .setCloseWhenDone(closeWhenDone)
+          .build();
+    }
+
+    @Override public int hashCode() {
+      int result = 1;
+      result = p(result, cachedSignatureFingerprint);
+      result = p(result, closeWhenDone);
+      result = p(result, connProps);
+      result = p(result, connectionId);
+      result = p(result, maxRowCount);
+      result = p(result, maxRowsInFirstFrame);
+      result = p(result, sql);
+      return result;
+    }
+
+    @Override public boolean equals(Object o) {
+      return o == this
+          || o instanceof ExecuteDirectRequest
+          && maxRowCount == ((ExecuteDirectRequest) o).maxRowCount
+          && maxRowsInFirstFrame == ((ExecuteDirectRequest) o).maxRowsInFirstFrame
+          && closeWhenDone == ((ExecuteDirectRequest) o).closeWhenDone
+          && cachedSignatureFingerprint
+              == ((ExecuteDirectRequest) o).cachedSignatureFingerprint
+          && Objects.equals(connectionId, ((ExecuteDirectRequest) o).connectionId)
+          && Objects.equals(sql, ((ExecuteDirectRequest) o).sql)
+          && Objects.equals(connProps, ((ExecuteDirectRequest) o).connProps);
+    }
+  }
+
+  /** Response to {@link ExecuteDirectRequest}. */
+  class ExecuteDirectResponse extends Response {
+    private static final FieldDescriptor METADATA_DESCRIPTOR = Responses.ExecuteDirectResponse
+        .getDescriptor().findFieldByNumber(Responses.ExecuteDirectResponse.METADATA_FIELD_NUMBER);
+
+    /** Identifier of the statement that the server created. */
+    public final int statementId;
+    public final List<ResultSetResponse> results;
+    /** Whether the server closed the statement, having sent all of its results. */
+    public final boolean statementClosed;
+    public final RpcMetadataResponse rpcMetadata;
+
+    ExecuteDirectResponse() {
+      statementId = 0;
+      results = null;
+      statementClosed = false;
+      rpcMetadata = null;
+    }
+
+    @JsonCreator
+    public ExecuteDirectResponse(@JsonProperty("statementId") int statementId,
+        @JsonProperty("resultSets") List<ResultSetResponse> results,
+        @JsonProperty("statementClosed") boolean statementClosed,
+        @JsonProperty("rpcMetadata") RpcMetadataResponse rpcMetadata) {
+      this.statementId = statementId;
+      this.results = results;
+      this.statementClosed = statementClosed;
+      this.rpcMetadata = rpcMetadata;
+    }
+
+    @Override ExecuteDirectResponse deserialize(Message genericMsg) {
+      final Responses.ExecuteDirectResponse msg = ProtobufService.castProtobufMessage(genericMsg,
+          Responses.ExecuteDirectResponse.class);
+
+      final List<ResultSetResponse> results = new ArrayList<>(msg.getResultsCount());
+      for (Responses.ResultSetResponse result : msg.getResultsList()) {
+        results.add(ResultSetResponse.fromProto(result));
+      }
+
+      RpcMetadataResponse metadata = null;
+      if (msg.hasField(METADATA_DESCRIPTOR)) {
+        metadata = RpcMetadataResponse.fromProto(msg.getMetadata());
+      }
+
+      return new ExecuteDirectResponse(msg.getStatementId(), results, msg.getStatementClosed(),
+          metadata);
+    }
+
+    @Override Responses.ExecuteDirectResponse serialize() {
+      Responses.ExecuteDirectResponse.Builder builder =
+          Responses.ExecuteDirectResponse.newBuilder();
+
+      if (null != results) {
+        for (ResultSetResponse result : results) {
+          builder.addResults(result.serialize());
+        }
+      }
+
+      if (null != rpcMetadata) {
+        builder.setMetadata(rpcMetadata.serialize());
+      }
+
+      return builder.setStatementId(statementId)
+          .setStatementClosed(statementClosed)
+          .build();
+    }
+
+    @Override public int hashCode() {
+      int result = 1;
+      result = p(result, results);
+      result = p(result, rpcMetadata);
+      result = p(result, statementClosed);
+      result = p(result, statementId);
+      return result;
+    }
+
+    @Override public boolean equals(Object o) {
+      return o == this
+          || o instanceof ExecuteDirectResponse
+          && statementId == ((ExecuteDirectResponse) o).statementId
+          && statementClosed == ((ExecuteDirectResponse) o).statementClosed
+          && Objects.equals(results, ((ExecuteDirectResponse) o).results)
+          && Objects.equals(rpcMetadata, ((ExecuteDirectResponse) o).rpcMetadata);
+    }
+  }
+
+  /**
+   * Request to execute a list of requests one after another, in a single round trip. Later
+   * requests are executed only if the earlier ones succeeded. A failed request does not fail the
+   * {@code MultiRequest}; its error is the last of the {@link MultiResponse}.
+   *
+   * <p>Only servers of {@link #MULTI_REQUEST_PROTOCOL_VERSION} or later understand it.
+   */
+  class MultiRequest extends Request {
+    public final List<Request> requests;
+
+    MultiRequest() {
+      this.requests = null;
+    }
+
+    @JsonCreator
+    public MultiRequest(@JsonProperty("requests") List<Request> requests) {
+      for (Request request : requests == null ? Collections.<Request>emptyList() : requests) {
+        if (request instanceof MultiRequest) {
+          throw new IllegalArgumentException("A MultiRequest cannot contain a MultiRequest");
+        }
+      }
+      this.requests = requests;
+    }
+
+    @Override MultiResponse accept(Service service) {
+      return service.apply(this);
+    }
+
+    @Override MultiRequest deserialize(Message genericMsg) {
+      final Requests.MultiRequest msg = ProtobufService.castProtobufMessage(genericMsg,
+          Requests.MultiRequest.class);
+
+      final List<Request> requests = new ArrayList<>(msg.getRequestsCount());
+      for (Common.WireMessage wireMsg : msg.getRequestsList()) {
+        requests.add(ProtobufTranslationImpl.unwrapRequest(wireMsg));
+      }
+
+      return new MultiRequest(requests);
+    }
+
+    @Override Requests.MultiRequest serialize() {
+      final Requests.MultiRequest.Builder builder = Requests.MultiRequest.newBuilder();
+
+      if (null != requests) {
+        for (Request request : requests) {
+          builder.addRequests(ProtobufTranslationImpl.wrapMessage(request.serialize()));
+        }
+      }
+
+      return builder.build();
+    }
+
+    @Override public int hashCode() {
+      int result = 1;
+      result = p(result, requests);
+      return result;
+    }
+
+    @Override public boolean equals(Object o) {
+      return o == this
+          || o instanceof MultiRequest
+          && Objects.equals(requests, ((MultiRequest) o).requests);
+    }
+  }
+
+  /**
+   * Response to a {@link MultiRequest}, holding the responses to its requests in order. If a
+   * request failed, its {@link ErrorResponse} is the last response.
+   */
+  class MultiResponse extends Response {
+    private static final FieldDescriptor METADATA_DESCRIPTOR = Responses.MultiResponse
+        .getDescriptor().findFieldByNumber(Responses.MultiResponse.METADATA_FIELD_NUMBER);
+
+    public final List<Response> responses;
+    public final RpcMetadataResponse rpcMetadata;
+
+    MultiResponse() {
+      this.responses = null;
+      this.rpcMetadata = null;
+    }
+
+    @JsonCreator
+    public MultiResponse(@JsonProperty("responses") List<Response> responses,
+        @JsonProperty("rpcMetadata") RpcMetadataResponse rpcMetadata) {
+      this.responses = responses;
+      this.rpcMetadata = rpcMetadata;
+    }
+
+    /**
+     * Returns the response to the request at the given position of the {@link MultiRequest}.
+     *
+     * @param i Position of the request
+     * @param expectedType Class of the response
+     * @return The response
+     * @throws AvaticaClientRuntimeException If the server failed to execute the request
+     * @throws IllegalStateException If the request was not executed
+     */
+    public <T extends Response> T get(int i, Class<T> expectedType) {
+      if (null == responses || i >= responses.size()) {
+        throw new IllegalStateException("Missing the response to request " + i
+            + " of a MultiRequest");
+      }
+      final Response response = responses.get(i);
+      if (response instanceof ErrorResponse) {
+        throw ((ErrorResponse) response).toException();
+      }
+      return expectedType.cast(response);
+    }
+
+    @Override MultiResponse deserialize(Message genericMsg) {
+      final Responses.MultiResponse msg = ProtobufService.castProtobufMessage(genericMsg,
+          Responses.MultiResponse.class);
+
+      final List<Response> responses = new ArrayList<>(msg.getResponsesCount());
+      for (Common.WireMessage wireMsg : msg.getResponsesList()) {
+        responses.add(ProtobufTranslationImpl.unwrapResponse(wireMsg));
+      }
+
+      RpcMetadataResponse metadata = null;
+      if (msg.hasField(METADATA_DESCRIPTOR)) {
+        metadata = RpcMetadataResponse.fromProto(msg.getMetadata());
+      }
+
+      return new MultiResponse(responses, metadata);
+    }
+
+    @Override Responses.MultiResponse serialize() {
+      final Responses.MultiResponse.Builder builder = Responses.MultiResponse.newBuilder();
+
+      if (null != responses) {
+        for (Response response : responses) {
+          builder.addResponses(ProtobufTranslationImpl.wrapMessage(response.serialize()));
+        }
+      }
+
+      if (null != rpcMetadata) {
+        builder.setMetadata(rpcMetadata.serialize());
+      }
+
+      return builder.build();
+    }
+
+    @Override public int hashCode() {
+      int result = 1;
+      result = p(result, responses);
+      result = p(result, rpcMetadata);
+      return result;
+    }
+
+    @Override public boolean equals(Object o) {
+      return o == this
+          || o instanceof MultiResponse
+          && Objects.equals(responses, ((MultiResponse) o).responses)
+          && Objects.equals(rpcMetadata, ((MultiResponse) o).rpcMetadata);
+    }
+  }
 }
 
 // End Service.java
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.AvaticaParameter;
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.calcite.avatica.Meta;
+
+import java.util.List;
+
+/**
+ * Computes the 64-bit FNV-1a hash of a {@link Meta.Signature} from the
+ * fields that its protobuf message carries, without building the message.
+ *
+ * <p>Strings and lists are prefixed by their length, and nulls hash
+ * differently from empty values, so that adjacent fields cannot run into
+ * each other.
+ */
+final class SignatureFingerprint {
+  private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long PRIME = 0x100000001b3L;
+
+  private long hash = OFFSET_BASIS;
+
+  private SignatureFingerprint() {
+  }
+
+  /** Returns the fingerprint of a signature. Never 0, which means "no
+   * fingerprint". */
+  static long of(Meta.Signature signature) {
+    final SignatureFingerprint f = new SignatureFingerprint();
+    f.add(signature.sql);
+    f.addInt(signature.columns.size());
+    for (ColumnMetaData column : signature.columns) {
+      f.add(column);
+    }
+    f.addInt(signature.parameters.size());
+    for (AvaticaParameter parameter : signature.parameters) {
+      f.add(parameter.signed);
+      f.addInt(parameter.precision);
+      f.addInt(parameter.scale);
+      f.addInt(parameter.parameterType);
+      f.add(parameter.typeName);
+      f.add(parameter.className);
+      f.add(parameter.name);
+    }
+    final Meta.CursorFactory cursorFactory = signature.cursorFactory;
+    f.addInt(null == cursorFactory ? -1 : cursorFactory.style.ordinal());
+    if (null != cursorFactory) {
+      f.add(null == cursorFactory.clazz ? null : cursorFactory.clazz.getName());
+      f.add(cursorFactory.fieldNames);
+    }
+    f.addInt(null == signature.statementType ? -1 : signature.statementType.ordinal());
+    return 0L == f.hash ? 1L : f.hash;
+  }
+
+  private void add(ColumnMetaData column) {
+    addInt(column.ordinal);
+    add(column.autoIncrement);
+    add(column.caseSensitive);
+    add(column.searchable);
+    add(column.currency);
+    addInt(column.nullable);
+    add(column.signed);
+    addInt(column.displaySize);
+    add(column.label);
+    add(column.columnName);
+    add(column.schemaName);
+    addInt(column.precision);
+    addInt(column.scale);
+    add(column.tableName);
+    add(column.catalogName);
+    add(column.readOnly);
+    add(column.writable);
+    add(column.definitelyWritable);
+    add(column.columnClassName);
+    add(column.type);
+  }
+
+  private void add(ColumnMetaData.AvaticaType type) {
+    if (null == type) {
+      addInt(-1);
+      return;
+    }
+    addInt(type.id);
+    add(type.name);
+    addInt(type.rep.ordinal());
+    if (type instanceof ColumnMetaData.StructType) {
+      final List<ColumnMetaData> columns = ((ColumnMetaData.StructType) type).columns;
+      addInt(columns.size());
+      for (ColumnMetaData column : columns) {
+        add(column);
+      }
+    } else if (type instanceof ColumnMetaData.ArrayType) {
+      add(((ColumnMetaData.ArrayType) type).getComponent());
+    }
+  }
+
+  private void add(List<String> strings) {
+    if (null == strings) {
+      addInt(-1);
+      return;
+    }
+    addInt(strings.size());
+    for (String s : strings) {
+      add(s);
+    }
+  }
+
+  private void add(String s) {
+    if (null == s) {
+      addInt(-1);
+      return;
+    }
+    addInt(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      final char c = s.charAt(i);
+      addByte(c >>> 8);
+      addByte(c);
+    }
+  }
+
+  private void add(boolean b) {
+    addByte(b ? 1 : 0);
+  }
+
+  private void addInt(int i) {
+    addByte(i >>> 24);
+    addByte(i >>> 16);
+    addByte(i >>> 8);
+    addByte(i);
+  }
+
+  private void addByte(int b) {
+    hash ^= b & 0xff;
+    hash *= PRIME;
+  }
+}
+
+// End SignatureFingerprint.java
@@ -533,6 +533,11 @@ Common.TypedValue serializeArray(List<Object> list, Common.TypedValue.Builder bu
 
   private static void writeToProtoWithType(Common.TypedValue.Builder builder, Object o,
       Common.Rep type) {
+    writeToProtoWithType(builder, o, type, true);
+  }
+
+  private static void writeToProtoWithType(Common.TypedValue.Builder builder, Object o,
+      Common.Rep type, boolean legacyValues) {
     builder.setType(type);
 
     switch (type) {
@@ -544,13 +549,17 @@ private static void writeToProtoWithType(Common.TypedValue.Builder builder, Obje
       byte[] bytes;
       // Serial representation is b64. We don't need to do that for protobuf
       if (o instanceof String) {
-        // Backwards compatibility for client CALCITE-1209
-        builder.setStringValue((String) o);
+        if (legacyValues) {
+          // Backwards compatibility for client CALCITE-1209
+          builder.setStringValue((String) o);
+        }
         // Assume strings are already b64 encoded
         bytes = ByteString.parseBase64((String) o);
       } else {
-        // Backwards compatibility for client CALCITE-1209
-        builder.setStringValue(Base64.encodeBytes((byte[]) o));
+        if (legacyValues) {
+          // Backwards compatibility for client CALCITE-1209
+          builder.setStringValue(Base64.encodeBytes((byte[]) o));
+        }
         // Use the byte array
         bytes = (byte[]) o;
       }
@@ -767,6 +776,20 @@ public static Object getSerialFromProto(Common.TypedValue protoValue) {
    * @param o The object (value)
    */
   public static Common.Rep toProto(Common.TypedValue.Builder builder, Object o) {
+    return toProto(builder, o, true);
+  }
+
+  /**
+   * Writes the given object into the Protobuf representation of a TypedValue, optionally
+   * omitting the copies of values which only clients predating
+   * {@link Service#COMPACT_VALUES_PROTOCOL_VERSION} read.
+   *
+   * @param builder The TypedValue protobuf builder
+   * @param o The object (value)
+   * @param legacyValues Whether to also write the Base64 string form of byte strings
+   */
+  public static Common.Rep toProto(Common.TypedValue.Builder builder, Object o,
+      boolean legacyValues) {
     // Numbers
     if (o instanceof Byte) {
       writeToProtoWithType(builder, o, Common.Rep.BYTE);
@@ -798,7 +821,7 @@ public static Common.Rep toProto(Common.TypedValue.Builder builder, Object o) {
       return Common.Rep.CHARACTER;
     // Bytes
     } else if (o instanceof byte[]) {
-      writeToProtoWithType(builder, o, Common.Rep.BYTE_STRING);
+      writeToProtoWithType(builder, o, Common.Rep.BYTE_STRING, legacyValues);
       return Common.Rep.BYTE_STRING;
     // Boolean
     } else if (o instanceof Boolean) {
@@ -825,7 +848,7 @@ public static Common.Rep toProto(Common.TypedValue.Builder builder, Object o) {
       for (Object listElement : (List<?>) o) {
         Common.TypedValue.Builder listElementBuilder = Common.TypedValue.newBuilder();
         // Recurse on each list element
-        Common.Rep componentRep = toProto(listElementBuilder, listElement);
+        Common.Rep componentRep = toProto(listElementBuilder, listElement, legacyValues);
         if (!setComponentType) {
           if (Common.Rep.NULL != componentRep) {
             builder.setComponentType(componentRep);
@@ -845,7 +868,7 @@ public static Common.Rep toProto(Common.TypedValue.Builder builder, Object o) {
         while (rs.next()) {
           Common.TypedValue.Builder listElementBuilder = Common.TypedValue.newBuilder();
           Object arrayValue = rs.getObject(2);
-          Common.Rep componentRep = toProto(listElementBuilder, arrayValue);
+          Common.Rep componentRep = toProto(listElementBuilder, arrayValue, legacyValues);
           if (!setComponentType) {
             if (Common.Rep.NULL != componentRep) {
               builder.setComponentType(componentRep);
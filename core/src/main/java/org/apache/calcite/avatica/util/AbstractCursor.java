@@ -592,8 +592,7 @@ private IntAccessor(Getter getter) {
     }
 
     public int getInt() throws SQLException {
-      Integer o = (Integer) super.getObject();
-      return o == null ? 0 : o;
+      return getter.getInt();
     }
 
     public long getLong() throws SQLException {
@@ -630,8 +629,7 @@ private LongAccessor(Getter getter) {
     }
 
     public long getLong() throws SQLException {
-      Long o = (Long) super.getObject();
-      return o == null ? 0 : o;
+      return getter.getLong();
     }
   }
 
@@ -716,13 +714,8 @@ private DoubleAccessor(Getter getter) {
     }
 
     public double getDouble() throws SQLException {
-      Object obj = getObject();
-      if (null == obj) {
-        return 0d;
-      } else if (obj instanceof BigDecimal) {
-        return ((BigDecimal) obj).doubleValue();
-      }
-      return (Double) obj;
+      // Also reads BigDecimal values as doubles
+      return getter.getDouble();
     }
   }
 
@@ -820,6 +813,15 @@ protected Number getNumber() throws SQLException {
       return (Number) super.getObject();
     }
 
+    // Rows may hold numbers without boxing them, see PrimitiveRow
+    @Override public double getDouble() throws SQLException {
+      return getter.getDouble();
+    }
+
+    @Override public long getLong() throws SQLException {
+      return getter.getLong();
+    }
+
     //FIXME There are several issues with this, the code below simply implements
     //a previous behaviour codified by the Calcite test suite.
     //
@@ -1627,6 +1629,30 @@ protected interface Getter {
     Object getObject() throws SQLException;
 
     boolean wasNull() throws SQLException;
+
+    /** Returns the current value as a {@code long}, or 0 if it is null.
+     * Implementations that can read the value without boxing it should
+     * override this. */
+    default long getLong() throws SQLException {
+      final Object o = getObject();
+      return o == null ? 0L : ((Number) o).longValue();
+    }
+
+    /** Returns the current value as an {@code int}, or 0 if it is null. */
+    default int getInt() throws SQLException {
+      return (int) getLong();
+    }
+
+    /** Returns the current value as a {@code double}, or 0 if it is null. */
+    default double getDouble() throws SQLException {
+      final Object o = getObject();
+      return o == null ? 0d : ((Number) o).doubleValue();
+    }
+
+    /** Returns whether the current value is null. */
+    default boolean isNull() throws SQLException {
+      return getObject() == null;
+    }
   }
 
   /** Abstract implementation of {@link Getter}. */
@@ -67,6 +67,45 @@ public Object getObject() throws SQLException {
       wasNull[0] = o == null;
       return o;
     }
+
+    @Override public long getLong() throws SQLException {
+      final PrimitiveRow row = primitiveRow();
+      if (null == row) {
+        return super.getLong();
+      }
+      try {
+        wasNull[0] = row.isNull(field);
+        return row.getLong(field);
+      } catch (RuntimeException e) {
+        throw new SQLException(e);
+      }
+    }
+
+    @Override public double getDouble() throws SQLException {
+      final PrimitiveRow row = primitiveRow();
+      if (null == row) {
+        return super.getDouble();
+      }
+      try {
+        wasNull[0] = row.isNull(field);
+        return row.getDouble(field);
+      } catch (RuntimeException e) {
+        throw new SQLException(e);
+      }
+    }
+
+    @Override public boolean isNull() throws SQLException {
+      final PrimitiveRow row = primitiveRow();
+      if (null == row) {
+        return super.isNull();
+      }
+      try {
+        wasNull[0] = row.isNull(field);
+        return wasNull[0];
+      } catch (RuntimeException e) {
+        throw new SQLException(e);
+      }
+    }
   }
 
   /** Implementation of
@@ -89,6 +128,57 @@ public Object getObject() throws SQLException {
       wasNull[0] = o == null;
       return o;
     }
+
+    @Override public long getLong() throws SQLException {
+      final PrimitiveRow row = primitiveRow();
+      if (null == row) {
+        return super.getLong();
+      }
+      try {
+        wasNull[0] = row.isNull(index);
+        return row.getLong(index);
+      } catch (RuntimeException e) {
+        throw new SQLException(e);
+      }
+    }
+
+    @Override public double getDouble() throws SQLException {
+      final PrimitiveRow row = primitiveRow();
+      if (null == row) {
+        return super.getDouble();
+      }
+      try {
+        wasNull[0] = row.isNull(index);
+        return row.getDouble(index);
+      } catch (RuntimeException e) {
+        throw new SQLException(e);
+      }
+    }
+
+    @Override public boolean isNull() throws SQLException {
+      final PrimitiveRow row = primitiveRow();
+      if (null == row) {
+        return super.isNull();
+      }
+      try {
+        wasNull[0] = row.isNull(index);
+        return wasNull[0];
+      } catch (RuntimeException e) {
+        throw new SQLException(e);
+      }
+    }
+  }
+
+  /** Returns the current row if its numeric values can be read without
+   * boxing them, otherwise null. */
+  private PrimitiveRow primitiveRow() throws SQLException {
+    final Object row;
+    try {
+      row = current();
+    } catch (RuntimeException e) {
+      throw new SQLException(e);
+    }
+    return row instanceof PrimitiveRow ? (PrimitiveRow) row : null;
   }
 
   /** Implementation of
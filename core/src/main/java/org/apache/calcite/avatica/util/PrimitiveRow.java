@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.util;
+
+/**
+ * Row whose numeric values can be read without boxing them.
+ *
+ * <p>Rows that are {@link java.util.List}s or arrays may also implement this
+ * interface; the getters of {@link PositionedCursor} then read numeric
+ * columns through it instead of {@link java.util.List#get(int)}.
+ */
+public interface PrimitiveRow {
+  /** Returns whether the value at the given index is null. */
+  boolean isNull(int index);
+
+  /** Returns the value at the given index as a {@code long}, or 0 if it is
+   * null. */
+  long getLong(int index);
+
+  /** Returns the value at the given index as a {@code double}, or 0 if it is
+   * null. */
+  double getDouble(int index);
+}
+
+// End PrimitiveRow.java
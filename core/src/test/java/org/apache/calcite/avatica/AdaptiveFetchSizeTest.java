@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica;
+
+import org.junit.Test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link AdaptiveFetchSize}.
+ */
+public class AdaptiveFetchSizeTest {
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /** Creates a frame of rows that each hold a string of a given length. */
+  private static Meta.Frame frame(int rowCount, int width) {
+    final char[] chars = new char[width];
+    Arrays.fill(chars, 'x');
+    final String value = new String(chars);
+    final List<Object> rows = new ArrayList<>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      rows.add(new Object[] {i, value});
+    }
+    return Meta.Frame.create(0, false, rows);
+  }
+
+  @Test public void testGrowsTwofoldForNarrowRows() {
+    final AdaptiveFetchSize fetchSize = new AdaptiveFetchSize(100, 1L << 20, 1000);
+    fetchSize.fetched(100, frame(100, 1), FAST);
+    assertEquals(200, fetchSize.rowCount());
+    fetchSize.fetched(200, frame(200, 1), FAST);
+    assertEquals(400, fetchSize.rowCount());
+  }
+
+  @Test public void testShrinksForWideRows() {
+    final AdaptiveFetchSize fetchSize = new AdaptiveFetchSize(100, 1L << 20, 1000);
+    // Rows of about 200KB each, so only a handful fit in 1MB
+    fetchSize.fetched(100, frame(100, 100_000), FAST);
+    final int rowCount = fetchSize.rowCount();
+    assertTrue("row count " + rowCount, rowCount >= 1 && rowCount <= 5);
+  }
+
+  @Test public void testShrinksForSlowFetches() {
+    final AdaptiveFetchSize fetchSize = new AdaptiveFetchSize(100, 1L << 20, 1000);
+    fetchSize.fetched(100, frame(100, 1), TimeUnit.SECONDS.toNanos(4));
+    assertEquals(25, fetchSize.rowCount());
+  }
+
+  @Test public void testDoesNotGrowAfterPartialFrame() {
+    final AdaptiveFetchSize fetchSize = new AdaptiveFetchSize(100, 1L << 20, 1000);
+    fetchSize.fetched(100, frame(10, 1), FAST);
+    assertEquals(100, fetchSize.rowCount());
+  }
+
+  @Test public void testIgnoresEmptyFrame() {
+    final AdaptiveFetchSize fetchSize = new AdaptiveFetchSize(100, 1L << 20, 1000);
+    fetchSize.fetched(100, Meta.Frame.create(0, true, Collections.emptyList()), FAST);
+    assertEquals(100, fetchSize.rowCount());
+  }
+
+  @Test public void testIgnoresMissingFrame() {
+    final AdaptiveFetchSize fetchSize = new AdaptiveFetchSize(100, 1L << 20, 1000);
+    fetchSize.fetched(100, null, FAST);
+    assertEquals(100, fetchSize.rowCount());
+  }
+
+  @Test public void testSerializedRowsNotDecoded() {
+    final List<Object> rows = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      rows.add(new UndecodedRow(10_000));
+    }
+    final AdaptiveFetchSize fetchSize = new AdaptiveFetchSize(100, 1L << 20, 1000);
+    fetchSize.fetched(100, Meta.Frame.create(0, false, rows), FAST);
+    // Rows of about 10KB each
+    final int rowCount = fetchSize.rowCount();
+    assertTrue("row count " + rowCount, rowCount > 50 && rowCount <= 105);
+  }
+
+  @Test public void testNoLatencyLimit() {
+    final AdaptiveFetchSize fetchSize = new AdaptiveFetchSize(100, 1L << 20, 0);
+    fetchSize.fetched(100, frame(100, 1), TimeUnit.SECONDS.toNanos(4));
+    assertEquals(200, fetchSize.rowCount());
+  }
+
+  @Test public void testEstimateBytes() {
+    assertTrue(AdaptiveFetchSize.estimateBytes("a long string value")
+        > AdaptiveFetchSize.estimateBytes("a"));
+    assertTrue(AdaptiveFetchSize.estimateBytes(new byte[1000]) > 1000);
+    assertTrue(AdaptiveFetchSize.estimateBytes(Arrays.asList(1, 2, 3))
+        > AdaptiveFetchSize.estimateBytes(Collections.singletonList(1)));
+    assertTrue(AdaptiveFetchSize.estimateBytes(null) > 0);
+  }
+
+  /** Row whose values must not be read. */
+  private static class UndecodedRow extends AbstractList<Object> implements SerializedRow {
+    private final long serializedBytes;
+
+    UndecodedRow(long serializedBytes) {
+      this.serializedBytes = serializedBytes;
+    }
+
+    @Override public Object get(int index) {
+      throw new AssertionError("row was decoded");
+    }
+
+    @Override public int size() {
+      return 2;
+    }
+
+    @Override public long serializedBytes() {
+      return serializedBytes;
+    }
+  }
+}
+
+// End AdaptiveFetchSizeTest.java
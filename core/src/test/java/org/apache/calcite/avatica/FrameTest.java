@@ -20,10 +20,13 @@
 import org.apache.calcite.avatica.proto.Common;
 import org.apache.calcite.avatica.proto.Common.ColumnValue;
 import org.apache.calcite.avatica.proto.Common.TypedValue;
+import org.apache.calcite.avatica.remote.Service;
+import org.apache.calcite.avatica.util.PrimitiveRow;
 
 import org.junit.Test;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -34,6 +37,7 @@
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -313,6 +317,231 @@ public void testBigDecimal() {
     assertEquals(expectedRow.get(0), newRow.get(0));
     assertEquals(expectedRow.get(1), newRow.get(1));
   }
+
+  @Test public void testValuesDecodedOnRead() {
+    final ColumnValue malformed = ColumnValue.newBuilder().setHasArrayValue(true)
+        .setScalarValue(NUMBER_VALUE).build();
+    final Common.Frame protoFrame = Common.Frame.newBuilder().setDone(true)
+        .addRows(
+            Common.Row.newBuilder()
+                .addValue(Frame.toColumnValue(new byte[] {1, 2}, false))
+                .addValue(malformed))
+        .build();
+
+    // Decoding the frame does not look at the values
+    Frame frame = Frame.fromProto(protoFrame);
+    List<?> row = (List<?>) frame.rows.iterator().next();
+    assertEquals(2, row.size());
+
+    // Reading a value decodes it once
+    Object bytes = row.get(0);
+    assertArrayEquals(new byte[] {1, 2}, (byte[]) bytes);
+    assertSame(bytes, row.get(0));
+
+    try {
+      row.get(1);
+      fail("Reading a malformed value should have failed");
+    } catch (IllegalArgumentException e) {
+      // Pass
+    }
+  }
+
+  @Test public void testPrimitiveReads() {
+    List<Object> rows = new ArrayList<>();
+    rows.add(new Object[] {1L, 2.5d, 3.5f, null});
+    rows.add(new Object[] {null, null, null, null});
+    for (Meta.FrameEncoding encoding : Meta.FrameEncoding.values()) {
+      Frame frame = Frame.fromProto(new Frame(0, true, rows, encoding).toProto());
+      Iterator<Object> iter = frame.rows.iterator();
+
+      PrimitiveRow row = (PrimitiveRow) iter.next();
+      assertFalse(row.isNull(0));
+      assertEquals(1L, row.getLong(0));
+      assertEquals(1d, row.getDouble(0), 0d);
+      assertEquals(2L, row.getLong(1));
+      assertEquals(2.5d, row.getDouble(1), 0d);
+      assertEquals(3.5d, row.getDouble(2), 0d);
+      assertTrue(row.isNull(3));
+      assertEquals(0L, row.getLong(3));
+
+      row = (PrimitiveRow) iter.next();
+      for (int i = 0; i < 4; i++) {
+        assertTrue(encoding + " column " + i, row.isNull(i));
+        assertEquals(0L, row.getLong(i));
+        assertEquals(0d, row.getDouble(i), 0d);
+      }
+      assertFalse(iter.hasNext());
+    }
+  }
+
+  @Test public void testDictionaryEncodedStrings() {
+    List<Object> rows = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      rows.add(new Object[] {i % 3 == 0 ? null : new String(i % 2 == 0 ? "even" : "odd"),
+          "value " + i});
+    }
+    Common.ColumnarFrame proto = new Frame(0, true, rows, Meta.FrameEncoding.COLUMNAR)
+        .toProto().getColumnarRows();
+
+    // Low cardinality column is dictionary encoded, the other one is not
+    Common.ColumnVector lowCardinality = proto.getColumns(0);
+    assertEquals(2, lowCardinality.getStringOffsetsCount());
+    assertEquals(6, lowCardinality.getDictionaryIndicesCount());
+    Common.ColumnVector highCardinality = proto.getColumns(1);
+    assertEquals(10, highCardinality.getStringOffsetsCount());
+    assertEquals(0, highCardinality.getDictionaryIndicesCount());
+
+    Frame frame = Frame.fromProto(Common.Frame.newBuilder().setDone(true)
+        .setColumnarRows(proto).build());
+    List<List<?>> decoded = new ArrayList<>();
+    for (Object row : frame.rows) {
+      decoded.add((List<?>) row);
+    }
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Arrays.asList(((Object[]) rows.get(i))), decoded.get(i));
+    }
+    // Equal values share one instance
+    assertSame(decoded.get(1).get(0), decoded.get(5).get(0));
+    assertSame(decoded.get(2).get(0), decoded.get(4).get(0));
+  }
+
+  @Test public void testDeltaEncodedNumbers() {
+    final long start = 1700000000000L;
+    List<Object> rows = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      rows.add(
+          new Object[] {i == 4 ? null : new Timestamp(start + i * 1000L),
+              i % 2 == 0 ? (long) i : 1_000_000_000_000L + i});
+    }
+    Common.ColumnarFrame proto = new Frame(0, true, rows, Meta.FrameEncoding.COLUMNAR)
+        .toProto().getColumnarRows();
+
+    // Closely spaced values are delta encoded, values jumping around are not
+    Common.ColumnVector timestamps = proto.getColumns(0);
+    assertTrue(timestamps.getDeltaEncoded());
+    assertEquals(9, timestamps.getNumberValuesCount());
+    assertEquals(start, timestamps.getNumberValues(0));
+    assertEquals(1000L, timestamps.getNumberValues(1));
+    assertEquals(2000L, timestamps.getNumberValues(4));
+    assertFalse(proto.getColumns(1).getDeltaEncoded());
+
+    Frame frame = Frame.fromProto(Common.Frame.newBuilder().setDone(true)
+        .setColumnarRows(proto).build());
+    Iterator<Object> iter = frame.rows.iterator();
+    for (int i = 0; i < 10; i++) {
+      PrimitiveRow row = (PrimitiveRow) iter.next();
+      assertEquals(i == 4, row.isNull(0));
+      assertEquals(i == 4 ? 0L : start + i * 1000L, row.getLong(0));
+      assertEquals(i % 2 == 0 ? i : 1_000_000_000_000L + i, row.getLong(1));
+    }
+  }
+
+  @Test public void testLegacyValuesOmittedForCurrentProtocol() {
+    List<Object> rows = new ArrayList<>();
+    rows.add(new Object[] {1, new byte[] {1, 2, 3}, Arrays.asList("a", "b")});
+    Frame legacyFrame = new Frame(0, true, rows);
+    Frame currentFrame = legacyFrame.withEncoding(Meta.FrameEncoding.ROW,
+        Service.PROTOCOL_VERSION);
+
+    Common.Row legacyRow = legacyFrame.toProto().getRows(0);
+    assertEquals(1, legacyRow.getValue(0).getValueCount());
+    assertEquals(2, legacyRow.getValue(2).getValueCount());
+    assertEquals("AQID", legacyRow.getValue(1).getScalarValue().getStringValue());
+
+    Common.Row currentRow = currentFrame.toProto().getRows(0);
+    for (Common.ColumnValue column : currentRow.getValueList()) {
+      assertEquals(0, column.getValueCount());
+    }
+    Common.TypedValue bytes = currentRow.getValue(1).getScalarValue();
+    assertEquals("", bytes.getStringValue());
+    assertEquals(3, bytes.getBytesValue().size());
+
+    // The remaining fields are enough to decode the same values
+    serializeAndTestEquality(currentFrame);
+  }
+
+  /** Checks that a frame decodes to the same values whether it was written
+   * with the row or the columnar encoding. */
+  private void assertColumnarMatchesRows(List<Object> rows) {
+    final Frame rowFrame = new Frame(0, true, rows);
+    final Frame columnarFrame = rowFrame.withEncoding(Meta.FrameEncoding.COLUMNAR,
+        Service.PROTOCOL_VERSION);
+    final Common.Frame columnarProto = columnarFrame.toProto();
+    assertEquals(0, columnarProto.getRowsCount());
+    assertEquals(rows.size(), columnarProto.getColumnarRows().getRowCount());
+
+    final Frame expected = Frame.fromProto(rowFrame.toProto());
+    final Frame actual = Frame.fromProto(columnarProto);
+    assertEquals(expected.done, actual.done);
+    assertEquals(expected.offset, actual.offset);
+    final Iterator<Object> expectedRows = expected.rows.iterator();
+    final Iterator<Object> actualRows = actual.rows.iterator();
+    while (expectedRows.hasNext()) {
+      assertTrue(actualRows.hasNext());
+      assertArrayEquals(((List<?>) expectedRows.next()).toArray(),
+          ((List<?>) actualRows.next()).toArray());
+    }
+    assertFalse(actualRows.hasNext());
+  }
+
+  @Test public void testColumnarScalars() {
+    List<Object> rows = new ArrayList<>();
+    rows.add(new Object[] {1, 2L, 1.5d, 2.5f, "a", 'x', true, (byte) 3, (short) 4,
+        new BigDecimal("1.23"), new byte[] {1, 2}});
+    rows.add(new Object[] {null, -7L, null, -0.5f, "", null, false, null, null,
+        null, new byte[0]});
+    rows.add(new Object[] {Integer.MAX_VALUE, Long.MIN_VALUE, Double.NaN, null, null, 'y',
+        null, Byte.MIN_VALUE, Short.MAX_VALUE, new BigDecimal("-9.99"), null});
+    rows.add(new Object[] {0, null, -1d, 0f, "\u00e9t\u00e9", '\u20ac', true, (byte) 0,
+        (short) 0, BigDecimal.ZERO, new byte[] {-1}});
+    assertColumnarMatchesRows(rows);
+  }
+
+  @Test public void testColumnarAllNulls() {
+    List<Object> rows = new ArrayList<>();
+    for (int i = 0; i < 17; i++) {
+      rows.add(Arrays.asList(null, i));
+    }
+    assertColumnarMatchesRows(rows);
+
+    Common.ColumnVector column = new Frame(0, true, rows, Meta.FrameEncoding.COLUMNAR)
+        .toProto().getColumnarRows().getColumns(0);
+    assertEquals(Common.Rep.NULL, column.getType());
+    assertEquals(3, column.getNullBitmap().size());
+  }
+
+  @Test public void testColumnarFallback() {
+    List<Object> rows = new ArrayList<>();
+    // Mixed types and arrays are written one value per row
+    rows.add(Arrays.asList(1, Arrays.asList(1, 2), "a"));
+    rows.add(Arrays.asList(2L, Arrays.asList(3), "b"));
+    rows.add(Arrays.asList(null, null, "c"));
+    assertColumnarMatchesRows(rows);
+
+    Common.ColumnarFrame columnar = new Frame(0, true, rows, Meta.FrameEncoding.COLUMNAR)
+        .toProto().getColumnarRows();
+    assertEquals(Common.Rep.OBJECT, columnar.getColumns(0).getType());
+    assertEquals(3, columnar.getColumns(0).getValuesCount());
+    assertEquals(Common.Rep.OBJECT, columnar.getColumns(1).getType());
+    assertEquals(Common.Rep.STRING, columnar.getColumns(2).getType());
+    assertEquals(0, columnar.getColumns(2).getValuesCount());
+  }
+
+  @Test public void testColumnarUsesRowsWhenNotTabular() {
+    // Nothing to lay out as columns
+    Common.Frame proto = new Frame(0, true, Collections.emptyList(),
+        Meta.FrameEncoding.COLUMNAR).toProto();
+    assertFalse(proto.hasColumnarRows());
+    assertEquals(0, proto.getRowsCount());
+
+    // Rows of differing widths
+    List<Object> rows = new ArrayList<>();
+    rows.add(Arrays.asList(1, 2));
+    rows.add(Arrays.asList(3));
+    proto = new Frame(0, true, rows, Meta.FrameEncoding.COLUMNAR).toProto();
+    assertFalse(proto.hasColumnarRows());
+    assertEquals(2, proto.getRowsCount());
+  }
 }
 
 // End FrameTest.java
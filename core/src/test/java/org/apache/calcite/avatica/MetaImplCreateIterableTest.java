@@ -21,12 +21,15 @@
 import org.junit.Test;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -41,7 +44,9 @@ private static class MetaImplWithHardCodedResult extends MetaImpl {
     /**
      * Number of times the fetch method is called.
      */
-    int fetchCounter = 0;
+    volatile int fetchCounter = 0;
+    /** Offset at which fetch fails once as if the server lost the result set, or -1. */
+    long missingResultsOffset = -1;
 
     MetaImplWithHardCodedResult(AvaticaConnection connection, List<Object> result) {
       super(connection);
@@ -75,7 +80,12 @@ private static class MetaImplWithHardCodedResult extends MetaImpl {
       return null;
     }
 
-    @Override public Frame fetch(StatementHandle h, long offset, int fetchMaxRowCount) {
+    @Override public Frame fetch(StatementHandle h, long offset, int fetchMaxRowCount)
+        throws MissingResultsException {
+      if (offset == missingResultsOffset) {
+        missingResultsOffset = -1;
+        throw new MissingResultsException(h);
+      }
       fetchCounter++;
       int start = (int) offset;
       int end = start + fetchMaxRowCount;
@@ -137,10 +147,93 @@ private static class MetaImplWithHardCodedResult extends MetaImpl {
     assertEquals(11, metaImpl.fetchCounter);
   }
 
+  @Test public void testPrefetchReturnsRowsInOrder() throws SQLException {
+    final List<Object> result = IntStream.range(0, 550).boxed().collect(Collectors.toList());
+    MetaImplWithHardCodedResult metaImpl =
+        new MetaImplWithHardCodedResult(mockConnection(50, 3), result);
+    final List<Object> rows = new ArrayList<>();
+    for (Object o : metaImpl.createIterable(null, new QueryState(""), null, null, null)) {
+      rows.add(o);
+    }
+    assertEquals(result, rows);
+    assertEquals(11, metaImpl.fetchCounter);
+  }
+
+  @Test public void testPrefetchRecoversMissingResults() throws Exception {
+    final List<Object> result = IntStream.range(0, 550).boxed().collect(Collectors.toList());
+    final AvaticaConnection connection = mockConnection(50, 2);
+    final AvaticaStatement stmt = connection.lookupStatement(null);
+    final List<Thread> syncThreads = new ArrayList<>();
+    when(stmt.syncResults(any(), anyLong())).thenAnswer(invocation -> {
+      syncThreads.add(Thread.currentThread());
+      return true;
+    });
+    MetaImplWithHardCodedResult metaImpl = new MetaImplWithHardCodedResult(connection, result);
+    metaImpl.missingResultsOffset = 200;
+    final List<Object> rows = new ArrayList<>();
+    for (Object o : metaImpl.createIterable(null, new QueryState(""), null, null, null)) {
+      rows.add(o);
+    }
+    assertEquals(result, rows);
+    // The statement is recovered by the thread that reads the rows
+    assertEquals(Collections.singletonList(Thread.currentThread()), syncThreads);
+  }
+
+  @Test public void testContinuesFromOffsetOfFirstFrame() throws SQLException {
+    final List<Object> result = IntStream.range(0, 550).boxed().collect(Collectors.toList());
+    for (int prefetchDepth : new int[] {0, 2}) {
+      MetaImplWithHardCodedResult metaImpl =
+          new MetaImplWithHardCodedResult(mockConnection(50, prefetchDepth), result);
+      final Meta.Frame firstFrame = new Meta.Frame(100, false, result.subList(100, 150));
+      final List<Object> rows = new ArrayList<>();
+      for (Object o : metaImpl.createIterable(null, new QueryState(""), null, null, firstFrame)) {
+        rows.add(o);
+      }
+      assertEquals("prefetch depth " + prefetchDepth, result.subList(100, 550), rows);
+      assertEquals(8, metaImpl.fetchCounter);
+    }
+  }
+
+  @Test public void testPrefetchEndsWhenResultsAreLost() throws SQLException {
+    MetaImplWithHardCodedResult metaImpl = new MetaImplWithHardCodedResult(mockConnection(50, 2),
+        IntStream.range(0, 550).boxed().collect(Collectors.toList()));
+    metaImpl.missingResultsOffset = 200;
+    int cnt = 0;
+    for (Object o : metaImpl.createIterable(null, new QueryState(""), null, null, null)) {
+      cnt++;
+    }
+    assertEquals(200, cnt);
+  }
+
+  @Test public void testAdaptiveFetchSizeGrows() throws SQLException {
+    final List<Object> result = IntStream.range(0, 550).boxed().collect(Collectors.toList());
+    final AvaticaConnection connection = mockConnection(50);
+    final ConnectionConfig config = connection.config();
+    when(config.fetchSizeAdaptive()).thenReturn(true);
+    when(config.fetchSizeTargetBytes()).thenReturn(1L << 20);
+    when(config.fetchSizeMaxLatency()).thenReturn(60_000L);
+    MetaImplWithHardCodedResult metaImpl = new MetaImplWithHardCodedResult(connection, result);
+    final List<Object> rows = new ArrayList<>();
+    for (Object o : metaImpl.createIterable(null, new QueryState(""), null, null, null)) {
+      rows.add(o);
+    }
+    assertEquals(result, rows);
+    // 50, 100, 200, then the remaining 200 rows
+    assertEquals(4, metaImpl.fetchCounter);
+  }
+
   private static AvaticaConnection mockConnection(int fetchSize) throws SQLException {
+    return mockConnection(fetchSize, 0);
+  }
+
+  private static AvaticaConnection mockConnection(int fetchSize, int prefetchDepth)
+      throws SQLException {
     AvaticaConnection connection = mock(AvaticaConnection.class);
     AvaticaStatement stmt = mock(AvaticaStatement.class);
+    ConnectionConfig config = mock(ConnectionConfig.class);
     when(connection.lookupStatement(any())).thenReturn(stmt);
+    when(connection.config()).thenReturn(config);
+    when(config.fetchPrefetchDepth()).thenReturn(prefetchDepth);
     when(stmt.getFetchSize()).thenReturn(fetchSize);
     return connection;
   }
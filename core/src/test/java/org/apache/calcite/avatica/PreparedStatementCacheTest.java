@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica;
+
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link PreparedStatementCache}.
+ */
+public class PreparedStatementCacheTest {
+  private static PreparedStatementCache.Key key(String sql) {
+    return new PreparedStatementCache.Key(sql, ResultSet.TYPE_FORWARD_ONLY,
+        ResultSet.CONCUR_READ_ONLY, ResultSet.HOLD_CURSORS_OVER_COMMIT);
+  }
+
+  private static Meta.StatementHandle handle(int id) {
+    return new Meta.StatementHandle("connection", id, null);
+  }
+
+  @Test public void testTakeReturnsKeptHandleOnce() {
+    final PreparedStatementCache cache = new PreparedStatementCache(2);
+    final Meta.StatementHandle h = handle(1);
+    assertEquals(Collections.emptyList(), cache.put(key("select 1"), h));
+    assertNull(cache.take(key("select 2")));
+    assertSame(h, cache.take(key("select 1")));
+    assertNull(cache.take(key("select 1")));
+  }
+
+  @Test public void testKeyIncludesResultSetOptions() {
+    final PreparedStatementCache cache = new PreparedStatementCache(2);
+    cache.put(key("select 1"), handle(1));
+    assertNull(
+        cache.take(
+            new PreparedStatementCache.Key("select 1", ResultSet.TYPE_SCROLL_INSENSITIVE,
+                ResultSet.CONCUR_READ_ONLY, ResultSet.HOLD_CURSORS_OVER_COMMIT)));
+  }
+
+  @Test public void testKeepsOneHandlePerKey() {
+    final PreparedStatementCache cache = new PreparedStatementCache(2);
+    final Meta.StatementHandle h1 = handle(1);
+    final Meta.StatementHandle h2 = handle(2);
+    cache.put(key("select 1"), h1);
+    assertEquals(Collections.singletonList(h1), cache.put(key("select 1"), h2));
+    assertEquals(1, cache.size());
+    assertSame(h2, cache.take(key("select 1")));
+  }
+
+  @Test public void testEvictsLeastRecentlyUsed() {
+    final PreparedStatementCache cache = new PreparedStatementCache(2);
+    final Meta.StatementHandle h1 = handle(1);
+    final Meta.StatementHandle h2 = handle(2);
+    final Meta.StatementHandle h3 = handle(3);
+    cache.put(key("select 1"), h1);
+    cache.put(key("select 2"), h2);
+    // Using "select 1" again makes "select 2" the least recently used
+    assertSame(h1, cache.take(key("select 1")));
+    cache.put(key("select 1"), h1);
+    assertEquals(Collections.singletonList(h2), cache.put(key("select 3"), h3));
+    assertEquals(2, cache.size());
+    assertNull(cache.take(key("select 2")));
+  }
+
+  @Test public void testClearReturnsAllHandles() {
+    final PreparedStatementCache cache = new PreparedStatementCache(3);
+    final Meta.StatementHandle h1 = handle(1);
+    final Meta.StatementHandle h2 = handle(2);
+    cache.put(key("select 1"), h1);
+    cache.put(key("select 2"), h2);
+    assertEquals(Arrays.asList(h1, h2), cache.clear());
+    assertEquals(0, cache.size());
+  }
+}
+
+// End PreparedStatementCacheTest.java
@@ -68,7 +68,9 @@ public static void fuzzerTestOneInput(FuzzedDataProvider data) {
             "org.apache.calcite.avatica.proto.Requests$CommitRequest",
             "org.apache.calcite.avatica.proto.Requests$RollbackRequest",
             "org.apache.calcite.avatica.proto.Requests$PrepareAndExecuteBatchRequest",
-            "org.apache.calcite.avatica.proto.Requests$ExecuteBatchRequest"
+            "org.apache.calcite.avatica.proto.Requests$ExecuteBatchRequest",
+            "org.apache.calcite.avatica.proto.Requests$ExecuteDirectRequest",
+            "org.apache.calcite.avatica.proto.Requests$MultiRequest"
         });
 
         org.apache.calcite.avatica.proto.Common.WireMessage wireMsg =
@@ -96,7 +98,9 @@ public static void fuzzerTestOneInput(FuzzedDataProvider data) {
             "org.apache.calcite.avatica.proto.Responses$RpcMetadata",
             "org.apache.calcite.avatica.proto.Responses$CommitResponse",
             "org.apache.calcite.avatica.proto.Responses$RollbackResponse",
-            "org.apache.calcite.avatica.proto.Responses$ExecuteBatchResponse"
+            "org.apache.calcite.avatica.proto.Responses$ExecuteBatchResponse",
+            "org.apache.calcite.avatica.proto.Responses$ExecuteDirectResponse",
+            "org.apache.calcite.avatica.proto.Responses$MultiResponse"
         });
 
         org.apache.calcite.avatica.proto.Common.WireMessage wireMsg =
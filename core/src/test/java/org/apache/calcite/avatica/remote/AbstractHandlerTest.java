@@ -16,13 +16,23 @@
  */
 package org.apache.calcite.avatica.remote;
 
+import org.apache.calcite.avatica.AvaticaClientRuntimeException;
 import org.apache.calcite.avatica.AvaticaSeverity;
+import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.avatica.metrics.noop.NoopMetricsSystem;
 import org.apache.calcite.avatica.remote.Handler.HandlerResponse;
+import org.apache.calcite.avatica.remote.Service.CommitRequest;
+import org.apache.calcite.avatica.remote.Service.CommitResponse;
 import org.apache.calcite.avatica.remote.Service.ErrorResponse;
+import org.apache.calcite.avatica.remote.Service.MultiRequest;
+import org.apache.calcite.avatica.remote.Service.MultiResponse;
 import org.apache.calcite.avatica.remote.Service.Request;
 import org.apache.calcite.avatica.remote.Service.Response;
+import org.apache.calcite.avatica.remote.Service.RollbackRequest;
+import org.apache.calcite.avatica.remote.Service.RollbackResponse;
 
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 
 import java.io.IOException;
@@ -33,6 +43,7 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Test for common functionality across {@link Handler} implementations.
@@ -103,6 +114,7 @@ private String exceptionToString(Exception e) {
     Mockito.when(handler.apply(Mockito.anyString())).thenCallRealMethod();
     // Deserialize it back into a POJO
     Mockito.when(handler.decode(Mockito.anyString())).thenReturn(request);
+    Mockito.when(handler.execute(request)).thenCallRealMethod();
     // Construct the Response for that Request
     Mockito.when(request.accept(Mockito.nullable(Service.class))).thenReturn(response);
     // Throw an IOException when serializing the Response.
@@ -129,6 +141,7 @@ private String exceptionToString(Exception e) {
     Mockito.when(handler.apply(Mockito.anyString())).thenCallRealMethod();
     // Deserialize it back into a POJO
     Mockito.when(handler.decode(Mockito.anyString())).thenReturn(request);
+    Mockito.when(handler.execute(request)).thenCallRealMethod();
     // Construct the Response for that Request
     Mockito.when(request.accept(Mockito.any(Service.class))).thenReturn(response);
     // Throw an IOException when serializing the Response.
@@ -177,6 +190,75 @@ private String exceptionToString(Exception e) {
     HandlerResponse<String> response = handler.badRequestErrorResponse(exception);
     assertEquals(400, response.getStatusCode());
   }
+
+  @Test public void testMultiRequestExecutedInOrder() {
+    final Service service = Mockito.mock(Service.class);
+    final CommitResponse commitResponse = new CommitResponse();
+    final RollbackResponse rollbackResponse = new RollbackResponse();
+    Mockito.when(service.apply(Mockito.any(CommitRequest.class))).thenReturn(commitResponse);
+    Mockito.when(service.apply(Mockito.any(RollbackRequest.class))).thenReturn(rollbackResponse);
+    final JsonHandler handler = new JsonHandler(service, NoopMetricsSystem.getInstance());
+
+    final Response response = handler.execute(
+        new MultiRequest(
+            Arrays.<Request>asList(new CommitRequest("0"), new RollbackRequest("0"))));
+    assertEquals(
+        Arrays.<Response>asList(commitResponse, rollbackResponse),
+        ((MultiResponse) response).responses);
+    final InOrder inOrder = Mockito.inOrder(service);
+    inOrder.verify(service).apply(Mockito.any(CommitRequest.class));
+    inOrder.verify(service).apply(Mockito.any(RollbackRequest.class));
+  }
+
+  @Test public void testMultiRequestStopsAtFirstError() {
+    final Service service = Mockito.mock(Service.class);
+    Mockito.when(service.apply(Mockito.any(CommitRequest.class)))
+        .thenThrow(new RuntimeException("commit failed"));
+    final JsonHandler handler = new JsonHandler(service, NoopMetricsSystem.getInstance());
+
+    final MultiResponse response = (MultiResponse) handler.execute(
+        new MultiRequest(
+            Arrays.<Request>asList(new CommitRequest("0"), new RollbackRequest("0"))));
+    assertEquals(1, response.responses.size());
+    assertTrue(response.responses.get(0) instanceof ErrorResponse);
+    assertTrue(((ErrorResponse) response.responses.get(0)).errorMessage
+        .contains("commit failed"));
+    Mockito.verify(service, Mockito.never()).apply(Mockito.any(RollbackRequest.class));
+    try {
+      response.get(0, CommitResponse.class);
+      fail("Expected the error of the failed request");
+    } catch (AvaticaClientRuntimeException e) {
+      assertTrue(e.getMessage().contains("commit failed"));
+    }
+  }
+
+  @Test public void testMultiRequestSameThroughHandlerAndService() {
+    final Meta meta = Mockito.mock(Meta.class);
+    Mockito.doThrow(new RuntimeException("rollback failed"))
+        .when(meta).rollback(Mockito.any(Meta.ConnectionHandle.class));
+    final LocalService service = new LocalService(meta);
+    final JsonHandler handler = new JsonHandler(service, NoopMetricsSystem.getInstance());
+    final MultiRequest request = new MultiRequest(
+        Arrays.<Request>asList(new CommitRequest("0"), new RollbackRequest("0"),
+            new CommitRequest("0")));
+
+    for (MultiResponse response
+        : Arrays.asList((MultiResponse) handler.execute(request), service.apply(request))) {
+      assertEquals(2, response.responses.size());
+      assertTrue(response.responses.get(0) instanceof CommitResponse);
+      assertTrue(((ErrorResponse) response.responses.get(1)).errorMessage
+          .contains("rollback failed"));
+    }
+    // Once through the handler, once through the service; never after the failure
+    Mockito.verify(meta, Mockito.times(2)).commit(Mockito.any(Meta.ConnectionHandle.class));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNestedMultiRequest() {
+    new MultiRequest(
+        Arrays.<Request>asList(
+            new MultiRequest(Arrays.<Request>asList(new CommitRequest("0")))));
+  }
 }
 
 // End AbstractHandlerTest.java
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.AvaticaUtils;
+import org.apache.calcite.avatica.ConnectionConfig;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.NoHttpResponseException;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Test class for {@link AvaticaCommonsHttpAsyncClientImpl}.
+ */
+public class AvaticaCommonsHttpAsyncClientImplTest {
+  /** Executor for requests that must be sent without blocking a thread. */
+  private static final Executor NO_EXECUTOR = new Executor() {
+    @Override public void execute(Runnable command) {
+      throw new AssertionError("Expected the request to be sent without blocking");
+    }
+  };
+
+  /** Answers each request with the next of the given outcomes: a response, or an exception
+   * with which the request fails. */
+  private static class Outcomes implements Answer<Void> {
+    final List<SimpleHttpRequest> requests = new ArrayList<>();
+    private final Object[] outcomes;
+
+    Outcomes(Object... outcomes) {
+      this.outcomes = outcomes;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override public Void answer(InvocationOnMock invocation) {
+      final Object outcome = outcomes[requests.size()];
+      requests.add((SimpleHttpRequest) invocation.getArgument(0));
+      final FutureCallback<SimpleHttpResponse> callback =
+          (FutureCallback<SimpleHttpResponse>) invocation.getArgument(2);
+      if (outcome instanceof Exception) {
+        callback.failed((Exception) outcome);
+      } else {
+        callback.completed((SimpleHttpResponse) outcome);
+      }
+      return null;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static AvaticaCommonsHttpAsyncClientImpl client(Outcomes outcomes) throws Exception {
+    final AvaticaCommonsHttpAsyncClientImpl client =
+        spy(new AvaticaCommonsHttpAsyncClientImpl(new URI("http://127.0.0.1")));
+    final ConnectionConfig config = mock(ConnectionConfig.class);
+    when(config.httpCompression()).thenReturn(HttpCompression.NONE);
+    when(config.httpPoolIdleTimeout()).thenReturn(30_000L);
+    client.setHttpClientPool(mock(PoolingHttpClientConnectionManager.class), config);
+    doAnswer(outcomes).when(client).execute(any(SimpleHttpRequest.class),
+        any(HttpClientContext.class), any(FutureCallback.class));
+    return client;
+  }
+
+  private static SimpleHttpResponse response(int code, String body) {
+    return SimpleHttpResponse.create(code, body.getBytes(UTF_8),
+        ContentType.APPLICATION_OCTET_STREAM);
+  }
+
+  @Test public void testSendAsync() throws Exception {
+    final Outcomes outcomes = new Outcomes(response(HttpURLConnection.HTTP_OK, "success"));
+    final AvaticaCommonsHttpAsyncClientImpl client = client(outcomes);
+
+    final byte[] request = "fake_request".getBytes(UTF_8);
+    final CompletableFuture<byte[]> response = client.sendAsync(request, NO_EXECUTOR);
+    assertEquals("success", AvaticaUtils.newStringUtf8(response.get()));
+    assertEquals(1, outcomes.requests.size());
+    assertArrayEquals(request, outcomes.requests.get(0).getBodyBytes());
+  }
+
+  @Test public void testRetryOnHttp503AndMissingResponse() throws Exception {
+    final Outcomes outcomes = new Outcomes(
+        response(HttpURLConnection.HTTP_UNAVAILABLE, ""),
+        new NoHttpResponseException("The server didn't respond!"),
+        response(HttpURLConnection.HTTP_OK, "success"));
+    final AvaticaCommonsHttpAsyncClientImpl client = client(outcomes);
+
+    final byte[] response = client.sendAsync("fake_request".getBytes(UTF_8), NO_EXECUTOR).get();
+    assertEquals("success", AvaticaUtils.newStringUtf8(response));
+    assertEquals(3, outcomes.requests.size());
+  }
+
+  @Test public void testFailure() throws Exception {
+    final AvaticaCommonsHttpAsyncClientImpl client =
+        client(new Outcomes(response(HttpURLConnection.HTTP_NOT_FOUND, "")));
+    try {
+      client.sendAsync("fake_request".getBytes(UTF_8), NO_EXECUTOR).get();
+      fail("Expected the request to fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause().getMessage().contains("HTTP/404"));
+    }
+  }
+}
+
+// End AvaticaCommonsHttpAsyncClientImplTest.java
@@ -22,11 +22,14 @@
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.NoHttpResponseException;
 import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
 import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.message.BasicHeader;
 
+import org.junit.After;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -36,6 +39,7 @@
 import java.net.URI;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.any;
@@ -53,6 +57,19 @@
  * Test class for {@link AvaticaCommonsHttpClientImpl}
  */
 public class AvaticaCommonsHttpClientImplTest {
+  @After public void resetCircuitBreakers() {
+    CircuitBreaker.reset();
+  }
+
+
+  /** Returns a mock of the configuration of a connection that sets no
+   * properties. */
+  private static ConnectionConfig config() {
+    final ConnectionConfig config = mock(ConnectionConfig.class);
+    when(config.httpCompression()).thenReturn(HttpCompression.NONE);
+    when(config.httpPoolIdleTimeout()).thenReturn(30_000L);
+    return config;
+  }
 
   @Test public void testRetryOnHttp503() throws Exception {
     final byte[] requestBytes = "fake_request".getBytes(UTF_8);
@@ -73,8 +90,7 @@ public class AvaticaCommonsHttpClientImplTest {
 
     final AvaticaCommonsHttpClientImpl client =
             spy(new AvaticaCommonsHttpClientImpl(new URI("http://127.0.0.1")));
-    client.setHttpClientPool(mock(PoolingHttpClientConnectionManager.class), mock(
-        ConnectionConfig.class));
+    client.setHttpClientPool(mock(PoolingHttpClientConnectionManager.class), config());
 
     doAnswer(failThenSucceed).when(client)
             .executeOpen(any(HttpHost.class), any(HttpPost.class), eq(client.context));
@@ -107,8 +123,7 @@ public class AvaticaCommonsHttpClientImplTest {
 
     final AvaticaCommonsHttpClientImpl client =
             spy(new AvaticaCommonsHttpClientImpl(new URI("http://127.0.0.1")));
-    client.setHttpClientPool(mock(PoolingHttpClientConnectionManager.class), mock(
-        ConnectionConfig.class));
+    client.setHttpClientPool(mock(PoolingHttpClientConnectionManager.class), config());
 
     doAnswer(failThenSucceed).when(client)
             .executeOpen(any(HttpHost.class), any(HttpPost.class), eq(client.context));
@@ -126,8 +141,7 @@ public class AvaticaCommonsHttpClientImplTest {
   public void testPersistentContextReusedAcrossRequests() throws Exception {
     final AvaticaCommonsHttpClientImpl client =
         spy(new AvaticaCommonsHttpClientImpl(new URI("http://127.0.0.1")));
-    client.setHttpClientPool(mock(PoolingHttpClientConnectionManager.class), mock(
-        ConnectionConfig.class));
+    client.setHttpClientPool(mock(PoolingHttpClientConnectionManager.class), config());
 
     CloseableHttpResponse response = mock(CloseableHttpResponse.class);
     when(response.getCode()).thenReturn(HttpURLConnection.HTTP_OK);
@@ -151,8 +165,7 @@ public void testPersistentContextReusedAcrossRequests() throws Exception {
   public void testPersistentContextThreadSafety() throws Exception {
     final AvaticaCommonsHttpClientImpl client =
         spy(new AvaticaCommonsHttpClientImpl(new URI("http://127.0.0.1")));
-    client.setHttpClientPool(mock(PoolingHttpClientConnectionManager.class), mock(
-        ConnectionConfig.class));
+    client.setHttpClientPool(mock(PoolingHttpClientConnectionManager.class), config());
 
     doReturn(mock(CloseableHttpResponse.class)).when(client)
         .executeOpen(any(HttpHost.class), any(HttpPost.class), eq(client.context));
@@ -180,6 +193,68 @@ public void testPersistentContextThreadSafety() throws Exception {
         eq(client.context));
   }
 
+  @Test public void testGiveUpAfterMaxAttempts() throws Exception {
+    final ConnectionConfig config = config();
+    when(config.httpRetryMaxAttempts()).thenReturn(2);
+    final AvaticaCommonsHttpClientImpl client =
+        spy(new AvaticaCommonsHttpClientImpl(new URI("http://127.0.0.1")));
+    client.setHttpClientPool(mock(PoolingHttpClientConnectionManager.class), config);
+
+    final CloseableHttpResponse badResponse = mock(CloseableHttpResponse.class);
+    when(badResponse.getCode()).thenReturn(HttpURLConnection.HTTP_UNAVAILABLE);
+    doReturn(badResponse).when(client)
+        .executeOpen(any(HttpHost.class), any(HttpPost.class), eq(client.context));
+
+    try {
+      client.send(new byte[0]);
+      fail("Expected the request to fail");
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("after 2 attempts"));
+    }
+    verify(client, times(2)).executeOpen(any(HttpHost.class), any(HttpPost.class),
+        eq(client.context));
+  }
+
+  @Test public void testCircuitBreakerFailsFast() throws Exception {
+    final ConnectionConfig config = config();
+    when(config.httpRetryMaxAttempts()).thenReturn(1);
+    when(config.httpCircuitBreakerThreshold()).thenReturn(1);
+    when(config.httpCircuitBreakerOpenTime()).thenReturn(3_600_000L);
+    final AvaticaCommonsHttpClientImpl client =
+        spy(new AvaticaCommonsHttpClientImpl(new URI("http://127.0.0.1:8766")));
+    client.setHttpClientPool(mock(PoolingHttpClientConnectionManager.class), config);
+
+    final CloseableHttpResponse badResponse = mock(CloseableHttpResponse.class);
+    when(badResponse.getCode()).thenReturn(HttpURLConnection.HTTP_UNAVAILABLE);
+    doReturn(badResponse).when(client)
+        .executeOpen(any(HttpHost.class), any(HttpPost.class), eq(client.context));
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        client.send(new byte[0]);
+        fail("Expected the request to fail");
+      } catch (RuntimeException e) {
+        // expected
+      }
+    }
+    // The second request was not sent
+    verify(client, times(1)).executeOpen(any(HttpHost.class), any(HttpPost.class),
+        eq(client.context));
+  }
+
+  @Test public void testRetryAfter() {
+    final CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+    assertEquals(-1, AvaticaCommonsHttpClientImpl.retryAfterMillis(response));
+    when(response.getFirstHeader(HttpHeaders.RETRY_AFTER))
+        .thenReturn(new BasicHeader(HttpHeaders.RETRY_AFTER, "3"));
+    assertEquals(3000, AvaticaCommonsHttpClientImpl.retryAfterMillis(response));
+    when(response.getFirstHeader(HttpHeaders.RETRY_AFTER))
+        .thenReturn(new BasicHeader(HttpHeaders.RETRY_AFTER, "Wed, 21 Oct 2015 07:28:00 GMT"));
+    assertEquals(0, AvaticaCommonsHttpClientImpl.retryAfterMillis(response));
+    when(response.getFirstHeader(HttpHeaders.RETRY_AFTER))
+        .thenReturn(new BasicHeader(HttpHeaders.RETRY_AFTER, "soon"));
+    assertEquals(-1, AvaticaCommonsHttpClientImpl.retryAfterMillis(response));
+  }
 }
 
 // End AvaticaCommonsHttpClientImplTest.java
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.AvaticaUtils;
+import org.apache.calcite.avatica.ConnectionConfig;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.impl.BasicEntityDetails;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Test class for {@link AvaticaHttp2ClientImpl}.
+ */
+public class AvaticaHttp2ClientImplTest {
+
+  /** Answers every request with the same response, streaming its body to the
+   * consumer in two parts, and keeps the body of the last request. */
+  private static class Respond implements Answer<Void> {
+    private final SimpleHttpResponse response;
+    private final byte[] body;
+    byte[] request;
+
+    Respond(int code, String body) {
+      this.body = body.getBytes(UTF_8);
+      this.response = SimpleHttpResponse.create(code);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override public Void answer(InvocationOnMock invocation) throws Exception {
+      request = ((SimpleHttpRequest) invocation.getArgument(0)).getBodyBytes();
+      final AsyncResponseConsumer<Void> consumer = invocation.getArgument(1);
+      consumer.consumeResponse(response,
+          new BasicEntityDetails(body.length, ContentType.APPLICATION_OCTET_STREAM), null,
+          (FutureCallback<Void>) invocation.getArgument(3));
+      consumer.updateCapacity(mock(CapacityChannel.class));
+      final int half = body.length / 2;
+      consumer.consume(ByteBuffer.wrap(body, 0, half));
+      consumer.consume(ByteBuffer.wrap(body, half, body.length - half));
+      consumer.streamEnd(null);
+      return null;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static AvaticaHttp2ClientImpl client(Answer<Void> respond) throws Exception {
+    final AvaticaHttp2ClientImpl client =
+        spy(new AvaticaHttp2ClientImpl(new URI("http://127.0.0.1")));
+    final ConnectionConfig config = mock(ConnectionConfig.class);
+    when(config.httpCompression()).thenReturn(HttpCompression.NONE);
+    when(config.httpPoolIdleTimeout()).thenReturn(30_000L);
+    client.setHttpClientPool(mock(PoolingHttpClientConnectionManager.class), config);
+    doAnswer(respond).when(client).execute(any(SimpleHttpRequest.class),
+        any(AsyncResponseConsumer.class), any(HttpClientContext.class),
+        any(FutureCallback.class));
+    return client;
+  }
+
+  @Test public void testSendStreamsThroughAsyncClient() throws Exception {
+    final Respond respond = new Respond(HttpURLConnection.HTTP_OK, "success");
+    final AvaticaHttp2ClientImpl client = client(respond);
+
+    final byte[] request = "fake_request".getBytes(UTF_8);
+    assertEquals("success", AvaticaUtils.newStringUtf8(client.send(request)));
+    assertArrayEquals(request, respond.request);
+  }
+
+  @Test public void testSendFailure() throws Exception {
+    final AvaticaHttp2ClientImpl client =
+        client(new Respond(HttpURLConnection.HTTP_NOT_FOUND, ""));
+    try {
+      client.send("fake_request".getBytes(UTF_8));
+      fail("Expected the request to fail");
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("HTTP/404"));
+    }
+  }
+
+  @Test public void testBodyFailsIfExchangeFails() throws Exception {
+    final AvaticaHttp2ClientImpl client = client(new Answer<Void>() {
+      @SuppressWarnings("unchecked")
+      @Override public Void answer(InvocationOnMock invocation) throws Exception {
+        final AsyncResponseConsumer<Void> consumer = invocation.getArgument(1);
+        consumer.consumeResponse(SimpleHttpResponse.create(HttpURLConnection.HTTP_OK),
+            new BasicEntityDetails(100, ContentType.APPLICATION_OCTET_STREAM), null,
+            (FutureCallback<Void>) invocation.getArgument(3));
+        consumer.updateCapacity(mock(CapacityChannel.class));
+        consumer.consume(ByteBuffer.wrap("partial".getBytes(UTF_8)));
+        consumer.failed(new IOException("stream reset"));
+        return null;
+      }
+    });
+    try {
+      client.send("fake_request".getBytes(UTF_8));
+      fail("Expected the request to fail");
+    } catch (RuntimeException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+}
+
+// End AvaticaHttp2ClientImplTest.java
@@ -26,6 +26,7 @@
 import java.net.URL;
 import java.util.Properties;
 
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -57,6 +58,21 @@ public class AvaticaHttpClientFactoryTest {
         client instanceof AvaticaHttpClientImpl);
   }
 
+  @Test public void testHttp2HttpClient() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(BuiltInConnectionProperty.HTTP_CLIENT_IMPL.name(),
+        AvaticaHttp2ClientImpl.class.getName());
+    URL url = new URI("http://localhost:8765").toURL();
+    ConnectionConfig config = new ConnectionConfigImpl(props);
+    AvaticaHttpClientFactory httpClientFactory = new AvaticaHttpClientFactoryImpl();
+
+    AvaticaHttpClient client = httpClientFactory.getClient(url, config, null);
+    assertTrue("Client was an instance of " + client.getClass(),
+        client instanceof AvaticaHttp2ClientImpl);
+    assertSame(CommonsHttpClientPoolCache.getHttp2AsyncClient(config),
+        ((AvaticaHttp2ClientImpl) client).asyncClient);
+  }
+
   @Test(expected = RuntimeException.class) public void testInvalidHttpClient() throws Exception {
     Properties props = new Properties();
     props.setProperty(BuiltInConnectionProperty.HTTP_CLIENT_IMPL.name(),
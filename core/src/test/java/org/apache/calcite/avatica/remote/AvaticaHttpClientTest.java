@@ -16,6 +16,9 @@
  */
 package org.apache.calcite.avatica.remote;
 
+import org.apache.calcite.avatica.BuiltInConnectionProperty;
+import org.apache.calcite.avatica.ConnectionConfigImpl;
+
 import org.junit.Test;
 import org.mockito.Mockito;
 
@@ -26,8 +29,13 @@
 import java.net.URI;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Tests for the HTTP transport.
@@ -66,6 +74,34 @@ public void testRetryOnUnavailable() throws Exception {
     assertArrayEquals(RESPONSE.getBytes(StandardCharsets.UTF_8), response);
   }
 
+  @Test
+  public void testGiveUpAfterMaxAttempts() throws Exception {
+    URL url = new URI("http://127.0.0.1:8767").toURL();
+    final HttpURLConnection cnxn = Mockito.mock(HttpURLConnection.class);
+    final AtomicInteger attempts = new AtomicInteger();
+    AvaticaHttpClientImpl client = new AvaticaHttpClientImpl(url) {
+      @Override HttpURLConnection openConnection() throws IOException {
+        attempts.incrementAndGet();
+        return cnxn;
+      }
+    };
+    final Properties props = new Properties();
+    props.setProperty(BuiltInConnectionProperty.HTTP_RETRY_MAX_ATTEMPTS.camelName(), "3");
+    props.setProperty(BuiltInConnectionProperty.HTTP_RETRY_INITIAL_BACKOFF.camelName(), "0");
+    client.setRetryConfig(new ConnectionConfigImpl(props));
+
+    Mockito.when(cnxn.getResponseCode()).thenReturn(HttpURLConnection.HTTP_UNAVAILABLE);
+    Mockito.when(cnxn.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+
+    try {
+      client.send(REQUEST.getBytes(StandardCharsets.UTF_8));
+      fail("Expected the request to fail");
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("after 3 attempts"));
+    }
+    assertEquals(3, attempts.get());
+  }
+
   @Test(expected = RuntimeException.class)
   public void testServerError() throws Exception {
     // HTTP 500 should error out
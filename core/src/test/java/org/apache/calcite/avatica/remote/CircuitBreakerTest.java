@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link CircuitBreaker}.
+ */
+public class CircuitBreakerTest {
+  private static final long HOUR = 3_600_000L;
+
+  @Test public void testSharedByUrl() {
+    assertSame(CircuitBreaker.of("http://shared:8765"), CircuitBreaker.of("http://shared:8765"));
+  }
+
+  @Test public void testOpensAfterThreshold() {
+    final CircuitBreaker breaker = CircuitBreaker.of("http://threshold:8765");
+    breaker.failed(3);
+    breaker.failed(3);
+    assertTrue(breaker.allowsRequest(3, HOUR));
+    breaker.failed(3);
+    assertFalse(breaker.allowsRequest(3, HOUR));
+    // Once open long enough, requests are let through again
+    assertTrue(breaker.allowsRequest(3, 0));
+    breaker.succeeded();
+    assertTrue(breaker.allowsRequest(3, HOUR));
+  }
+
+  @Test public void testHalfOpenLetsOneProbeThrough() {
+    final CircuitBreaker breaker = CircuitBreaker.of("http://probe:8765");
+    breaker.failed(1);
+    assertTrue(breaker.isOpen(1, HOUR));
+    assertFalse(breaker.isOpen(1, 0));
+    // The probe is let through, and other requests wait for its outcome
+    assertTrue(breaker.allowsRequest(1, 0));
+    assertFalse(breaker.allowsRequest(1, HOUR));
+    assertTrue(breaker.isOpen(1, HOUR));
+    // The probe fails, which opens the circuit again
+    breaker.failed(1);
+    assertFalse(breaker.allowsRequest(1, HOUR));
+    assertTrue(breaker.allowsRequest(1, 0));
+    // The probe succeeds, which closes the circuit
+    breaker.succeeded();
+    assertTrue(breaker.allowsRequest(1, HOUR));
+    assertTrue(breaker.allowsRequest(1, HOUR));
+    assertFalse(breaker.isOpen(1, HOUR));
+  }
+
+  @Test public void testSuccessResetsFailures() {
+    final CircuitBreaker breaker = CircuitBreaker.of("http://reset:8765");
+    breaker.failed(2);
+    breaker.succeeded();
+    breaker.failed(2);
+    assertTrue(breaker.allowsRequest(2, HOUR));
+  }
+
+  @Test public void testDisabled() {
+    final CircuitBreaker breaker = CircuitBreaker.of("http://disabled:8765");
+    for (int i = 0; i < 100; i++) {
+      breaker.failed(0);
+    }
+    assertTrue(breaker.allowsRequest(0, HOUR));
+  }
+
+  @Test public void testDisabledClientIgnoresOpenCircuit() {
+    final CircuitBreaker breaker = CircuitBreaker.of("http://mixed:8765");
+    breaker.failed(1);
+    assertFalse(breaker.allowsRequest(1, HOUR));
+    // A client which disabled the breaker still sends its requests
+    assertTrue(breaker.allowsRequest(0, HOUR));
+    assertFalse(breaker.isOpen(0, HOUR));
+    // Nor are its failures counted
+    breaker.succeeded();
+    breaker.failed(0);
+    breaker.failed(2);
+    assertTrue(breaker.allowsRequest(2, HOUR));
+  }
+
+  @Test public void testReset() {
+    final CircuitBreaker breaker = CircuitBreaker.of("http://forgotten:8765");
+    breaker.failed(1);
+    CircuitBreaker.reset();
+    assertNotSame(breaker, CircuitBreaker.of("http://forgotten:8765"));
+    assertTrue(CircuitBreaker.of("http://forgotten:8765").allowsRequest(1, HOUR));
+  }
+}
+
+// End CircuitBreakerTest.java
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.BuiltInConnectionProperty;
+import org.apache.calcite.avatica.ConnectionConfig;
+import org.apache.calcite.avatica.ConnectionConfigImpl;
+import org.apache.calcite.avatica.metrics.Gauge;
+import org.apache.calcite.avatica.metrics.MetricsSystem;
+import org.apache.calcite.avatica.metrics.noop.NoopMetricsSystem;
+
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link CommonsHttpClientPoolCache}.
+ */
+public class CommonsHttpClientPoolCacheTest {
+  private static ConnectionConfig config(int maxTotal, int maxPerRoute) {
+    final Properties props = new Properties();
+    props.setProperty(BuiltInConnectionProperty.HTTP_POOL_MAX_TOTAL.camelName(),
+        Integer.toString(maxTotal));
+    props.setProperty(BuiltInConnectionProperty.HTTP_POOL_MAX_PER_ROUTE.camelName(),
+        Integer.toString(maxPerRoute));
+    return new ConnectionConfigImpl(props);
+  }
+
+  @After public void resetMetricsSystem() {
+    CommonsHttpClientPoolCache.setMetricsSystem(NoopMetricsSystem.getInstance());
+  }
+
+  @Test public void testPoolSizedByConnectionProperties() {
+    final PoolingHttpClientConnectionManager pool =
+        CommonsHttpClientPoolCache.getPool(config(17, 7));
+    assertEquals(17, pool.getMaxTotal());
+    assertEquals(7, pool.getDefaultMaxPerRoute());
+  }
+
+  @Test public void testPoolsSharedBySettings() {
+    final PoolingHttpClientConnectionManager pool =
+        CommonsHttpClientPoolCache.getPool(config(18, 8));
+    assertSame(pool, CommonsHttpClientPoolCache.getPool(config(18, 8)));
+    assertNotSame(pool, CommonsHttpClientPoolCache.getPool(config(18, 9)));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test public void testPoolStatisticsRegisteredAsGauges() {
+    final MetricsSystem metrics = mock(MetricsSystem.class);
+    CommonsHttpClientPoolCache.setMetricsSystem(metrics);
+    CommonsHttpClientPoolCache.getPool(config(19, 9));
+
+    final ArgumentCaptor<Gauge<Integer>> gauge = ArgumentCaptor.forClass(Gauge.class);
+    final String prefix = CommonsHttpClientPoolCache.class.getName() + ".Pool";
+    verify(metrics, atLeastOnce()).register(startsWith(prefix), any(Gauge.class));
+    verify(metrics, atLeastOnce())
+        .register(eq(nameOfLastPool(prefix, metrics) + "MaxConnections"), gauge.capture());
+    assertEquals(Integer.valueOf(19), gauge.getValue().getValue());
+  }
+
+  /** Returns the name prefix of the gauges of the pool registered last. */
+  @SuppressWarnings("unchecked")
+  private static String nameOfLastPool(String prefix, MetricsSystem metrics) {
+    final ArgumentCaptor<String> names = ArgumentCaptor.forClass(String.class);
+    verify(metrics, atLeastOnce()).register(names.capture(), any(Gauge.class));
+    final String suffix = "LeasedConnections";
+    String last = null;
+    for (String name : names.getAllValues()) {
+      if (name.startsWith(prefix) && name.endsWith(suffix)) {
+        last = name.substring(0, name.length() - suffix.length());
+      }
+    }
+    return last;
+  }
+}
+
+// End CommonsHttpClientPoolCacheTest.java
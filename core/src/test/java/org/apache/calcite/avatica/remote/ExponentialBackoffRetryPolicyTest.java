@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.ConnectionConfig;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ExponentialBackoffRetryPolicy}.
+ */
+public class ExponentialBackoffRetryPolicyTest {
+  private static ConnectionConfig config(int maxAttempts, long deadline) {
+    final ConnectionConfig config = mock(ConnectionConfig.class);
+    when(config.httpRetryInitialBackoff()).thenReturn(100L);
+    when(config.httpRetryMaxBackoff()).thenReturn(1000L);
+    when(config.httpRetryMaxAttempts()).thenReturn(maxAttempts);
+    when(config.httpRetryDeadline()).thenReturn(deadline);
+    return config;
+  }
+
+  @Test public void testMaxBackoffDoublesUpToLimit() {
+    assertEquals(100, ExponentialBackoffRetryPolicy.maxBackoff(100, 1000, 1));
+    assertEquals(200, ExponentialBackoffRetryPolicy.maxBackoff(100, 1000, 2));
+    assertEquals(800, ExponentialBackoffRetryPolicy.maxBackoff(100, 1000, 4));
+    assertEquals(1000, ExponentialBackoffRetryPolicy.maxBackoff(100, 1000, 5));
+    assertEquals(1000, ExponentialBackoffRetryPolicy.maxBackoff(100, 1000, 100));
+    assertEquals(0, ExponentialBackoffRetryPolicy.maxBackoff(0, 1000, 3));
+  }
+
+  @Test public void testDelayIsJittered() {
+    final ConnectionConfig config = config(0, 0);
+    for (int i = 0; i < 100; i++) {
+      final long delay =
+          ExponentialBackoffRetryPolicy.INSTANCE.retryDelay(config, 3, 0, -1);
+      assertTrue("delay " + delay, delay >= 0 && delay <= 400);
+    }
+  }
+
+  @Test public void testRetryAfterIsHonored() {
+    assertEquals(5000,
+        ExponentialBackoffRetryPolicy.INSTANCE.retryDelay(config(0, 0), 1, 0, 5000));
+  }
+
+  @Test public void testMaxAttempts() {
+    final ConnectionConfig config = config(3, 0);
+    assertTrue(ExponentialBackoffRetryPolicy.INSTANCE.retryDelay(config, 2, 0, -1) >= 0);
+    assertEquals(-1, ExponentialBackoffRetryPolicy.INSTANCE.retryDelay(config, 3, 0, -1));
+  }
+
+  @Test public void testDeadline() {
+    final ConnectionConfig config = config(0, 2000);
+    assertTrue(ExponentialBackoffRetryPolicy.INSTANCE.retryDelay(config, 1, 500, -1) >= 0);
+    assertEquals(-1, ExponentialBackoffRetryPolicy.INSTANCE.retryDelay(config, 1, 500, 5000));
+  }
+}
+
+// End ExponentialBackoffRetryPolicyTest.java
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.calcite.avatica.ColumnMetaData.Rep;
+import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.avatica.remote.Service.FetchRequest;
+import org.apache.calcite.avatica.remote.Service.FetchResponse;
+import org.apache.calcite.avatica.remote.Service.ResultSetResponse;
+import org.apache.calcite.avatica.util.PrimitiveRow;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link FrameDeserializer}.
+ */
+public class FrameDeserializerTest {
+
+  private static Meta.Signature signature() {
+    final List<ColumnMetaData> columns = Arrays.asList(
+        column(Types.INTEGER, "INTEGER", Rep.PRIMITIVE_INT),
+        column(Types.BIGINT, "BIGINT", Rep.LONG),
+        column(Types.DOUBLE, "DOUBLE", Rep.DOUBLE),
+        column(Types.VARCHAR, "VARCHAR", Rep.STRING),
+        column(Types.DECIMAL, "DECIMAL", Rep.NUMBER));
+    return Meta.Signature.create(columns, "select * from t",
+        Collections.emptyList(), Meta.CursorFactory.LIST, Meta.StatementType.SELECT);
+  }
+
+  private static ColumnMetaData column(int type, String typeName, Rep rep) {
+    return ColumnMetaData.dummy(ColumnMetaData.scalar(type, typeName, rep), true);
+  }
+
+  private static List<Object> rows() {
+    return Arrays.<Object>asList(
+        Arrays.<Object>asList(1, 12345678901L, 1.5d, "a", new BigDecimal("1.25")),
+        Arrays.<Object>asList(null, null, null, null, null));
+  }
+
+  @Test public void testTypedRows() throws Exception {
+    final ResultSetResponse response = new ResultSetResponse("cnxn", 1, false, signature(),
+        Meta.Frame.create(0, true, rows()), -1, null);
+    final ResultSetResponse read = (ResultSetResponse) JsonService.MAPPER.readValue(
+        JsonService.MAPPER.writeValueAsBytes(response), Service.Response.class);
+
+    final List<Object> rows = read.firstFrame.rows;
+    assertEquals(2, rows.size());
+    final List<?> row = (List<?>) rows.get(0);
+    assertTrue(row instanceof PrimitiveRow);
+    assertEquals(Arrays.<Object>asList(1, 12345678901L, 1.5d, "a", new BigDecimal("1.25")),
+        row);
+
+    final PrimitiveRow primitiveRow = (PrimitiveRow) row;
+    assertEquals(12345678901L, primitiveRow.getLong(1));
+    assertEquals(1.5d, primitiveRow.getDouble(2), 0d);
+    assertEquals(1L, primitiveRow.getLong(2));
+    assertFalse(primitiveRow.isNull(0));
+
+    final PrimitiveRow nulls = (PrimitiveRow) rows.get(1);
+    for (int i = 0; i < 5; i++) {
+      assertTrue(nulls.isNull(i));
+      assertNull(((List<?>) nulls).get(i));
+      assertEquals(0L, nulls.getLong(i));
+    }
+  }
+
+  @Test public void testUntypedRows() throws Exception {
+    final FetchResponse response =
+        new FetchResponse(Meta.Frame.create(0, true, rows()), false, false, null);
+    final FetchResponse read = (FetchResponse) JsonService.MAPPER.readValue(
+        JsonService.MAPPER.writeValueAsBytes(response), Service.Response.class);
+
+    // Without a signature, floating point numbers are read as BigDecimal
+    final List<?> row = (List<?>) read.frame.rows.get(0);
+    assertFalse(row instanceof PrimitiveRow);
+    assertEquals(new BigDecimal("1.5"), row.get(2));
+    assertEquals(new BigDecimal("1.25"), row.get(4));
+  }
+
+  @Test public void testFetchAfterSignature() throws Exception {
+    final JsonService service = new LocalJsonService(null);
+    final FetchRequest fetch = new FetchRequest("cnxn", 1, 0, 100);
+    final FetchResponse response =
+        new FetchResponse(Meta.Frame.create(0, true, rows()), false, false, null);
+    final byte[] json = JsonService.MAPPER.writeValueAsBytes(response);
+
+    // The statement's signature is not known yet
+    FetchResponse read = service.responseReader(fetch).readValue(json);
+    assertFalse(read.frame.rows.get(0) instanceof PrimitiveRow);
+
+    service.received(new Service.PrepareAndExecuteRequest("cnxn", 1, "select * from t", -1),
+        new Service.ExecuteResponse(
+            Collections.singletonList(
+                new ResultSetResponse("cnxn", 1, false, signature(), null, -1, null)),
+            false, null));
+    read = service.responseReader(fetch).readValue(json);
+    assertTrue(read.frame.rows.get(0) instanceof PrimitiveRow);
+    assertEquals(1.5d, ((List<?>) read.frame.rows.get(0)).get(2));
+
+    // Closing the statement forgets its signature
+    service.received(new Service.CloseStatementRequest("cnxn", 1),
+        new Service.CloseStatementResponse());
+    read = service.responseReader(fetch).readValue(json);
+    assertFalse(read.frame.rows.get(0) instanceof PrimitiveRow);
+  }
+
+  @Test public void testSignatureForgottenWhenDone() throws Exception {
+    final JsonService service = new LocalJsonService(null);
+    final FetchRequest fetch = new FetchRequest("cnxn", 1, 0, 100);
+    final byte[] json = JsonService.MAPPER.writeValueAsBytes(
+        new FetchResponse(Meta.Frame.create(0, true, rows()), false, false, null));
+    final Service.PrepareAndExecuteRequest execute =
+        new Service.PrepareAndExecuteRequest("cnxn", 1, "select * from t", -1);
+
+    // All the rows came in the first frame, so none are fetched
+    service.received(execute,
+        new Service.ExecuteResponse(
+            Collections.singletonList(
+                new ResultSetResponse("cnxn", 1, false, signature(),
+                    Meta.Frame.create(0, true, rows()), -1, null)),
+            false, null));
+    FetchResponse read = service.responseReader(fetch).readValue(json);
+    assertFalse(read.frame.rows.get(0) instanceof PrimitiveRow);
+
+    // The last frame is fetched
+    service.received(execute,
+        new Service.ExecuteResponse(
+            Collections.singletonList(
+                new ResultSetResponse("cnxn", 1, false, signature(),
+                    Meta.Frame.create(0, false, rows()), -1, null)),
+            false, null));
+    read = service.responseReader(fetch).readValue(json);
+    assertTrue(read.frame.rows.get(0) instanceof PrimitiveRow);
+    service.received(fetch, read);
+    read = service.responseReader(fetch).readValue(json);
+    assertFalse(read.frame.rows.get(0) instanceof PrimitiveRow);
+  }
+}
+
+// End FrameDeserializerTest.java
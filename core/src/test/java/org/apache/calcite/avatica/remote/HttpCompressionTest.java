@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link HttpCompression}.
+ */
+public class HttpCompressionTest {
+
+  @Test public void testRoundTrip() throws Exception {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      sb.append("row ").append(i % 10).append(',');
+    }
+    final byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+    for (HttpCompression compression : HttpCompression.values()) {
+      final byte[] compressed = compression.compress(bytes);
+      if (HttpCompression.NONE == compression) {
+        assertSame(bytes, compressed);
+      } else {
+        assertTrue(compression + " should compress repetitive data",
+            compressed.length < bytes.length / 4);
+      }
+      assertArrayEquals(bytes, compression.decompress(compressed));
+    }
+  }
+
+  @Test public void testForEncoding() {
+    assertSame(HttpCompression.NONE, HttpCompression.forEncoding(null));
+    assertSame(HttpCompression.NONE, HttpCompression.forEncoding("identity"));
+    assertSame(HttpCompression.GZIP, HttpCompression.forEncoding("GZIP"));
+    assertSame(HttpCompression.GZIP, HttpCompression.forEncoding("x-gzip"));
+    assertSame(HttpCompression.DEFLATE, HttpCompression.forEncoding(" deflate"));
+    assertNull(HttpCompression.forEncoding("br"));
+  }
+
+  @Test public void testNegotiate() {
+    assertTrue(HttpCompression.accepts("br, gzip;q=0.5", HttpCompression.GZIP));
+    assertFalse(HttpCompression.accepts("gzip;q=0, deflate", HttpCompression.GZIP));
+    assertFalse(HttpCompression.accepts(null, HttpCompression.GZIP));
+
+    assertSame(HttpCompression.GZIP,
+        HttpCompression.negotiate("deflate, gzip", HttpCompression.GZIP));
+    assertSame(HttpCompression.DEFLATE,
+        HttpCompression.negotiate("deflate", HttpCompression.GZIP));
+    assertSame(HttpCompression.NONE, HttpCompression.negotiate("br", HttpCompression.GZIP));
+    assertSame(HttpCompression.NONE, HttpCompression.negotiate(null, HttpCompression.DEFLATE));
+    assertEquals("gzip, deflate", HttpCompression.acceptedEncodings());
+  }
+}
+
+// End HttpCompressionTest.java
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.avatica.metrics.noop.NoopMetricsSystem;
+import org.apache.calcite.avatica.remote.Handler.HandlerResponse;
+import org.apache.calcite.avatica.remote.Service.FetchRequest;
+import org.apache.calcite.avatica.remote.Service.FetchResponse;
+import org.apache.calcite.avatica.remote.Service.Response;
+import org.apache.calcite.avatica.remote.Service.RpcMetadataResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the streaming paths of {@link JsonHandler}.
+ */
+public class JsonHandlerTest {
+
+  private Service service;
+  private JsonHandler handler;
+
+  @Before
+  public void setupMocks() {
+    service = Mockito.mock(Service.class);
+    handler = new JsonHandler(service, NoopMetricsSystem.getInstance());
+  }
+
+  @Test public void testStreamedRequest() throws Exception {
+    final FetchRequest request = new FetchRequest("cnxn1", 30, 10, 100);
+    final FetchResponse response = fetchResponse("\u00e9t\u00e9");
+    when(service.apply(request)).thenReturn(response);
+
+    final String json = JsonService.MAPPER.writeValueAsString(request);
+    HandlerResponse<Response> handlerResponse = handler.applyUnencoded(
+        new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), null);
+    assertEquals(200, handlerResponse.getStatusCode());
+    assertEquals(response, handlerResponse.getResponse());
+
+    // Requests in another encoding are decoded through a Reader
+    handlerResponse = handler.applyUnencoded(
+        new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_16LE)), "UTF-16LE");
+    assertEquals(200, handlerResponse.getStatusCode());
+    assertEquals(response, handlerResponse.getResponse());
+  }
+
+  @Test public void testMalformedStreamedRequest() {
+    final HandlerResponse<Response> handlerResponse = handler.applyUnencoded(
+        new ByteArrayInputStream("{\"request\":".getBytes(StandardCharsets.UTF_8)), null);
+    assertEquals(500, handlerResponse.getStatusCode());
+    assertTrue(handlerResponse.getResponse() instanceof Service.ErrorResponse);
+  }
+
+  @Test public void testStreamedResponse() throws Exception {
+    final FetchResponse response = fetchResponse("\u00e9t\u00e9");
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    handler.encode(response, out);
+    // The same JSON as the String, newline terminated
+    assertEquals(handler.encode(response) + "\n",
+        new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  private static FetchResponse fetchResponse(String value) {
+    final List<Object> rows = new ArrayList<>();
+    rows.add(new Object[] {1, value});
+    return new FetchResponse(Meta.Frame.create(0, true, rows), false, false,
+        new RpcMetadataResponse("localhost:8765"));
+  }
+}
+
+// End JsonHandlerTest.java
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.avatica.remote.Service.FetchResponse;
+import org.apache.calcite.avatica.remote.Service.Response;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the throughput of serializing a {@link FetchResponse} as JSON
+ * through a plain {@link ObjectMapper}, as JSON through the cached writers and
+ * hand-written serializers of {@link JsonService}, and as protobuf.
+ *
+ * <p>Not run as part of the tests; run its {@link #main} method, optionally
+ * passing the number of rows per frame and the number of iterations.
+ */
+public class JsonSerializationBenchmark {
+  /** Keeps the results alive, so that the steps are not optimized away. */
+  private static volatile Object sink;
+
+  private JsonSerializationBenchmark() {
+  }
+
+  /** A step to time. */
+  private interface Step {
+    Object run() throws IOException;
+  }
+
+  public static void main(String[] args) throws Exception {
+    final int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+    final List<Object> rows = new ArrayList<>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      rows.add(
+          Arrays.<Object>asList(i, i * 1000000007L, i / 7d, "row " + i, i % 2 == 0, null));
+    }
+    final FetchResponse response =
+        new FetchResponse(Meta.Frame.create(0, true, rows), false, false, null);
+
+    // Configured as JsonService.MAPPER was before it had its own serializers
+    final ObjectMapper plain = new ObjectMapper();
+    plain.configure(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES, true);
+    plain.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
+    plain.configure(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS, true);
+    final ProtobufTranslation protobuf = new ProtobufTranslationImpl();
+
+    final byte[] json = plain.writeValueAsBytes(response);
+    final byte[] proto = protobuf.serializeResponse(response);
+
+    run("json, ObjectMapper, write", iterations, new Step() {
+      @Override public Object run() throws IOException {
+        return plain.writeValueAsBytes(response);
+      }
+    });
+    run("json, cached writer, write", iterations, new Step() {
+      @Override public Object run() throws IOException {
+        return JsonService.writer(response).writeValueAsBytes(response);
+      }
+    });
+    run("protobuf, write", iterations, new Step() {
+      @Override public Object run() throws IOException {
+        return protobuf.serializeResponse(response);
+      }
+    });
+    run("json, ObjectMapper, read", iterations, new Step() {
+      @Override public Object run() throws IOException {
+        return plain.readValue(json, Response.class);
+      }
+    });
+    run("json, cached reader, read", iterations, new Step() {
+      @Override public Object run() throws IOException {
+        return JsonService.RESPONSE_READER.readValue(json);
+      }
+    });
+    run("protobuf, read", iterations, new Step() {
+      @Override public Object run() throws IOException {
+        return protobuf.parseResponse(proto);
+      }
+    });
+  }
+
+  private static void run(String name, int iterations, Step step) throws IOException {
+    // Warm up with as many iterations as are measured
+    for (int i = 0; i < iterations; i++) {
+      sink = step.run();
+    }
+    final long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      sink = step.run();
+    }
+    final long elapsed = System.nanoTime() - start;
+    System.out.println(
+        String.format(Locale.ROOT, "%-30s %10.1f ops/s", name, iterations * 1e9d / elapsed));
+  }
+}
+
+// End JsonSerializationBenchmark.java
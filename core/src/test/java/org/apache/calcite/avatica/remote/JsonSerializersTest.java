@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.ColumnMetaData.Rep;
+import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.avatica.remote.Service.ExecuteRequest;
+import org.apache.calcite.avatica.remote.Service.FetchResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that {@link JsonSerializers} write the same JSON as the serializers
+ * that Jackson derives from the classes.
+ */
+public class JsonSerializersTest {
+  /** Mapper without the hand-written serializers. */
+  private static final ObjectMapper REFLECTIVE = new ObjectMapper();
+
+  private static void assertSameJson(Object value) throws Exception {
+    final String expected = REFLECTIVE.writeValueAsString(value);
+    assertEquals(expected, JsonService.writer(value).writeValueAsString(value));
+    assertEquals(expected, JsonService.MAPPER.writeValueAsString(value));
+  }
+
+  @Test public void testFrame() throws Exception {
+    final List<Object> rows = Arrays.<Object>asList(
+        Arrays.<Object>asList(1, 2L, 3.5d, 4.5f, "five", true, null, new BigDecimal("6.70")),
+        new Object[] {(short) 7, (byte) 8, new byte[] {9, 10}, Double.NaN},
+        new LinkedList<Object>(Arrays.<Object>asList("a", Arrays.asList(1, 2))),
+        null);
+    assertSameJson(Meta.Frame.create(10, false, rows));
+    assertSameJson(Meta.Frame.EMPTY);
+    assertSameJson(new FetchResponse(Meta.Frame.create(0, true, rows), false, false, null));
+  }
+
+  @Test public void testTypedValue() throws Exception {
+    final List<TypedValue> values = Arrays.asList(
+        TypedValue.ofLocal(Rep.STRING, "x"),
+        TypedValue.ofLocal(Rep.INTEGER, 1),
+        TypedValue.ofLocal(Rep.PRIMITIVE_DOUBLE, 2.5d),
+        TypedValue.ofLocal(Rep.JAVA_SQL_TIMESTAMP, 1500000000000L),
+        TypedValue.ofLocal(Rep.NUMBER, new BigDecimal("1.25")),
+        TypedValue.ofSerial(Rep.ARRAY, Arrays.asList(1, 2, 3)),
+        TypedValue.EXPLICIT_NULL);
+    for (TypedValue value : values) {
+      assertSameJson(value);
+    }
+    assertSameJson(
+        new ExecuteRequest(new Meta.StatementHandle("cnxn", 1, null), values, 100));
+  }
+
+  @Test public void testRoundTrip() throws Exception {
+    final List<Object> row = Arrays.<Object>asList(1, "a", true, null);
+    final FetchResponse response = new FetchResponse(
+        Meta.Frame.create(5, true, Collections.<Object>singletonList(row)), false, false, null);
+    final FetchResponse read = JsonService.RESPONSE_READER.readValue(
+        JsonService.writer(response).writeValueAsBytes(response));
+    assertEquals(5, read.frame.offset);
+    assertEquals(Collections.singletonList(row), read.frame.rows);
+  }
+}
+
+// End JsonSerializersTest.java
@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.AvaticaParameter;
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.calcite.avatica.ConnectionPropertiesImpl;
+import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.avatica.proto.Responses;
+import org.apache.calcite.avatica.remote.Service.ResultSetResponse;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link LocalService}.
+ */
+public class LocalServiceTest {
+
+  private static Meta.Signature signature(String sql) {
+    return Meta.Signature.create(
+        Collections.singletonList(ColumnMetaData.dummy(ColumnMetaData.scalar(4, "INTEGER",
+            ColumnMetaData.Rep.INTEGER), true)),
+        sql, Collections.<AvaticaParameter>emptyList(), Meta.CursorFactory.LIST,
+        Meta.StatementType.SELECT);
+  }
+
+  private static ResultSetResponse execute(LocalService service, String connectionId,
+      Meta.Signature signature, long cachedSignatureFingerprint) {
+    return service.toResponse(
+        Meta.MetaResultSet.create(connectionId, 1, false, signature, null),
+        cachedSignatureFingerprint);
+  }
+
+  /** Creates a Meta whose statements all return one result set, with a first
+   * frame that holds all rows or not. */
+  private static Meta executingMeta(boolean done) throws Exception {
+    final Meta meta = mock(Meta.class);
+    when(meta.createStatement(any(Meta.ConnectionHandle.class)))
+        .thenReturn(new Meta.StatementHandle("conn", 7, null));
+    final Meta.Frame frame =
+        Meta.Frame.create(0, done, Collections.<Object>singletonList(new Object[] {1}));
+    when(
+        meta.prepareAndExecute(any(Meta.StatementHandle.class), anyString(), anyLong(),
+            anyInt(), any(Meta.PrepareCallback.class)))
+        .thenReturn(
+            new Meta.ExecuteResult(
+                Collections.singletonList(
+                    Meta.MetaResultSet.create("conn", 7, true, signature("select 1"), frame))));
+    return meta;
+  }
+
+  @Test public void testSignatureLeftOutWhenClientHasIt() {
+    final LocalService service = new LocalService(mock(Meta.class));
+    service.apply(new Service.OpenConnectionRequest("conn", new HashMap<String, String>()));
+
+    final ResultSetResponse first = execute(service, "conn", signature("select 1"), 0L);
+    assertNotEquals(0L, first.signatureFingerprint);
+    assertFalse(first.signatureCached);
+    assertTrue(first.serialize().hasSignature());
+
+    // The same signature is only referenced by its fingerprint, as often as
+    // the client says it has it
+    for (int i = 0; i < 2; i++) {
+      final ResultSetResponse second =
+          execute(service, "conn", signature("select 1"), first.signatureFingerprint);
+      assertEquals(first.signatureFingerprint, second.signatureFingerprint);
+      assertTrue(second.signatureCached);
+      final Responses.ResultSetResponse proto = second.serialize();
+      assertFalse(proto.hasSignature());
+      final ResultSetResponse parsed = ResultSetResponse.fromProto(proto);
+      assertNull(parsed.signature);
+      assertTrue(parsed.signatureCached);
+      assertEquals(first.signatureFingerprint, parsed.signatureFingerprint);
+    }
+
+    // A client that does not say it has the signature is sent it again
+    final ResultSetResponse again = execute(service, "conn", signature("select 1"), 0L);
+    assertFalse(again.signatureCached);
+    assertTrue(again.serialize().hasSignature());
+
+    // Other signatures get their own fingerprint, and are sent in full
+    final ResultSetResponse other =
+        execute(service, "conn", signature("select 2"), first.signatureFingerprint);
+    assertNotEquals(first.signatureFingerprint, other.signatureFingerprint);
+    assertFalse(other.signatureCached);
+  }
+
+  @Test public void testFingerprintCoversColumnTypes() {
+    final Meta.Signature decimal = Meta.Signature.create(
+        Collections.singletonList(ColumnMetaData.dummy(ColumnMetaData.scalar(3, "DECIMAL",
+            ColumnMetaData.Rep.NUMBER), true)),
+        "select 1", Collections.<AvaticaParameter>emptyList(), Meta.CursorFactory.LIST,
+        Meta.StatementType.SELECT);
+    assertEquals(SignatureFingerprint.of(signature("select 1")),
+        SignatureFingerprint.of(signature("select 1")));
+    assertNotEquals(SignatureFingerprint.of(signature("select 1")),
+        SignatureFingerprint.of(decimal));
+  }
+
+  @Test public void testLegacyClientGetsSignature() {
+    final LocalService service = new LocalService(mock(Meta.class));
+    service.apply(
+        new Service.OpenConnectionRequest("conn", new HashMap<String, String>(),
+            Meta.FrameEncoding.ROW, Service.COMPACT_VALUES_PROTOCOL_VERSION));
+
+    final long fingerprint = SignatureFingerprint.of(signature("select 1"));
+    for (int i = 0; i < 2; i++) {
+      final ResultSetResponse response =
+          execute(service, "conn", signature("select 1"), fingerprint);
+      assertEquals(0L, response.signatureFingerprint);
+      assertTrue(response.serialize().hasSignature());
+    }
+  }
+
+  @Test public void testClientForgottenWhenMetaRemovesConnection() {
+    final ConnectionExpiringMeta meta = mock(ConnectionExpiringMeta.class);
+    final LocalService service = new LocalService(meta);
+    final ArgumentCaptor<ConnectionExpiringMeta.ConnectionRemovalListener> listener =
+        ArgumentCaptor.forClass(ConnectionExpiringMeta.ConnectionRemovalListener.class);
+    verify(meta).addConnectionRemovalListener(listener.capture());
+    service.apply(new Service.OpenConnectionRequest("conn", new HashMap<String, String>()));
+    assertNotEquals(0L, execute(service, "conn", signature("select 1"), 0L).signatureFingerprint);
+
+    // The connection expires on the server, without its client closing it
+    listener.getValue().onConnectionRemoved("conn");
+    assertEquals(0L, execute(service, "conn", signature("select 1"), 0L).signatureFingerprint);
+  }
+
+  @Test public void testConnectionPropertiesAppliedBeforeRequest() {
+    final Meta meta = mock(Meta.class);
+    when(meta.createStatement(any(Meta.ConnectionHandle.class)))
+        .thenReturn(new Meta.StatementHandle("conn", 1, null));
+    final LocalService service = new LocalService(meta);
+    final ConnectionPropertiesImpl connProps =
+        new ConnectionPropertiesImpl().setAutoCommit(false);
+
+    service.apply(new Service.CreateStatementRequest("conn", connProps));
+    final InOrder inOrder = inOrder(meta);
+    inOrder.verify(meta).connectionSync(any(Meta.ConnectionHandle.class), eq(connProps));
+    inOrder.verify(meta).createStatement(any(Meta.ConnectionHandle.class));
+  }
+
+  @Test public void testExecuteDirectClosesStatementWhenDone() throws Exception {
+    final Meta meta = executingMeta(true);
+    final Service.ExecuteDirectResponse response =
+        new LocalService(meta).apply(
+            new Service.ExecuteDirectRequest("conn", "select 1", -1, 100, true, null));
+    assertEquals(7, response.statementId);
+    assertEquals(1, response.results.size());
+    assertTrue(response.results.get(0).firstFrame.done);
+    assertTrue(response.statementClosed);
+    verify(meta).closeStatement(any(Meta.StatementHandle.class));
+  }
+
+  @Test public void testExecuteDirectKeepsStatementWithMoreRows() throws Exception {
+    final Meta meta = executingMeta(false);
+    final Service.ExecuteDirectResponse response =
+        new LocalService(meta).apply(
+            new Service.ExecuteDirectRequest("conn", "select 1", -1, 1, true, null));
+    assertEquals(7, response.statementId);
+    assertFalse(response.statementClosed);
+    verify(meta, never()).closeStatement(any(Meta.StatementHandle.class));
+  }
+
+  @Test public void testExecuteDirectKeepsStatementUnlessAsked() throws Exception {
+    final Meta meta = executingMeta(true);
+    final Service.ExecuteDirectResponse response =
+        new LocalService(meta).apply(
+            new Service.ExecuteDirectRequest("conn", "select 1", -1, 100, false, null));
+    assertFalse(response.statementClosed);
+    verify(meta, never()).closeStatement(any(Meta.StatementHandle.class));
+  }
+
+  @Test public void testExecuteDirectClosesStatementOnError() throws Exception {
+    final Meta meta = executingMeta(true);
+    when(
+        meta.prepareAndExecute(any(Meta.StatementHandle.class), anyString(), anyLong(),
+            anyInt(), any(Meta.PrepareCallback.class)))
+        .thenThrow(new RuntimeException("bad sql"));
+    try {
+      new LocalService(meta).apply(
+          new Service.ExecuteDirectRequest("conn", "select", -1, 100, false, null));
+      fail("expected an exception");
+    } catch (RuntimeException e) {
+      assertEquals("bad sql", e.getMessage());
+    }
+    verify(meta).closeStatement(any(Meta.StatementHandle.class));
+  }
+
+  @Test public void testExecuteDirectKeepsErrorWhenCloseFails() throws Exception {
+    final Meta meta = executingMeta(true);
+    when(
+        meta.prepareAndExecute(any(Meta.StatementHandle.class), anyString(), anyLong(),
+            anyInt(), any(Meta.PrepareCallback.class)))
+        .thenThrow(new RuntimeException("bad sql"));
+    doThrow(new RuntimeException("connection lost"))
+        .when(meta).closeStatement(any(Meta.StatementHandle.class));
+    try {
+      new LocalService(meta).apply(
+          new Service.ExecuteDirectRequest("conn", "select", -1, 100, false, null));
+      fail("expected an exception");
+    } catch (RuntimeException e) {
+      assertEquals("bad sql", e.getMessage());
+      assertEquals(1, e.getSuppressed().length);
+      assertEquals("connection lost", e.getSuppressed()[0].getMessage());
+    }
+  }
+
+  @Test public void testNoConnectionPropertiesNoSync() {
+    final Meta meta = mock(Meta.class);
+    when(meta.createStatement(any(Meta.ConnectionHandle.class)))
+        .thenReturn(new Meta.StatementHandle("conn", 1, null));
+    final LocalService service = new LocalService(meta);
+
+    service.apply(new Service.CreateStatementRequest("conn"));
+    verify(meta).createStatement(any(Meta.ConnectionHandle.class));
+    verify(meta, never()).connectionSync(any(Meta.ConnectionHandle.class),
+        any(Meta.ConnectionProperties.class));
+  }
+
+  @Test public void testMultiRequestStopsAtFirstError() {
+    final Meta meta = mock(Meta.class);
+    when(meta.createStatement(any(Meta.ConnectionHandle.class)))
+        .thenReturn(new Meta.StatementHandle("conn", 1, null));
+    doThrow(new RuntimeException("commit failed"))
+        .when(meta).commit(any(Meta.ConnectionHandle.class));
+    final LocalService service = new LocalService(meta);
+
+    final Service.MultiResponse response = service.apply(
+        new Service.MultiRequest(
+            Arrays.<Service.Request>asList(new Service.CreateStatementRequest("conn"),
+                new Service.CommitRequest("conn"), new Service.RollbackRequest("conn"))));
+    assertEquals(2, response.responses.size());
+    assertEquals(1, response.get(0, Service.CreateStatementResponse.class).statementId);
+    assertTrue(response.responses.get(1) instanceof Service.ErrorResponse);
+    assertTrue(((Service.ErrorResponse) response.responses.get(1)).errorMessage
+        .contains("commit failed"));
+    verify(meta, never()).rollback(any(Meta.ConnectionHandle.class));
+  }
+}
+
+// End LocalServiceTest.java
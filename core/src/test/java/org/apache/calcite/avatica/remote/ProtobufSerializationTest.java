@@ -18,10 +18,13 @@
 
 import org.apache.calcite.avatica.AvaticaUtils;
 import org.apache.calcite.avatica.ColumnMetaData.Rep;
+import org.apache.calcite.avatica.Meta;
 import org.apache.calcite.avatica.Meta.Signature;
 import org.apache.calcite.avatica.Meta.StatementHandle;
+import org.apache.calcite.avatica.proto.Common.MessageType;
 import org.apache.calcite.avatica.proto.Common.WireMessage;
 import org.apache.calcite.avatica.proto.Requests;
+import org.apache.calcite.avatica.proto.Responses;
 import org.apache.calcite.avatica.remote.Service.Request;
 
 import com.google.protobuf.UnsafeByteOperations;
@@ -30,11 +33,19 @@
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Protobuf serialization tests.
@@ -252,6 +263,150 @@ private List<TypedValue> getTypedValues() {
     fetchReq = new Service.FetchRequest().deserialize(protoFetch);
     assertEquals(maxSize, fetchReq.fetchMaxRowCount);
   }
+
+  @Test public void testStreamedResponseSerialization() throws Exception {
+    List<Object> rows = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      rows.add(new Object[] {i, "row " + i, new byte[] {(byte) i}});
+    }
+    final Service.FetchResponse response = new Service.FetchResponse(
+        Meta.Frame.create(0, true, rows), false, false,
+        new Service.RpcMetadataResponse("localhost:8765"));
+
+    // The wrapped message as it was serialized before streaming was supported
+    final byte[] expected = WireMessage.newBuilder()
+        .setName(Responses.FetchResponse.class.getName())
+        .setWrappedMessage(response.serialize().toByteString())
+        .setTypeId(MessageType.FETCH_RESPONSE).build().toByteArray();
+
+    final ProtobufTranslation translator = new ProtobufTranslationImpl();
+    assertArrayEquals(expected, translator.serializeResponse(response));
+
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    translator.serializeResponse(response, baos);
+    assertArrayEquals(expected, baos.toByteArray());
+  }
+
+  @Test public void testMessageTypeIds() throws Exception {
+    final ProtobufTranslation client = new ProtobufTranslationImpl();
+    final ProtobufTranslation server = new ProtobufTranslationImpl();
+    final Service.CommitRequest request = new Service.CommitRequest("conn");
+    final Service.CommitResponse response = new Service.CommitResponse();
+
+    // Unless the server is known to understand type ids, requests carry the class name too
+    byte[] requestBytes = client.serializeRequest(request);
+    WireMessage wireMsg = WireMessage.parseFrom(requestBytes);
+    assertEquals(Requests.CommitRequest.class.getName(), wireMsg.getName());
+    assertEquals(MessageType.COMMIT_REQUEST, wireMsg.getTypeId());
+    assertTrue(server.usesTypeIds(requestBytes));
+    assertEquals(request, server.parseRequest(requestBytes));
+
+    // Requests of old clients only carry the class name, and get it back in the response
+    final byte[] legacyRequestBytes = WireMessage.newBuilder()
+        .setName(Requests.CommitRequest.class.getName())
+        .setWrappedMessage(request.serialize().toByteString()).build().toByteArray();
+    assertFalse(server.usesTypeIds(legacyRequestBytes));
+    assertEquals(request, server.parseRequest(legacyRequestBytes));
+    final ByteArrayOutputStream legacyResponse = new ByteArrayOutputStream();
+    server.serializeResponse(response, legacyResponse, false);
+    assertEquals(Responses.CommitResponse.class.getName(),
+        WireMessage.parseFrom(legacyResponse.toByteArray()).getName());
+
+    // Old servers only send the class name
+    final byte[] legacyResponseBytes = WireMessage.newBuilder()
+        .setName(Responses.CommitResponse.class.getName())
+        .setWrappedMessage(response.serialize().toByteString()).build().toByteArray();
+    assertEquals(response, client.parseResponse(legacyResponseBytes));
+
+    // Responses identified by their type id alone are parsed
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    server.serializeResponse(response, baos, true);
+    wireMsg = WireMessage.parseFrom(baos.toByteArray());
+    assertEquals("", wireMsg.getName());
+    assertEquals(MessageType.COMMIT_RESPONSE, wireMsg.getTypeId());
+    assertEquals(response, client.parseResponse(baos.toByteArray()));
+
+    // Parsing it does not change how requests are sent
+    assertEquals(Requests.CommitRequest.class.getName(),
+        WireMessage.parseFrom(client.serializeRequest(request)).getName());
+    requestBytes = client.serializeRequest(request, true);
+    wireMsg = WireMessage.parseFrom(requestBytes);
+    assertEquals("", wireMsg.getName());
+    assertEquals(MessageType.COMMIT_REQUEST, wireMsg.getTypeId());
+    assertTrue(server.usesTypeIds(requestBytes));
+    assertEquals(request, server.parseRequest(requestBytes));
+  }
+
+  @Test public void testTypeIdsDecidedPerConnection() throws Exception {
+    final ProtobufTranslation translation = new ProtobufTranslationImpl();
+    final RecordingClient current = new RecordingClient(translation,
+        new Service.RpcMetadataResponse("localhost:8765", Service.PROTOCOL_VERSION));
+    final RecordingClient legacy = new RecordingClient(translation,
+        new Service.RpcMetadataResponse("localhost:8765", Service.LEGACY_PROTOCOL_VERSION));
+    final RemoteProtobufService currentService = new RemoteProtobufService(current, translation);
+    final RemoteProtobufService legacyService = new RemoteProtobufService(legacy, translation);
+    final Map<String, String> info = Collections.emptyMap();
+
+    currentService.apply(new Service.OpenConnectionRequest("conn1", info));
+    legacyService.apply(new Service.OpenConnectionRequest("conn2", info));
+    currentService.apply(new Service.CommitRequest("conn1"));
+    legacyService.apply(new Service.CommitRequest("conn2"));
+
+    // Open requests carry the class name, as the server is not known yet
+    assertEquals(Requests.OpenConnectionRequest.class.getName(), current.names.get(0));
+    assertEquals(Requests.OpenConnectionRequest.class.getName(), legacy.names.get(0));
+    // Then only the connection to a current server leaves it out, although
+    // both share the translation
+    assertEquals("", current.names.get(1));
+    assertEquals(Requests.CommitRequest.class.getName(), legacy.names.get(1));
+  }
+
+  @Test public void testApplyAsyncRecordsServerVersion() throws Exception {
+    final ProtobufTranslation translation = new ProtobufTranslationImpl();
+    final RecordingClient client = new RecordingClient(translation,
+        new Service.RpcMetadataResponse("localhost:8765", Service.PROTOCOL_VERSION));
+    final RemoteProtobufService service = new RemoteProtobufService(client, translation);
+    final Executor executor = new Executor() {
+      @Override public void execute(Runnable command) {
+        command.run();
+      }
+    };
+
+    service.applyAsync(
+        new Service.OpenConnectionRequest("conn1", Collections.<String, String>emptyMap()),
+        Service.OpenConnectionResponse.class, executor).get();
+    assertEquals(Service.PROTOCOL_VERSION, service.getServerProtocolVersion());
+    service.applyAsync(new Service.CommitRequest("conn1"), Service.CommitResponse.class,
+        executor).get();
+    assertEquals("", client.names.get(1));
+  }
+
+  /** Client that records the class names of the requests it is sent, and
+   * answers them as a server reporting the given metadata. */
+  private static class RecordingClient implements AvaticaHttpClient {
+    final ProtobufTranslation translation;
+    final Service.RpcMetadataResponse rpcMetadata;
+    final List<String> names = new ArrayList<>();
+
+    RecordingClient(ProtobufTranslation translation,
+        Service.RpcMetadataResponse rpcMetadata) {
+      this.translation = translation;
+      this.rpcMetadata = rpcMetadata;
+    }
+
+    @Override public byte[] send(byte[] request) {
+      try {
+        names.add(WireMessage.parseFrom(request).getName());
+        final Service.Response response =
+            translation.parseRequest(request) instanceof Service.OpenConnectionRequest
+                ? new Service.OpenConnectionResponse(rpcMetadata)
+                : new Service.CommitResponse();
+        return translation.serializeResponse(response);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
 }
 
 // End ProtobufSerializationTest.java
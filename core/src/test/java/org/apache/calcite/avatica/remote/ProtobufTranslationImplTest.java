@@ -45,10 +45,14 @@
 import org.apache.calcite.avatica.remote.Service.DatabasePropertyResponse;
 import org.apache.calcite.avatica.remote.Service.ErrorResponse;
 import org.apache.calcite.avatica.remote.Service.ExecuteBatchResponse;
+import org.apache.calcite.avatica.remote.Service.ExecuteDirectRequest;
+import org.apache.calcite.avatica.remote.Service.ExecuteDirectResponse;
 import org.apache.calcite.avatica.remote.Service.ExecuteRequest;
 import org.apache.calcite.avatica.remote.Service.ExecuteResponse;
 import org.apache.calcite.avatica.remote.Service.FetchRequest;
 import org.apache.calcite.avatica.remote.Service.FetchResponse;
+import org.apache.calcite.avatica.remote.Service.MultiRequest;
+import org.apache.calcite.avatica.remote.Service.MultiResponse;
 import org.apache.calcite.avatica.remote.Service.OpenConnectionRequest;
 import org.apache.calcite.avatica.remote.Service.OpenConnectionResponse;
 import org.apache.calcite.avatica.remote.Service.PrepareAndExecuteBatchRequest;
@@ -193,6 +197,14 @@ private static List<Request> getRequests() {
             Long.MAX_VALUE));
     requests.add(new PrepareRequest("connectionId", "sql", Long.MAX_VALUE));
 
+    // Connection properties sent along with the request
+    final ConnectionPropertiesImpl changedProps =
+        new ConnectionPropertiesImpl().setAutoCommit(false).setSchema("schema");
+    requests.add(
+        new PrepareAndExecuteRequest("connectionId", 12345, "sql", 100L, 10, changedProps));
+    requests.add(new PrepareRequest("connectionId", "sql", 100L, changedProps));
+    requests.add(new CreateStatementRequest("connectionId", changedProps));
+
     List<TypedValue> paramValues =
         Arrays.asList(TypedValue.create(Rep.BOOLEAN.name(), Boolean.TRUE),
             TypedValue.create(Rep.STRING.name(), "string"));
@@ -206,6 +218,9 @@ private static List<Request> getRequests() {
     info.put("param1", "value1");
     info.put("param2", "value2");
     requests.add(new OpenConnectionRequest("connectionId", info));
+    requests.add(
+        new OpenConnectionRequest("connectionId", info, Meta.FrameEncoding.COLUMNAR,
+            Service.LEGACY_PROTOCOL_VERSION));
     requests.add(new CloseConnectionRequest("connectionId"));
     requests.add(
         new ConnectionSyncRequest("connectionId",
@@ -235,6 +250,18 @@ private static List<Request> getRequests() {
     requests.add(new ExecuteRequest(handle, Arrays.<TypedValue>asList((TypedValue) null), 10));
     requests.add(new ExecuteRequest(handle, Arrays.asList(TypedValue.EXPLICIT_NULL), 10));
 
+    requests.add(
+        new MultiRequest(
+            Arrays.<Request>asList(new CreateStatementRequest("connectionId"),
+                new PrepareAndExecuteRequest("connectionId", 12345, "select * from t", 50),
+                new CloseStatementRequest("connectionId", 12345))));
+    requests.add(new MultiRequest(Collections.<Request>emptyList()));
+
+    requests.add(
+        new ExecuteDirectRequest("connectionId", "select * from t", 1000L, 100, true,
+            new ConnectionPropertiesImpl().setAutoCommit(true)));
+    requests.add(new ExecuteDirectRequest(null, null, 0L, 0, false, null));
+
     return requests;
   }
 
@@ -374,6 +401,19 @@ private static List<Response> getResponses() {
     responses.add(
         new ExecuteBatchResponse("connectionId", 12345, updateCounts, false, rpcMetadata));
 
+    responses.add(
+        new MultiResponse(
+            Arrays.<Response>asList(new CreateStatementResponse("connectionId", 12345, rpcMetadata),
+                new CloseStatementResponse(rpcMetadata), new CommitResponse()),
+            rpcMetadata));
+    responses.add(new MultiResponse(Collections.<Response>emptyList(), null));
+
+    responses.add(
+        new ExecuteDirectResponse(12345, Collections.singletonList(results1), true,
+            rpcMetadata));
+    responses.add(
+        new ExecuteDirectResponse(0, Collections.<ResultSetResponse>emptyList(), false, null));
+
     return responses;
   }
 
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.remote;
+
+import org.apache.calcite.avatica.AvaticaClientRuntimeException;
+import org.apache.calcite.avatica.AvaticaSeverity;
+import org.apache.calcite.avatica.remote.Service.CommitRequest;
+import org.apache.calcite.avatica.remote.Service.CommitResponse;
+import org.apache.calcite.avatica.remote.Service.ErrorResponse;
+import org.apache.calcite.avatica.remote.Service.OpenConnectionRequest;
+import org.apache.calcite.avatica.remote.Service.OpenConnectionResponse;
+import org.apache.calcite.avatica.remote.Service.RpcMetadataResponse;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link RemoteService}.
+ */
+public class RemoteServiceTest {
+  /** Runs tasks on the calling thread. */
+  private static final Executor DIRECT = new Executor() {
+    @Override public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  /** Client which answers every request with the same JSON, only through a stream. */
+  private static class StreamingClient implements AvaticaHttpClient {
+    final byte[] response;
+    byte[] request;
+
+    StreamingClient(Service.Response response) throws IOException {
+      this(JsonService.MAPPER.writeValueAsBytes(response));
+    }
+
+    StreamingClient(byte[] response) {
+      this.response = response;
+    }
+
+    @Override public byte[] send(byte[] request) {
+      throw new AssertionError("Expected the response to be streamed");
+    }
+
+    @Override public <T> T send(byte[] request, ResponseReader<T> reader) {
+      this.request = request;
+      try {
+        return reader.read(new ByteArrayInputStream(response));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @Override public CompletableFuture<byte[]> sendAsync(byte[] request, Executor executor) {
+      this.request = request;
+      return CompletableFuture.completedFuture(response);
+    }
+  }
+
+  @Test public void testStreamedResponse() throws Exception {
+    final StreamingClient client = new StreamingClient(new CommitResponse());
+    final RemoteService service = new RemoteService(client);
+
+    final CommitRequest request = new CommitRequest("cnxn1");
+    assertNotNull(service.apply(request));
+    assertEquals(request, JsonService.MAPPER.readValue(client.request, Service.Request.class));
+  }
+
+  @Test public void testStreamedErrorResponse() throws Exception {
+    final ErrorResponse error = new ErrorResponse(Collections.<String>emptyList(), "boom", 42,
+        "HY000", AvaticaSeverity.ERROR, null);
+    final RemoteService service = new RemoteService(new StreamingClient(error));
+    try {
+      service.apply(new CommitRequest("cnxn1"));
+      fail("Expected the error to be thrown");
+    } catch (AvaticaClientRuntimeException e) {
+      assertEquals(42, e.getErrorCode());
+      assertEquals("HY000", e.getSqlState());
+    }
+  }
+
+  @Test public void testOldServerCountsAsLegacy() throws Exception {
+    // What a server which predates protocol versions answers
+    final String json = "{\"response\":\"openConnection\",\"rpcMetadata\":"
+        + "{\"response\":\"rpcMetadata\",\"serverAddress\":\"localhost:8765\"}}";
+    final StreamingClient client =
+        new StreamingClient(json.getBytes(StandardCharsets.UTF_8));
+    final RemoteService service = new RemoteService(client);
+
+    service.apply(new OpenConnectionRequest("cnxn1", Collections.<String, String>emptyMap()));
+    assertEquals(Service.LEGACY_PROTOCOL_VERSION, service.getServerProtocolVersion());
+    // The request only holds what old servers know
+    assertFalse(new String(client.request, StandardCharsets.UTF_8).contains("protocolVersion"));
+  }
+
+  @Test public void testJsonServerCountsAsLegacy() throws Exception {
+    // JSON does not carry the version, so even a current server counts as legacy
+    final StreamingClient client = new StreamingClient(
+        new OpenConnectionResponse(new RpcMetadataResponse("localhost:8765")));
+    final RemoteService service = new RemoteService(client);
+
+    service.apply(new OpenConnectionRequest("cnxn1", Collections.<String, String>emptyMap()));
+    assertEquals(Service.LEGACY_PROTOCOL_VERSION, service.getServerProtocolVersion());
+    final OpenConnectionRequest read = (OpenConnectionRequest) JsonService.MAPPER.readValue(
+        client.request, Service.Request.class);
+    assertEquals(Service.LEGACY_PROTOCOL_VERSION, read.protocolVersion);
+  }
+
+  @Test public void testApplyAsync() throws Exception {
+    final StreamingClient client = new StreamingClient(new CommitResponse());
+    final RemoteService service = new RemoteService(client);
+
+    final CommitRequest request = new CommitRequest("cnxn1");
+    assertNotNull(service.applyAsync(request, CommitResponse.class, DIRECT).get());
+    assertEquals(request, JsonService.MAPPER.readValue(client.request, Service.Request.class));
+  }
+
+  @Test public void testApplyAsyncErrorResponse() throws Exception {
+    final ErrorResponse error = new ErrorResponse(Collections.<String>emptyList(), "boom", 42,
+        "HY000", AvaticaSeverity.ERROR, null);
+    final RemoteService service = new RemoteService(new StreamingClient(error));
+    try {
+      service.applyAsync(new CommitRequest("cnxn1"), CommitResponse.class, DIRECT).get();
+      fail("Expected the error to be thrown");
+    } catch (ExecutionException e) {
+      assertEquals(42, ((AvaticaClientRuntimeException) e.getCause()).getErrorCode());
+    }
+  }
+
+  @Test public void testApplyAsyncBlocksOnGivenExecutor() throws Exception {
+    final byte[] response = JsonService.MAPPER.writeValueAsBytes(new CommitResponse());
+    final RemoteService service = new RemoteService(new AvaticaHttpClient() {
+      @Override public byte[] send(byte[] request) {
+        return response;
+      }
+    });
+    final AtomicInteger tasks = new AtomicInteger();
+    final Executor executor = new Executor() {
+      @Override public void execute(Runnable command) {
+        tasks.incrementAndGet();
+        command.run();
+      }
+    };
+
+    assertNotNull(
+        service.applyAsync(new CommitRequest("cnxn1"), CommitResponse.class, executor).get());
+    assertEquals(1, tasks.get());
+  }
+}
+
+// End RemoteServiceTest.java
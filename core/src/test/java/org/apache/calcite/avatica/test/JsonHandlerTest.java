@@ -137,6 +137,14 @@ public static class NoopService implements Service {
     @Override public ExecuteBatchResponse apply(PrepareAndExecuteBatchRequest request) {
       return null;
     }
+
+    @Override public ExecuteDirectResponse apply(ExecuteDirectRequest request) {
+      return null;
+    }
+
+    @Override public MultiResponse apply(MultiRequest request) {
+      return null;
+    }
   }
 
   /**
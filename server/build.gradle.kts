@@ -28,6 +28,8 @@ dependencies {
     api("org.eclipse.jetty:jetty-server")
     api("org.eclipse.jetty:jetty-util")
 
+    // Only needed by servers which enable cleartext HTTP/2
+    compileOnly("org.eclipse.jetty.http2:http2-server")
     implementation("org.slf4j:slf4j-api")
     implementation("com.google.guava:guava")
 
@@ -42,6 +44,7 @@ dependencies {
     testImplementation("org.hamcrest:hamcrest-core")
     testImplementation("org.mockito:mockito-core")
     testImplementation("org.apache.httpcomponents.client5:httpclient5")
+    testImplementation("org.eclipse.jetty.http2:http2-server")
     testRuntimeOnly("org.hsqldb:hsqldb")
     testRuntimeOnly("org.apache.logging.log4j:log4j-slf4j-impl")
 }
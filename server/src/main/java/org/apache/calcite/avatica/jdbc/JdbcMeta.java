@@ -33,6 +33,7 @@
 import org.apache.calcite.avatica.metrics.noop.NoopMetricsSystem;
 import org.apache.calcite.avatica.proto.Common;
 import org.apache.calcite.avatica.proto.Requests;
+import org.apache.calcite.avatica.remote.ConnectionExpiringMeta;
 import org.apache.calcite.avatica.remote.ProtobufMeta;
 import org.apache.calcite.avatica.remote.TypedValue;
 import org.apache.calcite.avatica.util.Unsafe;
@@ -55,6 +56,7 @@
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
@@ -65,14 +67,16 @@
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.calcite.avatica.remote.MetricsHelper.concat;
 
 /** Implementation of {@link Meta} upon an existing JDBC data source. */
-public class JdbcMeta implements ProtobufMeta {
+public class JdbcMeta implements ProtobufMeta, ConnectionExpiringMeta {
   private static final Logger LOG = LoggerFactory.getLogger(JdbcMeta.class);
 
   private static final String CONN_CACHE_KEY_BASE = "avatica.connectioncache";
@@ -98,7 +102,14 @@ public class JdbcMeta implements ProtobufMeta {
   private final Properties info;
   private final Cache<String, Connection> connectionCache;
   private final Cache<Integer, StatementInfo> statementCache;
+  /** Prepared statements kept open per connection, by connection id. Empty
+   * if {@link StatementCacheSettings#PREPARED_STATEMENT_CACHE_SIZE} is 0. */
+  private final ConcurrentMap<String, JdbcPreparedStatementCache> preparedStatementCaches =
+      new ConcurrentHashMap<>();
+  private final int preparedStatementCacheSize;
   private final MetricsSystem metrics;
+  private final List<ConnectionRemovalListener> connectionRemovalListeners =
+      new CopyOnWriteArrayList<>();
 
   /**
    * Creates a JdbcMeta.
@@ -197,6 +208,10 @@ public JdbcMeta(String url, Properties info, MetricsSystem metrics)
 
     LOG.debug("instantiated statement cache: {}", statementCache.stats());
 
+    this.preparedStatementCacheSize = Integer.parseInt(
+        info.getProperty(StatementCacheSettings.PREPARED_STATEMENT_CACHE_SIZE.key(),
+            StatementCacheSettings.PREPARED_STATEMENT_CACHE_SIZE.defaultValue()));
+
     // Register some metrics
     this.metrics.register(concat(JdbcMeta.class, "ConnectionCacheSize"), new Gauge<Long>() {
       @Override public Long getValue() {
@@ -226,6 +241,32 @@ protected Cache<Integer, StatementInfo> getStatementCache() {
     return statementCache;
   }
 
+  /** Returns the prepared statements kept open for a connection, or null if
+   * they are not kept. */
+  JdbcPreparedStatementCache getPreparedStatementCache(String connectionId) {
+    return preparedStatementCaches.get(connectionId);
+  }
+
+  /** Stops keeping open the prepared statements of a connection. */
+  private void dropPreparedStatementCache(String connectionId) {
+    final JdbcPreparedStatementCache cache = preparedStatementCaches.remove(connectionId);
+    if (null != cache) {
+      // Closing the connection closes its statements
+      cache.clear();
+    }
+  }
+
+  /** Closes prepared statements that are no longer kept. */
+  private static void closeQuietly(List<PreparedStatement> statements) {
+    for (PreparedStatement statement : statements) {
+      try {
+        statement.close();
+      } catch (Throwable t) {
+        LOG.info("Exception thrown while closing cached prepared statement", t);
+      }
+    }
+  }
+
   /**
    * Converts from JDBC metadata to Avatica columns.
    */
@@ -600,7 +641,10 @@ public StatementHandle createStatement(ConnectionHandle ch) {
       if (info.isResultSetInitialized() && null != results) {
         results.close();
       }
-      info.statement.close();
+      if (null == info.cacheEntry) {
+        // A cached statement is released when its StatementInfo is removed
+        info.statement.close();
+      }
     } catch (SQLException e) {
       throw propagate(e);
     } finally {
@@ -629,6 +673,10 @@ public StatementHandle createStatement(ConnectionHandle ch) {
         conn.close();
         throw new RuntimeException("Connection already exists: " + ch.id);
       }
+      if (preparedStatementCacheSize > 0) {
+        preparedStatementCaches.put(ch.id,
+            new JdbcPreparedStatementCache(preparedStatementCacheSize));
+      }
     } catch (SQLException e) {
       throw new RuntimeException(e);
     }
@@ -640,6 +688,10 @@ protected Connection createConnection(String url, Properties info) throws SQLExc
     return DriverManager.getConnection(url, info);
   }
 
+  @Override public void addConnectionRemovalListener(ConnectionRemovalListener listener) {
+    connectionRemovalListeners.add(Objects.requireNonNull(listener));
+  }
+
   @Override public void closeConnection(ConnectionHandle ch) {
     Connection conn = connectionCache.getIfPresent(ch.id);
     if (conn == null) {
@@ -653,6 +705,7 @@ protected Connection createConnection(String url, Properties info) throws SQLExc
       throw propagate(e);
     } finally {
       connectionCache.invalidate(ch.id);
+      dropPreparedStatementCache(ch.id);
     }
   }
 
@@ -684,6 +737,13 @@ protected void apply(Connection conn, ConnectionProperties connProps)
       if (props.isDirty()) {
         apply(conn, props);
         props.setDirty(false);
+        final JdbcPreparedStatementCache cache = getPreparedStatementCache(ch.id);
+        if (null != cache && null != connProps
+            && (null != connProps.getCatalog() || null != connProps.getSchema())) {
+          // Statements prepared in another catalog or schema may refer to
+          // other tables
+          closeQuietly(cache.clear());
+        }
       }
       return props;
     } catch (SQLException e) {
@@ -705,6 +765,12 @@ public StatementHandle prepare(ConnectionHandle ch, String sql,
       long maxRowCount) {
     try {
       final Connection conn = getConnection(ch.id);
+      final JdbcPreparedStatementCache cache = getPreparedStatementCache(ch.id);
+      final JdbcPreparedStatementCache.Entry cached =
+          null == cache ? null : cache.acquire(sql);
+      if (null != cached) {
+        return reusePrepared(ch, cached, maxRowCount);
+      }
       final PreparedStatement statement = conn.prepareStatement(sql);
       final int id = getStatementIdGenerator().getAndIncrement();
       Meta.StatementType statementType = null;
@@ -716,10 +782,17 @@ public StatementHandle prepare(ConnectionHandle ch, String sql,
       }
       // Set the maximum number of rows
       setMaxRows(statement, maxRowCount);
-      getStatementCache().put(id, new StatementInfo(statement));
-      StatementHandle h = new StatementHandle(ch.id, id,
+      final Signature signature =
           signature(statement.getMetaData(), statement.getParameterMetaData(),
-              sql, statementType));
+              sql, statementType);
+      JdbcPreparedStatementCache.Entry entry = null;
+      if (null != cache) {
+        final List<PreparedStatement> doomed = new ArrayList<>();
+        entry = cache.add(sql, statement, signature, doomed);
+        closeQuietly(doomed);
+      }
+      getStatementCache().put(id, new StatementInfo(statement, entry));
+      StatementHandle h = new StatementHandle(ch.id, id, signature);
       LOG.trace("prepared statement {}", h);
       return h;
     } catch (SQLException e) {
@@ -727,6 +800,32 @@ public StatementHandle prepare(ConnectionHandle ch, String sql,
     }
   }
 
+  /** Registers a kept prepared statement under a new statement id, instead of
+   * preparing its SQL again. */
+  private StatementHandle reusePrepared(ConnectionHandle ch,
+      JdbcPreparedStatementCache.Entry entry, long maxRowCount) throws SQLException {
+    final PreparedStatement statement = entry.statement;
+    try {
+      statement.clearParameters();
+      try {
+        statement.clearBatch();
+      } catch (SQLFeatureNotSupportedException e) {
+        // No batch can have been added either
+      }
+      setMaxRows(statement, maxRowCount);
+    } catch (SQLException | RuntimeException e) {
+      if (entry.release()) {
+        statement.close();
+      }
+      throw e;
+    }
+    final int id = getStatementIdGenerator().getAndIncrement();
+    getStatementCache().put(id, new StatementInfo(statement, entry));
+    final StatementHandle h = new StatementHandle(ch.id, id, entry.signature);
+    LOG.trace("reused prepared statement {}", h);
+    return h;
+  }
+
   @SuppressWarnings("deprecation")
   public ExecuteResult prepareAndExecute(StatementHandle h, String sql,
       long maxRowCount, PrepareCallback callback) throws NoSuchStatementException {
@@ -1014,7 +1113,12 @@ public enum StatementCacheSettings {
      *
      * <p>Used in conjunction with {@link #EXPIRY_DURATION}.</p>
      */
-    EXPIRY_UNIT(STMT_CACHE_KEY_BASE + ".expiryunit", TimeUnit.MINUTES.name());
+    EXPIRY_UNIT(STMT_CACHE_KEY_BASE + ".expiryunit", TimeUnit.MINUTES.name()),
+
+    /** JDBC connection property for setting the number of prepared statements
+     * per connection that are kept open on the backend once closed, to reuse
+     * when the connection prepares the same SQL again; 0 to close them. */
+    PREPARED_STATEMENT_CACHE_SIZE(STMT_CACHE_KEY_BASE + ".preparedstatements", "0");
 
     private final String key;
     private final String defaultValue;
@@ -1079,6 +1183,7 @@ public void onRemoval(RemovalNotification<String, Connection> notification) {
       String connectionId = notification.getKey();
       Connection doomed = notification.getValue();
       LOG.debug("Expiring connection {} because {}", connectionId, notification.getCause());
+      dropPreparedStatementCache(connectionId);
       try {
         if (doomed != null) {
           doomed.close();
@@ -1086,6 +1191,13 @@ public void onRemoval(RemovalNotification<String, Connection> notification) {
       } catch (Throwable t) {
         LOG.info("Exception thrown while expiring connection {}", connectionId, t);
       }
+      for (ConnectionRemovalListener listener : connectionRemovalListeners) {
+        try {
+          listener.onConnectionRemoved(connectionId);
+        } catch (Throwable t) {
+          LOG.info("Exception thrown while removing connection {}", connectionId, t);
+        }
+      }
     }
   }
 
@@ -1104,7 +1216,8 @@ public void onRemoval(RemovalNotification<Integer, StatementInfo> notification)
         if (doomed.getResultSet() != null) {
           doomed.getResultSet().close();
         }
-        if (doomed.statement != null) {
+        if (doomed.statement != null
+            && (doomed.cacheEntry == null || doomed.cacheEntry.release())) {
           doomed.statement.close();
         }
       } catch (Throwable t) {
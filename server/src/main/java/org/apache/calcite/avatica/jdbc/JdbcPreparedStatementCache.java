@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.jdbc;
+
+import org.apache.calcite.avatica.Meta;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Prepared statements of a backend connection, kept open once the
+ * {@link StatementInfo}s using them are removed, to reuse when the connection
+ * prepares the same SQL again.
+ *
+ * <p>A statement is reused only while no StatementInfo refers to it. At most a
+ * given number of statements are kept; the one used least recently is no
+ * longer kept, and is closed as soon as no StatementInfo refers to it.
+ *
+ * @see JdbcMeta.StatementCacheSettings#PREPARED_STATEMENT_CACHE_SIZE
+ */
+final class JdbcPreparedStatementCache {
+  private final int capacity;
+  private final LinkedHashMap<String, Entry> entries =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Creates a JdbcPreparedStatementCache.
+   *
+   * @param capacity Maximum number of statements to keep
+   */
+  JdbcPreparedStatementCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+  }
+
+  /** Returns the entry of a kept statement for the given SQL that no
+   * StatementInfo uses, adding a reference to it; or returns null if there is
+   * none. */
+  synchronized Entry acquire(String sql) {
+    final Entry entry = entries.get(sql);
+    if (null == entry || entry.references > 0) {
+      return null;
+    }
+    entry.references++;
+    return entry;
+  }
+
+  /**
+   * Registers a statement newly prepared for a StatementInfo, and keeps it
+   * unless a statement for the same SQL is already kept.
+   *
+   * @param sql SQL of the statement
+   * @param statement Statement
+   * @param signature Signature of the statement
+   * @param doomed List to which statements that are no longer kept, and that
+   *               no StatementInfo uses, are added; the caller closes them
+   * @return Entry of the statement, holding one reference
+   */
+  synchronized Entry add(String sql, PreparedStatement statement,
+      Meta.Signature signature, List<PreparedStatement> doomed) {
+    final Entry entry = new Entry(sql, statement, signature);
+    if (entries.containsKey(sql)) {
+      // The kept statement is in use by another StatementInfo; this one will
+      // be closed when its StatementInfo is removed
+      return entry;
+    }
+    entries.put(sql, entry);
+    entry.kept = true;
+    final Iterator<Entry> iterator = entries.values().iterator();
+    while (entries.size() > capacity) {
+      final Entry eldest = iterator.next();
+      iterator.remove();
+      eldest.kept = false;
+      if (eldest.references == 0) {
+        doomed.add(eldest.statement);
+      }
+    }
+    return entry;
+  }
+
+  /** Stops keeping all statements, and returns those that no StatementInfo
+   * uses; the caller closes them. */
+  synchronized List<PreparedStatement> clear() {
+    final List<PreparedStatement> doomed = new ArrayList<>();
+    for (Entry entry : entries.values()) {
+      entry.kept = false;
+      if (entry.references == 0) {
+        doomed.add(entry.statement);
+      }
+    }
+    entries.clear();
+    return doomed;
+  }
+
+  /** Returns the number of kept statements. */
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /** A statement prepared for some SQL, and the number of StatementInfos that
+   * use it. */
+  final class Entry {
+    final String sql;
+    final PreparedStatement statement;
+    final Meta.Signature signature;
+    // Guarded by the cache
+    private int references = 1;
+    private boolean kept;
+
+    private Entry(String sql, PreparedStatement statement, Meta.Signature signature) {
+      this.sql = Objects.requireNonNull(sql);
+      this.statement = Objects.requireNonNull(statement);
+      this.signature = signature;
+    }
+
+    /** Removes the reference of a StatementInfo that is removed, and returns
+     * whether the caller should close the statement, because it is neither
+     * used nor kept. */
+    boolean release() {
+      synchronized (JdbcPreparedStatementCache.this) {
+        return --references == 0 && !kept;
+      }
+    }
+  }
+}
+
+// End JdbcPreparedStatementCache.java
@@ -28,6 +28,9 @@ public class StatementInfo {
   private volatile Boolean relativeSupported = null;
 
   final Statement statement; // sometimes a PreparedStatement
+  /** Entry of {@link #statement} in the connection's cache of prepared
+   * statements, or null if the statement is not shared through it. */
+  final JdbcPreparedStatementCache.Entry cacheEntry;
   private ResultSet resultSet;
   private long position = 0;
 
@@ -37,7 +40,12 @@ public class StatementInfo {
 
   public StatementInfo(Statement statement) {
     // May be null when coming from a DatabaseMetaData call
+    this(statement, null);
+  }
+
+  StatementInfo(Statement statement, JdbcPreparedStatementCache.Entry cacheEntry) {
     this.statement = statement;
+    this.cacheEntry = cacheEntry;
   }
 
   // Visible for testing
@@ -18,30 +18,144 @@
 
 import org.apache.calcite.avatica.AvaticaSeverity;
 import org.apache.calcite.avatica.AvaticaUtils;
+import org.apache.calcite.avatica.metrics.Histogram;
+import org.apache.calcite.avatica.metrics.Timer;
 import org.apache.calcite.avatica.remote.AuthenticationType;
+import org.apache.calcite.avatica.remote.Handler.HandlerResponse;
+import org.apache.calcite.avatica.remote.HttpCompression;
 import org.apache.calcite.avatica.remote.Service.ErrorResponse;
 
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Objects;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import static org.apache.calcite.avatica.remote.MetricsHelper.concat;
+
 /**
  * Base-class for Avatica implemented Jetty Handlers.
  */
 public abstract class AbstractAvaticaHandler extends AbstractHandler
     implements MetricsAwareAvaticaHandler {
+  private static final Logger LOG = LoggerFactory.getLogger(AbstractAvaticaHandler.class);
 
   private static final ErrorResponse UNAUTHORIZED_ERROR = new ErrorResponse(
       Collections.<String>emptyList(), "User is not authenticated",
       ErrorResponse.UNAUTHORIZED_ERROR_CODE, ErrorResponse.UNAUTHORIZED_SQL_STATE,
       AvaticaSeverity.ERROR, null);
 
+  public static final String COMPRESSION_TIMER_NAME = "CompressionTimer";
+  public static final String COMPRESSION_RATIO_NAME = "CompressionRatio";
+
+  private HttpCompression compression = HttpCompression.NONE;
+  private int compressionMinimumSize;
+  private Timer compressionTimer;
+  private Histogram compressionRatio;
+
+  /**
+   * Enables the compression of responses, for clients which accept it. Compressed requests are
+   * accepted whether or not compression is enabled.
+   *
+   * @param compression The preferred compression
+   * @param minimumSize Size in bytes under which responses are sent uncompressed
+   */
+  public void setCompression(HttpCompression compression, int minimumSize) {
+    if (minimumSize < 0) {
+      throw new IllegalArgumentException("Minimum size must be non-negative: " + minimumSize);
+    }
+    this.compression = Objects.requireNonNull(compression);
+    this.compressionMinimumSize = minimumSize;
+    this.compressionTimer = getMetrics().getTimer(
+        concat(getClass(), COMPRESSION_TIMER_NAME));
+    // Size of compressed responses, as a percentage of their uncompressed size
+    this.compressionRatio = getMetrics().getHistogram(
+        concat(getClass(), COMPRESSION_RATIO_NAME));
+  }
+
+  /**
+   * Returns the body of a request, decompressed if the client compressed it. When the client
+   * used an unsupported content coding, an HTTP/415 is written to the <code>response</code> and
+   * null is returned; the caller should return immediately.
+   */
+  protected InputStream getRequestStream(Request baseRequest, HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+    final HttpCompression requestCompression =
+        HttpCompression.forEncoding(request.getHeader(HttpCompression.CONTENT_ENCODING));
+    if (null == requestCompression) {
+      response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+      response.setHeader(HttpCompression.ACCEPT_ENCODING, HttpCompression.acceptedEncodings());
+      baseRequest.setHandled(true);
+      return null;
+    }
+    return requestCompression.decompress(request.getInputStream());
+  }
+
+  /**
+   * Returns a stream to write the body of a response to, which compresses it when compression
+   * is enabled, the client accepts it, and the body is large enough. Nothing is sent to the
+   * client until the body reaches the minimum size or the stream is closed; closing the stream
+   * does not close the servlet's output stream.
+   */
+  protected OutputStream getResponseStream(HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+    return responseStream(request, response);
+  }
+
+  private ResponseStream responseStream(HttpServletRequest request,
+      HttpServletResponse response) {
+    if (HttpCompression.NONE == compression) {
+      return new ResponseStream(response, HttpCompression.NONE);
+    }
+    // Let the client know that it can compress its requests
+    response.setHeader(HttpCompression.ACCEPT_ENCODING, HttpCompression.acceptedEncodings());
+    return new ResponseStream(response,
+        HttpCompression.negotiate(request.getHeader(HttpCompression.ACCEPT_ENCODING),
+            compression));
+  }
+
+  /**
+   * Writes the body of a response, as {@link #getResponseStream} does. If serializing it fails
+   * before anything reached the client, what was serialized is discarded and the error is sent
+   * instead; otherwise the exception is rethrown.
+   *
+   * @param request The user's request
+   * @param response The response to the user's request
+   * @param body Serializes the body, and the error to send if that fails
+   */
+  protected void writeResponse(HttpServletRequest request, HttpServletResponse response,
+      ResponseBody body) throws IOException {
+    final ResponseStream out = responseStream(request, response);
+    try {
+      body.writeTo(out);
+    } catch (IOException | RuntimeException e) {
+      out.abort();
+      if (response.isCommitted()) {
+        // Part of the response was already sent, there is no way to report this to the client
+        throw e;
+      }
+      LOG.debug("Failed to serialize response", e);
+      response.resetBuffer();
+      // The error is not compressed
+      response.setHeader(HttpCompression.CONTENT_ENCODING, null);
+      final HandlerResponse<byte[]> errorResponse = body.errorResponse(e);
+      response.setStatus(errorResponse.getStatusCode());
+      response.getOutputStream().write(errorResponse.getResponse());
+      return;
+    }
+    out.close();
+  }
+
   /**
    * Determines if a request is permitted to be executed. The server may require authentication
    * and the login mechanism might have failed. This check verifies that only authenticated
@@ -77,6 +191,136 @@ public boolean isUserPermitted(AvaticaServerConfiguration serverConfig, Request
 
     return true;
   }
+
+  /** Serializes the body of a response for {@link #writeResponse}. */
+  protected interface ResponseBody {
+    /** Serializes the body to the given stream, which must not be closed. */
+    void writeTo(OutputStream out) throws IOException;
+
+    /** Serializes the error to send when {@link #writeTo} fails. */
+    HandlerResponse<byte[]> errorResponse(Exception e);
+  }
+
+  /**
+   * Body of a response. It is buffered until it reaches the minimum size for compression, then
+   * compressed as it is written.
+   */
+  private class ResponseStream extends OutputStream {
+    private final HttpServletResponse response;
+    private final HttpCompression compression;
+    private byte[] buffer = new byte[0];
+    private int count;
+    private long size;
+    private CountingOutputStream sink;
+    private OutputStream compressed;
+    private Timer.Context timerContext;
+    private boolean closed;
+
+    ResponseStream(HttpServletResponse response, HttpCompression compression) {
+      this.response = response;
+      this.compression = compression;
+    }
+
+    @Override public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override public void write(byte[] b, int off, int len) throws IOException {
+      size += len;
+      if (null != compressed) {
+        compressed.write(b, off, len);
+      } else if (HttpCompression.NONE == compression) {
+        response.getOutputStream().write(b, off, len);
+      } else if (count + len < compressionMinimumSize) {
+        if (count + len > buffer.length) {
+          buffer = Arrays.copyOf(buffer,
+              Math.min(compressionMinimumSize, Math.max(count + len, buffer.length * 2)));
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+      } else {
+        // Nothing was sent yet, so the headers can still be changed
+        response.setHeader(HttpCompression.CONTENT_ENCODING, compression.encoding);
+        timerContext = compressionTimer.start();
+        sink = new CountingOutputStream(response.getOutputStream());
+        compressed = compression.compress(sink);
+        compressed.write(buffer, 0, count);
+        compressed.write(b, off, len);
+        buffer = null;
+      }
+    }
+
+    @Override public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (null == compressed) {
+        if (count > 0) {
+          response.getOutputStream().write(buffer, 0, count);
+          count = 0;
+        }
+        return;
+      }
+      try {
+        compressed.close();
+      } finally {
+        timerContext.close();
+      }
+      if (size > 0) {
+        compressionRatio.update(sink.count * 100 / size);
+      }
+    }
+
+    /** Releases the stream without sending what is still buffered, nor the end of the
+     * compressed body. */
+    void abort() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      buffer = null;
+      if (null == compressed) {
+        return;
+      }
+      sink.discard = true;
+      try {
+        // Only to release the compressor; nothing more reaches the client
+        compressed.close();
+      } catch (IOException e) {
+        LOG.debug("Failed to release the compressor", e);
+      } finally {
+        timerContext.close();
+      }
+    }
+  }
+
+  /** Counts the bytes written to a stream, without flushing or closing it, so that the
+   * response is committed only once it is complete, or the servlet's buffer is full. Once told to
+   * discard, drops what is written. */
+  private static class CountingOutputStream extends OutputStream {
+    private final OutputStream out;
+    private long count;
+    private boolean discard;
+
+    CountingOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override public void write(int b) throws IOException {
+      if (!discard) {
+        out.write(b);
+        count++;
+      }
+    }
+
+    @Override public void write(byte[] b, int off, int len) throws IOException {
+      if (!discard) {
+        out.write(b, off, len);
+        count += len;
+      }
+    }
+  }
 }
 
 // End AbstractAvaticaHandler.java
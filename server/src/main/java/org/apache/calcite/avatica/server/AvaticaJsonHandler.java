@@ -16,26 +16,27 @@
  */
 package org.apache.calcite.avatica.server;
 
-import org.apache.calcite.avatica.AvaticaUtils;
 import org.apache.calcite.avatica.metrics.MetricsSystem;
 import org.apache.calcite.avatica.metrics.Timer;
 import org.apache.calcite.avatica.metrics.Timer.Context;
 import org.apache.calcite.avatica.metrics.noop.NoopMetricsSystem;
+import org.apache.calcite.avatica.remote.Handler;
 import org.apache.calcite.avatica.remote.Handler.HandlerResponse;
 import org.apache.calcite.avatica.remote.JsonHandler;
 import org.apache.calcite.avatica.remote.Service;
 import org.apache.calcite.avatica.remote.Service.RpcMetadataResponse;
-import org.apache.calcite.avatica.util.UnsynchronizedBuffer;
 
 import org.eclipse.jetty.server.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 import java.util.concurrent.Callable;
 import javax.servlet.ServletException;
-import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -53,8 +54,6 @@ public class AvaticaJsonHandler extends AbstractAvaticaHandler {
   final MetricsSystem metrics;
   final Timer requestTimer;
 
-  final ThreadLocal<UnsynchronizedBuffer> threadLocalBuffer;
-
   final AvaticaServerConfiguration serverConfig;
 
   public AvaticaJsonHandler(Service service) {
@@ -76,12 +75,6 @@ public AvaticaJsonHandler(Service service, MetricsSystem metrics,
     this.requestTimer = this.metrics.getTimer(
         concat(AvaticaJsonHandler.class, MetricsAwareAvaticaHandler.REQUEST_TIMER_NAME));
 
-    this.threadLocalBuffer = new ThreadLocal<UnsynchronizedBuffer>() {
-      @Override public UnsynchronizedBuffer initialValue() {
-        return new UnsynchronizedBuffer();
-      }
-    };
-
     this.serverConfig = serverConfig;
   }
 
@@ -100,61 +93,89 @@ public void handle(String target, Request baseRequest,
       if (request.getMethod().equals("POST")) {
         // First look for a request in the header, then look in the body.
         // The latter allows very large requests without hitting HTTP 413.
-        String rawRequest = request.getHeader("request");
-        if (rawRequest == null) {
-          // Avoid a new buffer creation for every HTTP request
-          final UnsynchronizedBuffer buffer = threadLocalBuffer.get();
-          try (ServletInputStream inputStream = request.getInputStream()) {
-            byte[] bytes = AvaticaUtils.readFullyToBytes(inputStream, buffer);
-            String encoding = request.getCharacterEncoding();
-            if (encoding == null) {
-              encoding = "UTF-8";
+        final String headerRequest = request.getHeader("request");
+        final HandlerResponse<Service.Response> handlerResponse;
+        if (headerRequest != null) {
+          LOG.trace("request: {}", headerRequest);
+          handlerResponse = invoke(baseRequest, request,
+              new Callable<HandlerResponse<Service.Response>>() {
+                @Override public HandlerResponse<Service.Response> call() {
+                  return jsonHandler.applyUnencoded(headerRequest);
+                }
+              });
+        } else {
+          // The request is parsed as it is read, rather than buffered as a String first
+          try (InputStream inputStream = getRequestStream(baseRequest, request, response)) {
+            if (null == inputStream) {
+              return;
             }
-            rawRequest = AvaticaUtils.newString(bytes, encoding);
-          } finally {
-            // Reset the offset into the buffer after we're done
-            buffer.reset();
-          }
-        }
-        final String jsonRequest = rawRequest;
-        LOG.trace("request: {}", jsonRequest);
-
-        HandlerResponse<String> jsonResponse;
-        try {
-          if (null != serverConfig && serverConfig.supportsImpersonation()) {
-            String remoteUser = serverConfig.getRemoteUserExtractor().extract(request);
-            jsonResponse = serverConfig.doAsRemoteUser(remoteUser,
-                request.getRemoteAddr(), new Callable<HandlerResponse<String>>() {
-                  @Override public HandlerResponse<String> call() {
-                    return jsonHandler.apply(jsonRequest);
+            final String encoding = request.getCharacterEncoding();
+            handlerResponse = invoke(baseRequest, request,
+                new Callable<HandlerResponse<Service.Response>>() {
+                  @Override public HandlerResponse<Service.Response> call() {
+                    return jsonHandler.applyUnencoded(inputStream, encoding);
                   }
                 });
-          } else {
-            jsonResponse = jsonHandler.apply(jsonRequest);
           }
-        } catch (RemoteUserExtractionException e) {
-          LOG.debug("Failed to extract remote user from request", e);
-          jsonResponse = jsonHandler.unauthenticatedErrorResponse(e);
-        } catch (RemoteUserDisallowedException e) {
-          LOG.debug("Remote user is not authorized", e);
-          jsonResponse = jsonHandler.unauthorizedErrorResponse(e);
-        } catch (BadRequestException e) {
-          LOG.debug("Bad request exception", e);
-          jsonResponse = jsonHandler.badRequestErrorResponse(e);
-        } catch (Exception e) {
-          LOG.debug("Error invoking request from {}", baseRequest.getRemoteAddr(), e);
-          jsonResponse = jsonHandler.convertToErrorResponse(e);
         }
 
-        LOG.trace("response: {}", jsonResponse);
+        LOG.trace("response: {}", handlerResponse);
         baseRequest.setHandled(true);
         // Set the status code and write out the response.
-        response.setStatus(jsonResponse.getStatusCode());
-        response.getWriter().println(jsonResponse.getResponse());
+        response.setStatus(handlerResponse.getStatusCode());
+        writeResponse(handlerResponse.getResponse(), request, response);
+      }
+    }
+  }
+
+  /**
+   * Invokes the JSON handler, as the remote user if impersonation is enabled, converting
+   * failures to error responses.
+   */
+  private HandlerResponse<Service.Response> invoke(Request baseRequest,
+      HttpServletRequest request, Callable<HandlerResponse<Service.Response>> action) {
+    try {
+      if (null != serverConfig && serverConfig.supportsImpersonation()) {
+        String remoteUser = serverConfig.getRemoteUserExtractor().extract(request);
+        return serverConfig.doAsRemoteUser(remoteUser, request.getRemoteAddr(), action);
+      } else {
+        return action.call();
       }
+    } catch (RemoteUserExtractionException e) {
+      LOG.debug("Failed to extract remote user from request", e);
+      return jsonHandler.unencodedErrorResponse(e, Handler.HTTP_UNAUTHENTICATED);
+    } catch (RemoteUserDisallowedException e) {
+      LOG.debug("Remote user is not authorized", e);
+      return jsonHandler.unencodedErrorResponse(e, Handler.HTTP_UNAUTHORIZED);
+    } catch (BadRequestException e) {
+      LOG.debug("Bad request exception", e);
+      return jsonHandler.unencodedErrorResponse(e, Handler.HTTP_BAD_REQUEST);
+    } catch (Exception e) {
+      LOG.debug("Error invoking request from {}", baseRequest.getRemoteAddr(), e);
+      return jsonHandler.unencodedErrorResponse(e, Handler.HTTP_INTERNAL_SERVER_ERROR);
     }
   }
 
+  /**
+   * Serializes the response straight to the servlet's output stream. If serialization fails
+   * before anything reached the client, an error is sent instead.
+   */
+  private void writeResponse(final Service.Response serviceResponse,
+      HttpServletRequest request, HttpServletResponse response) throws IOException {
+    writeResponse(request, response, new ResponseBody() {
+      @Override public void writeTo(OutputStream out) throws IOException {
+        jsonHandler.encode(serviceResponse, out);
+      }
+
+      @Override public HandlerResponse<byte[]> errorResponse(Exception e) {
+        final HandlerResponse<String> errorResponse = jsonHandler.convertToErrorResponse(e);
+        return new HandlerResponse<>(
+            (errorResponse.getResponse() + "\n").getBytes(StandardCharsets.UTF_8),
+            errorResponse.getStatusCode());
+      }
+    });
+  }
+
   @Override public void setServerRpcMetadata(RpcMetadataResponse metadata) {
     // Set the metadata for the normal service calls
     service.setRpcMetadata(metadata);
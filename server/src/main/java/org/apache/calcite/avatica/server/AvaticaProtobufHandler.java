@@ -21,6 +21,7 @@
 import org.apache.calcite.avatica.metrics.Timer;
 import org.apache.calcite.avatica.metrics.Timer.Context;
 import org.apache.calcite.avatica.metrics.noop.NoopMetricsSystem;
+import org.apache.calcite.avatica.remote.Handler;
 import org.apache.calcite.avatica.remote.Handler.HandlerResponse;
 import org.apache.calcite.avatica.remote.MetricsHelper;
 import org.apache.calcite.avatica.remote.ProtobufHandler;
@@ -35,11 +36,12 @@
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 import java.util.concurrent.Callable;
 import javax.servlet.ServletException;
-import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -109,15 +111,22 @@ public void handle(String target, Request baseRequest,
       final byte[] requestBytes;
       // Avoid a new buffer creation for every HTTP request
       final UnsynchronizedBuffer buffer = threadLocalBuffer.get();
-      try (ServletInputStream inputStream = request.getInputStream()) {
+      try (InputStream inputStream = getRequestStream(baseRequest, request, response)) {
+        if (null == inputStream) {
+          return;
+        }
         requestBytes = AvaticaUtils.readFullyToBytes(inputStream, buffer);
       } finally {
         buffer.reset();
       }
 
+      // Answer clients which know type ids with responses identified the same way
+      final boolean typeIdOnly = pbHandler.usesTypeIds(requestBytes);
+
       response.setContentType("application/octet-stream;charset=utf-8");
       response.setStatus(HttpServletResponse.SC_OK);
-      HandlerResponse<byte[]> handlerResponse;
+      // The response is serialized straight to the servlet stream below
+      HandlerResponse<Service.Response> handlerResponse;
       try {
         if (null != serverConfig && serverConfig.supportsImpersonation()) {
           // If we can't extract a user, need to throw 401 in that case.
@@ -125,35 +134,52 @@ public void handle(String target, Request baseRequest,
           // Invoke the ProtobufHandler inside as doAs for the remote user.
           // The doAsRemoteUser call may disallow a user, need to throw 403 in that case.
           handlerResponse = serverConfig.doAsRemoteUser(remoteUser,
-            request.getRemoteAddr(), new Callable<HandlerResponse<byte[]>>() {
-              @Override public HandlerResponse<byte[]> call() {
-                return pbHandler.apply(requestBytes);
+            request.getRemoteAddr(), new Callable<HandlerResponse<Service.Response>>() {
+              @Override public HandlerResponse<Service.Response> call() {
+                return pbHandler.applyUnencoded(requestBytes);
               }
             });
         } else {
-          handlerResponse = pbHandler.apply(requestBytes);
+          handlerResponse = pbHandler.applyUnencoded(requestBytes);
         }
       } catch (RemoteUserExtractionException e) {
         LOG.debug("Failed to extract remote user from request", e);
-        handlerResponse = pbHandler.unauthenticatedErrorResponse(e);
+        handlerResponse = pbHandler.unencodedErrorResponse(e, Handler.HTTP_UNAUTHENTICATED);
       } catch (RemoteUserDisallowedException e) {
         LOG.debug("Remote user is not authorized", e);
-        handlerResponse = pbHandler.unauthorizedErrorResponse(e);
+        handlerResponse = pbHandler.unencodedErrorResponse(e, Handler.HTTP_UNAUTHORIZED);
       } catch (BadRequestException e) {
         LOG.debug("Bad request exception", e);
-        handlerResponse = pbHandler.badRequestErrorResponse(e);
+        handlerResponse = pbHandler.unencodedErrorResponse(e, Handler.HTTP_BAD_REQUEST);
       } catch (Exception e) {
         LOG.debug("Error invoking request from {}", baseRequest.getRemoteAddr(), e);
         // Catch at the highest level of exceptions
-        handlerResponse = pbHandler.convertToErrorResponse(e);
+        handlerResponse = pbHandler.unencodedErrorResponse(e, Handler.HTTP_INTERNAL_SERVER_ERROR);
       }
 
       baseRequest.setHandled(true);
       response.setStatus(handlerResponse.getStatusCode());
-      response.getOutputStream().write(handlerResponse.getResponse());
+      writeResponse(handlerResponse.getResponse(), typeIdOnly, request, response);
     }
   }
 
+  /**
+   * Serializes the response straight to the servlet's output stream. If serialization fails
+   * before anything reached the client, an error is sent instead.
+   */
+  private void writeResponse(final Service.Response serviceResponse, final boolean typeIdOnly,
+      HttpServletRequest request, HttpServletResponse response) throws IOException {
+    writeResponse(request, response, new ResponseBody() {
+      @Override public void writeTo(OutputStream out) throws IOException {
+        pbHandler.encode(serviceResponse, out, typeIdOnly);
+      }
+
+      @Override public HandlerResponse<byte[]> errorResponse(Exception e) {
+        return pbHandler.convertToErrorResponse(e);
+      }
+    });
+  }
+
   @Override public void setServerRpcMetadata(RpcMetadataResponse metadata) {
     // Set the metadata for the normal service calls
     service.setRpcMetadata(metadata);
@@ -19,10 +19,12 @@
 import org.apache.calcite.avatica.metrics.MetricsSystemConfiguration;
 import org.apache.calcite.avatica.remote.AuthenticationType;
 import org.apache.calcite.avatica.remote.Driver.Serialization;
+import org.apache.calcite.avatica.remote.HttpCompression;
 import org.apache.calcite.avatica.remote.Service;
 import org.apache.calcite.avatica.remote.Service.RpcMetadataResponse;
 import org.apache.calcite.avatica.util.SecurityUtils;
 
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
 import org.eclipse.jetty.security.Authenticator;
 import org.eclipse.jetty.security.ConfigurableSpnegoLoginService;
 import org.eclipse.jetty.security.ConstraintMapping;
@@ -34,6 +36,7 @@
 import org.eclipse.jetty.security.authentication.ConfigurableSpnegoAuthenticator;
 import org.eclipse.jetty.security.authentication.DigestAuthenticator;
 import org.eclipse.jetty.server.AbstractConnectionFactory;
+import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpConfiguration;
@@ -91,6 +94,7 @@ public class HttpServer {
   private final SslContextFactory.Server sslFactory;
   private final List<ServerCustomizer<Server>> serverCustomizers;
   private final int maxAllowedHeaderSize;
+  private final boolean http2Cleartext;
 
   @Deprecated
   public HttpServer(Handler handler) {
@@ -154,7 +158,7 @@ public HttpServer(int port, AvaticaHandler handler,
       SslContextFactory.Server sslFactory) {
     this(port, handler, config, subject, sslFactory,
         Collections.<ServerCustomizer<Server>>emptyList(),
-        MAX_ALLOWED_HEADER_SIZE);
+        MAX_ALLOWED_HEADER_SIZE, false);
   }
 
   /**
@@ -170,7 +174,7 @@ public HttpServer(int port, AvaticaHandler handler, AvaticaServerConfiguration c
       Subject subject, SslContextFactory.Server sslFactory, int maxAllowedHeaderSize) {
     this(port, handler, config, subject, sslFactory,
         Collections.<ServerCustomizer<Server>>emptyList(),
-        maxAllowedHeaderSize);
+        maxAllowedHeaderSize, false);
   }
 
   /**
@@ -181,10 +185,12 @@ public HttpServer(int port, AvaticaHandler handler, AvaticaServerConfiguration c
    * @param subject The javax.security Subject for the server, or null
    * @param sslFactory A configured SslContextFactory.Server, or null
    * @param maxAllowedHeaderSize A maximum size in bytes that are allowed in an HTTP header
+   * @param http2Cleartext Whether clients may speak HTTP/2 without TLS
    */
   private HttpServer(int port, AvaticaHandler handler, AvaticaServerConfiguration config,
       Subject subject, SslContextFactory.Server sslFactory,
-      List<ServerCustomizer<Server>> serverCustomizers, int maxAllowedHeaderSize) {
+      List<ServerCustomizer<Server>> serverCustomizers, int maxAllowedHeaderSize,
+      boolean http2Cleartext) {
     this.port = port;
     this.handler = handler;
     this.config = config;
@@ -192,6 +198,7 @@ private HttpServer(int port, AvaticaHandler handler, AvaticaServerConfiguration
     this.sslFactory = sslFactory;
     this.serverCustomizers = serverCustomizers;
     this.maxAllowedHeaderSize = maxAllowedHeaderSize;
+    this.http2Cleartext = http2Cleartext;
   }
 
   static AvaticaHandler wrapJettyHandler(Handler handler) {
@@ -329,11 +336,24 @@ protected ServerConnector getServerConnector() {
     httpConfiguration.setRequestHeaderSize(maxAllowedHeaderSize);
 
     if (null == sslFactory) {
+      if (http2Cleartext) {
+        // Clients may also speak HTTP/2 from the start (h2c with prior knowledge)
+        return new ServerConnector(server, factory,
+            Http2Cleartext.connectionFactory(httpConfiguration));
+      }
       return new ServerConnector(server, factory);
     }
     return new ServerConnector(server, AbstractConnectionFactory.getFactories(sslFactory, factory));
   }
 
+  /** Creates the connection factory of cleartext HTTP/2, whose classes, from the optional
+   * Jetty http2-server artifact, are only loaded if it is enabled. */
+  private static class Http2Cleartext {
+    static ConnectionFactory connectionFactory(HttpConfiguration httpConfiguration) {
+      return new HTTP2CServerConnectionFactory(httpConfiguration);
+    }
+  }
+
   private RpcMetadataResponse createRpcServerMetadata(ServerConnector connector) throws
       UnknownHostException {
     String host = connector.getHost();
@@ -533,6 +553,9 @@ public int getPort() {
 
     // The maximum size in bytes of an http header the server will read (64KB)
     private int maxAllowedHeaderSize = MAX_ALLOWED_HEADER_SIZE;
+    private HttpCompression compression = HttpCompression.NONE;
+    private int compressionMinimumSize = HttpCompression.DEFAULT_MINIMUM_SIZE;
+    private boolean http2Cleartext = false;
     private AvaticaServerConfiguration serverConfig;
     private Subject subject;
 
@@ -849,6 +872,35 @@ public Builder<T> withMaxHeaderSize(int maxHeaderSize) {
       return this;
     }
 
+    /**
+     * Enables the compression of responses for clients which accept it.
+     *
+     * @param compression The preferred compression
+     * @param minimumSize Size in bytes under which responses are sent uncompressed
+     * @return <code>this</code>
+     */
+    public Builder<T> withCompression(HttpCompression compression, int minimumSize) {
+      if (minimumSize < 0) {
+        throw new IllegalArgumentException("Minimum size must be non-negative: " + minimumSize);
+      }
+      this.compression = Objects.requireNonNull(compression);
+      this.compressionMinimumSize = minimumSize;
+      return this;
+    }
+
+    /**
+     * Lets clients speak HTTP/2 without TLS, from the start of their connections ("h2c" with
+     * prior knowledge), as {@code AvaticaHttp2ClientImpl} does; they still may speak HTTP/1.1.
+     * Requires the Jetty {@code http2-server} artifact on the classpath. Cannot be combined with
+     * TLS.
+     *
+     * @return <code>this</code>
+     */
+    public Builder<T> withHttp2Cleartext() {
+      this.http2Cleartext = true;
+      return this;
+    }
+
     /**
      * Builds the HttpServer instance from <code>this</code>.
      * @return An HttpServer.
@@ -884,6 +936,18 @@ public HttpServer build() {
         throw new IllegalArgumentException("Unhandled AuthenticationType");
       }
 
+      if (HttpCompression.NONE != compression) {
+        if (!(handler instanceof AbstractAvaticaHandler)) {
+          throw new IllegalStateException("Compression is only supported by "
+              + AbstractAvaticaHandler.class.getSimpleName() + ", not " + handler);
+        }
+        ((AbstractAvaticaHandler) handler).setCompression(compression, compressionMinimumSize);
+      }
+
+      if (http2Cleartext && usingTLS) {
+        throw new IllegalStateException("Cleartext HTTP/2 cannot be enabled with TLS");
+      }
+
       SslContextFactory.Server sslFactory = buildSSLContextFactory();
 
       List<ServerCustomizer<Server>> jettyCustomizers = new ArrayList<>();
@@ -893,7 +957,7 @@ public HttpServer build() {
       }
 
       return new HttpServer(port, handler, serverConfig, subject, sslFactory, jettyCustomizers,
-          maxAllowedHeaderSize);
+          maxAllowedHeaderSize, http2Cleartext);
     }
 
     // Visible for testing
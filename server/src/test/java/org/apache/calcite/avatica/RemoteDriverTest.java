@@ -71,6 +71,7 @@
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.StringContains.containsString;
@@ -135,6 +136,12 @@ interface ConnectionInternals {
      * <p>TODO: refactor tests to replace reflection with package-local access
      */
     Cache<String, Connection> getRemoteConnectionMap(AvaticaConnection connection) throws Exception;
+
+    /**
+     * Reaches into the guts of a quasi-remote connection and pulls out the
+     * service on the other side.
+     */
+    LocalService getRemoteService(AvaticaConnection connection) throws Exception;
   }
 
   // Run each test with the LocalJsonService and LocalProtobufService
@@ -886,6 +893,83 @@ void checkSetParameter(String query, PreparedStatementFunction fn)
     }
   }
 
+  /** Has the quasi-remote server report a protocol version on the
+   * connections opened from now on, as an HttpServer does. */
+  private void reportProtocolVersion(int protocolVersion) throws Exception {
+    try (AvaticaConnection probe = (AvaticaConnection) getLocalConnection()) {
+      getLocalConnectionInternals().getRemoteService(probe)
+          .setRpcMetadata(new Service.RpcMetadataResponse("localhost:8765", protocolVersion));
+    }
+  }
+
+  @Test public void testConnectionPropertiesAppliedBeforeFirstStatement() throws Exception {
+    ConnectionSpec.getDatabaseLock().lock();
+    try {
+      reportProtocolVersion(Service.PROTOCOL_VERSION);
+      try (AvaticaConnection connection = (AvaticaConnection) getLocalConnection()) {
+        connection.setAutoCommit(false);
+        connection.setReadOnly(true);
+        final Connection serverConnection = getLocalConnectionInternals()
+            .getRemoteConnectionMap(connection).getIfPresent(connection.id);
+        assertNotNull(serverConnection);
+
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("values 1")) {
+          assertTrue(resultSet.next());
+          assertFalse("autoCommit applied on the server with the first statement",
+              serverConnection.getAutoCommit());
+          assertTrue("readOnly applied on the server with the first statement",
+              serverConnection.isReadOnly());
+        }
+      }
+    } finally {
+      try {
+        reportProtocolVersion(Service.LEGACY_PROTOCOL_VERSION);
+      } finally {
+        ConnectionSpec.getDatabaseLock().unlock();
+      }
+    }
+  }
+
+  @Test public void testStatementExecutedDirectly() throws Exception {
+    ConnectionSpec.getDatabaseLock().lock();
+    try {
+      reportProtocolVersion(Service.PROTOCOL_VERSION);
+      try (AvaticaConnection connection = (AvaticaConnection) getLocalConnection()) {
+        final Cache<Integer, Object> serverStatementMap =
+            getLocalConnectionInternals().getRemoteStatementMap(connection);
+        serverStatementMap.invalidateAll();
+        getRequestInspection().getRequestLogger().enableAndClear();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("values 1")) {
+          assertTrue(resultSet.next());
+          assertFalse(resultSet.next());
+        }
+        assertEquals(0, serverStatementMap.size());
+        final List<String[]> requests =
+            getRequestInspection().getRequestLogger().getAndDisable();
+        if (getLocalConnectionInternals() instanceof QuasiRemoteProtobufJdbcServiceInternals) {
+          // Creating, executing and closing the statement took one round trip
+          assertEquals(1, requests.size());
+          assertThat(requests.get(0)[0], containsString("\"request\":\"executeDirect\""));
+        } else {
+          // The JSON client does not know the server's version, so it takes
+          // the legacy round trips
+          assertTrue(requests.size() >= 3);
+          for (String[] request : requests) {
+            assertThat(request[0], not(containsString("executeDirect")));
+          }
+        }
+      }
+    } finally {
+      try {
+        reportProtocolVersion(Service.LEGACY_PROTOCOL_VERSION);
+      } finally {
+        ConnectionSpec.getDatabaseLock().unlock();
+      }
+    }
+  }
+
   @Test public void testPrepareBindExecuteFetch() throws Exception {
     ConnectionSpec.getDatabaseLock().lock();
     try {
@@ -1541,6 +1625,45 @@ private void executeBatchInsertWithDates(Connection conn) throws Exception {
     }
   }
 
+  /** Executes queries with a DECIMAL column again, so that the server leaves
+   * out the signature the client has, whose column the client altered. */
+  @Test public void testReExecuteDecimalColumn() throws Exception {
+    final String tableName = "decimalReExecute";
+    final BigDecimal decimal = new BigDecimal("123.45");
+    final String sql = "SELECT col1 FROM " + tableName;
+    try (Connection conn = getLocalConnection();
+        Statement stmt = conn.createStatement()) {
+      assertFalse(stmt.execute("DROP TABLE IF EXISTS " + tableName));
+      assertFalse(stmt.execute("CREATE TABLE " + tableName + " (col1 DECIMAL(10,2))"));
+      try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO " + tableName
+          + " values (?)")) {
+        pstmt.setBigDecimal(1, decimal);
+        assertEquals(1, pstmt.executeUpdate());
+      }
+
+      for (int i = 0; i < 3; i++) {
+        try (ResultSet results = stmt.executeQuery(sql)) {
+          assertEquals(Types.DECIMAL, results.getMetaData().getColumnType(1));
+          assertEquals(2, results.getMetaData().getScale(1));
+          assertTrue(results.next());
+          assertEquals(decimal, results.getBigDecimal(1));
+          assertFalse(results.next());
+        }
+      }
+
+      try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        for (int i = 0; i < 3; i++) {
+          try (ResultSet results = pstmt.executeQuery()) {
+            assertEquals(Types.DECIMAL, results.getMetaData().getColumnType(1));
+            assertTrue(results.next());
+            assertEquals(decimal, results.getBigDecimal(1));
+            assertFalse(results.next());
+          }
+        }
+      }
+    }
+  }
+
   @Test public void testPreparedClearBatches() throws Exception {
     ConnectionSpec.getDatabaseLock().lock();
     try {
@@ -1912,6 +2035,19 @@ static void initService() {
    */
   public static class QuasiRemoteJdbcServiceInternals implements ConnectionInternals {
 
+    @Override public LocalService getRemoteService(AvaticaConnection connection)
+        throws Exception {
+      Field metaF = AvaticaConnection.class.getDeclaredField("meta");
+      metaF.setAccessible(true);
+      Meta clientMeta = (Meta) metaF.get(connection);
+      Field remoteMetaServiceF = clientMeta.getClass().getDeclaredField("service");
+      remoteMetaServiceF.setAccessible(true);
+      LocalJsonService remoteMetaService = (LocalJsonService) remoteMetaServiceF.get(clientMeta);
+      Field remoteMetaServiceServiceF = LocalJsonService.class.getDeclaredField("service");
+      remoteMetaServiceServiceF.setAccessible(true);
+      return (LocalService) remoteMetaServiceServiceF.get(remoteMetaService);
+    }
+
     @Override public Cache<Integer, Object>
     getRemoteStatementMap(AvaticaConnection connection) throws Exception {
       Field metaF = AvaticaConnection.class.getDeclaredField("meta");
@@ -1970,6 +2106,20 @@ public static class QuasiRemoteJdbcServiceInternals implements ConnectionInterna
    */
   public static class QuasiRemoteProtobufJdbcServiceInternals implements ConnectionInternals {
 
+    @Override public LocalService getRemoteService(AvaticaConnection connection)
+        throws Exception {
+      Field metaF = AvaticaConnection.class.getDeclaredField("meta");
+      metaF.setAccessible(true);
+      Meta clientMeta = (Meta) metaF.get(connection);
+      Field remoteMetaServiceF = clientMeta.getClass().getDeclaredField("service");
+      remoteMetaServiceF.setAccessible(true);
+      LocalProtobufService remoteMetaService =
+          (LocalProtobufService) remoteMetaServiceF.get(clientMeta);
+      Field remoteMetaServiceServiceF = LocalProtobufService.class.getDeclaredField("service");
+      remoteMetaServiceServiceF.setAccessible(true);
+      return (LocalService) remoteMetaServiceServiceF.get(remoteMetaService);
+    }
+
     @Override public Cache<Integer, Object>
     getRemoteStatementMap(AvaticaConnection connection) throws Exception {
       Field metaF = AvaticaConnection.class.getDeclaredField("meta");
@@ -20,6 +20,7 @@
 import org.apache.calcite.avatica.Meta.ConnectionHandle;
 import org.apache.calcite.avatica.Meta.Signature;
 import org.apache.calcite.avatica.Meta.StatementHandle;
+import org.apache.calcite.avatica.remote.ConnectionExpiringMeta;
 
 import com.google.common.cache.Cache;
 
@@ -40,6 +41,7 @@
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.fail;
 
 /**
@@ -202,6 +204,100 @@ public class JdbcMetaTest {
     // Our opened connection should get closed when this race condition happens
     Mockito.verify(conn2).close();
   }
+
+  @Test public void testConnectionRemovalListeners() throws Exception {
+    final Connection conn = Mockito.mock(Connection.class);
+    final JdbcMeta meta = new JdbcMeta("jdbc:url") {
+      @Override protected Connection createConnection(String url, Properties info) {
+        return conn;
+      }
+    };
+    final ConnectionExpiringMeta.ConnectionRemovalListener listener =
+        Mockito.mock(ConnectionExpiringMeta.ConnectionRemovalListener.class);
+    meta.addConnectionRemovalListener(listener);
+
+    // Expired or evicted connections are reported, as are closed ones
+    meta.openConnection(new ConnectionHandle("id1"), Collections.<String, String>emptyMap());
+    meta.getConnectionCache().invalidate("id1");
+    Mockito.verify(listener).onConnectionRemoved("id1");
+    Mockito.verify(conn).close();
+
+    meta.openConnection(new ConnectionHandle("id2"), Collections.<String, String>emptyMap());
+    meta.closeConnection(new ConnectionHandle("id2"));
+    Mockito.verify(listener).onConnectionRemoved("id2");
+  }
+
+  /** Creates a JdbcMeta upon a given connection that keeps a given number
+   * of prepared statements per connection. */
+  private static JdbcMeta metaKeepingPrepared(final Connection conn, int count)
+      throws SQLException {
+    final Properties info = new Properties();
+    info.setProperty(JdbcMeta.StatementCacheSettings.PREPARED_STATEMENT_CACHE_SIZE.key(),
+        Integer.toString(count));
+    return new JdbcMeta("jdbc:url", info) {
+      @Override protected Connection createConnection(String url, Properties info) {
+        return conn;
+      }
+    };
+  }
+
+  @Test public void testPreparedStatementReused() throws Exception {
+    final String sql = "SELECT * FROM FOO";
+    final Connection conn = Mockito.mock(Connection.class);
+    final PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+    Mockito.when(conn.prepareStatement(sql)).thenReturn(statement);
+    final JdbcMeta meta = metaKeepingPrepared(conn, 1);
+    final ConnectionHandle ch = new ConnectionHandle("id1");
+    meta.openConnection(ch, Collections.<String, String>emptyMap());
+
+    final StatementHandle h1 = meta.prepare(ch, sql, -1);
+    meta.closeStatement(h1);
+    final StatementHandle h2 = meta.prepare(ch, sql, -1);
+
+    assertNotEquals(h1.id, h2.id);
+    assertEquals(statement, meta.getStatementCache().getIfPresent(h2.id).statement);
+    Mockito.verify(conn, Mockito.times(1)).prepareStatement(sql);
+    Mockito.verify(statement).clearParameters();
+    Mockito.verify(statement, Mockito.never()).close();
+  }
+
+  @Test public void testPreparedStatementInUseNotShared() throws Exception {
+    final String sql = "SELECT * FROM FOO";
+    final Connection conn = Mockito.mock(Connection.class);
+    final PreparedStatement statement1 = Mockito.mock(PreparedStatement.class);
+    final PreparedStatement statement2 = Mockito.mock(PreparedStatement.class);
+    Mockito.when(conn.prepareStatement(sql)).thenReturn(statement1, statement2);
+    final JdbcMeta meta = metaKeepingPrepared(conn, 1);
+    final ConnectionHandle ch = new ConnectionHandle("id1");
+    meta.openConnection(ch, Collections.<String, String>emptyMap());
+
+    final StatementHandle h1 = meta.prepare(ch, sql, -1);
+    final StatementHandle h2 = meta.prepare(ch, sql, -1);
+    assertEquals(statement2, meta.getStatementCache().getIfPresent(h2.id).statement);
+
+    // The second statement is not kept, so closing it closes it on the backend
+    meta.closeStatement(h2);
+    Mockito.verify(statement2).close();
+    meta.closeStatement(h1);
+    Mockito.verify(statement1, Mockito.never()).close();
+  }
+
+  @Test public void testEvictedPreparedStatementClosed() throws Exception {
+    final Connection conn = Mockito.mock(Connection.class);
+    final PreparedStatement statement1 = Mockito.mock(PreparedStatement.class);
+    final PreparedStatement statement2 = Mockito.mock(PreparedStatement.class);
+    Mockito.when(conn.prepareStatement("SELECT 1")).thenReturn(statement1);
+    Mockito.when(conn.prepareStatement("SELECT 2")).thenReturn(statement2);
+    final JdbcMeta meta = metaKeepingPrepared(conn, 1);
+    final ConnectionHandle ch = new ConnectionHandle("id1");
+    meta.openConnection(ch, Collections.<String, String>emptyMap());
+
+    meta.closeStatement(meta.prepare(ch, "SELECT 1", -1));
+    Mockito.verify(statement1, Mockito.never()).close();
+    meta.prepare(ch, "SELECT 2", -1);
+    Mockito.verify(statement1).close();
+    Mockito.verify(statement2, Mockito.never()).close();
+  }
 }
 
 // End JdbcMetaTest.java
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.jdbc;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link JdbcPreparedStatementCache}.
+ */
+public class JdbcPreparedStatementCacheTest {
+  @Test public void testReusedOnlyWhenNotInUse() {
+    final JdbcPreparedStatementCache cache = new JdbcPreparedStatementCache(2);
+    final PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+    final List<PreparedStatement> doomed = new ArrayList<>();
+    final JdbcPreparedStatementCache.Entry entry =
+        cache.add("select 1", statement, null, doomed);
+    assertNull(cache.acquire("select 1"));
+    assertFalse(entry.release());
+    assertSame(entry, cache.acquire("select 1"));
+    assertNull(cache.acquire("select 1"));
+    assertEquals(Collections.emptyList(), doomed);
+  }
+
+  @Test public void testSecondStatementForSameSqlNotKept() {
+    final JdbcPreparedStatementCache cache = new JdbcPreparedStatementCache(2);
+    final List<PreparedStatement> doomed = new ArrayList<>();
+    final JdbcPreparedStatementCache.Entry first =
+        cache.add("select 1", Mockito.mock(PreparedStatement.class), null, doomed);
+    final JdbcPreparedStatementCache.Entry second =
+        cache.add("select 1", Mockito.mock(PreparedStatement.class), null, doomed);
+    assertEquals(1, cache.size());
+    assertTrue(second.release());
+    assertFalse(first.release());
+  }
+
+  @Test public void testEvictsLeastRecentlyUsed() {
+    final JdbcPreparedStatementCache cache = new JdbcPreparedStatementCache(1);
+    final PreparedStatement s1 = Mockito.mock(PreparedStatement.class);
+    final PreparedStatement s2 = Mockito.mock(PreparedStatement.class);
+    final List<PreparedStatement> doomed = new ArrayList<>();
+    final JdbcPreparedStatementCache.Entry e1 = cache.add("select 1", s1, null, doomed);
+    assertFalse(e1.release());
+    // The idle statement is closed at once
+    final JdbcPreparedStatementCache.Entry e2 = cache.add("select 2", s2, null, doomed);
+    assertEquals(Collections.singletonList(s1), doomed);
+    assertNull(cache.acquire("select 1"));
+    // The statement in use is closed once released
+    doomed.clear();
+    cache.add("select 3", Mockito.mock(PreparedStatement.class), null, doomed);
+    assertEquals(Collections.emptyList(), doomed);
+    assertTrue(e2.release());
+  }
+
+  @Test public void testClearReturnsIdleStatements() {
+    final JdbcPreparedStatementCache cache = new JdbcPreparedStatementCache(2);
+    final PreparedStatement s1 = Mockito.mock(PreparedStatement.class);
+    final List<PreparedStatement> doomed = new ArrayList<>();
+    assertFalse(cache.add("select 1", s1, null, doomed).release());
+    final JdbcPreparedStatementCache.Entry e2 =
+        cache.add("select 2", Mockito.mock(PreparedStatement.class), null, doomed);
+    assertEquals(Collections.singletonList(s1), cache.clear());
+    assertEquals(0, cache.size());
+    assertTrue(e2.release());
+  }
+}
+
+// End JdbcPreparedStatementCacheTest.java
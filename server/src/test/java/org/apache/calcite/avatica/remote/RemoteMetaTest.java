@@ -79,6 +79,7 @@
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -200,6 +201,34 @@ private static Connection getConnection(JdbcMeta m, String id) throws Exception
     }
   }
 
+  /** A prepared statement that reuses a kept handle whose statement the server
+   * has dropped, as it does when the statement expires there, is prepared
+   * again when it is executed. */
+  @Test public void testCachedPreparedStatementExpiredOnServer() throws Exception {
+    ConnectionSpec.getDatabaseLock().lock();
+    try (AvaticaConnection conn = (AvaticaConnection) DriverManager.getConnection(
+        url + ";prepared_statement_cache_size=1")) {
+      final String sql = "select * from (values ('a', 1), ('b', 2))";
+      AvaticaStatement statement = (AvaticaStatement) conn.prepareStatement(sql);
+      final Meta.StatementHandle h = statement.handle;
+      statement.close();
+      FullyRemoteJdbcMetaFactory.getInstance().closeStatement(h);
+
+      statement = (AvaticaStatement) conn.prepareStatement(sql);
+      assertEquals(h.id, statement.handle.id);
+      try (ResultSet rs = ((PreparedStatement) statement).executeQuery()) {
+        assertTrue(rs.next());
+        assertEquals("a", rs.getString(1));
+        assertTrue(rs.next());
+        assertFalse(rs.next());
+      }
+      assertNotEquals(h.id, statement.handle.id);
+      statement.close();
+    } finally {
+      ConnectionSpec.getDatabaseLock().unlock();
+    }
+  }
+
   /** Test case for
    * <a href="https://issues.apache.org/jira/browse/CALCITE-780">[CALCITE-780]
    * HTTP error 413 when sending a long string to the Avatica server</a>. */
@@ -18,23 +18,35 @@
 
 import org.apache.calcite.avatica.AvaticaUtils;
 import org.apache.calcite.avatica.remote.AuthenticationType;
+import org.apache.calcite.avatica.remote.Handler.HandlerResponse;
+import org.apache.calcite.avatica.remote.HttpCompression;
+import org.apache.calcite.avatica.remote.Service;
 
 import org.eclipse.jetty.server.Request;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
 import javax.servlet.ServletInputStream;
 import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -108,6 +120,68 @@ public class AbstractAvaticaHandlerTest {
     when(request.getRemoteUser()).thenReturn("user1");
     assertTrue(handler.isUserPermitted(config, baseRequest, request, response));
   }
+
+  @Test public void errorSentWhenCompressedResponseFails() throws Exception {
+    final AvaticaProtobufHandler pbHandler = new AvaticaProtobufHandler(mock(Service.class));
+    pbHandler.setCompression(HttpCompression.GZIP, 16);
+    final BufferedServletOutputStream os = new BufferedServletOutputStream();
+    when(request.getHeader(HttpCompression.ACCEPT_ENCODING)).thenReturn("gzip");
+    when(response.getOutputStream()).thenReturn(os);
+    when(response.isCommitted()).thenAnswer(new Answer<Boolean>() {
+      @Override public Boolean answer(InvocationOnMock invocation) {
+        return os.committed;
+      }
+    });
+    doAnswer(new Answer<Void>() {
+      @Override public Void answer(InvocationOnMock invocation) {
+        os.buffer.reset();
+        return null;
+      }
+    }).when(response).resetBuffer();
+
+    pbHandler.writeResponse(request, response, new AbstractAvaticaHandler.ResponseBody() {
+      @Override public void writeTo(OutputStream out) throws IOException {
+        // Past the minimum size, so the body is being compressed when it fails
+        out.write(new byte[1024]);
+        throw new IOException("serialization failed");
+      }
+
+      @Override public HandlerResponse<byte[]> errorResponse(Exception e) {
+        return new HandlerResponse<>(e.getMessage().getBytes(StandardCharsets.UTF_8),
+            HttpURLConnection.HTTP_INTERNAL_ERROR);
+      }
+    });
+
+    assertFalse(os.committed);
+    verify(response).setHeader(HttpCompression.CONTENT_ENCODING, "gzip");
+    verify(response).setHeader(HttpCompression.CONTENT_ENCODING, null);
+    verify(response).setStatus(HttpURLConnection.HTTP_INTERNAL_ERROR);
+    // Only the uncompressed error, without the end of the compressed body
+    assertEquals("serialization failed",
+        new String(os.buffer.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  /** Servlet output stream that buffers what is written, and records when it is flushed,
+   * which commits a response. */
+  private static class BufferedServletOutputStream extends ServletOutputStream {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    boolean committed;
+
+    @Override public void write(int b) {
+      buffer.write(b);
+    }
+
+    @Override public void flush() {
+      committed = true;
+    }
+
+    @Override public boolean isReady() {
+      return true;
+    }
+
+    @Override public void setWriteListener(WriteListener writeListener) {
+    }
+  }
 }
 
 // End AbstractAvaticaHandlerTest.java
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.server;
+
+import org.apache.calcite.avatica.AvaticaUtils;
+import org.apache.calcite.avatica.ConnectionSpec;
+import org.apache.calcite.avatica.jdbc.JdbcMeta;
+import org.apache.calcite.avatica.remote.Driver;
+import org.apache.calcite.avatica.remote.HttpCompression;
+import org.apache.calcite.avatica.remote.LocalService;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.StringContains.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the compression of HTTP bodies between the client and the server.
+ */
+@RunWith(Parameterized.class)
+public class HttpServerCompressionTest {
+  private static final ConnectionSpec CONNECTION_SPEC = ConnectionSpec.HSQLDB;
+
+  @Parameters(name = "{0} {1}")
+  public static List<Object[]> parameters() {
+    final List<Object[]> parameters = new ArrayList<>();
+    for (Driver.Serialization serialization : Driver.Serialization.values()) {
+      parameters.add(new Object[] {serialization, HttpCompression.GZIP});
+      parameters.add(new Object[] {serialization, HttpCompression.DEFLATE});
+    }
+    return parameters;
+  }
+
+  private final Driver.Serialization serialization;
+  private final HttpCompression compression;
+  private HttpServer server;
+
+  public HttpServerCompressionTest(Driver.Serialization serialization,
+      HttpCompression compression) {
+    this.serialization = serialization;
+    this.compression = compression;
+  }
+
+  private void startServer(int minimumSize) throws Exception {
+    final JdbcMeta jdbcMeta = new JdbcMeta(CONNECTION_SPEC.url,
+        CONNECTION_SPEC.username, CONNECTION_SPEC.password);
+    server = new HttpServer.Builder()
+        .withHandler(new LocalService(jdbcMeta), serialization)
+        .withCompression(compression, minimumSize)
+        .withPort(0)
+        .build();
+    server.start();
+  }
+
+  @After public void stopServer() {
+    if (null != server) {
+      server.stop();
+    }
+  }
+
+  @Test public void testQuery() throws Exception {
+    startServer(0);
+    final String url = "jdbc:avatica:remote:url=http://localhost:" + server.getPort()
+        + ";serialization=" + serialization + ";http_compression=" + compression
+        + ";http_compression_minimum_size=0";
+    try (Connection conn = DriverManager.getConnection(url, CONNECTION_SPEC.username,
+        CONNECTION_SPEC.password);
+         Statement stmt = conn.createStatement();
+         ResultSet results = stmt.executeQuery("select ename from scott.emp")) {
+      int rows = 0;
+      while (results.next()) {
+        rows++;
+      }
+      assertEquals(14, rows);
+    }
+  }
+
+  @Test public void testResponseCompression() throws Exception {
+    startServer(0);
+    if (Driver.Serialization.JSON != serialization) {
+      return;
+    }
+    HttpURLConnection conn = post(compression.encoding);
+    assertEquals(compression.encoding, conn.getHeaderField(HttpCompression.CONTENT_ENCODING));
+    assertEquals(HttpCompression.acceptedEncodings(),
+        conn.getHeaderField(HttpCompression.ACCEPT_ENCODING));
+    try (InputStream in = compression.decompress(conn.getInputStream())) {
+      assertThat(AvaticaUtils.readFully(in), containsString("openConnection"));
+    }
+
+    // Clients which do not accept the compression get plain responses
+    conn = post(null);
+    assertNull(conn.getHeaderField(HttpCompression.CONTENT_ENCODING));
+    try (InputStream in = conn.getInputStream()) {
+      assertThat(AvaticaUtils.readFully(in), containsString("openConnection"));
+    }
+  }
+
+  @Test public void testSmallResponsesNotCompressed() throws Exception {
+    startServer(1 << 20);
+    if (Driver.Serialization.JSON != serialization) {
+      return;
+    }
+    final HttpURLConnection conn = post(compression.encoding);
+    assertNull(conn.getHeaderField(HttpCompression.CONTENT_ENCODING));
+    try (InputStream in = conn.getInputStream()) {
+      assertTrue(AvaticaUtils.readFully(in).contains("openConnection"));
+    }
+  }
+
+  private HttpURLConnection post(String acceptEncoding) throws Exception {
+    final URL url = new URL("http://localhost:" + server.getPort());
+    final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    conn.setRequestMethod("POST");
+    conn.setDoOutput(true);
+    if (null != acceptEncoding) {
+      conn.setRequestProperty(HttpCompression.ACCEPT_ENCODING, acceptEncoding);
+    }
+    final String request = "{\"request\":\"openConnection\",\"connectionId\":\""
+        + UUID.randomUUID() + "\"}";
+    try (OutputStream out = conn.getOutputStream()) {
+      out.write(request.getBytes(StandardCharsets.UTF_8));
+    }
+    assertEquals(HttpURLConnection.HTTP_OK, conn.getResponseCode());
+    return conn;
+  }
+}
+
+// End HttpServerCompressionTest.java
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.avatica.server;
+
+import org.apache.calcite.avatica.ConnectionSpec;
+import org.apache.calcite.avatica.jdbc.JdbcMeta;
+import org.apache.calcite.avatica.remote.AvaticaHttp2ClientImpl;
+import org.apache.calcite.avatica.remote.Driver;
+import org.apache.calcite.avatica.remote.LocalService;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpVersion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.StringContains.containsString;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that the server speaks HTTP/2 to clients that speak it from the
+ * start, and that {@link AvaticaHttp2ClientImpl} can query it.
+ */
+@RunWith(Parameterized.class)
+public class HttpServerHttp2Test {
+  private static final ConnectionSpec CONNECTION_SPEC = ConnectionSpec.HSQLDB;
+
+  @Parameters(name = "{0}")
+  public static List<Object[]> parameters() {
+    final List<Object[]> parameters = new ArrayList<>();
+    for (Driver.Serialization serialization : Driver.Serialization.values()) {
+      parameters.add(new Object[] {serialization});
+    }
+    return parameters;
+  }
+
+  private final Driver.Serialization serialization;
+  private HttpServer server;
+
+  public HttpServerHttp2Test(Driver.Serialization serialization) {
+    this.serialization = serialization;
+  }
+
+  @Before public void startServer() throws Exception {
+    final JdbcMeta jdbcMeta = new JdbcMeta(CONNECTION_SPEC.url,
+        CONNECTION_SPEC.username, CONNECTION_SPEC.password);
+    server = new HttpServer.Builder()
+        .withHandler(new LocalService(jdbcMeta), serialization)
+        .withHttp2Cleartext()
+        .withPort(0)
+        .build();
+    server.start();
+  }
+
+  @After public void stopServer() {
+    if (null != server) {
+      server.stop();
+    }
+  }
+
+  @Test public void testQuery() throws Exception {
+    final String url = "jdbc:avatica:remote:url=http://localhost:" + server.getPort()
+        + ";serialization=" + serialization
+        + ";httpclient_impl=" + AvaticaHttp2ClientImpl.class.getName();
+    // Connections to the same server share the multiplexed HTTP/2 connections
+    try (Connection conn1 = DriverManager.getConnection(url, CONNECTION_SPEC.username,
+        CONNECTION_SPEC.password);
+         Connection conn2 = DriverManager.getConnection(url, CONNECTION_SPEC.username,
+             CONNECTION_SPEC.password)) {
+      assertEquals(14, countRows(conn1));
+      assertEquals(14, countRows(conn2));
+      assertEquals(14, countRows(conn1));
+    }
+  }
+
+  @Test public void testPriorKnowledge() throws Exception {
+    if (Driver.Serialization.JSON != serialization) {
+      return;
+    }
+    try (CloseableHttpAsyncClient client = HttpAsyncClients.customHttp2().build()) {
+      client.start();
+      final String request = "{\"request\":\"openConnection\",\"connectionId\":\""
+          + UUID.randomUUID() + "\"}";
+      final SimpleHttpRequest post =
+          SimpleRequestBuilder.post("http://localhost:" + server.getPort())
+              .setBody(request, ContentType.APPLICATION_JSON)
+              .build();
+      final SimpleHttpResponse response =
+          client.execute(post, null).get(30, TimeUnit.SECONDS);
+      assertEquals(200, response.getCode());
+      assertEquals(HttpVersion.HTTP_2, response.getVersion());
+      assertThat(response.getBodyText(), containsString("openConnection"));
+    }
+  }
+
+  private static int countRows(Connection conn) throws Exception {
+    try (Statement stmt = conn.createStatement();
+         ResultSet results = stmt.executeQuery("select ename from scott.emp")) {
+      int rows = 0;
+      while (results.next()) {
+        rows++;
+      }
+      return rows;
+    }
+  }
+}
+
+// End HttpServerHttp2Test.java